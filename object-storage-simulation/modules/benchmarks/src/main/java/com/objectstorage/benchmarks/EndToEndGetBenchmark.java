@@ -0,0 +1,158 @@
+package com.objectstorage.benchmarks;
+
+import com.objectstorage.frontend.service.ObjectService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// GETs over real HTTP against the simulation running in the benchmark JVM,
+// one benchmark per controller's read path: object bodies small and cached,
+// large and streamed from the extent nodes, and a range of the large one; the
+// demo file lookups of every tier; and both listings. SampleTime reports the
+// latency percentiles next to the throughput.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@Threads(4)
+public class EndToEndGetBenchmark {
+    private static final String FILE = "report.pdf";
+    private static final int SMALL_OBJECTS = 256;
+    private static final int SMALL_SIZE = 4096;
+    private static final int LARGE_SIZE = 4 * 1024 * 1024;
+
+    private SimulatedCluster cluster;
+    private HttpClient client;
+    private String base;
+    private String extentNode;
+    private URI[] smallObjects;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        cluster = new SimulatedCluster();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        base = cluster.baseUrl();
+        extentNode = cluster.bean(ObjectService.class).placementFor(FILE).get(0);
+        Random random = new Random(9);
+        smallObjects = new URI[SMALL_OBJECTS];
+        for (int i = 0; i < SMALL_OBJECTS; i++) {
+            smallObjects[i] = URI.create(base + "/objects/small/" + i);
+            put(smallObjects[i], randomBytes(random, SMALL_SIZE));
+        }
+        put(URI.create(base + "/objects/large"), randomBytes(random, LARGE_SIZE));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        cluster.close();
+    }
+
+    @Benchmark
+    public int smallObject(Cursor cursor) throws IOException, InterruptedException {
+        cursor.next = (cursor.next + 1) & (SMALL_OBJECTS - 1);
+        return send(HttpRequest.newBuilder(smallObjects[cursor.next]).build());
+    }
+
+    @Benchmark
+    public int largeObject() throws IOException, InterruptedException {
+        return get("/objects/large");
+    }
+
+    @Benchmark
+    public int largeObjectRange() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(base + "/objects/large"))
+            .header("Range", "bytes=1048000-1052095").build());
+    }
+
+    @Benchmark
+    public int listObjects() throws IOException, InterruptedException {
+        return get("/objects?max-keys=100");
+    }
+
+    @Benchmark
+    public int listFiles() throws IOException, InterruptedException {
+        return get("/files");
+    }
+
+    @Benchmark
+    public int fileSteps() throws IOException, InterruptedException {
+        return get("/files/" + FILE);
+    }
+
+    @Benchmark
+    public int partitionForKey() throws IOException, InterruptedException {
+        return get("/partition-manager/partition-for-key?key=" + FILE);
+    }
+
+    @Benchmark
+    public int partitionServerFile() throws IOException, InterruptedException {
+        return get("/partition-server/file/" + FILE);
+    }
+
+    @Benchmark
+    public int streamManagerGetFile() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(base + "/stream-manager/get-file"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString("{\"filename\":\"" + FILE + "\"}"))
+            .build());
+    }
+
+    @Benchmark
+    public int extentNodeRetrieve() throws IOException, InterruptedException {
+        return get("/extent-node/retrieve/" + URLEncoder.encode(extentNode, StandardCharsets.UTF_8.name())
+            .replace("+", "%20") + "?file=" + FILE);
+    }
+
+    private int get(String path) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(base + path)).build());
+    }
+
+    // Reads the whole body and fails the run on any error status, so a broken
+    // endpoint cannot pass for a fast one
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException(request.uri() + " returned " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+
+    private void put(URI uri, byte[] body) throws IOException, InterruptedException {
+        send(HttpRequest.newBuilder(uri)
+            .header("Content-Type", "application/octet-stream")
+            .PUT(HttpRequest.BodyPublishers.ofByteArray(body))
+            .build());
+    }
+
+    private static byte[] randomBytes(Random random, int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
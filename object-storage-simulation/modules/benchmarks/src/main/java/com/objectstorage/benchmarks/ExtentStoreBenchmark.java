@@ -0,0 +1,139 @@
+package com.objectstorage.benchmarks;
+
+import com.objectstorage.common.extent.BlockLocation;
+import com.objectstorage.extentnode.storage.ExtentStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Raw extent node throughput: appending blocks to the active extent, which
+// rolls over to a new one as extents fill, and reading random blocks back
+// into a buffer as a GET does on its way to the socket, checksum included.
+// verify is the checksum pass on its own. Multiply ops/s by the block size for
+// bytes per second.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtentStoreBenchmark {
+    // Enough to spread reads over several extents
+    private static final long READ_SET_BYTES = 256L * 1024 * 1024;
+
+    @State(Scope.Benchmark)
+    public static class Params {
+        @Param({"4096", "1048576"})
+        public int blockSize;
+    }
+
+    // A fresh store per iteration so appends never run into a full disk
+    @State(Scope.Benchmark)
+    public static class AppendState {
+        Path dir;
+        ExtentStore store;
+        ByteBuffer block;
+
+        @Setup(Level.Iteration)
+        public void setUp(Params params) throws IOException {
+            dir = Files.createTempDirectory("extent-bench-");
+            store = new ExtentStore(dir, ExtentStore.DEFAULT_MAX_EXTENT_SIZE, false);
+            block = randomBlock(params.blockSize);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            store.close();
+            SimulatedCluster.deleteAll(dir);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ReadState {
+        Path dir;
+        ExtentStore store;
+        BlockLocation[] locations;
+
+        @Setup(Level.Trial)
+        public void setUp(Params params) throws IOException {
+            dir = Files.createTempDirectory("extent-bench-");
+            store = new ExtentStore(dir, ExtentStore.DEFAULT_MAX_EXTENT_SIZE, false);
+            ByteBuffer block = randomBlock(params.blockSize);
+            int count = (int) (READ_SET_BYTES / params.blockSize);
+            BlockLocation[] written = new BlockLocation[count];
+            for (int i = 0; i < count; i++) {
+                written[i] = store.append(block.duplicate());
+            }
+            // A fixed shuffled order, so reads do not just stream through the files
+            Random random = new Random(11);
+            for (int i = count - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                BlockLocation swap = written[i];
+                written[i] = written[j];
+                written[j] = swap;
+            }
+            locations = written;
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            store.close();
+            SimulatedCluster.deleteAll(dir);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Reader {
+        ByteBuffer target;
+        int next;
+
+        @Setup
+        public void setUp(Params params) {
+            target = ByteBuffer.allocateDirect(params.blockSize);
+        }
+    }
+
+    @Benchmark
+    public BlockLocation append(AppendState state) throws IOException {
+        return state.store.append(state.block.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer read(ReadState state, Reader reader) throws IOException {
+        BlockLocation location = state.locations[reader.next];
+        reader.next = (reader.next + 1) % state.locations.length;
+        reader.target.clear();
+        reader.target.put(state.store.read(location));
+        return reader.target;
+    }
+
+    @Benchmark
+    public BlockLocation verify(ReadState state, Reader reader) throws IOException {
+        BlockLocation location = state.locations[reader.next];
+        reader.next = (reader.next + 1) % state.locations.length;
+        state.store.getExtent(location.getExtentId()).verifyBlock(location.getBlock());
+        return location;
+    }
+
+    private static ByteBuffer randomBlock(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+}
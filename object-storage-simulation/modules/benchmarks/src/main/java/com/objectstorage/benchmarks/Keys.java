@@ -0,0 +1,31 @@
+package com.objectstorage.benchmarks;
+
+import java.util.Random;
+
+// Deterministic key sets, so every run of a benchmark asks for the same keys
+final class Keys {
+    private Keys() {
+    }
+
+    // count lower-case keys of the given length, spread over the whole key space
+    static String[] random(int count, int length, long seed) {
+        Random random = new Random(seed);
+        String[] keys = new String[count];
+        char[] chars = new char[length];
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < length; j++) {
+                chars[j] = (char) ('a' + random.nextInt(26));
+            }
+            keys[i] = new String(chars);
+        }
+        return keys;
+    }
+
+    // The key for the i-th of total objects in the listing layout: a thousand
+    // "directories" of objects each, so delimiter listings have something to
+    // roll up
+    static String listed(int i, int total) {
+        int perDirectory = Math.max(1, total / 1000);
+        return String.format("dir%03d/object%07d", i / perDirectory, i);
+    }
+}
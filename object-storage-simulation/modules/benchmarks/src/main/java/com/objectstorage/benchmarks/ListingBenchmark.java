@@ -0,0 +1,100 @@
+package com.objectstorage.benchmarks;
+
+import com.objectstorage.common.object.ObjectManifest;
+import com.objectstorage.frontend.controller.FileController;
+import com.objectstorage.frontend.controller.ObjectController;
+import com.objectstorage.frontend.service.ObjectService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Listing a bucket of a million objects through the controllers. The demo
+// file list of FileController.listFiles only ever holds the seeded files, so
+// the large listings go through the S3-style /objects endpoint, which pages
+// through the partition servers' sorted indexes: the first page, a page deep
+// inside one directory, and a delimiter listing rolled up into directories.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ListingBenchmark {
+    private static final int PREFIX_COUNT = 1024;
+
+    @Param({"1000000"})
+    public int keys;
+
+    private SimulatedCluster cluster;
+    private ObjectController objectController;
+    private FileController fileController;
+    private String[] prefixes;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        cluster = new SimulatedCluster();
+        objectController = cluster.bean(ObjectController.class);
+        fileController = cluster.bean(FileController.class);
+        ObjectService objectService = cluster.bean(ObjectService.class);
+        long now = System.currentTimeMillis();
+        // Metadata only; listing never touches the bodies
+        IntStream.range(0, keys).parallel().forEach(i -> {
+            String key = Keys.listed(i, keys);
+            try {
+                objectService.commit(new ObjectManifest(key, 0, "d41d8cd98f00b204e9800998ecf8427e", now,
+                    Collections.emptyList()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        prefixes = new String[PREFIX_COUNT];
+        for (int i = 0; i < PREFIX_COUNT; i++) {
+            String key = Keys.listed((int) ((long) i * keys / PREFIX_COUNT), keys);
+            prefixes[i] = key.substring(0, key.indexOf('/') + 1);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        cluster.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> firstPage() throws IOException {
+        return objectController.listObjects("", "", 1000, null);
+    }
+
+    @Benchmark
+    public Map<String, Object> directoryPage() throws IOException {
+        next = (next + 1) & (PREFIX_COUNT - 1);
+        return objectController.listObjects(prefixes[next], "", 1000, null);
+    }
+
+    @Benchmark
+    public Map<String, Object> commonPrefixes() throws IOException {
+        return objectController.listObjects("", "/", 1000, null);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> listFiles() {
+        return fileController.listFiles();
+    }
+}
@@ -0,0 +1,130 @@
+package com.objectstorage.benchmarks;
+
+import com.objectstorage.common.object.ObjectManifest;
+import com.objectstorage.frontend.cache.CachedObject;
+import com.objectstorage.frontend.cache.ObjectCache;
+import com.objectstorage.frontend.controller.ObjectController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// The frontend cache on its own and behind the GET controller. hotGet asks
+// for a working set that fits entirely; skewedGet draws from a key space four
+// times the cache size with Zipf-like popularity and inserts on every miss,
+// so admission and eviction are part of the cost. controllerHit is a cached
+// GET through ObjectController without the HTTP layer.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ObjectCacheBenchmark {
+    private static final int OBJECT_SIZE = 4096;
+    private static final long CACHE_BYTES = 64L * 1024 * 1024;
+    private static final int HOT_KEYS = 1024;
+    private static final int SKEWED_KEYS = (int) (4 * CACHE_BYTES / OBJECT_SIZE);
+    private static final int SAMPLES = 1 << 16;
+
+    private SimulatedCluster cluster;
+    private ObjectCache cache;
+    private ObjectController controller;
+    private String[] hotKeys;
+    private String[] skewedKeys;
+    private ObjectManifest[] skewedManifests;
+    private int[] skewedSamples;
+    private byte[] body;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        cluster = new SimulatedCluster("objectstorage.cache.max-bytes=" + CACHE_BYTES);
+        cache = cluster.bean(ObjectCache.class);
+        controller = cluster.bean(ObjectController.class);
+        body = new byte[OBJECT_SIZE];
+        new Random(3).nextBytes(body);
+        hotKeys = new String[HOT_KEYS];
+        for (int i = 0; i < HOT_KEYS; i++) {
+            hotKeys[i] = "hot/" + i;
+            controller.putObject(hotKeys[i], new ByteArrayInputStream(body));
+            // The first GET loads it into the cache
+            controller.getObjectBody(hotKeys[i], null).getBody().writeTo(OutputStream.nullOutputStream());
+        }
+        skewedKeys = new String[SKEWED_KEYS];
+        skewedManifests = new ObjectManifest[SKEWED_KEYS];
+        for (int i = 0; i < SKEWED_KEYS; i++) {
+            skewedKeys[i] = "skewed/" + i;
+            skewedManifests[i] = new ObjectManifest(skewedKeys[i], OBJECT_SIZE, "etag", 0,
+                Collections.emptyList());
+        }
+        skewedSamples = zipfSamples(SKEWED_KEYS, SAMPLES, 0.99, new Random(5));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        cluster.close();
+    }
+
+    @Benchmark
+    public CachedObject hotGet(Cursor cursor) {
+        cursor.next = (cursor.next + 1) & (HOT_KEYS - 1);
+        return cache.get(hotKeys[cursor.next]);
+    }
+
+    @Benchmark
+    public CachedObject skewedGet(Cursor cursor) {
+        cursor.next = (cursor.next + 1) & (SAMPLES - 1);
+        int index = skewedSamples[cursor.next];
+        String key = skewedKeys[index];
+        CachedObject cached = cache.get(key);
+        if (cached == null) {
+            cache.put(skewedManifests[index], body, cache.ticket(key));
+        }
+        return cached;
+    }
+
+    @Benchmark
+    public void controllerHit(Cursor cursor) throws IOException {
+        cursor.next = (cursor.next + 1) & (HOT_KEYS - 1);
+        controller.getObjectBody(hotKeys[cursor.next], null).getBody().writeTo(OutputStream.nullOutputStream());
+    }
+
+    // count indices in [0, n) drawn with probability proportional to 1 / (rank ^ exponent)
+    private static int[] zipfSamples(int n, int count, double exponent, Random random) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        int[] samples = new int[count];
+        for (int i = 0; i < count; i++) {
+            double u = random.nextDouble() * sum;
+            int index = Arrays.binarySearch(cumulative, u);
+            samples[i] = index >= 0 ? index : Math.min(n - 1, -index - 1);
+        }
+        return samples;
+    }
+}
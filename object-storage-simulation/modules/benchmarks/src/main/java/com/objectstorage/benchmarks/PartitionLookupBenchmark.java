@@ -0,0 +1,73 @@
+package com.objectstorage.benchmarks;
+
+import com.objectstorage.common.metrics.MetricsRegistry;
+import com.objectstorage.common.trace.Tracer;
+import com.objectstorage.frontend.controller.PartitionManagerController;
+import com.objectstorage.partitionmanager.partition.Partition;
+import com.objectstorage.partitionmanager.partition.PartitionMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+// Key to partition lookups: the partition map itself and the partition
+// manager's getPartitionForKey endpoint, which adds the response map around it.
+// Run with the demo's two boundaries and with a thousand partitions, as after
+// many splits.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PartitionLookupBenchmark {
+    private static final int KEY_COUNT = 4096;
+
+    @Param({"2", "1000"})
+    public int boundaries;
+
+    private PartitionMap partitionMap;
+    private PartitionManagerController controller;
+    private String[] keys;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<String> servers = Arrays.asList("Partition Server 1", "Partition Server 2", "Partition Server 3");
+        List<String> splits = boundaries == 2 ? Arrays.asList("h", "q")
+            : new ArrayList<>(new TreeSet<>(Arrays.asList(Keys.random(boundaries, 4, 7))));
+        partitionMap = new PartitionMap(servers, splits);
+        controller = new PartitionManagerController(partitionMap, new Tracer(new MetricsRegistry(), 0));
+        keys = Keys.random(KEY_COUNT, 12, 42);
+    }
+
+    private String nextKey() {
+        next = (next + 1) & (KEY_COUNT - 1);
+        return keys[next];
+    }
+
+    @Benchmark
+    public Partition route() {
+        return partitionMap.route(nextKey());
+    }
+
+    @Benchmark
+    public ResponseEntity<Map<String, Object>> getPartitionForKey() {
+        return controller.getPartitionForKey(nextKey());
+    }
+}
@@ -0,0 +1,108 @@
+package com.objectstorage.benchmarks;
+
+import com.objectstorage.common.metrics.MetricsRegistry;
+import com.objectstorage.common.trace.Tracer;
+import com.objectstorage.frontend.controller.StreamManagerController;
+import com.objectstorage.frontend.service.ClusterSnapshot;
+import com.objectstorage.frontend.service.ClusterState;
+import com.objectstorage.frontend.service.ReplicaSelector;
+import com.objectstorage.streammanager.stream.StreamManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Picking the extent node that serves a read, as StreamManagerController.getFile
+// does: the file's replica set from the current cluster snapshot, narrowed to
+// live nodes and ranked by power of two choices. Runs with every node up and
+// with one down, on four threads so the shared latency statistics are
+// contended as they are under load.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ReplicaSelectionBenchmark {
+    private static final int FILE_COUNT = 1024;
+    private static final int NODE_COUNT = 5;
+
+    @Param({"0", "1"})
+    public int nodesDown;
+
+    private ClusterState clusterState;
+    private ReplicaSelector replicaSelector;
+    private StreamManagerController controller;
+    private String[] files;
+    private List<Map<String, Object>> requests;
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup
+    public void setUp() throws IOException {
+        List<String> nodes = new ArrayList<>();
+        for (int i = 1; i <= NODE_COUNT; i++) {
+            nodes.add("Extent Node " + i);
+        }
+        clusterState = new ClusterState();
+        clusterState.reset(nodes);
+        files = new String[FILE_COUNT];
+        requests = new ArrayList<>();
+        for (int i = 0; i < FILE_COUNT; i++) {
+            String file = "file-" + i;
+            files[i] = file;
+            List<String> replicas = new ArrayList<>();
+            for (int j = 0; j < 3; j++) {
+                replicas.add(nodes.get((i + j) % NODE_COUNT));
+            }
+            clusterState.setExtentNodes(file, replicas);
+            requests.add(Collections.<String, Object>singletonMap("filename", file));
+        }
+        for (int i = 0; i < nodesDown; i++) {
+            clusterState.setStatus(nodes.get(i), ClusterSnapshot.DOWN);
+        }
+        replicaSelector = new ReplicaSelector(200, 10);
+        // Give every node a latency history so ranking compares real scores
+        for (String node : nodes) {
+            for (int i = 0; i < 16; i++) {
+                replicaSelector.read(node, () -> null);
+            }
+        }
+        // getFile only needs the cluster state, the selector and, to look up
+        // damaged replicas, a stream manager, here one without extents
+        controller = new StreamManagerController(clusterState, replicaSelector, new StreamManager(nodes), null, null,
+            new Tracer(new MetricsRegistry(), 0));
+    }
+
+    private int nextIndex() {
+        return next.getAndIncrement() & (FILE_COUNT - 1);
+    }
+
+    @Benchmark
+    public String choose() {
+        ClusterSnapshot cluster = clusterState.snapshot();
+        return replicaSelector.choose(cluster.getExtentNodes(files[nextIndex()]), cluster);
+    }
+
+    @Benchmark
+    public ResponseEntity<Map<String, String>> getFile() {
+        return controller.getFile(requests.get(nextIndex()));
+    }
+}
@@ -0,0 +1,68 @@
+package com.objectstorage.benchmarks;
+
+import com.objectstorage.frontend.FrontendApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// The whole simulation started in the benchmark JVM on a random port, with its
+// data under a fresh temp directory that is deleted again on close. The
+// background schedulers are pushed far out so they cannot fire in the middle
+// of a measurement and make runs incomparable.
+final class SimulatedCluster implements Closeable {
+    private static final String NEVER = String.valueOf(Long.MAX_VALUE / 4);
+
+    private final Path dataDir;
+    private final ConfigurableApplicationContext context;
+
+    SimulatedCluster(String... extraProperties) throws IOException {
+        this.dataDir = Files.createTempDirectory("object-storage-bench-");
+        List<String> properties = new ArrayList<>();
+        properties.add("server.port=0");
+        properties.add("spring.main.banner-mode=off");
+        properties.add("logging.level.root=WARN");
+        properties.add("objectstorage.data-dir=" + dataDir);
+        properties.add("partition-manager.balance-interval-ms=" + NEVER);
+        properties.add("stream-manager.erasure.interval-ms=" + NEVER);
+        properties.add("stream-manager.gc.interval-ms=" + NEVER);
+        properties.add("stream-manager.scrub.interval-ms=" + NEVER);
+        properties.add("objectstorage.multipart.sweep-interval-ms=" + NEVER);
+        for (String property : extraProperties) {
+            properties.add(property);
+        }
+        this.context = new SpringApplicationBuilder(FrontendApplication.class)
+            .properties(properties.toArray(new String[0]))
+            .run();
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        deleteAll(dataDir);
+    }
+
+    static void deleteAll(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
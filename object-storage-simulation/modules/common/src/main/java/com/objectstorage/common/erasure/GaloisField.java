@@ -0,0 +1,102 @@
+package com.objectstorage.common.erasure;
+
+// Arithmetic in GF(2^8) with the primitive polynomial x^8 + x^4 + x^3 + x^2 + 1.
+// Multiplication is a lookup in a full 256 x 256 product table, so the coding
+// loops never compute a logarithm per byte: they fetch the table row for a
+// coefficient once and index it with every input byte.
+final class GaloisField {
+    private static final int POLYNOMIAL = 0x11d;
+    private static final int[] EXP = new int[512];
+    private static final int[] LOG = new int[256];
+    static final byte[][] MUL = new byte[256][256];
+
+    static {
+        int x = 1;
+        for (int i = 0; i < 255; i++) {
+            EXP[i] = x;
+            LOG[x] = i;
+            x <<= 1;
+            if (x >= 256) {
+                x ^= POLYNOMIAL;
+            }
+        }
+        for (int i = 255; i < EXP.length; i++) {
+            EXP[i] = EXP[i - 255];
+        }
+        for (int a = 1; a < 256; a++) {
+            for (int b = 1; b < 256; b++) {
+                MUL[a][b] = (byte) EXP[LOG[a] + LOG[b]];
+            }
+        }
+    }
+
+    private GaloisField() {
+    }
+
+    static int mul(int a, int b) {
+        return MUL[a][b] & 0xff;
+    }
+
+    static int inv(int a) {
+        if (a == 0) {
+            throw new ArithmeticException("Zero has no inverse in GF(256)");
+        }
+        return EXP[255 - LOG[a]];
+    }
+
+    // out[outOff + i] ^= coefficient * in[inOff + i] for len bytes
+    static void mulAdd(int coefficient, byte[] in, int inOff, byte[] out, int outOff, int len) {
+        if (coefficient == 0) {
+            return;
+        }
+        if (coefficient == 1) {
+            for (int i = 0; i < len; i++) {
+                out[outOff + i] ^= in[inOff + i];
+            }
+            return;
+        }
+        byte[] row = MUL[coefficient];
+        for (int i = 0; i < len; i++) {
+            out[outOff + i] ^= row[in[inOff + i] & 0xff];
+        }
+    }
+
+    // Inverts a square matrix by Gauss-Jordan elimination
+    static int[][] invert(int[][] matrix) {
+        int n = matrix.length;
+        int[][] work = new int[n][2 * n];
+        for (int r = 0; r < n; r++) {
+            System.arraycopy(matrix[r], 0, work[r], 0, n);
+            work[r][n + r] = 1;
+        }
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            while (pivot < n && work[pivot][col] == 0) {
+                pivot++;
+            }
+            if (pivot == n) {
+                throw new ArithmeticException("Matrix is singular");
+            }
+            int[] swap = work[col];
+            work[col] = work[pivot];
+            work[pivot] = swap;
+            int scale = inv(work[col][col]);
+            for (int c = 0; c < 2 * n; c++) {
+                work[col][c] = mul(work[col][c], scale);
+            }
+            for (int r = 0; r < n; r++) {
+                int factor = work[r][col];
+                if (r != col && factor != 0) {
+                    for (int c = 0; c < 2 * n; c++) {
+                        work[r][c] ^= mul(factor, work[col][c]);
+                    }
+                }
+            }
+        }
+        int[][] inverse = new int[n][n];
+        for (int r = 0; r < n; r++) {
+            System.arraycopy(work[r], n, inverse[r], 0, n);
+        }
+        return inverse;
+    }
+}
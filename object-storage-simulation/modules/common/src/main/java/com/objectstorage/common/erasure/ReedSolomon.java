@@ -0,0 +1,120 @@
+package com.objectstorage.common.erasure;
+
+import java.util.Arrays;
+
+// Systematic Reed-Solomon code over GF(256) with dataShards data shards and
+// parityShards parity shards. The data shards are stored unchanged; the parity
+// rows of the generator form a Cauchy matrix, so any dataShards of the shards
+// are enough to rebuild the rest. Shards are processed as runs of bytes at the
+// same position in every shard, which lets callers stream large shards through
+// in fixed-size batches.
+public final class ReedSolomon {
+    private final int dataShards;
+    private final int parityShards;
+    // Full generator: identity on top of the Cauchy parity rows
+    private final int[][] generator;
+
+    public ReedSolomon(int dataShards, int parityShards) {
+        if (dataShards <= 0 || parityShards <= 0 || dataShards + parityShards > 256) {
+            throw new IllegalArgumentException("Unsupported code " + dataShards + "+" + parityShards);
+        }
+        this.dataShards = dataShards;
+        this.parityShards = parityShards;
+        int total = dataShards + parityShards;
+        generator = new int[total][dataShards];
+        for (int i = 0; i < dataShards; i++) {
+            generator[i][i] = 1;
+        }
+        for (int p = 0; p < parityShards; p++) {
+            for (int d = 0; d < dataShards; d++) {
+                // x_p = dataShards + p and y_d = d never coincide, so x_p ^ y_d != 0
+                generator[dataShards + p][d] = GaloisField.inv((dataShards + p) ^ d);
+            }
+        }
+    }
+
+    public int getDataShards() {
+        return dataShards;
+    }
+
+    public int getParityShards() {
+        return parityShards;
+    }
+
+    public int getTotalShards() {
+        return dataShards + parityShards;
+    }
+
+    // Computes len bytes of every parity shard at offset from the data shards
+    // at the same offset
+    public void encode(byte[][] data, byte[][] parity, int offset, int len) {
+        checkShards(data, dataShards, offset, len);
+        checkShards(parity, parityShards, offset, len);
+        for (int p = 0; p < parityShards; p++) {
+            Arrays.fill(parity[p], offset, offset + len, (byte) 0);
+            int[] row = generator[dataShards + p];
+            for (int d = 0; d < dataShards; d++) {
+                GaloisField.mulAdd(row[d], data[d], offset, parity[p], offset, len);
+            }
+        }
+    }
+
+    // Prepares reconstruction from the shards numbered present (exactly
+    // dataShards distinct shard numbers)
+    public Decoder decoder(int[] present) {
+        if (present.length != dataShards) {
+            throw new IllegalArgumentException("Need exactly " + dataShards + " shards, got " + present.length);
+        }
+        int[][] rows = new int[dataShards][];
+        for (int i = 0; i < dataShards; i++) {
+            if (present[i] < 0 || present[i] >= getTotalShards()) {
+                throw new IllegalArgumentException("No shard " + present[i]);
+            }
+            rows[i] = generator[present[i]];
+        }
+        return new Decoder(present.clone(), GaloisField.invert(rows));
+    }
+
+    private static void checkShards(byte[][] shards, int count, int offset, int len) {
+        if (shards.length != count) {
+            throw new IllegalArgumentException("Expected " + count + " shards, got " + shards.length);
+        }
+        for (byte[] shard : shards) {
+            if (offset < 0 || len < 0 || offset + len > shard.length) {
+                throw new IllegalArgumentException("Range [" + offset + ", +" + len + ") outside shard of "
+                    + shard.length + " bytes");
+            }
+        }
+    }
+
+    // Rebuilds data shards from a fixed set of surviving shards. The inverted
+    // matrix is computed once, so decoding many batches costs only the
+    // multiply-adds.
+    public final class Decoder {
+        private final int[] present;
+        private final int[][] inverse;
+
+        private Decoder(int[] present, int[][] inverse) {
+            this.present = present;
+            this.inverse = inverse;
+        }
+
+        public int[] getPresent() {
+            return present.clone();
+        }
+
+        // Writes len bytes of data shard dataShard into out at outOffset, from
+        // the surviving shards (in the order given to decoder) at offset
+        public void reconstruct(int dataShard, byte[][] shards, int offset, int len, byte[] out, int outOffset) {
+            if (dataShard < 0 || dataShard >= dataShards) {
+                throw new IllegalArgumentException("No data shard " + dataShard);
+            }
+            checkShards(shards, dataShards, offset, len);
+            Arrays.fill(out, outOffset, outOffset + len, (byte) 0);
+            int[] row = inverse[dataShard];
+            for (int i = 0; i < dataShards; i++) {
+                GaloisField.mulAdd(row[i], shards[i], offset, out, outOffset, len);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.objectstorage.common.extent;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+// Address of one appended block inside an extent: which extent, which block
+// number in that extent's block index, and the byte range of its payload.
+public final class BlockLocation {
+    private final long extentId;
+    private final int block;
+    private final long offset;
+    private final int length;
+
+    @JsonCreator
+    public BlockLocation(@JsonProperty("extentId") long extentId, @JsonProperty("block") int block,
+                         @JsonProperty("offset") long offset, @JsonProperty("length") int length) {
+        this.extentId = extentId;
+        this.block = block;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public long getExtentId() {
+        return extentId;
+    }
+
+    public int getBlock() {
+        return block;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BlockLocation)) return false;
+        BlockLocation that = (BlockLocation) o;
+        return extentId == that.extentId && block == that.block
+            && offset == that.offset && length == that.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(extentId, block, offset, length);
+    }
+
+    @Override
+    public String toString() {
+        return "extent " + extentId + " block " + block + " [" + offset + ", +" + length + ")";
+    }
+}
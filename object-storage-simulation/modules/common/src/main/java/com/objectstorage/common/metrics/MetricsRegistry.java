@@ -0,0 +1,47 @@
+package com.objectstorage.common.metrics;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Latency and byte counts of every hop of the request path, per operation.
+// A hop is one tier of the cluster (frontend, partition manager, partition
+// server, stream manager, extent node); every call into it is recorded under
+// the operation it performed. Recording is lock-free; snapshots aggregate each
+// hop's operations into a hop total as well.
+public class MetricsRegistry {
+    private final ConcurrentMap<String, ConcurrentMap<String, OperationMetrics>> hops = new ConcurrentHashMap<>();
+
+    public OperationMetrics operation(String hop, String operation) {
+        return hops.computeIfAbsent(hop, h -> new ConcurrentHashMap<>())
+            .computeIfAbsent(operation, o -> new OperationMetrics());
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new TreeMap<>();
+        for (Map.Entry<String, ConcurrentMap<String, OperationMetrics>> hop : hops.entrySet()) {
+            Histogram service = new Histogram(3);
+            Histogram queue = new Histogram(3);
+            long[] counters = new long[2];
+            Map<String, Object> operations = new TreeMap<>();
+            for (Map.Entry<String, OperationMetrics> operation : hop.getValue().entrySet()) {
+                operations.put(operation.getKey(), operation.getValue().snapshot());
+                operation.getValue().addTo(service, queue, counters);
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("total", OperationMetrics.snapshot(service, queue, counters[0], counters[1]));
+            entry.put("operations", operations);
+            result.put(hop.getKey(), entry);
+        }
+        return result;
+    }
+
+    // Starts every histogram afresh, e.g. between benchmark runs
+    public void reset() {
+        hops.clear();
+    }
+}
@@ -0,0 +1,66 @@
+package com.objectstorage.common.metrics;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency histograms and counters of one operation of one hop. Times are kept
+// in microseconds to three significant digits; the histograms grow as needed,
+// so even pathological latencies are recorded rather than clipped.
+public final class OperationMetrics {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Histogram service = new ConcurrentHistogram(3);
+    private final Histogram queue = new ConcurrentHistogram(3);
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    OperationMetrics() {
+    }
+
+    public void record(long queueNanos, long serviceNanos, long byteCount, boolean failed) {
+        service.recordValue(TimeUnit.NANOSECONDS.toMicros(Math.max(0, serviceNanos)));
+        queue.recordValue(TimeUnit.NANOSECONDS.toMicros(Math.max(0, queueNanos)));
+        bytes.add(byteCount);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    // Adds this operation's figures to the running totals of its hop
+    void addTo(Histogram serviceTotal, Histogram queueTotal, long[] counters) {
+        serviceTotal.add(service.copy());
+        queueTotal.add(queue.copy());
+        counters[0] += bytes.sum();
+        counters[1] += errors.sum();
+    }
+
+    Map<String, Object> snapshot() {
+        return snapshot(service.copy(), queue.copy(), bytes.sum(), errors.sum());
+    }
+
+    static Map<String, Object> snapshot(Histogram service, Histogram queue, long bytes, long errors) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", service.getTotalCount());
+        result.put("errors", errors);
+        result.put("bytes", bytes);
+        result.put("serviceMicros", latencies(service));
+        result.put("queueMicros", latencies(queue));
+        return result;
+    }
+
+    private static Map<String, Object> latencies(Histogram histogram) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("mean", histogram.getTotalCount() == 0 ? 0.0 : histogram.getMean());
+        for (double percentile : PERCENTILES) {
+            result.put("p" + (percentile % 1 == 0 ? String.valueOf((int) percentile) : String.valueOf(percentile)),
+                histogram.getValueAtPercentile(percentile));
+        }
+        result.put("max", histogram.getMaxValue());
+        return result;
+    }
+}
@@ -0,0 +1,37 @@
+package com.objectstorage.common.object;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.objectstorage.common.extent.BlockLocation;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// One contiguous piece of an object's body and the block holding it on each
+// replica. Replicas are kept in placement order, primary first.
+public final class ObjectChunk {
+    private final long objectOffset;
+    private final int length;
+    private final Map<String, BlockLocation> replicas;
+
+    @JsonCreator
+    public ObjectChunk(@JsonProperty("objectOffset") long objectOffset, @JsonProperty("length") int length,
+                       @JsonProperty("replicas") Map<String, BlockLocation> replicas) {
+        this.objectOffset = objectOffset;
+        this.length = length;
+        this.replicas = Collections.unmodifiableMap(new LinkedHashMap<>(replicas));
+    }
+
+    public long getObjectOffset() {
+        return objectOffset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public Map<String, BlockLocation> getReplicas() {
+        return replicas;
+    }
+}
@@ -0,0 +1,78 @@
+package com.objectstorage.common.object;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Collections;
+import java.util.List;
+
+// Metadata describing a stored object: its size, content hash and the ordered
+// chunks that make up its body.
+public final class ObjectManifest {
+    private final String key;
+    private final long size;
+    private final String etag;
+    private final long lastModified;
+    private final List<ObjectChunk> chunks;
+
+    @JsonCreator
+    public ObjectManifest(@JsonProperty("key") String key, @JsonProperty("size") long size,
+                          @JsonProperty("etag") String etag, @JsonProperty("lastModified") long lastModified,
+                          @JsonProperty("chunks") List<ObjectChunk> chunks) {
+        this.key = key;
+        this.size = size;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.chunks = Collections.unmodifiableList(chunks);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public List<ObjectChunk> getChunks() {
+        return chunks;
+    }
+
+    // The chunks holding bytes [offset, offset + length) of the body, found by
+    // binary search over the chunks' object offsets
+    public List<ObjectChunk> chunksCovering(long offset, long length) {
+        if (offset < 0 || length < 0 || offset + length > size) {
+            throw new IllegalArgumentException("Range [" + offset + ", +" + length
+                + ") is outside object " + key + " of size " + size);
+        }
+        if (length == 0) {
+            return Collections.emptyList();
+        }
+        int first = chunkAt(offset);
+        int last = chunkAt(offset + length - 1);
+        return chunks.subList(first, last + 1);
+    }
+
+    // Index of the chunk holding the byte at offset
+    private int chunkAt(long offset) {
+        int low = 0;
+        int high = chunks.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (chunks.get(mid).getObjectOffset() <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
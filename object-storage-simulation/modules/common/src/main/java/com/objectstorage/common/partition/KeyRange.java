@@ -0,0 +1,71 @@
+package com.objectstorage.common.partition;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+// Half-open range of object keys [start, end). An empty start is the lowest
+// possible key and a null end means the range is unbounded above.
+public final class KeyRange {
+    private final String start;
+    private final String end;
+
+    @JsonCreator
+    public KeyRange(@JsonProperty("start") String start, @JsonProperty("end") String end) {
+        this.start = Objects.requireNonNull(start, "start");
+        if (end != null && end.compareTo(start) <= 0) {
+            throw new IllegalArgumentException("Empty key range [" + start + ", " + end + ")");
+        }
+        this.end = end;
+    }
+
+    public String getStart() {
+        return start;
+    }
+
+    public String getEnd() {
+        return end;
+    }
+
+    public boolean contains(String key) {
+        return key.compareTo(start) >= 0 && (end == null || key.compareTo(end) < 0);
+    }
+
+    // Overlap of the two ranges, or null if they do not overlap
+    public KeyRange intersect(KeyRange other) {
+        String lo = start.compareTo(other.start) >= 0 ? start : other.start;
+        String hi;
+        if (end == null) {
+            hi = other.end;
+        } else if (other.end == null) {
+            hi = end;
+        } else {
+            hi = end.compareTo(other.end) <= 0 ? end : other.end;
+        }
+        return hi == null || lo.compareTo(hi) < 0 ? new KeyRange(lo, hi) : null;
+    }
+
+    // True if other starts exactly where this range ends
+    public boolean adjoins(KeyRange other) {
+        return end != null && end.equals(other.start);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof KeyRange)) return false;
+        KeyRange that = (KeyRange) o;
+        return start.equals(that.start) && Objects.equals(end, that.end);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + (start.isEmpty() ? "-inf" : start) + ", " + (end == null ? "+inf" : end) + ")";
+    }
+}
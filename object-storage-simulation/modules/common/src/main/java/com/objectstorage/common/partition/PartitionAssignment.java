@@ -0,0 +1,35 @@
+package com.objectstorage.common.partition;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+// A key range together with the partition server it is assigned to
+public final class PartitionAssignment {
+    private final long partitionId;
+    private final KeyRange range;
+    private final String server;
+
+    @JsonCreator
+    public PartitionAssignment(@JsonProperty("partitionId") long partitionId, @JsonProperty("range") KeyRange range,
+                               @JsonProperty("server") String server) {
+        this.partitionId = partitionId;
+        this.range = range;
+        this.server = server;
+    }
+
+    public long getPartitionId() {
+        return partitionId;
+    }
+
+    public KeyRange getRange() {
+        return range;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    @Override
+    public String toString() {
+        return "Partition " + partitionId + " " + range + " on " + server;
+    }
+}
@@ -0,0 +1,29 @@
+package com.objectstorage.common.partition;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Collections;
+import java.util.List;
+
+// Immutable copy of the whole partition map as of one version. Assignments are
+// sorted by range start and together cover the entire key space.
+public final class PartitionTable {
+    private final long version;
+    private final List<PartitionAssignment> assignments;
+
+    @JsonCreator
+    public PartitionTable(@JsonProperty("version") long version,
+                          @JsonProperty("assignments") List<PartitionAssignment> assignments) {
+        this.version = version;
+        this.assignments = Collections.unmodifiableList(assignments);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<PartitionAssignment> getAssignments() {
+        return assignments;
+    }
+}
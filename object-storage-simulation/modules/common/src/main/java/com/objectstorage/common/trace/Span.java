@@ -0,0 +1,112 @@
+package com.objectstorage.common.trace;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// One timed unit of work on one hop. Closing the span records it with the
+// hop's metrics and, if it belongs to a sampled trace, with the trace; spans
+// started while it is current on the thread become its children. A span is
+// closed by the thread that started it, unless it is detached from that
+// thread first and closed wherever the work ends.
+public final class Span implements AutoCloseable {
+    private final Tracer tracer;
+    private final Tracer.Trace trace;
+    private final long spanId;
+    private final Span parent;
+    private final Span previous;
+    private final String hop;
+    private volatile String operation;
+    private final long queueNanos;
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile String component;
+    private volatile String error;
+    private boolean closed;
+
+    Span(Tracer tracer, Tracer.Trace trace, Span parent, Span previous, String hop, String operation,
+         long queueNanos) {
+        this.tracer = tracer;
+        this.trace = trace;
+        this.spanId = trace == null ? 0 : trace.nextSpanId();
+        this.parent = parent;
+        this.previous = previous;
+        this.hop = hop;
+        this.operation = operation;
+        this.queueNanos = queueNanos;
+    }
+
+    // Names the operation once it is known, e.g. after request mapping
+    public Span operation(String operation) {
+        this.operation = operation;
+        return this;
+    }
+
+    public Span component(String component) {
+        this.component = component;
+        return this;
+    }
+
+    public void addBytes(long count) {
+        bytes.addAndGet(count);
+    }
+
+    public void fail(String message) {
+        this.error = message == null ? "failed" : message;
+    }
+
+    public void fail(Throwable cause) {
+        fail(cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName());
+    }
+
+    // Null if the span is only measured, not traced
+    public String getTraceId() {
+        return trace == null ? null : trace.id;
+    }
+
+    Tracer.Trace trace() {
+        return trace;
+    }
+
+    long spanId() {
+        return spanId;
+    }
+
+    // Stops being the current span of this thread without finishing
+    public void detach() {
+        tracer.restore(this, previous);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        long end = System.nanoTime();
+        tracer.finish(this, previous, end - startNanos);
+    }
+
+    SpanRecord toRecord(long serviceNanos) {
+        return new SpanRecord(trace.id, spanId, parent == null ? 0 : parent.spanId, hop, component, operation,
+            (startNanos - trace.startNanos) / 1000, queueNanos / 1000, serviceNanos / 1000, bytes.get(), error);
+    }
+
+    String hop() {
+        return hop;
+    }
+
+    String operation() {
+        return operation;
+    }
+
+    long queueNanos() {
+        return queueNanos;
+    }
+
+    long bytes() {
+        return bytes.get();
+    }
+
+    boolean failed() {
+        return error != null;
+    }
+}
@@ -0,0 +1,80 @@
+package com.objectstorage.common.trace;
+
+// One finished span of a trace: which hop did what for how long. Offsets and
+// durations are in microseconds, offsets relative to the start of the trace.
+public final class SpanRecord {
+    private final String traceId;
+    private final long spanId;
+    private final long parentId;
+    private final String hop;
+    private final String component;
+    private final String operation;
+    private final long startMicros;
+    private final long queueMicros;
+    private final long serviceMicros;
+    private final long bytes;
+    private final String error;
+
+    SpanRecord(String traceId, long spanId, long parentId, String hop, String component, String operation,
+               long startMicros, long queueMicros, long serviceMicros, long bytes, String error) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentId = parentId;
+        this.hop = hop;
+        this.component = component;
+        this.operation = operation;
+        this.startMicros = startMicros;
+        this.queueMicros = queueMicros;
+        this.serviceMicros = serviceMicros;
+        this.bytes = bytes;
+        this.error = error;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public long getSpanId() {
+        return spanId;
+    }
+
+    // 0 for the root span
+    public long getParentId() {
+        return parentId;
+    }
+
+    public String getHop() {
+        return hop;
+    }
+
+    // The instance of the hop that served the span, e.g. extent1; null if the
+    // hop has only one
+    public String getComponent() {
+        return component;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getStartMicros() {
+        return startMicros;
+    }
+
+    // Time spent waiting for a thread before the work started
+    public long getQueueMicros() {
+        return queueMicros;
+    }
+
+    public long getServiceMicros() {
+        return serviceMicros;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,154 @@
+package com.objectstorage.common.trace;
+
+import com.objectstorage.common.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Spans across the hops of one request. The current span lives in a thread
+// local; work handed to another thread carries it along by capturing it on
+// submission and attaching it in the task, which also charges the time the
+// task sat in the queue to the first span it starts. Every span feeds the
+// metrics registry; the spans of the most recent traces are also kept whole so
+// a client can fetch the breakdown of its own request by trace id.
+public class Tracer {
+    // The hops of the request path
+    public static final String FRONTEND = "frontend";
+    public static final String PARTITION_MANAGER = "partition-manager";
+    public static final String PARTITION_SERVER = "partition-server";
+    public static final String STREAM_MANAGER = "stream-manager";
+    public static final String EXTENT_NODE = "extent-node";
+
+    private final MetricsRegistry metrics;
+    private final ThreadLocal<Span> current = new ThreadLocal<>();
+    private final ThreadLocal<long[]> pendingQueue = ThreadLocal.withInitial(() -> new long[1]);
+    private final Map<String, Trace> recent;
+
+    public Tracer(MetricsRegistry metrics, int retainedTraces) {
+        this.metrics = metrics;
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<String, Trace>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Trace> eldest) {
+                return size() > retainedTraces;
+            }
+        });
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    // Starts the root span of a new trace, reusing the caller's trace id if it
+    // sent one. An id that still names a retained trace, say a client sending
+    // the same id with every request, gets a random suffix instead of mixing
+    // the new spans into the earlier request's.
+    public Span startTrace(String traceId, String hop, String operation) {
+        String id = traceId != null && !traceId.isEmpty() ? traceId : newTraceId();
+        Trace trace = new Trace(id);
+        while (recent.putIfAbsent(trace.id, trace) != null) {
+            trace = new Trace(id + "-" + newTraceId());
+        }
+        return begin(trace, null, hop, operation);
+    }
+
+    // Starts a span as a child of the thread's current span. Outside any trace
+    // the span is still measured, just not retained.
+    public Span start(String hop, String operation) {
+        Span parent = current.get();
+        return begin(parent == null ? null : parent.trace(), parent, hop, operation);
+    }
+
+    public Span current() {
+        return current.get();
+    }
+
+    // The span work submitted now should continue; null outside any trace
+    public Span capture() {
+        Span span = current.get();
+        return span == null || span.trace() == null ? null : span;
+    }
+
+    // Makes a captured span current on this thread until the returned handle is
+    // closed. The time since submission is charged as queue time to the next
+    // span started here.
+    public Attachment attach(Span captured, long submittedNanos) {
+        Span previous = current.get();
+        current.set(captured);
+        pendingQueue.get()[0] = submittedNanos == 0 ? 0 : Math.max(0, System.nanoTime() - submittedNanos);
+        return new Attachment(previous);
+    }
+
+    // The spans of a retained trace in start order; null once it has been evicted
+    public List<SpanRecord> getTrace(String traceId) {
+        Trace trace = recent.get(traceId);
+        if (trace == null) {
+            return null;
+        }
+        List<SpanRecord> spans = new ArrayList<>(trace.spans);
+        spans.sort((a, b) -> Long.compare(a.getStartMicros(), b.getStartMicros()));
+        return spans;
+    }
+
+    private Span begin(Trace trace, Span parent, String hop, String operation) {
+        long[] queue = pendingQueue.get();
+        long queueNanos = queue[0];
+        queue[0] = 0;
+        Span span = new Span(this, trace, parent, current.get(), hop, operation, queueNanos);
+        current.set(span);
+        return span;
+    }
+
+    void restore(Span span, Span previous) {
+        if (current.get() == span) {
+            current.set(previous);
+        }
+    }
+
+    void finish(Span span, Span previous, long serviceNanos) {
+        restore(span, previous);
+        metrics.operation(span.hop(), span.operation())
+            .record(span.queueNanos(), serviceNanos, span.bytes(), span.failed());
+        if (span.trace() != null) {
+            span.trace().spans.add(span.toRecord(serviceNanos));
+        }
+    }
+
+    private static String newTraceId() {
+        return String.format("%016x", ThreadLocalRandom.current().nextLong());
+    }
+
+    public final class Attachment implements AutoCloseable {
+        private final Span previous;
+
+        private Attachment(Span previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            current.set(previous);
+            pendingQueue.get()[0] = 0;
+        }
+    }
+
+    static final class Trace {
+        final String id;
+        final long startNanos = System.nanoTime();
+        final List<SpanRecord> spans = new CopyOnWriteArrayList<>();
+        private final AtomicLong spanIds = new AtomicLong();
+
+        Trace(String id) {
+            this.id = id;
+        }
+
+        long nextSpanId() {
+            return spanIds.incrementAndGet();
+        }
+    }
+}
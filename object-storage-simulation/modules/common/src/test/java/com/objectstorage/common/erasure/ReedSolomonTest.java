@@ -0,0 +1,108 @@
+package com.objectstorage.common.erasure;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReedSolomonTest {
+    private static final int SHARD_SIZE = 257;
+
+    @ParameterizedTest
+    @CsvSource({"1, 1", "2, 2", "3, 1", "4, 2", "6, 3", "10, 4"})
+    void decodesEveryDataShardFromEveryChoiceOfSurvivors(int k, int m) {
+        ReedSolomon code = new ReedSolomon(k, m);
+        byte[][] shards = encodedShards(code, new Random(k * 31 + m));
+        List<int[]> subsets = new ArrayList<>();
+        subsets(k + m, k, 0, new int[k], 0, subsets);
+        for (int[] present : subsets) {
+            ReedSolomon.Decoder decoder = code.decoder(present);
+            byte[][] survivors = new byte[k][];
+            for (int i = 0; i < k; i++) {
+                survivors[i] = shards[present[i]];
+            }
+            for (int d = 0; d < k; d++) {
+                byte[] out = new byte[SHARD_SIZE];
+                decoder.reconstruct(d, survivors, 0, SHARD_SIZE, out, 0);
+                assertArrayEquals(shards[d], out, "data shard " + d + " from " + Arrays.toString(present));
+            }
+        }
+    }
+
+    @Test
+    void encodesAndDecodesInBatchesAtAnOffset() {
+        ReedSolomon code = new ReedSolomon(4, 2);
+        byte[][] whole = encodedShards(code, new Random(7));
+        byte[][] data = new byte[4][];
+        byte[][] parity = new byte[2][SHARD_SIZE];
+        for (int d = 0; d < 4; d++) {
+            data[d] = whole[d];
+        }
+        // Parity computed a batch at a time matches parity computed at once
+        for (int offset = 0; offset < SHARD_SIZE; offset += 100) {
+            code.encode(data, parity, offset, Math.min(100, SHARD_SIZE - offset));
+        }
+        assertArrayEquals(whole[4], parity[0]);
+        assertArrayEquals(whole[5], parity[1]);
+
+        ReedSolomon.Decoder decoder = code.decoder(new int[] {1, 3, 4, 5});
+        byte[][] survivors = {whole[1], whole[3], whole[4], whole[5]};
+        byte[] out = new byte[50 + 10];
+        decoder.reconstruct(2, survivors, 200, 50, out, 10);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(whole[2][200 + i], out[10 + i]);
+        }
+    }
+
+    @Test
+    void rejectsUnsupportedCodesAndWrongShardCounts() {
+        assertThrows(IllegalArgumentException.class, () -> new ReedSolomon(0, 2));
+        assertThrows(IllegalArgumentException.class, () -> new ReedSolomon(200, 57));
+        ReedSolomon code = new ReedSolomon(4, 2);
+        assertThrows(IllegalArgumentException.class, () -> code.decoder(new int[] {0, 1, 2}));
+        assertThrows(IllegalArgumentException.class, () -> code.decoder(new int[] {0, 1, 2, 6}));
+        assertThrows(IllegalArgumentException.class,
+            () -> code.encode(new byte[3][SHARD_SIZE], new byte[2][SHARD_SIZE], 0, SHARD_SIZE));
+    }
+
+    @Test
+    void everyNonZeroElementHasAnInverse() {
+        for (int a = 1; a < 256; a++) {
+            assertEquals(1, GaloisField.mul(a, GaloisField.inv(a)), "inverse of " + a);
+        }
+    }
+
+    // Random data shards followed by their parity shards
+    private static byte[][] encodedShards(ReedSolomon code, Random random) {
+        int k = code.getDataShards();
+        byte[][] data = new byte[k][SHARD_SIZE];
+        byte[][] parity = new byte[code.getParityShards()][SHARD_SIZE];
+        for (byte[] shard : data) {
+            random.nextBytes(shard);
+        }
+        code.encode(data, parity, 0, SHARD_SIZE);
+        byte[][] shards = new byte[code.getTotalShards()][];
+        System.arraycopy(data, 0, shards, 0, k);
+        System.arraycopy(parity, 0, shards, k, parity.length);
+        return shards;
+    }
+
+    private static void subsets(int n, int k, int from, int[] chosen, int size, List<int[]> result) {
+        if (size == k) {
+            result.add(chosen.clone());
+            return;
+        }
+        for (int i = from; i <= n - (k - size); i++) {
+            chosen[size] = i;
+            subsets(n, k, i + 1, chosen, size + 1, result);
+        }
+    }
+}
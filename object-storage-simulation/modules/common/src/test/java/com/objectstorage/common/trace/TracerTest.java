@@ -0,0 +1,42 @@
+package com.objectstorage.common.trace;
+
+import com.objectstorage.common.metrics.MetricsRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TracerTest {
+    @Test
+    void keepsTheSpansOfEachRequestApart() {
+        Tracer tracer = new Tracer(new MetricsRegistry(), 10);
+        String first;
+        try (Span root = tracer.startTrace("client-id", Tracer.FRONTEND, "GET")) {
+            first = root.getTraceId();
+            tracer.start(Tracer.EXTENT_NODE, "read").close();
+        }
+        String second;
+        try (Span root = tracer.startTrace("client-id", Tracer.FRONTEND, "PUT")) {
+            second = root.getTraceId();
+        }
+        assertEquals("client-id", first);
+        assertNotEquals(first, second);
+        assertTrue(second.startsWith("client-id-"), second);
+        assertEquals(2, tracer.getTrace(first).size());
+        assertEquals(1, tracer.getTrace(second).size());
+        assertEquals("PUT", tracer.getTrace(second).get(0).getOperation());
+    }
+
+    @Test
+    void forgetsTracesBeyondTheRetainedCount() {
+        Tracer tracer = new Tracer(new MetricsRegistry(), 0);
+        String id;
+        try (Span root = tracer.startTrace(null, Tracer.FRONTEND, "GET")) {
+            id = root.getTraceId();
+        }
+        assertNull(tracer.getTrace(id));
+        assertNull(tracer.getTrace("never-seen"));
+    }
+}
@@ -0,0 +1,20 @@
+package com.objectstorage.extentnode.config;
+
+import com.objectstorage.extentnode.storage.ExtentStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+@Configuration
+public class ExtentNodeConfig {
+    @Bean(destroyMethod = "close")
+    public ExtentStore extentStore(
+            @Value("${extent-node.data-dir:${java.io.tmpdir}/object-storage/extent-node}") String dataDir,
+            @Value("${extent-node.max-extent-size:" + ExtentStore.DEFAULT_MAX_EXTENT_SIZE + "}") long maxExtentSize,
+            @Value("${extent-node.sync-writes:true}") boolean syncWrites) throws IOException {
+        return new ExtentStore(Paths.get(dataDir), maxExtentSize, syncWrites);
+    }
+}
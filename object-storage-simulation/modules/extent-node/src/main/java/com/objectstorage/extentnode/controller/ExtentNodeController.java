@@ -1,15 +1,89 @@
 package com.objectstorage.extentnode.controller;
 
+import com.objectstorage.common.extent.BlockLocation;
+import com.objectstorage.extentnode.storage.Extent;
+import com.objectstorage.extentnode.storage.ExtentStore;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/extent-node")
 public class ExtentNodeController {
+    private final ExtentStore extentStore;
+
+    public ExtentNodeController(ExtentStore extentStore) {
+        this.extentStore = extentStore;
+    }
+
     @GetMapping("/health")
     public String health() {
         return "Extent Node is up";
     }
-    // TODO: Add endpoints for extent node operations, status, etc.
-} 
\ No newline at end of file
+
+    // POST /append with the raw block bytes as the body; the body is copied from
+    // the request stream into the extent file without buffering it on the heap
+    @PostMapping(value = "/append", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public BlockLocation append(InputStream body,
+                                @RequestHeader(HttpHeaders.CONTENT_LENGTH) int length) throws IOException {
+        return extentStore.append(Channels.newChannel(body), length);
+    }
+
+    @PostMapping("/extents/seal")
+    public ResponseEntity<Void> sealActive() throws IOException {
+        extentStore.sealActive();
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/extents")
+    public List<Map<String, Object>> listExtents() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Extent extent : extentStore.getExtents()) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("extentId", extent.getId());
+            entry.put("size", extent.getSize());
+            entry.put("blocks", extent.getIndex().count());
+            entry.put("sealed", extent.isSealed());
+            result.add(entry);
+        }
+        return result;
+    }
+
+    // GET /extents/{extentId}?offset=...&length=...
+    @GetMapping(value = "/extents/{extentId}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> read(@PathVariable("extentId") long extentId,
+                                                      @RequestParam("offset") long offset,
+                                                      @RequestParam("length") int length) throws IOException {
+        Extent extent = extentStore.getExtent(extentId);
+        if (offset < 0 || length < 0 || offset + length > extent.getSize()) {
+            throw new IllegalArgumentException("Range [" + offset + ", +" + length
+                + ") is outside extent " + extentId);
+        }
+        StreamingResponseBody body = out -> extent.transferTo(offset, length, Channels.newChannel(out));
+        return ResponseEntity.ok().contentLength(length).body(body);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> badRequest(IllegalArgumentException e) {
+        Map<String, String> result = new HashMap<>();
+        result.put("error", e.getMessage());
+        return ResponseEntity.badRequest().body(result);
+    }
+}
@@ -0,0 +1,166 @@
+package com.objectstorage.extentnode.replication;
+
+import com.objectstorage.common.extent.BlockLocation;
+import com.objectstorage.common.trace.Span;
+import com.objectstorage.common.trace.Tracer;
+import com.objectstorage.extentnode.storage.ExtentStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Chain replication of extents across extent nodes. The first node of a chain
+// is the primary: it decides where each block goes by appending it to its own
+// replica, then the block is passed down the chain and every secondary writes
+// it at exactly that location. A block is acknowledged once the last node has
+// it. Each node applies its appends on a single thread of its own, so blocks
+// reach every replica in the primary's order while a writer keeps several
+// blocks moving along the chain at once.
+//
+// With a tracer, every replica's write is a span of the appender's trace; its
+// queue time is how long the block waited in that node's pipeline.
+public class ChainReplicator implements Closeable {
+    private final Function<String, ExtentStore> stores;
+    private final Predicate<String> available;
+    private final Tracer tracer;
+    private final Map<String, ExecutorService> pipelines = new ConcurrentHashMap<>();
+
+    public ChainReplicator(Function<String, ExtentStore> stores, Predicate<String> available) {
+        this(stores, available, null);
+    }
+
+    public ChainReplicator(Function<String, ExtentStore> stores, Predicate<String> available, Tracer tracer) {
+        this.stores = stores;
+        this.available = available;
+        this.tracer = tracer;
+    }
+
+    // Sends one block down the chain. Completes with the block's location once
+    // every replica has it, with null if it does not fit in the extent, or
+    // exceptionally if a replica failed.
+    public CompletableFuture<BlockLocation> append(long extentId, List<String> chain, ByteBuffer data) {
+        String primary = chain.get(0);
+        Span parent = tracer == null ? null : tracer.capture();
+        // When the block was handed to the next node's pipeline; each stage
+        // runs after the previous one, so a plain array carries it along
+        long[] handedOver = {System.nanoTime()};
+        CompletableFuture<BlockLocation> result = CompletableFuture.supplyAsync(() -> traced(parent, handedOver,
+            primary, "append", data.remaining(), () -> {
+                checkAvailable(primary, extentId);
+                return stores.apply(primary).appendTo(extentId, data.duplicate());
+            }), pipeline(primary));
+        for (String secondary : chain.subList(1, chain.size())) {
+            result = result.thenApplyAsync(location -> {
+                if (location == null) {
+                    return null;
+                }
+                return traced(parent, handedOver, secondary, "replicate", data.remaining(), () -> {
+                    checkAvailable(secondary, extentId);
+                    return stores.apply(secondary).appendAt(location, data.duplicate());
+                });
+            }, pipeline(secondary));
+        }
+        return result;
+    }
+
+    private interface Write {
+        BlockLocation run() throws IOException;
+    }
+
+    private BlockLocation traced(Span parent, long[] handedOver, String node, String operation, long bytes,
+                                 Write write) {
+        try {
+            if (tracer == null) {
+                return write.run();
+            }
+            try (Tracer.Attachment ignored = tracer.attach(parent, handedOver[0]);
+                 Span span = tracer.start(Tracer.EXTENT_NODE, operation).component(node)) {
+                try {
+                    BlockLocation location = write.run();
+                    span.addBytes(bytes);
+                    return location;
+                } catch (IOException | RuntimeException e) {
+                    span.fail(e);
+                    throw e;
+                } finally {
+                    handedOver[0] = System.nanoTime();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Seals an extent on every reachable replica at the length all of them
+    // hold, so every block acknowledged to a writer survives and every block
+    // that was not is cut off. The caller must stop appending to the extent
+    // first. Returns the sealed length.
+    public long seal(long extentId, List<String> replicas) {
+        // Let appends already queued along the chain finish, node by node in
+        // chain order so nothing can still be forwarded to a drained node
+        for (String node : replicas) {
+            CompletableFuture.runAsync(() -> { }, pipeline(node)).join();
+        }
+        long length = Long.MAX_VALUE;
+        for (String node : replicas) {
+            if (available.test(node)) {
+                length = Math.min(length, stores.apply(node).getLength(extentId));
+            }
+        }
+        if (length == Long.MAX_VALUE) {
+            throw new ReplicaUnavailableException(String.join(", ", replicas), extentId);
+        }
+        long sealedLength = length;
+        for (String node : replicas) {
+            if (available.test(node)) {
+                join(CompletableFuture.runAsync(() -> {
+                    try {
+                        stores.apply(node).sealAt(extentId, sealedLength);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, pipeline(node)));
+            }
+        }
+        return sealedLength;
+    }
+
+    private void checkAvailable(String node, long extentId) {
+        if (!available.test(node)) {
+            throw new ReplicaUnavailableException(node, extentId);
+        }
+    }
+
+    private ExecutorService pipeline(String node) {
+        return pipelines.computeIfAbsent(node, name -> Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "replication-" + name);
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    private static void join(CompletableFuture<?> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    @Override
+    public void close() {
+        for (ExecutorService pipeline : pipelines.values()) {
+            pipeline.shutdown();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.objectstorage.extentnode.replication;
+
+// Thrown when a replica in an extent's chain cannot take part in a write.
+public class ReplicaUnavailableException extends RuntimeException {
+    private final String node;
+
+    public ReplicaUnavailableException(String node, long extentId) {
+        super(node + " is unavailable for extent " + extentId);
+        this.node = node;
+    }
+
+    public String getNode() {
+        return node;
+    }
+}
@@ -0,0 +1,113 @@
+package com.objectstorage.extentnode.storage;
+
+import java.util.Arrays;
+
+// Per-extent index of appended blocks with the CRC32C of each payload, kept as
+// parallel primitive arrays so a lookup never allocates. Appends are serialized
+// by the owning Extent; readers only ever see entries below the published
+// count.
+public class BlockIndex {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private volatile long[] offsets = new long[INITIAL_CAPACITY];
+    private volatile int[] lengths = new int[INITIAL_CAPACITY];
+    private volatile int[] checksums = new int[INITIAL_CAPACITY];
+    private volatile int count;
+
+    // Records a block whose payload starts at offset; returns its block number.
+    int add(long offset, int length, int checksum) {
+        int n = count;
+        if (n == offsets.length) {
+            int capacity = n * 2;
+            checksums = Arrays.copyOf(checksums, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+        }
+        offsets[n] = offset;
+        lengths[n] = length;
+        checksums[n] = checksum;
+        count = n + 1;
+        return n;
+    }
+
+    // Only for a block rewritten in place by a repair
+    void setChecksum(int block, int checksum) {
+        checkBlock(block);
+        checksums[block] = checksum;
+    }
+
+    // Forgets every block from count onwards
+    void truncate(int count) {
+        if (count < 0 || count > this.count) {
+            throw new IndexOutOfBoundsException("Cannot truncate index of " + this.count + " blocks to " + count);
+        }
+        this.count = count;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public long offset(int block) {
+        checkBlock(block);
+        return offsets[block];
+    }
+
+    public int length(int block) {
+        checkBlock(block);
+        return lengths[block];
+    }
+
+    public int checksum(int block) {
+        checkBlock(block);
+        return checksums[block];
+    }
+
+    // Returns the block whose payload covers position, or -1 if none does.
+    public int find(long position) {
+        int n = count;
+        long[] offs = offsets;
+        int lo = 0;
+        int hi = n - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (offs[mid] <= position) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (hi < 0) {
+            return -1;
+        }
+        return position < offs[hi] + lengths[hi] ? hi : -1;
+    }
+
+    // Returns the first block whose payload ends after position, or count() if
+    // there is none. Unlike find, a position inside a header or past a block
+    // yields the next block.
+    public int ceiling(long position) {
+        int n = count;
+        long[] offs = offsets;
+        int lo = 0;
+        int hi = n - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (offs[mid] <= position) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (hi < 0) {
+            return 0;
+        }
+        return position < offs[hi] + lengths[hi] ? hi : hi + 1;
+    }
+
+    private void checkBlock(int block) {
+        if (block < 0 || block >= count) {
+            throw new IndexOutOfBoundsException("Block " + block + " not in index of " + count + " blocks");
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.objectstorage.extentnode.storage;
+
+import java.io.IOException;
+
+// Thrown when a block's stored bytes no longer hash to the CRC32C it was
+// written with, e.g. after a bit flip on disk. Other replicas of the extent
+// hold the same block at the same place and can serve or repair it.
+public class ChecksumMismatchException extends IOException {
+    private final long extentId;
+    private final int block;
+
+    public ChecksumMismatchException(long extentId, int block, int expected, int actual) {
+        super(String.format("Block %d of extent %d failed its checksum: expected %08x but read %08x",
+            block, extentId, expected, actual));
+        this.extentId = extentId;
+        this.block = block;
+    }
+
+    public long getExtentId() {
+        return extentId;
+    }
+
+    public int getBlock() {
+        return block;
+    }
+}
@@ -0,0 +1,458 @@
+package com.objectstorage.extentnode.storage;
+
+import com.objectstorage.common.extent.BlockLocation;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+// One append-only extent file. Each block is stored as an 8-byte header, its
+// length and the CRC32C of its payload, followed by the payload. Reads check
+// every block they touch against its checksum, so a block damaged on disk is
+// reported rather than served. Once sealed the extent never changes again and the
+// whole file is mapped read-only, so reads are served from the page cache as
+// slices of that mapping without copying onto the Java heap.
+public class Extent implements Closeable {
+    public static final int HEADER_SIZE = 8;
+    private static final int SCRATCH_SIZE = 64 * 1024;
+
+    private final long id;
+    private final Path path;
+    private final long maxSize;
+    private final FileChannel channel;
+    private final BlockIndex index = new BlockIndex();
+    private final ByteBuffer header = ByteBuffer.allocateDirect(HEADER_SIZE);
+    // Reused one block at a time to checksum blocks already on disk: the active
+    // extent reads them into scratch rather than mapping them, a sealed one
+    // hashes them through its own view of the mapping
+    private final Object scratchLock = new Object();
+    private ByteBuffer scratch;
+    private ByteBuffer sealedView;
+    private volatile long size;
+    private volatile boolean sealed;
+    private volatile MappedByteBuffer mapped;
+
+    private Extent(long id, Path path, long maxSize, FileChannel channel) {
+        this.id = id;
+        this.path = path;
+        this.maxSize = maxSize;
+        this.channel = channel;
+    }
+
+    static Extent create(long id, Path path, long maxSize) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Extent(id, path, maxSize, channel);
+    }
+
+    // Reopens an existing extent, rebuilds its block index and seals it. A torn
+    // trailing block left by a crash is truncated away before sealing.
+    static Extent open(long id, Path path, long maxSize) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Extent extent = new Extent(id, path, maxSize, channel);
+        extent.recover();
+        extent.seal();
+        return extent;
+    }
+
+    private void recover() throws IOException {
+        long fileSize = channel.size();
+        long position = 0;
+        while (position + HEADER_SIZE <= fileSize) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 0 || position + HEADER_SIZE + length > fileSize) {
+                break;
+            }
+            index.add(position + HEADER_SIZE, length, checksum);
+            position += HEADER_SIZE + length;
+        }
+        if (position < fileSize) {
+            channel.truncate(position);
+        }
+        size = position;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public boolean isSealed() {
+        return sealed;
+    }
+
+    public BlockIndex getIndex() {
+        return index;
+    }
+
+    public boolean hasRoomFor(int length) {
+        return !sealed && size + HEADER_SIZE + length <= maxSize;
+    }
+
+    // Appends one block at the end of the extent. Returns null when the extent is
+    // sealed or the block does not fit, so the caller can roll to a new extent.
+    synchronized BlockLocation append(ByteBuffer data, boolean sync) throws IOException {
+        if (!hasRoomFor(data.remaining())) {
+            return null;
+        }
+        return write(data, sync);
+    }
+
+    // Appends a block a primary replica has already placed at location. The
+    // block must land exactly there, which keeps every replica of the extent
+    // byte-for-byte identical.
+    synchronized BlockLocation appendAt(BlockLocation location, ByteBuffer data, boolean sync) throws IOException {
+        if (sealed) {
+            throw new IllegalStateException("Extent " + id + " is sealed");
+        }
+        if (location.getBlock() != index.count() || location.getOffset() != size + HEADER_SIZE
+                || location.getLength() != data.remaining()) {
+            throw new IllegalStateException("Expected " + location + " but extent " + id + " has "
+                + index.count() + " blocks in " + size + " bytes");
+        }
+        if (!hasRoomFor(data.remaining())) {
+            throw new IllegalStateException(location + " does not fit in extent " + id);
+        }
+        return write(data, sync);
+    }
+
+    private BlockLocation write(ByteBuffer data, boolean sync) throws IOException {
+        int length = data.remaining();
+        int checksum = crc32c(data);
+        long position = size;
+        header.clear();
+        header.putInt(length).putInt(checksum).flip();
+        long written = 0;
+        ByteBuffer[] record = {header, data};
+        channel.position(position);
+        while (written < HEADER_SIZE + length) {
+            written += channel.write(record);
+        }
+        if (sync) {
+            channel.force(false);
+        }
+        int block = index.add(position + HEADER_SIZE, length, checksum);
+        size = position + HEADER_SIZE + length;
+        return new BlockLocation(id, block, position + HEADER_SIZE, length);
+    }
+
+    // Appends one block of exactly length bytes pulled straight from src into the
+    // file, without staging the payload in a user-space buffer. If src ends early
+    // the partial block is cut off again and an EOFException is thrown. The
+    // payload never passes through user space, so its checksum is read back
+    // from the page cache afterwards and filled into the header last; a crash
+    // before that leaves a block that fails its checksum instead of one that
+    // looks intact.
+    synchronized BlockLocation append(ReadableByteChannel src, int length, boolean sync) throws IOException {
+        if (!hasRoomFor(length)) {
+            return null;
+        }
+        long position = size;
+        header.clear();
+        header.putInt(length).putInt(0).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, position + HEADER_SIZE - header.remaining());
+        }
+        long copied = 0;
+        while (copied < length) {
+            long n = channel.transferFrom(src, position + HEADER_SIZE + copied, length - copied);
+            if (n <= 0) {
+                channel.truncate(position);
+                throw new EOFException("Block ended after " + copied + " of " + length + " bytes");
+            }
+            copied += n;
+        }
+        int checksum;
+        synchronized (scratchLock) {
+            checksum = checksumOnDisk(position + HEADER_SIZE, length);
+        }
+        header.clear();
+        header.putInt(checksum).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, position + HEADER_SIZE - header.remaining());
+        }
+        if (sync) {
+            channel.force(false);
+        }
+        int block = index.add(position + HEADER_SIZE, length, checksum);
+        size = position + HEADER_SIZE + length;
+        return new BlockLocation(id, block, position + HEADER_SIZE, length);
+    }
+
+    // Cuts the extent back to its first length bytes and seals it there. The
+    // length has to fall on a block boundary.
+    synchronized void sealAt(long length) throws IOException {
+        if (sealed) {
+            if (length != size) {
+                throw new IllegalStateException("Extent " + id + " is already sealed at " + size + " bytes");
+            }
+            return;
+        }
+        int blocks = index.count();
+        while (blocks > 0 && index.offset(blocks - 1) + index.length(blocks - 1) > length) {
+            blocks--;
+        }
+        long end = blocks == 0 ? 0 : index.offset(blocks - 1) + index.length(blocks - 1);
+        if (end != length) {
+            throw new IllegalArgumentException("Length " + length + " is not a block boundary of extent " + id);
+        }
+        index.truncate(blocks);
+        channel.truncate(length);
+        size = length;
+        seal();
+    }
+
+    synchronized void seal() throws IOException {
+        if (sealed) {
+            return;
+        }
+        channel.force(true);
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        sealed = true;
+        synchronized (scratchLock) {
+            scratch = null;
+        }
+    }
+
+    public ByteBuffer readBlock(int block) throws IOException {
+        return read(index.offset(block), index.length(block));
+    }
+
+    // Throws ChecksumMismatchException if the stored payload of block no longer
+    // hashes to the checksum it was written with. A sealed extent is hashed in
+    // place in its mapping; the active one is read through a reused buffer so
+    // that verifying never creates a mapping. Neither allocates.
+    public void verifyBlock(int block) throws IOException {
+        long offset = index.offset(block);
+        int length = index.length(block);
+        MappedByteBuffer m = mapped;
+        int actual;
+        synchronized (scratchLock) {
+            if (m != null) {
+                if (sealedView == null) {
+                    sealedView = m.duplicate();
+                }
+                sealedView.clear();
+                sealedView.position((int) offset).limit((int) offset + length);
+                actual = crc32c(sealedView);
+            } else {
+                actual = checksumOnDisk(offset, length);
+            }
+        }
+        check(block, actual);
+    }
+
+    // Verifies every block [offset, offset + length) touches. Blocks are hashed
+    // whole, so a read of part of a block still pays for all of it.
+    public void verify(long offset, int length) throws IOException {
+        int blocks = index.count();
+        for (int block = index.ceiling(offset); block < blocks && index.offset(block) < offset + length; block++) {
+            verifyBlock(block);
+        }
+    }
+
+    // Like read, after verifying every block the range touches. The blocks are
+    // hashed over the same view the data is returned from, which on the active
+    // extent is a single read covering them whole.
+    public ByteBuffer readVerified(long offset, int length) throws IOException {
+        checkRange(offset, length);
+        int blocks = index.count();
+        int first = index.ceiling(offset);
+        int last = first;
+        while (last < blocks && index.offset(last) < offset + length) {
+            last++;
+        }
+        long start = offset;
+        long end = offset + length;
+        if (last > first) {
+            start = Math.min(start, index.offset(first));
+            end = Math.max(end, index.offset(last - 1) + index.length(last - 1));
+        }
+        ByteBuffer span = read(start, (int) (end - start));
+        for (int block = first; block < last; block++) {
+            int from = (int) (index.offset(block) - start);
+            span.clear();
+            span.position(from).limit(from + index.length(block));
+            check(block, crc32c(span));
+        }
+        span.clear();
+        span.position((int) (offset - start)).limit((int) (offset - start) + length);
+        return span.slice();
+    }
+
+    private void check(int block, int actual) throws ChecksumMismatchException {
+        int expected = index.checksum(block);
+        if (actual != expected) {
+            throw new ChecksumMismatchException(id, block, expected, actual);
+        }
+    }
+
+    // Called with scratchLock held
+    private int checksumOnDisk(long offset, int length) throws IOException {
+        if (scratch == null) {
+            scratch = ByteBuffer.allocateDirect(SCRATCH_SIZE);
+        }
+        CRC32C crc = new CRC32C();
+        long position = offset;
+        long end = offset + length;
+        while (position < end) {
+            scratch.clear();
+            scratch.limit((int) Math.min(SCRATCH_SIZE, end - position));
+            int n = channel.read(scratch, position);
+            if (n < 0) {
+                throw new EOFException("Extent " + id + " ended at " + position + " of " + end + " bytes");
+            }
+            scratch.flip();
+            crc.update(scratch);
+            position += n;
+        }
+        return (int) crc.getValue();
+    }
+
+    // Returns a read-only view of [offset, offset + length). Sealed extents hand
+    // out a slice of the shared mapping. The active extent is still growing, so
+    // rather than mapping every range it is asked for, it reads the range into
+    // a buffer of its own with a positional read.
+    public ByteBuffer read(long offset, int length) throws IOException {
+        checkRange(offset, length);
+        MappedByteBuffer m = mapped;
+        if (m != null) {
+            ByteBuffer slice = m.duplicate();
+            slice.position((int) offset).limit((int) offset + length);
+            return slice.slice().asReadOnlyBuffer();
+        }
+        ByteBuffer data = ByteBuffer.allocate(length);
+        while (data.hasRemaining()) {
+            if (channel.read(data, offset + data.position()) < 0) {
+                throw new EOFException("Extent " + id + " ended at " + (offset + data.position()) + " of "
+                    + (offset + length) + " bytes");
+            }
+        }
+        data.flip();
+        return data.asReadOnlyBuffer();
+    }
+
+    // Sends [offset, offset + length) to target with FileChannel.transferTo, which
+    // lets the kernel move the bytes directly when target is a socket or file.
+    // Each block is verified just before its bytes go out, so a damaged block
+    // stops the transfer with ChecksumMismatchException without being sent;
+    // whatever came before it has already been.
+    public long transferTo(long offset, long length, WritableByteChannel target) throws IOException {
+        checkRange(offset, length);
+        long end = offset + length;
+        long position = offset;
+        int blocks = index.count();
+        for (int block = index.ceiling(offset); block < blocks && index.offset(block) < end; block++) {
+            verifyBlock(block);
+            position = send(position, Math.min(end, index.offset(block) + index.length(block)), target);
+        }
+        // Headers after the last block in range
+        send(position, end, target);
+        return length;
+    }
+
+    private void checkRange(long offset, long length) {
+        if (offset < 0 || length < 0 || offset + length > size) {
+            throw new IllegalArgumentException("Range [" + offset + ", +" + length
+                + ") is outside extent " + id + " of size " + size);
+        }
+    }
+
+    private long send(long from, long to, WritableByteChannel target) throws IOException {
+        long position = from;
+        while (position < to) {
+            long n = channel.transferTo(position, to - position, target);
+            if (n <= 0) {
+                throw new EOFException("Extent " + id + " ended at " + position + " of " + to + " bytes");
+            }
+            position += n;
+        }
+        return position;
+    }
+
+    // Overwrites block in place with an intact copy from another replica, whose
+    // checksum is given, header included in case that was what got damaged.
+    // The copy is checked against the checksum before anything is written.
+    synchronized void repairBlock(int block, ByteBuffer data, int checksum) throws IOException {
+        long offset = index.offset(block);
+        int length = index.length(block);
+        if (data.remaining() != length) {
+            throw new IllegalArgumentException("Block " + block + " of extent " + id + " is " + length
+                + " bytes, not " + data.remaining());
+        }
+        int actual = crc32c(data);
+        if (actual != checksum) {
+            throw new ChecksumMismatchException(id, block, checksum, actual);
+        }
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE);
+        record.putInt(length).putInt(checksum).flip();
+        long position = offset - HEADER_SIZE;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        ByteBuffer payload = data.duplicate();
+        while (payload.hasRemaining()) {
+            position += channel.write(payload, position);
+        }
+        channel.force(false);
+        index.setChecksum(block, checksum);
+    }
+
+    // Flips the first payload byte of block on disk, leaving its checksum as it
+    // was, the way a latent sector error or stray write would
+    synchronized void corruptBlock(int block) throws IOException {
+        long offset = index.offset(block);
+        if (index.length(block) == 0) {
+            throw new IllegalArgumentException("Block " + block + " of extent " + id + " is empty");
+        }
+        ByteBuffer b = ByteBuffer.allocate(1);
+        channel.read(b, offset);
+        b.put(0, (byte) ~b.get(0)).rewind();
+        channel.write(b, offset);
+    }
+
+    // CRC32C of the remaining bytes of data, leaving its position where it was.
+    // For direct and mapped buffers the JDK hashes the memory in place with the
+    // CPU's CRC32C instructions, so nothing is copied onto the heap, and the
+    // CRC32C itself never escapes, so the JIT does not allocate it either.
+    static int crc32c(ByteBuffer data) {
+        CRC32C crc = new CRC32C();
+        int position = data.position();
+        crc.update(data);
+        data.position(position);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mapped = null;
+        synchronized (scratchLock) {
+            sealedView = null;
+            scratch = null;
+        }
+        channel.close();
+    }
+}
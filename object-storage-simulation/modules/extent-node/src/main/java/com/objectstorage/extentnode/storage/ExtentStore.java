@@ -0,0 +1,289 @@
+package com.objectstorage.extentnode.storage;
+
+import com.objectstorage.common.extent.BlockLocation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// All extents owned by one extent node. Writes only ever go to the single
+// active extent, which keeps the disk access pattern purely sequential; when it
+// fills up it is sealed and a fresh extent takes its place. Extents replicated
+// across nodes are instead named by the stream manager and written through
+// appendTo on the primary and appendAt on the secondaries. Cold extents may be
+// converted to erasure-coded fragments, after which a node holds fragments of
+// the extent rather than a full replica.
+public class ExtentStore implements Closeable {
+    public static final long DEFAULT_MAX_EXTENT_SIZE = 64L * 1024 * 1024;
+    private static final String EXTENT_PREFIX = "extent-";
+    private static final String EXTENT_SUFFIX = ".dat";
+    private static final String FRAGMENT_PREFIX = "fragment-";
+
+    private final Path directory;
+    private final long maxExtentSize;
+    private final boolean syncWrites;
+    private final ConcurrentMap<Long, Extent> extents = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Fragment> fragments = new ConcurrentHashMap<>();
+    private long nextExtentId = 1;
+    private Extent active;
+
+    public ExtentStore(Path directory, long maxExtentSize, boolean syncWrites) throws IOException {
+        if (maxExtentSize <= Extent.HEADER_SIZE || maxExtentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Max extent size must be between "
+                + (Extent.HEADER_SIZE + 1) + " and " + Integer.MAX_VALUE + " bytes");
+        }
+        this.directory = directory;
+        this.maxExtentSize = maxExtentSize;
+        this.syncWrites = syncWrites;
+        Files.createDirectories(directory);
+        loadExisting();
+    }
+
+    private void loadExisting() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, EXTENT_PREFIX + "*" + EXTENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                long id = Long.parseLong(name.substring(EXTENT_PREFIX.length(), name.length() - EXTENT_SUFFIX.length()));
+                extents.put(id, Extent.open(id, path, maxExtentSize));
+                nextExtentId = Math.max(nextExtentId, id + 1);
+            }
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FRAGMENT_PREFIX + "*")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (!name.endsWith(EXTENT_SUFFIX)) {
+                    // Left behind by a conversion that never committed
+                    Files.delete(path);
+                    continue;
+                }
+                String[] parts = name.substring(FRAGMENT_PREFIX.length(), name.length() - EXTENT_SUFFIX.length()).split("-");
+                long id = Long.parseLong(parts[0]);
+                int index = Integer.parseInt(parts[1]);
+                fragments.put(fragmentKey(id, index), Fragment.open(id, index, path));
+            }
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getMaxExtentSize() {
+        return maxExtentSize;
+    }
+
+    public synchronized BlockLocation append(ByteBuffer data) throws IOException {
+        prepareActive(data.remaining());
+        return active.append(data, syncWrites);
+    }
+
+    public synchronized BlockLocation append(ReadableByteChannel src, int length) throws IOException {
+        prepareActive(length);
+        return active.append(src, length, syncWrites);
+    }
+
+    private void prepareActive(int length) throws IOException {
+        if (length < 0 || Extent.HEADER_SIZE + (long) length > maxExtentSize) {
+            throw new IllegalArgumentException("Block of " + length
+                + " bytes does not fit in an extent of " + maxExtentSize + " bytes");
+        }
+        if (active == null || !active.hasRoomFor(length)) {
+            rollActive();
+        }
+    }
+
+    // Appends a block to a replicated extent on its primary, creating the local
+    // replica on first use. Returns null when the block does not fit. A sealed
+    // replica is refused rather than reported as full, since it means the
+    // extent id was handed out twice.
+    public synchronized BlockLocation appendTo(long extentId, ByteBuffer data) throws IOException {
+        Extent extent = replica(extentId);
+        if (extent.isSealed()) {
+            throw new IllegalStateException("Extent " + extentId + " is sealed");
+        }
+        return extent.append(data, syncWrites);
+    }
+
+    // Appends a block to a replicated extent on a secondary at the location the
+    // primary gave it
+    public synchronized BlockLocation appendAt(BlockLocation location, ByteBuffer data) throws IOException {
+        return replica(location.getExtentId()).appendAt(location, data, syncWrites);
+    }
+
+    // Seals a replicated extent at length, dropping anything appended beyond it
+    public synchronized void sealAt(long extentId, long length) throws IOException {
+        replica(extentId).sealAt(length);
+    }
+
+    // Size of the local replica of an extent, 0 if this node never received any of it
+    public long getLength(long extentId) {
+        Extent extent = extents.get(extentId);
+        return extent == null ? 0 : extent.getSize();
+    }
+
+    private Extent replica(long extentId) throws IOException {
+        Extent extent = extents.get(extentId);
+        if (extent == null) {
+            extent = Extent.create(extentId, directory.resolve(fileName(extentId)), maxExtentSize);
+            extents.put(extentId, extent);
+            nextExtentId = Math.max(nextExtentId, extentId + 1);
+        }
+        return extent;
+    }
+
+    // Starts writing an erasure-coded fragment of an extent. It becomes readable
+    // once passed to commitFragment.
+    public Fragment createFragment(long extentId, int index) throws IOException {
+        return Fragment.create(extentId, index, directory.resolve(fragmentFileName(extentId, index)));
+    }
+
+    public void commitFragment(Fragment fragment) throws IOException {
+        fragment.commit();
+        fragments.put(fragmentKey(fragment.getExtentId(), fragment.getIndex()), fragment);
+    }
+
+    public Fragment getFragment(long extentId, int index) {
+        Fragment fragment = fragments.get(fragmentKey(extentId, index));
+        if (fragment == null) {
+            throw new IllegalArgumentException("No fragment " + index + " of extent " + extentId);
+        }
+        return fragment;
+    }
+
+    public Collection<Fragment> getFragments() {
+        return new ArrayList<>(fragments.values());
+    }
+
+    // Drops this node's fragment of an extent that is no longer needed
+    public void deleteFragment(long extentId, int index) throws IOException {
+        Fragment fragment = fragments.remove(fragmentKey(extentId, index));
+        if (fragment != null) {
+            fragment.delete();
+        }
+    }
+
+    // Drops this node's full replica of an extent, e.g. once its fragments
+    // have taken over
+    public synchronized void deleteExtent(long extentId) throws IOException {
+        Extent extent = extents.remove(extentId);
+        if (extent == null) {
+            return;
+        }
+        if (active == extent) {
+            active = null;
+        }
+        extent.close();
+        Files.deleteIfExists(extent.getPath());
+    }
+
+    // Seals the active extent so the next append starts a new one.
+    public synchronized void sealActive() throws IOException {
+        if (active != null) {
+            active.seal();
+            active = null;
+        }
+    }
+
+    private void rollActive() throws IOException {
+        sealActive();
+        long id = nextExtentId++;
+        Extent extent = Extent.create(id, directory.resolve(fileName(id)), maxExtentSize);
+        extents.put(id, extent);
+        active = extent;
+    }
+
+    public ByteBuffer read(BlockLocation location) throws IOException {
+        return read(location.getExtentId(), location.getOffset(), location.getLength());
+    }
+
+    // Verifies the blocks the range touches first, throwing
+    // ChecksumMismatchException rather than handing out damaged bytes
+    public ByteBuffer read(long extentId, long offset, int length) throws IOException {
+        return getExtent(extentId).readVerified(offset, length);
+    }
+
+    public long transferTo(BlockLocation location, WritableByteChannel target) throws IOException {
+        return getExtent(location.getExtentId()).transferTo(location.getOffset(), location.getLength(), target);
+    }
+
+    // Rewrites a damaged block of the local replica from data, an intact copy of
+    // the block with the given checksum read from another replica
+    public void repairBlock(long extentId, int block, ByteBuffer data, int checksum) throws IOException {
+        getExtent(extentId).repairBlock(block, data, checksum);
+    }
+
+    // Damages one block on disk without touching its checksum, for simulating
+    // silent corruption
+    public void corruptBlock(BlockLocation location) throws IOException {
+        getExtent(location.getExtentId()).corruptBlock(location.getBlock());
+    }
+
+    public Extent getExtent(long extentId) {
+        Extent extent = extents.get(extentId);
+        if (extent == null) {
+            throw new IllegalArgumentException("Unknown extent " + extentId);
+        }
+        return extent;
+    }
+
+    public Collection<Extent> getExtents() {
+        return new ArrayList<>(extents.values());
+    }
+
+    public long getTotalBytes() {
+        long total = 0;
+        for (Extent extent : extents.values()) {
+            total += extent.getSize();
+        }
+        for (Fragment fragment : fragments.values()) {
+            total += fragment.getSize();
+        }
+        return total;
+    }
+
+    private static String fileName(long id) {
+        return String.format("%s%012d%s", EXTENT_PREFIX, id, EXTENT_SUFFIX);
+    }
+
+    private static String fragmentFileName(long id, int index) {
+        return String.format("%s%012d-%02d%s", FRAGMENT_PREFIX, id, index, EXTENT_SUFFIX);
+    }
+
+    private static String fragmentKey(long id, int index) {
+        return id + "-" + index;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        List<IOException> failures = new ArrayList<>();
+        List<Closeable> open = new ArrayList<>(extents.values());
+        open.addAll(fragments.values());
+        for (Closeable file : open) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                failures.add(e);
+            }
+        }
+        extents.clear();
+        fragments.clear();
+        active = null;
+        if (!failures.isEmpty()) {
+            IOException e = failures.get(0);
+            for (int i = 1; i < failures.size(); i++) {
+                e.addSuppressed(failures.get(i));
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.objectstorage.extentnode.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// One erasure-coded fragment of an extent. A fragment is written once, front
+// to back, into a temporary file and only appears under its real name when
+// committed, so a conversion cut short never leaves a partial fragment behind.
+// Committed fragments are immutable and read through a read-only mapping.
+public class Fragment implements Closeable {
+    private final long extentId;
+    private final int index;
+    private final Path path;
+    private FileChannel channel;
+    private volatile MappedByteBuffer mapped;
+
+    private Fragment(long extentId, int index, Path path) {
+        this.extentId = extentId;
+        this.index = index;
+        this.path = path;
+    }
+
+    static Fragment create(long extentId, int index, Path path) throws IOException {
+        Fragment fragment = new Fragment(extentId, index, path);
+        fragment.channel = FileChannel.open(tempPath(path),
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return fragment;
+    }
+
+    static Fragment open(long extentId, int index, Path path) throws IOException {
+        Fragment fragment = new Fragment(extentId, index, path);
+        fragment.map();
+        return fragment;
+    }
+
+    private static Path tempPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    public long getExtentId() {
+        return extentId;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public long getSize() {
+        MappedByteBuffer m = mapped;
+        return m == null ? 0 : m.capacity();
+    }
+
+    public synchronized void write(ByteBuffer data) throws IOException {
+        if (channel == null) {
+            throw new IllegalStateException("Fragment " + index + " of extent " + extentId + " is committed");
+        }
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    synchronized void commit() throws IOException {
+        channel.force(true);
+        channel.close();
+        channel = null;
+        Files.move(tempPath(path), path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        map();
+    }
+
+    private void map() throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            mapped = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    // Read-only view of [offset, offset + length) of the committed fragment
+    public ByteBuffer read(long offset, int length) {
+        MappedByteBuffer m = mapped;
+        if (m == null) {
+            throw new IllegalStateException("Fragment " + index + " of extent " + extentId + " is not committed");
+        }
+        if (offset < 0 || length < 0 || offset + length > m.capacity()) {
+            throw new IllegalArgumentException("Range [" + offset + ", +" + length
+                + ") is outside fragment " + index + " of extent " + extentId);
+        }
+        ByteBuffer slice = m.duplicate();
+        slice.position((int) offset).limit((int) offset + length);
+        return slice.slice().asReadOnlyBuffer();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mapped = null;
+        if (channel != null) {
+            channel.close();
+            Files.deleteIfExists(tempPath(path));
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.objectstorage.extentnode.replication;
+
+import com.objectstorage.common.extent.BlockLocation;
+import com.objectstorage.extentnode.storage.Extent;
+import com.objectstorage.extentnode.storage.ExtentStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChainReplicatorTest {
+    private static final List<String> CHAIN = Arrays.asList("Node A", "Node B", "Node C");
+    private static final long MAX_EXTENT_SIZE = 1 << 16;
+
+    @TempDir
+    Path dir;
+
+    private final Map<String, ExtentStore> stores = new HashMap<>();
+    private final Set<String> down = ConcurrentHashMap.newKeySet();
+    private ChainReplicator replicator;
+
+    @BeforeEach
+    void startNodes() throws IOException {
+        for (String node : CHAIN) {
+            stores.put(node, new ExtentStore(dir.resolve(node.replace(' ', '-')), MAX_EXTENT_SIZE, false));
+        }
+        replicator = new ChainReplicator(stores::get, node -> !down.contains(node));
+    }
+
+    @AfterEach
+    void stopNodes() throws IOException {
+        replicator.close();
+        for (ExtentStore store : stores.values()) {
+            store.close();
+        }
+    }
+
+    @Test
+    void placesEveryBlockAtTheSameLocationOnEveryReplica() throws IOException {
+        List<CompletableFuture<BlockLocation>> pending = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            pending.add(replicator.append(1, CHAIN, bytes("block " + i)));
+        }
+        for (int i = 0; i < 20; i++) {
+            BlockLocation location = pending.get(i).join();
+            assertEquals(i, location.getBlock());
+            for (String node : CHAIN) {
+                assertEquals("block " + i, string(stores.get(node).read(location)));
+            }
+        }
+        long length = stores.get("Node A").getLength(1);
+        for (String node : CHAIN) {
+            assertEquals(length, stores.get(node).getLength(1));
+        }
+    }
+
+    @Test
+    void completesWithNullWhenTheBlockDoesNotFit() {
+        ByteBuffer tooBig = ByteBuffer.allocate((int) MAX_EXTENT_SIZE);
+        assertNull(replicator.append(1, CHAIN, tooBig).join());
+        assertEquals(0, stores.get("Node C").getLength(1));
+    }
+
+    @Test
+    void sealCutsOffABlockThatNeverReachedTheTail() throws IOException {
+        BlockLocation acknowledged = replicator.append(1, CHAIN, bytes("acknowledged")).join();
+        down.add("Node B");
+        CompletionException failure = assertThrows(CompletionException.class,
+            () -> replicator.append(1, CHAIN, bytes("lost")).join());
+        assertInstanceOf(ReplicaUnavailableException.class, failure.getCause());
+        // Only the primary wrote the second block
+        assertTrue(stores.get("Node A").getLength(1) > stores.get("Node C").getLength(1));
+
+        long sealed = replicator.seal(1, CHAIN);
+        assertEquals(acknowledged.getOffset() + acknowledged.getLength(), sealed);
+        for (String node : Arrays.asList("Node A", "Node C")) {
+            Extent extent = stores.get(node).getExtent(1);
+            assertTrue(extent.isSealed());
+            assertEquals(sealed, extent.getSize());
+            assertEquals(1, extent.getIndex().count());
+            assertEquals("acknowledged", string(stores.get(node).read(acknowledged)));
+        }
+        // The unreachable replica is left for repair
+        assertEquals(acknowledged.getOffset() + acknowledged.getLength(), stores.get("Node B").getLength(1));
+    }
+
+    @Test
+    void sealFailsWithNoReachableReplica() {
+        replicator.append(1, CHAIN, bytes("block")).join();
+        down.addAll(CHAIN);
+        assertThrows(ReplicaUnavailableException.class, () -> replicator.seal(1, CHAIN));
+    }
+
+    private static ByteBuffer bytes(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
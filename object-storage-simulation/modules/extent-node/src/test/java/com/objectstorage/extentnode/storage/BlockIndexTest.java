@@ -0,0 +1,60 @@
+package com.objectstorage.extentnode.storage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BlockIndexTest {
+    // Three blocks of 10 bytes, each behind an 8-byte header: [8, 18), [26, 36), [44, 54)
+    private static BlockIndex threeBlocks() {
+        BlockIndex index = new BlockIndex();
+        for (int block = 0; block < 3; block++) {
+            index.add(8 + block * 18L, 10, block);
+        }
+        return index;
+    }
+
+    @Test
+    void findOnlyMatchesPositionsInsideAPayload() {
+        BlockIndex index = threeBlocks();
+        assertEquals(-1, index.find(0));
+        assertEquals(0, index.find(8));
+        assertEquals(0, index.find(17));
+        assertEquals(-1, index.find(18));
+        assertEquals(1, index.find(26));
+        assertEquals(2, index.find(53));
+        assertEquals(-1, index.find(54));
+    }
+
+    @Test
+    void ceilingSkipsHeadersToTheNextBlock() {
+        BlockIndex index = threeBlocks();
+        assertEquals(0, index.ceiling(0));
+        assertEquals(0, index.ceiling(17));
+        assertEquals(1, index.ceiling(18));
+        assertEquals(1, index.ceiling(35));
+        assertEquals(2, index.ceiling(36));
+        assertEquals(3, index.ceiling(54));
+    }
+
+    @Test
+    void growsPastItsInitialCapacity() {
+        BlockIndex index = new BlockIndex();
+        for (int block = 0; block < 1000; block++) {
+            assertEquals(block, index.add(block * 4L, 4, block * 31));
+        }
+        assertEquals(1000, index.count());
+        assertEquals(999 * 31, index.checksum(999));
+        assertEquals(500, index.find(2001));
+    }
+
+    @Test
+    void truncateDropsTrailingBlocks() {
+        BlockIndex index = threeBlocks();
+        index.truncate(1);
+        assertEquals(1, index.count());
+        assertEquals(-1, index.find(26));
+        assertThrows(IndexOutOfBoundsException.class, () -> index.length(1));
+    }
+}
@@ -0,0 +1,210 @@
+package com.objectstorage.extentnode.storage;
+
+import com.objectstorage.common.extent.BlockLocation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExtentTest {
+    private static final long MAX_SIZE = 1 << 20;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reopeningRebuildsTheBlockIndexAndSeals() throws IOException {
+        Path path = dir.resolve("1");
+        BlockLocation first;
+        BlockLocation second;
+        try (Extent extent = Extent.create(1, path, MAX_SIZE)) {
+            first = extent.append(bytes("alpha"), false);
+            second = extent.append(bytes("beta gamma"), false);
+        }
+        try (Extent extent = Extent.open(1, path, MAX_SIZE)) {
+            assertTrue(extent.isSealed());
+            assertEquals(2, extent.getIndex().count());
+            assertEquals(second.getOffset() + second.getLength(), extent.getSize());
+            assertEquals(first.getOffset(), extent.getIndex().offset(0));
+            assertEquals(second.getLength(), extent.getIndex().length(1));
+            assertEquals("alpha", string(extent.readBlock(0)));
+            assertEquals("beta gamma", string(extent.readBlock(1)));
+            extent.verifyBlock(0);
+            extent.verifyBlock(1);
+        }
+    }
+
+    @Test
+    void reopeningCutsOffATornTrailingBlock() throws IOException {
+        Path path = dir.resolve("2");
+        long intact;
+        try (Extent extent = Extent.create(2, path, MAX_SIZE)) {
+            extent.append(bytes("complete"), false);
+            intact = extent.getSize();
+        }
+        // A header promising 100 bytes followed by only 10 of them
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.APPEND)) {
+            ByteBuffer torn = ByteBuffer.allocate(Extent.HEADER_SIZE + 10);
+            torn.putInt(100).putInt(0).put(new byte[10]).flip();
+            channel.write(torn);
+        }
+        try (Extent extent = Extent.open(2, path, MAX_SIZE)) {
+            assertEquals(1, extent.getIndex().count());
+            assertEquals(intact, extent.getSize());
+            assertEquals(intact, Files.size(path));
+            assertEquals("complete", string(extent.readBlock(0)));
+        }
+    }
+
+    @Test
+    void reopeningCutsOffATornHeader() throws IOException {
+        Path path = dir.resolve("3");
+        long intact;
+        try (Extent extent = Extent.create(3, path, MAX_SIZE)) {
+            extent.append(bytes("complete"), false);
+            intact = extent.getSize();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(Extent.HEADER_SIZE - 3));
+        }
+        try (Extent extent = Extent.open(3, path, MAX_SIZE)) {
+            assertEquals(1, extent.getIndex().count());
+            assertEquals(intact, Files.size(path));
+        }
+    }
+
+    @Test
+    void sealAtTruncatesToABlockBoundary() throws IOException {
+        try (Extent extent = Extent.create(4, dir.resolve("4"), MAX_SIZE)) {
+            extent.append(bytes("one"), false);
+            BlockLocation second = extent.append(bytes("two"), false);
+            extent.append(bytes("three"), false);
+            long boundary = second.getOffset() + second.getLength();
+
+            assertThrows(IllegalArgumentException.class, () -> extent.sealAt(boundary - 1));
+            assertFalse(extent.isSealed());
+
+            extent.sealAt(boundary);
+            assertTrue(extent.isSealed());
+            assertEquals(2, extent.getIndex().count());
+            assertEquals(boundary, extent.getSize());
+            assertEquals(boundary, Files.size(extent.getPath()));
+            assertNull(extent.append(bytes("late"), false));
+
+            // Sealing again at the same length is a no-op, anywhere else is an error
+            extent.sealAt(boundary);
+            assertThrows(IllegalStateException.class, () -> extent.sealAt(boundary + 1));
+        }
+    }
+
+    @Test
+    void sealAtZeroDropsEveryBlock() throws IOException {
+        try (Extent extent = Extent.create(5, dir.resolve("5"), MAX_SIZE)) {
+            extent.append(bytes("gone"), false);
+            extent.sealAt(0);
+            assertEquals(0, extent.getIndex().count());
+            assertEquals(0, extent.getSize());
+        }
+    }
+
+    @Test
+    void flippedByteFailsVerificationOfTheActiveExtent() throws IOException {
+        try (Extent extent = Extent.create(6, dir.resolve("6"), MAX_SIZE)) {
+            extent.append(bytes("untouched"), false);
+            BlockLocation damaged = extent.append(bytes("will rot"), false);
+            flipByte(extent.getPath(), damaged.getOffset() + 2);
+
+            extent.verifyBlock(0);
+            ChecksumMismatchException e = assertThrows(ChecksumMismatchException.class, () -> extent.verifyBlock(1));
+            assertEquals(6, e.getExtentId());
+            assertEquals(1, e.getBlock());
+            assertThrows(ChecksumMismatchException.class,
+                () -> extent.readVerified(damaged.getOffset(), damaged.getLength()));
+            assertEquals("untouched", string(extent.readVerified(extent.getIndex().offset(0), 9)));
+        }
+    }
+
+    @Test
+    void flippedByteFailsVerificationOfASealedExtent() throws IOException {
+        Path path = dir.resolve("7");
+        BlockLocation damaged;
+        try (Extent extent = Extent.create(7, path, MAX_SIZE)) {
+            damaged = extent.append(bytes("will rot"), false);
+            extent.append(bytes("untouched"), false);
+        }
+        flipByte(path, damaged.getOffset());
+        try (Extent extent = Extent.open(7, path, MAX_SIZE)) {
+            ChecksumMismatchException e = assertThrows(ChecksumMismatchException.class, () -> extent.verifyBlock(0));
+            assertEquals(0, e.getBlock());
+            extent.verifyBlock(1);
+            // A read that only partly overlaps the damaged block still checks all of it
+            assertThrows(ChecksumMismatchException.class, () -> extent.readVerified(damaged.getOffset() + 4, 1));
+        }
+    }
+
+    @Test
+    void readVerifiedReturnsExactlyTheRequestedRange() throws IOException {
+        try (Extent extent = Extent.create(8, dir.resolve("8"), MAX_SIZE)) {
+            BlockLocation first = extent.append(bytes("0123456789"), false);
+            extent.append(bytes("abcdefghij"), false);
+            assertEquals("3456", string(extent.readVerified(first.getOffset() + 3, 4)));
+            extent.seal();
+            assertEquals("3456", string(extent.readVerified(first.getOffset() + 3, 4)));
+        }
+    }
+
+    @Test
+    void streamedBlockIsChecksummedFromDisk() throws IOException {
+        byte[] payload = new byte[200_000];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (i * 31);
+        }
+        try (Extent extent = Extent.create(9, dir.resolve("9"), MAX_SIZE)) {
+            BlockLocation streamed = extent.append(Channels.newChannel(new ByteArrayInputStream(payload)),
+                payload.length, false);
+            assertEquals(Extent.crc32c(ByteBuffer.wrap(payload)), extent.getIndex().checksum(0));
+            extent.verifyBlock(0);
+            assertEquals(ByteBuffer.wrap(payload), extent.read(streamed.getOffset(), payload.length));
+
+            // A body that ends early leaves nothing behind
+            assertThrows(EOFException.class,
+                () -> extent.append(Channels.newChannel(new ByteArrayInputStream(new byte[10])), 20, false));
+            assertEquals(1, extent.getIndex().count());
+            assertEquals(streamed.getOffset() + payload.length, Files.size(extent.getPath()));
+        }
+    }
+
+    private static ByteBuffer bytes(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void flipByte(Path path, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, position);
+            b.put(0, (byte) (b.get(0) ^ 0x5a)).rewind();
+            channel.write(b, position);
+        }
+    }
+}
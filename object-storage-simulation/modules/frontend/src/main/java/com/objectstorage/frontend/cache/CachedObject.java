@@ -0,0 +1,30 @@
+package com.objectstorage.frontend.cache;
+
+import com.objectstorage.common.object.ObjectManifest;
+
+import java.nio.ByteBuffer;
+
+// An object held whole in the frontend cache: the manifest it was read under
+// and its body
+public final class CachedObject {
+    private final ObjectManifest manifest;
+    private final ByteBuffer body;
+
+    CachedObject(ObjectManifest manifest, ByteBuffer body) {
+        this.manifest = manifest;
+        this.body = body;
+    }
+
+    public ObjectManifest getManifest() {
+        return manifest;
+    }
+
+    // A fresh read-only view of the body for each caller
+    public ByteBuffer getBody() {
+        return body.duplicate();
+    }
+
+    int weight() {
+        return body.capacity();
+    }
+}
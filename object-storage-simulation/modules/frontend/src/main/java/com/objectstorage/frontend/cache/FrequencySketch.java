@@ -0,0 +1,68 @@
+package com.objectstorage.frontend.cache;
+
+// Approximate count of how often each key was asked for recently: a count-min
+// sketch of 4-bit counters, sixteen to a long. Once sampleSize increments have
+// been recorded every counter is halved, so popularity that is not renewed
+// fades away (TinyLFU's reset). Not thread-safe; each cache shard has its own.
+final class FrequencySketch {
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long HALF_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        int size = Integer.highestOneBit(Math.max(expectedEntries, 16) - 1) << 1;
+        this.table = new long[size];
+        this.mask = size - 1;
+        this.sampleSize = 10 * size;
+    }
+
+    int frequency(String key) {
+        int hash = key.hashCode();
+        int min = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; row++) {
+            long h = rehash(hash, row);
+            min = Math.min(min, counter(h));
+        }
+        return min;
+    }
+
+    void increment(String key) {
+        int hash = key.hashCode();
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            long h = rehash(hash, row);
+            if (counter(h) < MAX_COUNT) {
+                int index = (int) (h >>> 4) & mask;
+                table[index] += 1L << ((h & 15) << 2);
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private int counter(long h) {
+        int index = (int) (h >>> 4) & mask;
+        return (int) ((table[index] >>> ((h & 15) << 2)) & MAX_COUNT);
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & HALF_MASK;
+        }
+        additions /= 2;
+    }
+
+    private static long rehash(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[(row + 1) % SEEDS.length];
+        return h ^ (h >>> 29);
+    }
+}
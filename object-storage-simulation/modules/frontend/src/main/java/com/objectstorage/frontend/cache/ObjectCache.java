@@ -0,0 +1,277 @@
+package com.objectstorage.frontend.cache;
+
+import com.objectstorage.common.object.ObjectManifest;
+import com.objectstorage.frontend.service.PartitionServerRegistry;
+import com.objectstorage.partitionserver.server.PartitionServer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Hot small objects held whole in the frontend, so repeated GETs of the same
+// key touch neither a partition server nor an extent node.
+//
+// The cache is split into independently locked shards by key hash. Each shard
+// runs W-TinyLFU over bytes rather than entries: new objects land in a small
+// LRU window, and an object leaving the window only enters the main SLRU
+// (probation, then protected once hit again) if the frequency sketch says it
+// is asked for more often than every object it would push out. A one-off scan
+// therefore cannot flush the popular objects.
+//
+// Every write or delete that reaches the owning partition server invalidates
+// the key. A reader takes a ticket before fetching the manifest and its insert
+// is dropped if that key was invalidated since, so a body read just before an
+// overwrite can never be cached after it. Writes to other keys in the shard do
+// not get in the way.
+@Component
+public class ObjectCache {
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+    // Recent invalidations remembered per shard. A ticket older than the ones
+    // forgotten cannot be checked any more and its insert is dropped, which
+    // only costs a miss.
+    private static final int TRACKED_INVALIDATIONS = 1024;
+
+    private final Shard[] shards;
+    private final long maxBytes;
+    private final int maxObjectBytes;
+    private final boolean offHeap;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public ObjectCache(PartitionServerRegistry partitionServers,
+                       @Value("${objectstorage.cache.max-bytes:67108864}") long maxBytes,
+                       @Value("${objectstorage.cache.max-object-bytes:1048576}") int maxObjectBytes,
+                       @Value("${objectstorage.cache.shards:16}") int shardCount,
+                       @Value("${objectstorage.cache.off-heap:false}") boolean offHeap) {
+        if (shardCount <= 0 || Integer.bitCount(shardCount) != 1) {
+            throw new IllegalArgumentException("objectstorage.cache.shards must be a power of two");
+        }
+        this.maxBytes = maxBytes;
+        // A zero size turns the cache off
+        this.maxObjectBytes = maxBytes <= 0 ? -1 : (int) Math.min(maxObjectBytes, maxBytes / shardCount);
+        this.offHeap = offHeap;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(maxBytes / shardCount);
+        }
+        for (PartitionServer server : partitionServers.getAll()) {
+            server.addListener((key, previous, current) -> invalidate(key));
+        }
+    }
+
+    // Whether an object of this size may be cached at all
+    public boolean admits(long size) {
+        return size <= maxObjectBytes;
+    }
+
+    public CachedObject get(String key) {
+        CachedObject cached = shard(key).get(key);
+        (cached != null ? hits : misses).increment();
+        return cached;
+    }
+
+    // Taken before reading the manifest; an insert made with a ticket older
+    // than the key's last invalidation is ignored
+    public long ticket(String key) {
+        return shard(key).ticket();
+    }
+
+    public void put(ObjectManifest manifest, byte[] body, long ticket) {
+        if (!admits(body.length)) {
+            return;
+        }
+        ByteBuffer copy = offHeap ? ByteBuffer.allocateDirect(body.length) : ByteBuffer.allocate(body.length);
+        copy.put(body).flip();
+        shard(manifest.getKey()).put(new CachedObject(manifest, copy.asReadOnlyBuffer()), ticket);
+    }
+
+    public void invalidate(String key) {
+        shard(key).invalidate(key);
+    }
+
+    public Map<String, Object> getStats() {
+        long entries = 0;
+        long bytes = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                entries += shard.size();
+                bytes += shard.bytes();
+            }
+        }
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.sum());
+        stats.put("rejections", rejections.sum());
+        stats.put("entries", entries);
+        stats.put("bytes", bytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("offHeap", offHeap);
+        return stats;
+    }
+
+    private Shard shard(String key) {
+        int h = key.hashCode();
+        return shards[(h ^ (h >>> 16)) & (shards.length - 1)];
+    }
+
+    private final class Shard {
+        private final long windowMax;
+        private final long mainMax;
+        private final long protectedMax;
+        // Access-ordered, so the eldest entry of each is its LRU victim
+        private final LinkedHashMap<String, CachedObject> window = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<String, CachedObject> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<String, CachedObject> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+        private final FrequencySketch sketch;
+        // Key to the generation it was last invalidated at, oldest first
+        private final LinkedHashMap<String, Long> invalidations = new LinkedHashMap<>();
+        private long windowBytes;
+        private long probationBytes;
+        private long protectedBytes;
+        private long generation;
+        // The newest generation dropped from invalidations
+        private long forgotten;
+
+        Shard(long capacity) {
+            this.windowMax = capacity * WINDOW_PERCENT / 100;
+            this.mainMax = capacity - windowMax;
+            this.protectedMax = mainMax * PROTECTED_PERCENT / 100;
+            // Room to count several times as many keys as fit at a typical 4 KB
+            this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(16, capacity / 4096)));
+        }
+
+        synchronized CachedObject get(String key) {
+            sketch.increment(key);
+            CachedObject cached = window.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            cached = protectedSegment.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            cached = probation.remove(key);
+            if (cached != null) {
+                // A hit while on probation earns a protected place
+                probationBytes -= cached.weight();
+                protectedSegment.put(key, cached);
+                protectedBytes += cached.weight();
+                demoteProtected();
+            }
+            return cached;
+        }
+
+        synchronized long ticket() {
+            return generation;
+        }
+
+        synchronized void put(CachedObject cached, long ticket) {
+            String key = cached.getManifest().getKey();
+            Long invalidated = invalidations.get(key);
+            if (invalidated != null ? invalidated > ticket : ticket < forgotten) {
+                return;
+            }
+            remove(key);
+            window.put(key, cached);
+            windowBytes += cached.weight();
+            while (windowBytes > windowMax && !window.isEmpty()) {
+                Iterator<Map.Entry<String, CachedObject>> eldest = window.entrySet().iterator();
+                Map.Entry<String, CachedObject> candidate = eldest.next();
+                eldest.remove();
+                windowBytes -= candidate.getValue().weight();
+                admit(candidate.getKey(), candidate.getValue());
+            }
+        }
+
+        // TinyLFU admission of an object leaving the window into the main space
+        private void admit(String key, CachedObject candidate) {
+            long needed = probationBytes + protectedBytes + candidate.weight() - mainMax;
+            if (needed > 0) {
+                int frequency = sketch.frequency(key);
+                List<String> victims = new ArrayList<>();
+                long freed = 0;
+                Iterator<Map.Entry<String, CachedObject>> probationLru = probation.entrySet().iterator();
+                Iterator<Map.Entry<String, CachedObject>> protectedLru = protectedSegment.entrySet().iterator();
+                while (freed < needed) {
+                    Map.Entry<String, CachedObject> victim = probationLru.hasNext() ? probationLru.next()
+                        : protectedLru.hasNext() ? protectedLru.next() : null;
+                    if (victim == null || sketch.frequency(victim.getKey()) >= frequency) {
+                        rejections.increment();
+                        return;
+                    }
+                    victims.add(victim.getKey());
+                    freed += victim.getValue().weight();
+                }
+                for (String victim : victims) {
+                    remove(victim);
+                    evictions.increment();
+                }
+            }
+            probation.put(key, candidate);
+            probationBytes += candidate.weight();
+        }
+
+        // Keeps the protected segment within its share by moving its LRU
+        // entries back to probation
+        private void demoteProtected() {
+            while (protectedBytes > protectedMax) {
+                Iterator<Map.Entry<String, CachedObject>> eldest = protectedSegment.entrySet().iterator();
+                Map.Entry<String, CachedObject> entry = eldest.next();
+                eldest.remove();
+                protectedBytes -= entry.getValue().weight();
+                probation.put(entry.getKey(), entry.getValue());
+                probationBytes += entry.getValue().weight();
+            }
+        }
+
+        synchronized void invalidate(String key) {
+            generation++;
+            invalidations.remove(key);
+            invalidations.put(key, generation);
+            if (invalidations.size() > TRACKED_INVALIDATIONS) {
+                Iterator<Map.Entry<String, Long>> eldest = invalidations.entrySet().iterator();
+                forgotten = eldest.next().getValue();
+                eldest.remove();
+            }
+            remove(key);
+        }
+
+        private void remove(String key) {
+            CachedObject cached = window.remove(key);
+            if (cached != null) {
+                windowBytes -= cached.weight();
+                return;
+            }
+            cached = probation.remove(key);
+            if (cached != null) {
+                probationBytes -= cached.weight();
+                return;
+            }
+            cached = protectedSegment.remove(key);
+            if (cached != null) {
+                protectedBytes -= cached.weight();
+            }
+        }
+
+        int size() {
+            return window.size() + probation.size() + protectedSegment.size();
+        }
+
+        long bytes() {
+            return windowBytes + probationBytes + protectedBytes;
+        }
+    }
+}
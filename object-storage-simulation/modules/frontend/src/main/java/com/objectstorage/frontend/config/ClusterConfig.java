@@ -0,0 +1,119 @@
+package com.objectstorage.frontend.config;
+
+import com.objectstorage.common.metrics.MetricsRegistry;
+import com.objectstorage.common.trace.Span;
+import com.objectstorage.common.trace.Tracer;
+import com.objectstorage.extentnode.replication.ChainReplicator;
+import com.objectstorage.frontend.service.ExtentNodeRegistry;
+import com.objectstorage.frontend.service.ObjectService;
+import com.objectstorage.partitionmanager.config.PartitionManagerConfig;
+import com.objectstorage.streammanager.config.StreamManagerConfig;
+import com.objectstorage.streammanager.erasure.ColdExtentEncoder;
+import com.objectstorage.streammanager.erasure.FragmentReader;
+import com.objectstorage.streammanager.gc.ExtentCompactor;
+import com.objectstorage.streammanager.scrub.ExtentScrubber;
+import com.objectstorage.streammanager.stream.StreamManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.TaskDecorator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// The simulation runs every tier in this process; pull in the real engines of
+// the other modules alongside the frontend's own beans.
+@Configuration
+@Import({PartitionManagerConfig.class, StreamManagerConfig.class})
+public class ClusterConfig {
+    // Root of all simulated on-disk state. Without a configured data dir a fresh
+    // temp directory is used so every simulation run starts from an empty cluster.
+    @Bean
+    public Path dataRoot(@Value("${objectstorage.data-dir:}") String dataDir) throws IOException {
+        return dataDir.isEmpty() ? Files.createTempDirectory("object-storage-") : Paths.get(dataDir);
+    }
+
+    @Bean
+    public MetricsRegistry metricsRegistry() {
+        return new MetricsRegistry();
+    }
+
+    // Spans of the last requests are kept so /metrics/traces can show them
+    @Bean
+    public Tracer tracer(MetricsRegistry metricsRegistry,
+                         @Value("${objectstorage.trace.retained:1024}") int retainedTraces) {
+        return new Tracer(metricsRegistry, retainedTraces);
+    }
+
+    // Streamed response bodies are written on the application task executor;
+    // carry the request's trace over to it
+    @Bean
+    public TaskDecorator tracingTaskDecorator(Tracer tracer) {
+        return task -> {
+            Span parent = tracer.capture();
+            long submitted = System.nanoTime();
+            return () -> {
+                try (Tracer.Attachment ignored = tracer.attach(parent, submitted)) {
+                    task.run();
+                }
+            };
+        };
+    }
+
+    @Bean(destroyMethod = "close")
+    public ChainReplicator chainReplicator(ExtentNodeRegistry extentNodes, StreamManager streamManager,
+                                           Tracer tracer) {
+        return new ChainReplicator(extentNodes::get, streamManager::isAvailable, tracer);
+    }
+
+    // 6+3 needs nine extent nodes; the simulated cluster has five, so the
+    // default code is 3+2, which still survives two lost nodes like 3x replication
+    @Bean(destroyMethod = "close")
+    public ColdExtentEncoder coldExtentEncoder(StreamManager streamManager, ExtentNodeRegistry extentNodes,
+            @Value("${stream-manager.erasure.data-fragments:3}") int dataFragments,
+            @Value("${stream-manager.erasure.parity-fragments:2}") int parityFragments,
+            @Value("${stream-manager.erasure.cold-after-ms:300000}") long coldAfterMillis,
+            @Value("${stream-manager.erasure.interval-ms:10000}") long intervalMillis) {
+        ColdExtentEncoder encoder = new ColdExtentEncoder(streamManager, extentNodes::get,
+            dataFragments, parityFragments, coldAfterMillis);
+        encoder.start(intervalMillis);
+        return encoder;
+    }
+
+    // Extents at most half live are rewritten, copying at 8 MB/s so foreground
+    // traffic keeps most of the disk bandwidth
+    @Bean(destroyMethod = "close")
+    public ExtentCompactor extentCompactor(StreamManager streamManager, ExtentNodeRegistry extentNodes,
+            ChainReplicator chainReplicator, FragmentReader fragmentReader, ObjectService objectService,
+            @Value("${stream-manager.gc.max-live-ratio:0.5}") double maxLiveRatio,
+            @Value("${stream-manager.gc.min-age-ms:60000}") long minAgeMillis,
+            @Value("${stream-manager.gc.bytes-per-second:8388608}") long bytesPerSecond,
+            @Value("${stream-manager.gc.interval-ms:30000}") long intervalMillis) {
+        ExtentCompactor compactor = new ExtentCompactor(streamManager, extentNodes::get, chainReplicator,
+            fragmentReader, objectService, ObjectService.REPLICA_COUNT, maxLiveRatio, minAgeMillis, bytesPerSecond);
+        compactor.start(intervalMillis);
+        return compactor;
+    }
+
+    // Extents unread for a minute are re-verified every hour, at 4 MB/s so the
+    // scan stays in the background
+    @Bean(destroyMethod = "close")
+    public ExtentScrubber extentScrubber(StreamManager streamManager, ExtentNodeRegistry extentNodes,
+            @Value("${stream-manager.scrub.cold-after-ms:60000}") long coldAfterMillis,
+            @Value("${stream-manager.scrub.rescrub-after-ms:3600000}") long rescrubAfterMillis,
+            @Value("${stream-manager.scrub.bytes-per-second:4194304}") long bytesPerSecond,
+            @Value("${stream-manager.scrub.interval-ms:30000}") long intervalMillis) {
+        ExtentScrubber scrubber = new ExtentScrubber(streamManager, extentNodes::get, coldAfterMillis,
+            rescrubAfterMillis, bytesPerSecond);
+        scrubber.start(intervalMillis);
+        return scrubber;
+    }
+
+    @Bean
+    public FragmentReader fragmentReader(StreamManager streamManager, ExtentNodeRegistry extentNodes) {
+        return new FragmentReader(extentNodes::get, streamManager::isAvailable);
+    }
+}
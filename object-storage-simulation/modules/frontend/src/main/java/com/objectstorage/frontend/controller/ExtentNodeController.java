@@ -1,11 +1,25 @@
 package com.objectstorage.frontend.controller;
 
+import com.objectstorage.common.extent.BlockLocation;
+import com.objectstorage.common.object.ObjectChunk;
+import com.objectstorage.common.object.ObjectManifest;
+import com.objectstorage.extentnode.storage.ChecksumMismatchException;
+import com.objectstorage.extentnode.storage.ExtentStore;
+import com.objectstorage.frontend.service.ClusterState;
+import com.objectstorage.frontend.service.ExtentNodeRegistry;
+import com.objectstorage.frontend.service.ObjectService;
+import com.objectstorage.frontend.service.ServedBlock;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -13,18 +27,96 @@ import java.util.Map;
 @RequestMapping("/extent-node")
 @CrossOrigin(origins = "http://localhost:5173")
 public class ExtentNodeController {
+    // The JSON view only previews the start of a chunk; bodies go through /objects
+    private static final int PREVIEW_BYTES = 256;
+
+    private final ExtentNodeRegistry extentNodes;
+    private final ObjectService objectService;
+    private final ClusterState clusterState;
+
+    public ExtentNodeController(ExtentNodeRegistry extentNodes, ObjectService objectService,
+                                ClusterState clusterState) {
+        this.extentNodes = extentNodes;
+        this.objectService = objectService;
+        this.clusterState = clusterState;
+    }
+
+    // GET /retrieve/{id}?file=...&offset=... previews the file from the given
+    // object offset, read from the block covering it. If id's copy of the block
+    // fails its checksum the preview comes from another replica and servedBy
+    // says which.
     @GetMapping("/retrieve/{id}")
-    public ResponseEntity<Map<String, String>> retrieve(@PathVariable("id") String id) {
-        String status = com.objectstorage.frontend.controller.FileController.componentStatus.getOrDefault(id, "up");
+    public ResponseEntity<Map<String, String>> retrieve(@PathVariable("id") String id,
+                                                       @RequestParam(value = "file", required = false) String file,
+                                                       @RequestParam(value = "offset", defaultValue = "0") long offset) throws IOException {
         Map<String, String> result = new HashMap<>();
         result.put("extentNodeId", id);
-        if ("up".equals(status)) {
-            result.put("chunk", "dummy-chunk-data");
+        if (clusterState.isUp(id)) {
+            ExtentStore store = extentNodes.get(id);
+            result.put("extents", String.valueOf(store.getExtents().size()));
+            result.put("storedBytes", String.valueOf(store.getTotalBytes()));
+            if (file == null) {
+                return ResponseEntity.ok(result);
+            }
+            ObjectChunk chunk = chunkOn(id, file, offset);
+            if (chunk == null) {
+                result.put("error", "File " + file + " has no block on " + id);
+                return ResponseEntity.status(404).body(result);
+            }
+            ServedBlock served;
+            try {
+                served = objectService.readBlock(id, chunk);
+            } catch (ChecksumMismatchException e) {
+                result.put("error", "No intact replica: " + e.getMessage());
+                return ResponseEntity.status(503).body(result);
+            }
+            ByteBuffer block = served.getData();
+            block.position((int) (offset - chunk.getObjectOffset()));
+            block.limit(Math.min(block.limit(), block.position() + PREVIEW_BYTES));
+            result.put("block", chunk.getReplicas().get(id).toString());
+            result.put("servedBy", served.getNode());
+            if (!served.getDamaged().isEmpty()) {
+                result.put("checksumFailures", String.join(", ", served.getDamaged()));
+            }
+            result.put("chunk", StandardCharsets.UTF_8.decode(block).toString());
             return ResponseEntity.ok(result);
         } else {
             result.put("error", "Extent Node is down");
             return ResponseEntity.status(503).body(result);
         }
     }
+    // POST /corrupt/{id}?file=...&offset=... flips a byte of id's copy of the
+    // block holding that object offset, leaving its checksum alone, to show a
+    // read falling back to another replica and the block being repaired
+    @PostMapping("/corrupt/{id}")
+    public ResponseEntity<Map<String, String>> corrupt(@PathVariable("id") String id,
+                                                      @RequestParam("file") String file,
+                                                      @RequestParam(value = "offset", defaultValue = "0") long offset) throws IOException {
+        Map<String, String> result = new HashMap<>();
+        result.put("extentNodeId", id);
+        ObjectChunk chunk = chunkOn(id, file, offset);
+        if (chunk == null) {
+            result.put("error", "File " + file + " has no block on " + id);
+            return ResponseEntity.status(404).body(result);
+        }
+        BlockLocation location = chunk.getReplicas().get(id);
+        try {
+            extentNodes.get(id).corruptBlock(location);
+        } catch (IllegalArgumentException e) {
+            // The extent has been erasure coded and this node no longer has the replica
+            result.put("error", e.getMessage());
+            return ResponseEntity.status(409).body(result);
+        }
+        result.put("block", location.toString());
+        return ResponseEntity.ok(result);
+    }
+
+    // The chunk of file covering offset, if id holds a replica of it
+    private ObjectChunk chunkOn(String id, String file, long offset) throws IOException {
+        ObjectManifest manifest = objectService.get(file);
+        ObjectChunk chunk = manifest == null || offset < 0 || offset >= manifest.getSize() ? null
+            : manifest.chunksCovering(offset, 1).get(0);
+        return chunk == null || !chunk.getReplicas().containsKey(id) ? null : chunk;
+    }
     // TODO: Add endpoints for extent node operations, status, etc.
 } 
\ No newline at end of file
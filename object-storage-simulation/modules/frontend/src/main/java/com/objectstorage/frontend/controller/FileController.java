@@ -3,8 +3,36 @@ package com.objectstorage.frontend.controller;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import com.objectstorage.common.object.ObjectChunk;
+import com.objectstorage.common.object.ObjectManifest;
+import com.objectstorage.common.partition.PartitionAssignment;
+import com.objectstorage.common.partition.PartitionTable;
+import com.objectstorage.common.trace.Span;
+import com.objectstorage.common.trace.SpanRecord;
+import com.objectstorage.common.trace.Tracer;
+import com.objectstorage.frontend.service.ClusterEvents;
+import com.objectstorage.frontend.service.ClusterSnapshot;
+import com.objectstorage.frontend.service.ClusterState;
+import com.objectstorage.frontend.service.ObjectService;
+import com.objectstorage.frontend.service.PartitionMapCache;
+import com.objectstorage.frontend.service.PartitionServerRegistry;
+import com.objectstorage.frontend.service.ReplicaSelector;
+import com.objectstorage.frontend.service.ServedBlock;
+import com.objectstorage.partitionmanager.partition.PartitionBalancer;
+import com.objectstorage.partitionmanager.partition.PartitionMap;
+import com.objectstorage.partitionmanager.raft.RaftGroup;
+import com.objectstorage.partitionserver.server.NotOwnerException;
+import com.objectstorage.streammanager.stream.StreamManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import jakarta.annotation.PostConstruct;
 
 @RestController
@@ -15,22 +43,38 @@ public class FileController {
     // In-memory file list (mutable)
     private final List<Map<String, String>> files = new ArrayList<>();
     // In-memory migration log
-    private final List<Map<String, String>> migrationLog = new ArrayList<>();
+    private final List<Map<String, String>> migrationLog = new CopyOnWriteArrayList<>();
 
-    // In-memory state for component statuses
-    public static final Map<String, String> componentStatus = new HashMap<>();
+    // Component statuses and file placements, read as one consistent snapshot
+    private final ClusterState clusterState;
 
-    // Track partition server assignments: file name -> partition server
-    private final Map<String, String> fileToPartitionServer = new HashMap<>();
+    // Key ranges and the partition server owning each of them
+    private final PartitionMap partitionMap;
+    private final PartitionBalancer partitionBalancer;
+    // The front-end's cached copy of that map and the servers it routes to
+    private final PartitionMapCache partitionMapCache;
+    private final PartitionServerRegistry partitionServers;
+    // Replica sets of all extents
+    private final StreamManager streamManager;
+    // The Partition Manager's replicas, which elect its leader
+    private final RaftGroup partitionManagerReplicas;
     // Track partition manager leader election log
-    private final List<String> pmLeaderElectionLog = new ArrayList<>();
+    private final List<String> pmLeaderElectionLog = new CopyOnWriteArrayList<>();
 
-    // For each file: store its primary and two secondary extent nodes
-    public static final Map<String, List<String>> fileToExtentNodes = new HashMap<>();
+    private final ObjectService objectService;
+    private final ReplicaSelector replicaSelector;
+    private final Tracer tracer;
+    // Pushes status, partition and election changes to dashboards
+    private final ClusterEvents events;
+    // Which files and ranges each partition server owns, rebuilt from every
+    // new partition table so no request has to rescan the files per server
+    private volatile Ownership ownership = Ownership.EMPTY;
 
     // Configurable group sizes
     private static final int PARTITION_SERVER_COUNT = 3;
     private static final int EXTENT_NODE_COUNT = 5;
+    // getFile only previews the start of a file; bodies go through /objects
+    private static final int PREVIEW_BYTES = 256;
     private static final List<String> COMPONENTS = new ArrayList<>();
     static {
         COMPONENTS.add("Front-End Service");
@@ -44,11 +88,44 @@ public class FileController {
         }
     }
 
+    public FileController(ObjectService objectService, PartitionMap partitionMap, PartitionBalancer partitionBalancer,
+                          RaftGroup partitionManagerReplicas, PartitionMapCache partitionMapCache,
+                          PartitionServerRegistry partitionServers, StreamManager streamManager, ClusterState clusterState,
+                          ReplicaSelector replicaSelector, Tracer tracer, ClusterEvents events) {
+        this.objectService = objectService;
+        this.partitionMap = partitionMap;
+        this.partitionBalancer = partitionBalancer;
+        this.partitionManagerReplicas = partitionManagerReplicas;
+        this.partitionMapCache = partitionMapCache;
+        this.partitionServers = partitionServers;
+        this.streamManager = streamManager;
+        this.clusterState = clusterState;
+        this.replicaSelector = replicaSelector;
+        this.tracer = tracer;
+        this.events = events;
+        // New extents avoid extent nodes that are down; the set of extent nodes
+        // for each existing file stays fixed
+        clusterState.subscribe((previous, current) -> {
+            for (String node : streamManager.getNodes()) {
+                if (current.isUp(node) != previous.isUp(node)) {
+                    streamManager.setNodeAvailable(node, current.isUp(node));
+                }
+            }
+        });
+        clusterState.subscribe(this::publishStatusChanges);
+        partitionMap.addListener(this::reindex);
+        partitionManagerReplicas.addListener(this::leaderElected);
+    }
+
     @PostConstruct
-    public void initComponentStatus() {
-        componentStatus.clear();
-        for (String name : COMPONENTS) {
-            componentStatus.put(name, "up");
+    public void initComponentStatus() throws IOException {
+        clusterState.reset(COMPONENTS);
+        // A partition map recovered from the Partition Manager's log may have
+        // servers that were down when the cluster last stopped
+        for (String server : partitionMap.getServers()) {
+            if (!partitionMap.isAvailable(server)) {
+                clusterState.compareAndSetStatus(server, ClusterSnapshot.UP, ClusterSnapshot.DOWN);
+            }
         }
         // Initialize files
         files.clear();
@@ -59,139 +136,268 @@ public class FileController {
         files.add(new HashMap<>(Map.of("name", "slides.pptx")));
         migrationLog.clear();
         pmLeaderElectionLog.clear();
-        // Assign files to partition servers and extent nodes
-        fileToPartitionServer.clear();
-        fileToExtentNodes.clear();
+        // Assign files to extent nodes; partition servers own files by key range
         for (Map<String, String> file : files) {
             String fname = file.get("name");
-            int psIdx = (fname.hashCode() & Integer.MAX_VALUE) % PARTITION_SERVER_COUNT + 1;
-            fileToPartitionServer.put(fname, "Partition Server " + psIdx);
-            // Assign 3 extent nodes (primary + 2 replicas) in round-robin, offset by file hash
-            int base = (fname.hashCode() & Integer.MAX_VALUE) % EXTENT_NODE_COUNT;
-            List<String> extents = new ArrayList<>();
-            for (int j = 0; j < 3; j++) {
-                int idx = (base + j) % EXTENT_NODE_COUNT + 1;
-                extents.add("Extent Node " + idx);
-            }
-            fileToExtentNodes.put(fname, extents);
+            // Prefer 3 extent nodes (primary + 2 replicas) in round-robin, offset by file hash
+            List<String> extents = objectService.placementFor(fname);
+            // Store the file's contents through the replica chain of its extent
+            byte[] contents = ("Contents of " + fname).getBytes(StandardCharsets.UTF_8);
+            ObjectManifest manifest = objectService.put(fname, new ByteArrayInputStream(contents), extents);
+            clusterState.setExtentNodes(fname, new ArrayList<>(manifest.getChunks().get(0).getReplicas().keySet()));
         }
+        ownership = Ownership.EMPTY;
+        reindex(partitionMap.snapshot());
     }
 
     @GetMapping("/system/status")
     public List<Map<String, String>> getSystemStatus() {
+        return componentList(clusterState.snapshot());
+    }
+
+    private static List<Map<String, String>> componentList(ClusterSnapshot cluster) {
         List<Map<String, String>> status = new ArrayList<>();
-        for (String name : COMPONENTS) {
-            status.add(Map.of("name", name, "status", componentStatus.getOrDefault(name, "up")));
+        for (Map.Entry<String, String> component : cluster.getComponentStatus().entrySet()) {
+            status.add(Map.of("name", component.getKey(), "status", component.getValue()));
         }
         return status;
     }
 
     @GetMapping("/partition-servers")
     public List<Map<String, Object>> getPartitionServers() {
-        // Build a list of partition servers and their files
+        return partitionServerList(ownership, clusterState.snapshot());
+    }
+
+    private static List<Map<String, Object>> partitionServerList(Ownership owned, ClusterSnapshot cluster) {
         List<Map<String, Object>> result = new ArrayList<>();
+        for (int i = 1; i <= PARTITION_SERVER_COUNT; i++) {
+            result.add(partitionServerEntry(owned, cluster, "Partition Server " + i));
+        }
+        return result;
+    }
+
+    private static Map<String, Object> partitionServerEntry(Ownership owned, ClusterSnapshot cluster, String psName) {
+        return Map.of(
+            "name", psName,
+            "status", cluster.getStatus(psName),
+            "files", owned.filesOf(psName),
+            "ranges", owned.rangesOf(psName)
+        );
+    }
+
+    // GET /events streams a snapshot of the dashboard state, then every change
+    // to component status, partition ownership and the leader election log
+    @GetMapping("/events")
+    public SseEmitter streamEvents() {
+        return events.subscribe(() -> {
+            ClusterSnapshot cluster = clusterState.snapshot();
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("components", componentList(cluster));
+            snapshot.put("partitionServers", partitionServerList(ownership, cluster));
+            snapshot.put("leaderElectionLog", new ArrayList<>(pmLeaderElectionLog));
+            return snapshot;
+        });
+    }
+
+    private void publishStatusChanges(ClusterSnapshot previous, ClusterSnapshot current) {
+        List<Map<String, String>> changed = new ArrayList<>();
+        for (Map.Entry<String, String> component : current.getComponentStatus().entrySet()) {
+            if (!previous.hasComponent(component.getKey())
+                    || !previous.getStatus(component.getKey()).equals(component.getValue())) {
+                changed.add(Map.of("name", component.getKey(), "status", component.getValue()));
+            }
+        }
+        if (!changed.isEmpty()) {
+            events.publish("status", Map.of("components", changed));
+        }
+    }
+
+    // Rebuilds the ownership index from a new partition table and publishes
+    // which files moved and the new view of every server that changed. Tables
+    // arrive in version order; one that is already reflected is ignored.
+    private synchronized void reindex(PartitionTable table) {
+        Ownership previous = ownership;
+        if (table.getVersion() < previous.version) {
+            return;
+        }
+        List<String> fileNames = new ArrayList<>();
+        for (Map<String, String> file : files) {
+            fileNames.add(file.get("name"));
+        }
+        Ownership next = new Ownership(table, fileNames);
+        ownership = next;
+        if (previous == Ownership.EMPTY) {
+            return;
+        }
+        List<Map<String, String>> moves = new ArrayList<>();
+        for (Map.Entry<String, String> owner : next.owners.entrySet()) {
+            String before = previous.owners.get(owner.getKey());
+            if (before != null && !before.equals(owner.getValue())) {
+                moves.add(Map.of("file", owner.getKey(), "from", before, "to", owner.getValue()));
+            }
+        }
+        ClusterSnapshot cluster = clusterState.snapshot();
+        List<Map<String, Object>> servers = new ArrayList<>();
         for (int i = 1; i <= PARTITION_SERVER_COUNT; i++) {
             String psName = "Partition Server " + i;
-            List<String> filesHandled = new ArrayList<>();
-            for (Map.Entry<String, String> entry : fileToPartitionServer.entrySet()) {
-                if (entry.getValue().equals(psName)) {
-                    filesHandled.add(entry.getKey());
+            if (!previous.filesOf(psName).equals(next.filesOf(psName))
+                    || !previous.rangesOf(psName).equals(next.rangesOf(psName))) {
+                servers.add(partitionServerEntry(next, cluster, psName));
+            }
+        }
+        if (!moves.isEmpty() || !servers.isEmpty()) {
+            Map<String, Object> event = new HashMap<>();
+            event.put("version", table.getVersion());
+            event.put("moves", moves);
+            event.put("partitionServers", servers);
+            events.publish("partitions", event);
+        }
+    }
+
+    private void logElection(String message) {
+        pmLeaderElectionLog.add(message);
+        Map<String, Object> event = new HashMap<>();
+        // Lets a client that already has this line from its snapshot skip it
+        event.put("index", pmLeaderElectionLog.size() - 1);
+        event.put("message", message);
+        events.publish("election", event);
+    }
+
+    // A new leader has its lease: the Partition Manager is back, and replicas
+    // that were stopped restart from their snapshot and log
+    private void leaderElected(String leader, long term) {
+        if (clusterState.compareAndSetStatus("Partition Manager", ClusterSnapshot.DOWN, ClusterSnapshot.UP)) {
+            logElection("Leader election complete. " + leader + " is the leader for term " + term + ".");
+            restartReplicas();
+        }
+    }
+
+    private void restartReplicas() {
+        for (String replica : partitionManagerReplicas.getStopped()) {
+            try {
+                RaftGroup.Recovery recovery = partitionManagerReplicas.restart(replica);
+                if (recovery != null) {
+                    logElection(replica + " restarted: " + recovery + ".");
                 }
+            } catch (IOException e) {
+                logElection(replica + " failed to restart: " + e.getMessage());
             }
-            result.add(Map.of(
-                "name", psName,
-                "status", componentStatus.getOrDefault(psName, "up"),
-                "files", filesHandled
-            ));
         }
-        return result;
     }
 
     @PostMapping("/system/status")
     public Map<String, Object> setComponentStatus(@RequestBody Map<String, String> body) {
         String name = body.getOrDefault("name", "");
-        String status = body.getOrDefault("status", "up");
+        String status = ClusterSnapshot.DOWN.equals(body.get("status")) ? ClusterSnapshot.DOWN : ClusterSnapshot.UP;
+        String previous = status.equals(ClusterSnapshot.UP) ? ClusterSnapshot.DOWN : ClusterSnapshot.UP;
         List<Map<String, String>> migrations = new ArrayList<>();
-        if (componentStatus.containsKey(name)) {
-            // If bringing an extent node down, do NOT migrate files; just mark node as down
-            // The set of extent nodes for each file remains fixed
-            // If bringing a partition server down, reassign its files
-            if (name.startsWith("Partition Server") && status.equals("down") && componentStatus.get(name).equals("up")) {
-                // Find available partition servers
-                List<String> availablePS = new ArrayList<>();
-                for (int i = 1; i <= PARTITION_SERVER_COUNT; i++) {
-                    String ps = "Partition Server " + i;
-                    if (!ps.equals(name) && componentStatus.getOrDefault(ps, "up").equals("up")) {
-                        availablePS.add(ps);
-                    }
-                }
-                // For each file assigned to the downed PS, move to another available PS
-                List<String> toReassign = new ArrayList<>();
-                for (Map.Entry<String, String> entry : fileToPartitionServer.entrySet()) {
-                    if (entry.getValue().equals(name)) {
-                        toReassign.add(entry.getKey());
-                    }
+        String error = null;
+        // Only the request that actually flips the status acts on the change, so
+        // concurrent toggles of the same component cannot migrate ranges twice
+        if (clusterState.compareAndSetStatus(name, previous, status)) {
+            try {
+                // If bringing a partition server down, its key ranges move to the least loaded servers
+                if (name.startsWith("Partition Server") && status.equals(ClusterSnapshot.DOWN)) {
+                    Map<String, String> before = fileOwners();
+                    partitionMap.setServerAvailable(name, false);
+                    recordMigrations(before, migrations);
                 }
-                for (String fname : toReassign) {
-                    if (!availablePS.isEmpty()) {
-                        String newPS = availablePS.get(new Random().nextInt(availablePS.size()));
-                        fileToPartitionServer.put(fname, newPS);
-                    }
+                // If bringing a partition server up, rebalance so it picks up ranges again
+                if (name.startsWith("Partition Server") && status.equals(ClusterSnapshot.UP)) {
+                    Map<String, String> before = fileOwners();
+                    partitionMap.setServerAvailable(name, true);
+                    partitionBalancer.rebalance();
+                    recordMigrations(before, migrations);
                 }
+            } catch (IllegalStateException e) {
+                // The Partition Manager could not commit the move, e.g. while it elects a leader
+                clusterState.compareAndSetStatus(name, status, previous);
+                error = e.getMessage();
             }
-            // If bringing a partition server up, reassign files to it (simulate rebalance)
-            if (name.startsWith("Partition Server") && status.equals("up") && componentStatus.get(name).equals("down")) {
-                // Rebalance: assign some files back to this PS
-                List<String> allFiles = new ArrayList<>(fileToPartitionServer.keySet());
-                for (String fname : allFiles) {
-                    int psIdx = (fname.hashCode() & Integer.MAX_VALUE) % PARTITION_SERVER_COUNT + 1;
-                    String idealPS = "Partition Server " + psIdx;
-                    if (idealPS.equals(name)) {
-                        fileToPartitionServer.put(fname, name);
-                    }
-                }
+            // Taking the Partition Manager down stops its leader replica; the
+            // others elect a new leader once its lease has run out
+            if (name.equals("Partition Manager") && status.equals(ClusterSnapshot.DOWN)) {
+                String stopped = partitionManagerReplicas.stopLeader();
+                logElection((stopped != null ? stopped + " (leader) stopped. " : "") + "Leader election is happening...");
             }
-            // Partition Manager leader election simulation
-            if (name.equals("Partition Manager") && status.equals("down") && componentStatus.get(name).equals("up")) {
-                componentStatus.put("Partition Manager", "down");
-                synchronized (pmLeaderElectionLog) {
-                    pmLeaderElectionLog.add("Leader election is happening...");
-                }
-                new Thread(() -> {
-                    try { Thread.sleep(300); } catch (InterruptedException ignored) {}
-                    componentStatus.put("Partition Manager", "up");
-                    synchronized (pmLeaderElectionLog) {
-                        pmLeaderElectionLog.add("Leader election complete. New Partition Manager leader is active.");
-                    }
-                }).start();
-                Map<String, Object> resp = new HashMap<>();
-                resp.put("name", name);
-                resp.put("status", componentStatus.getOrDefault(name, "down"));
-                resp.put("migrations", migrations);
-                return resp;
+            if (name.equals("Partition Manager") && status.equals(ClusterSnapshot.UP)) {
+                restartReplicas();
             }
-            componentStatus.put(name, status);
         }
         Map<String, Object> resp = new HashMap<>();
+        if (error != null) {
+            resp.put("error", error);
+        }
         resp.put("name", name);
-        resp.put("status", componentStatus.getOrDefault(name, "up"));
+        resp.put("status", clusterState.snapshot().getStatus(name));
         resp.put("migrations", migrations);
         return resp;
     }
 
+    private static List<String> hops(List<String> prefix, String... rest) {
+        List<String> path = new ArrayList<>(prefix);
+        path.addAll(Arrays.asList(rest));
+        return path;
+    }
+
+    private String partitionServerFor(String fname) {
+        return partitionMap.lookup(fname).getServer();
+    }
+
+    private Map<String, String> fileOwners() {
+        return ownership.owners;
+    }
+
+    private void recordMigrations(Map<String, String> before, List<Map<String, String>> migrations) {
+        for (Map.Entry<String, String> entry : before.entrySet()) {
+            String now = partitionServerFor(entry.getKey());
+            if (!now.equals(entry.getValue())) {
+                migrations.add(Map.of("file", entry.getKey(), "from", entry.getValue(), "to", now));
+            }
+        }
+        migrationLog.addAll(migrations);
+    }
+
+    // GET /partition-for-key?key=... answered from the front-end's cached partition map
+    @GetMapping("/partition-for-key")
+    public ResponseEntity<Map<String, Object>> routeKey(@RequestParam("key") String key) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("key", key);
+        try {
+            PartitionMapCache.Route<Void> route = partitionMapCache.route(key, assignment -> {
+                partitionServers.get(assignment.getServer()).checkOwner(key);
+                return null;
+            });
+            result.put("partitionServer", route.getAssignment().getServer());
+            result.put("range", route.getAssignment().getRange().toString());
+            result.put("version", route.getVersion());
+            result.put("partitionManagerContacted", route.isRefreshed());
+            return ResponseEntity.ok(result);
+        } catch (IllegalStateException | NotOwnerException e) {
+            result.put("error", e.getMessage());
+            result.put("partitionManagerContacted", true);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(result);
+        }
+    }
+
     @GetMapping("/partition-manager/leader-election-log")
     public List<String> getPmLeaderElectionLog() {
-        synchronized (pmLeaderElectionLog) {
-            return new ArrayList<>(pmLeaderElectionLog);
-        }
+        return new ArrayList<>(pmLeaderElectionLog);
+    }
+
+    // Role, term, commit and snapshot index of each Partition Manager replica
+    @GetMapping("/partition-manager/replicas")
+    public List<Map<String, Object>> getPmReplicas() {
+        return partitionManagerReplicas.getStatus();
     }
 
     @GetMapping
     public List<Map<String, Object>> listFiles() {
+        ClusterSnapshot cluster = clusterState.snapshot();
         List<Map<String, Object>> result = new ArrayList<>();
         for (Map<String, String> file : files) {
             String fname = file.get("name");
-            List<String> extents = fileToExtentNodes.getOrDefault(fname, List.of());
+            List<String> extents = cluster.getExtentNodes(fname);
             Map<String, Object> entry = new HashMap<>();
             entry.put("name", fname);
             entry.put("primary", extents.size() > 0 ? extents.get(0) : null);
@@ -202,103 +408,173 @@ public class FileController {
         return result;
     }
 
+    // GET /{filename} reads the file along the real path: the owning partition
+    // server for its manifest (through the Partition Manager if the cached map
+    // is stale), the Stream Manager for a replica, then that extent node for
+    // the start of the first block. The hops are spans of the request's trace
+    // and are returned as is, so the UI animates what actually happened.
     @GetMapping("/{filename}")
     public ResponseEntity<Map<String, Object>> getFile(@PathVariable("filename") String filename) {
         Optional<Map<String, String>> file = files.stream()
             .filter(f -> f.get("name").equalsIgnoreCase(filename))
             .findFirst();
-
+        Span root = tracer.current();
+        ClusterSnapshot cluster = clusterState.snapshot();
         Map<String, Object> response = new HashMap<>();
-        List<String> steps = new ArrayList<>();
-        steps.add("Contacting Front-End Service...");
-        steps.add("Partition Manager locating file...");
-        steps.add("Partition Server handling metadata...");
-        steps.add("Stream Manager locating extent...");
-
-        if (file.isPresent()) {
-            steps.add(file.get().get("location") + " serving file...");
-            response.put("name", file.get().get("name"));
-            response.put("location", file.get().get("location"));
-            response.put("steps", steps);
-            return ResponseEntity.ok(response);
+        HttpStatus status = HttpStatus.OK;
+        if (!file.isPresent()) {
+            status = HttpStatus.NOT_FOUND;
+            response.put("error", "File not found in any Extent Node.");
+        } else if (!cluster.isUp("Front-End Service")) {
+            status = HttpStatus.SERVICE_UNAVAILABLE;
+            response.put("error", "Front-End Service is down. System unavailable.");
         } else {
-            steps.add("File not found in any Extent Node.");
-            response.put("steps", steps);
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+            String name = file.get().get("name");
+            response.put("name", name);
+            try {
+                String location = readPreview(name, cluster, response);
+                if (location == null) {
+                    status = HttpStatus.NOT_FOUND;
+                    response.put("error", "File not found in any Extent Node.");
+                } else {
+                    response.put("location", location);
+                }
+            } catch (IllegalStateException | NotOwnerException | IOException | UncheckedIOException e) {
+                status = HttpStatus.SERVICE_UNAVAILABLE;
+                response.put("error", e.getMessage());
+            }
+        }
+        if (status != HttpStatus.OK && root != null) {
+            root.fail(Objects.toString(response.get("error"), null));
+        }
+        String traceId = root == null ? null : root.getTraceId();
+        // Only recent traces are retained, so this one may be gone already
+        List<SpanRecord> spans = traceId == null ? null : tracer.getTrace(traceId);
+        if (spans == null) {
+            spans = new ArrayList<>();
+        }
+        List<String> steps = new ArrayList<>();
+        steps.add("Front-End Service received the request");
+        for (SpanRecord span : spans) {
+            steps.add((span.getComponent() != null ? span.getComponent() : span.getHop()) + " "
+                + span.getOperation() + ": " + span.getServiceMicros() + " us"
+                + (span.getError() != null ? " (" + span.getError() + ")" : ""));
+        }
+        response.put("traceId", traceId);
+        response.put("spans", spans);
+        response.put("steps", steps);
+        return ResponseEntity.status(status).body(response);
+    }
+
+    // Reads the file's manifest and a preview of its first block; returns the
+    // extent node that served it, or null if there is no such object
+    private String readPreview(String name, ClusterSnapshot cluster, Map<String, Object> response)
+            throws IOException {
+        PartitionMapCache.Route<ObjectManifest> route = partitionMapCache.route(name, assignment -> {
+            String server = assignment.getServer();
+            try (Span span = tracer.start(Tracer.PARTITION_SERVER, "getObject").component(server)) {
+                // Routing only lands on a server that is down once the map cannot route around it
+                if (!cluster.isUp(server)) {
+                    span.fail(server + " is down");
+                    throw new IllegalStateException("All Partition Servers are down. Cannot access file metadata.");
+                }
+                return partitionServers.get(server).getObject(name);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        ObjectManifest manifest = route.getResult();
+        response.put("partitionServer", route.getAssignment().getServer());
+        if (manifest == null || manifest.getChunks().isEmpty()) {
+            return null;
         }
+        ObjectChunk chunk = manifest.getChunks().get(0);
+        String node;
+        try (Span span = tracer.start(Tracer.STREAM_MANAGER, "chooseReplica")) {
+            if (!cluster.isUp("Stream Manager")) {
+                span.fail("Stream Manager is down");
+                throw new IllegalStateException("Stream Manager is down. Cannot locate extent.");
+            }
+            // Any live replica can serve the read, picked by load
+            node = replicaSelector.choose(chunk.getReplicas().keySet(), cluster);
+            if (node == null) {
+                span.fail("All extent nodes are down");
+                throw new IllegalStateException("Blob Unavailable: All extent nodes for this file are down (HTTP 503).");
+            }
+        }
+        ServedBlock served = objectService.readBlock(node, chunk);
+        if (!served.getDamaged().isEmpty()) {
+            response.put("checksumFailures", served.getDamaged());
+        }
+        ByteBuffer block = served.getData();
+        block.limit(Math.min(block.limit(), block.position() + PREVIEW_BYTES));
+        response.put("preview", StandardCharsets.UTF_8.decode(block).toString());
+        return served.getNode();
     }
 
     @PostMapping("/simulate")
     public Map<String, Object> simulateGet(@RequestBody Map<String, String> body) {
         String filename = body.getOrDefault("filename", "");
-        List<Map<String, String>> components = new ArrayList<>();
-        for (String name : COMPONENTS) {
-            components.add(Map.of("name", name, "status", componentStatus.getOrDefault(name, "up")));
-        }
+        // Every decision below is made against the same snapshot
+        ClusterSnapshot cluster = clusterState.snapshot();
+        List<Map<String, String>> components = componentList(cluster);
         String result = "success";
         String message = "File found.";
         List<String> path = new ArrayList<>();
         String fileNode = null;
         String partitionServer = null;
-        List<String> extents = fileToExtentNodes.getOrDefault(filename, List.of());
-        // Partition Manager: map file to partition server
-        if (fileToPartitionServer.containsKey(filename)) {
-            partitionServer = fileToPartitionServer.get(filename);
-        } else {
-            partitionServer = "Partition Server 1";
-        }
-        String streamManager = "Stream Manager";
-        // Partition Server: try primary, then secondaries
-        String foundNode = null;
-        for (String node : extents) {
-            if (componentStatus.getOrDefault(node, "up").equals("up")) {
-                foundNode = node;
-                break;
+        List<String> extents = cluster.getExtentNodes(filename);
+        // Front-End: route from its cached partition map; the Partition Manager is
+        // only on the path when a partition server rejects the cached route
+        List<String> routeHops = new ArrayList<>(List.of("Front-End Service"));
+        boolean mapUnavailable = false;
+        try {
+            PartitionMapCache.Route<Void> route = partitionMapCache.route(filename, assignment -> {
+                partitionServers.get(assignment.getServer()).checkOwner(filename);
+                return null;
+            });
+            partitionServer = route.getAssignment().getServer();
+            if (route.isRefreshed()) {
+                routeHops.add("Partition Manager");
             }
+        } catch (IllegalStateException | NotOwnerException e) {
+            mapUnavailable = true;
+            partitionServer = partitionMapCache.lookup(filename).getServer();
+            routeHops.add("Partition Manager");
         }
+        String streamManager = "Stream Manager";
+        // Stream Manager: any live replica can serve the read, picked by load
+        String foundNode = replicaSelector.choose(extents, cluster);
         if (foundNode != null) {
             fileNode = foundNode;
-            path = List.of("Front-End Service", "Partition Manager", partitionServer, streamManager, fileNode);
+            path = hops(routeHops, partitionServer, streamManager, fileNode);
             result = "success";
             message = "File found at " + fileNode + ". System is available.";
         } else {
             // All extent nodes for this file are down
-            path = List.of("Front-End Service", "Partition Manager", partitionServer, streamManager);
+            path = hops(routeHops, partitionServer, streamManager);
             result = "failure";
             message = "Blob Unavailable: All extent nodes for this file are down (HTTP 503).";
         }
         // Consistency/availability logic for FE, PM, PS, SM
-        if (componentStatus.get("Front-End Service").equals("down")) {
+        if (!cluster.isUp("Front-End Service")) {
             result = "failure";
             message = "Front-End Service is down. System unavailable.";
             path = List.of("Front-End Service");
-        } else if (componentStatus.get("Partition Manager").equals("down")) {
+        } else if (mapUnavailable && !cluster.isUp("Partition Manager")) {
             result = "failure";
-            message = "Partition Manager is down. Leader election in progress...";
+            message = "Cached partition map is stale and the Partition Manager is down. Leader election in progress...";
             path = List.of("Front-End Service", "Partition Manager");
-        } else if (componentStatus.get(partitionServer).equals("down")) {
-            // Try to find another healthy PS
-            String healthyPS = null;
-            for (int i = 1; i <= PARTITION_SERVER_COUNT; i++) {
-                String ps = "Partition Server " + i;
-                if (componentStatus.getOrDefault(ps, "up").equals("up")) {
-                    healthyPS = ps;
-                    break;
-                }
-            }
-            if (healthyPS != null) {
-                partitionServer = healthyPS;
-                message = "Original Partition Server is down. Request served by " + healthyPS + ".";
-                path = List.of("Front-End Service", "Partition Manager", healthyPS, streamManager);
-            } else {
-                result = "failure";
-                message = "All Partition Servers are down. Cannot access file metadata.";
-                path = List.of("Front-End Service", "Partition Manager");
-            }
-        } else if (componentStatus.get(streamManager).equals("down")) {
+        } else if (!cluster.isUp(partitionServer)) {
+            result = "failure";
+            message = "All Partition Servers are down. Cannot access file metadata.";
+            path = routeHops;
+        } else if (!cluster.isUp(streamManager)) {
             result = "failure";
             message = "Stream Manager is down. Cannot locate extent.";
-            path = List.of("Front-End Service", "Partition Manager", partitionServer, streamManager);
+            path = hops(routeHops, partitionServer, streamManager);
+        } else if (routeHops.contains("Partition Manager") && result.equals("success")) {
+            message = "Cached partition map was stale; refreshed from the Partition Manager. " + message;
         }
         Map<String, Object> resp = new HashMap<>();
         resp.put("components", components);
@@ -307,4 +583,40 @@ public class FileController {
         resp.put("message", message);
         return resp;
     }
-} 
\ No newline at end of file
+
+    // The partition map seen from the partition servers' side, immutable
+    private static final class Ownership {
+        static final Ownership EMPTY = new Ownership(new PartitionTable(-1, new ArrayList<>()), new ArrayList<>());
+
+        final long version;
+        final Map<String, String> owners = new HashMap<>();
+        final Map<String, List<String>> filesByServer = new HashMap<>();
+        final Map<String, List<String>> rangesByServer = new HashMap<>();
+
+        Ownership(PartitionTable table, List<String> fileNames) {
+            this.version = table.getVersion();
+            TreeMap<String, PartitionAssignment> ranges = new TreeMap<>();
+            for (PartitionAssignment assignment : table.getAssignments()) {
+                ranges.put(assignment.getRange().getStart(), assignment);
+                rangesByServer.computeIfAbsent(assignment.getServer(), s -> new ArrayList<>())
+                    .add(assignment.getRange().toString());
+            }
+            for (String file : fileNames) {
+                Map.Entry<String, PartitionAssignment> entry = ranges.floorEntry(file);
+                if (entry != null) {
+                    String server = entry.getValue().getServer();
+                    owners.put(file, server);
+                    filesByServer.computeIfAbsent(server, s -> new ArrayList<>()).add(file);
+                }
+            }
+        }
+
+        List<String> filesOf(String server) {
+            return filesByServer.getOrDefault(server, Collections.emptyList());
+        }
+
+        List<String> rangesOf(String server) {
+            return rangesByServer.getOrDefault(server, Collections.emptyList());
+        }
+    }
+}
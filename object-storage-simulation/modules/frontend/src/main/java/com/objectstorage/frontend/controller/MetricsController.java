@@ -0,0 +1,58 @@
+package com.objectstorage.frontend.controller;
+
+import com.objectstorage.common.metrics.MetricsRegistry;
+import com.objectstorage.common.trace.SpanRecord;
+import com.objectstorage.common.trace.Tracer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/metrics")
+@CrossOrigin(origins = "http://localhost:5173")
+public class MetricsController {
+    private final MetricsRegistry metrics;
+    private final Tracer tracer;
+
+    public MetricsController(MetricsRegistry metrics, Tracer tracer) {
+        this.metrics = metrics;
+        this.tracer = tracer;
+    }
+
+    // Per hop and operation: call and error counts, bytes, and percentiles of
+    // service and queue time in microseconds
+    @GetMapping
+    public Map<String, Object> getMetrics() {
+        return metrics.snapshot();
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Void> reset() {
+        metrics.reset();
+        return ResponseEntity.noContent().build();
+    }
+
+    // The spans of one recent request, by the id sent back in X-Trace-Id.
+    // The frontend span of the request only appears once its response is done.
+    @GetMapping("/traces/{traceId}")
+    public ResponseEntity<Map<String, Object>> getTrace(@PathVariable("traceId") String traceId) {
+        List<SpanRecord> spans = tracer.getTrace(traceId);
+        Map<String, Object> result = new HashMap<>();
+        result.put("traceId", traceId);
+        if (spans == null) {
+            result.put("error", "No such trace: " + traceId);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(result);
+        }
+        result.put("spans", spans);
+        return ResponseEntity.ok(result);
+    }
+}
@@ -1,14 +1,483 @@
 package com.objectstorage.frontend.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.objectstorage.common.object.ObjectManifest;
+import com.objectstorage.frontend.cache.CachedObject;
+import com.objectstorage.frontend.cache.ObjectCache;
+import com.objectstorage.frontend.service.MultipartUploads;
+import com.objectstorage.frontend.service.ObjectLister;
+import com.objectstorage.frontend.service.ObjectListing;
+import com.objectstorage.frontend.service.ObjectService;
+import com.objectstorage.frontend.service.PartitionMapCache;
+import com.objectstorage.frontend.service.RpcClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @RestController
+@CrossOrigin(origins = "http://localhost:5173")
 public class ObjectController {
+    public static final int MAX_BATCH_KEYS = 1000;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    // Bodies of one batch GET being read at once
+    private static final int BATCH_READ_AHEAD = 16;
+
+    private final ObjectService objectService;
+    private final ObjectLister objectLister;
+    private final ObjectCache objectCache;
+    private final MultipartUploads multipartUploads;
+    private final RpcClient rpc;
+    private final ObjectMapper objectMapper;
+    private final long maxBatchObjectBytes;
+
+    public ObjectController(ObjectService objectService, ObjectLister objectLister, ObjectCache objectCache,
+                            MultipartUploads multipartUploads, RpcClient rpc, ObjectMapper objectMapper,
+                            @Value("${objectstorage.batch.max-object-bytes:1048576}") long maxBatchObjectBytes) {
+        this.objectService = objectService;
+        this.objectLister = objectLister;
+        this.objectCache = objectCache;
+        this.multipartUploads = multipartUploads;
+        this.rpc = rpc;
+        this.objectMapper = objectMapper;
+        this.maxBatchObjectBytes = maxBatchObjectBytes;
+    }
+
     @GetMapping("/get-object/{objectId}")
     public String getObject(@PathVariable String objectId) {
         // For now, just return a simple message
         return "Frontend received GET for object: " + objectId;
     }
-} 
\ No newline at end of file
+
+    // PUT /objects/{key} with the object body streamed as-is
+    @PutMapping("/objects/{*key}")
+    public ResponseEntity<Map<String, Object>> putObject(@PathVariable("key") String key, InputStream body) throws IOException {
+        key = stripSlash(key);
+        if (key.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Object key is required"));
+        }
+        ObjectManifest manifest = objectService.put(key, body, objectService.placementFor(key));
+        Map<String, Object> result = new HashMap<>();
+        result.put("key", manifest.getKey());
+        result.put("size", manifest.getSize());
+        result.put("etag", manifest.getEtag());
+        result.put("chunks", manifest.getChunks().size());
+        return ResponseEntity.ok().eTag(manifest.getEtag()).body(result);
+    }
+
+    // POST /objects/{key}?uploads starts a multipart upload
+    @PostMapping(value = "/objects/{*key}", params = "uploads")
+    public ResponseEntity<Map<String, Object>> initiateUpload(@PathVariable("key") String key) {
+        key = stripSlash(key);
+        if (key.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Object key is required"));
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("key", key);
+        result.put("uploadId", multipartUploads.initiate(key));
+        return ResponseEntity.ok(result);
+    }
+
+    // PUT /objects/{key}?uploadId=&partNumber= with the part body streamed as-is
+    @PutMapping(value = "/objects/{*key}", params = {"uploadId", "partNumber"})
+    public ResponseEntity<Map<String, Object>> uploadPart(@PathVariable("key") String key,
+                                                          @RequestParam("uploadId") String uploadId,
+                                                          @RequestParam("partNumber") int partNumber,
+                                                          InputStream body) throws IOException {
+        MultipartUploads.Part part = multipartUploads.uploadPart(uploadId, stripSlash(key), partNumber, body);
+        if (part == null) {
+            return noSuchUpload(uploadId);
+        }
+        return ResponseEntity.ok().eTag(part.getEtag()).body(partInfo(part));
+    }
+
+    // GET /objects/{key}?uploadId= lists the parts uploaded so far
+    @GetMapping(value = "/objects/{*key}", params = "uploadId")
+    public ResponseEntity<Map<String, Object>> listParts(@PathVariable("key") String key,
+                                                         @RequestParam("uploadId") String uploadId) {
+        List<MultipartUploads.Part> parts = multipartUploads.listParts(uploadId, stripSlash(key));
+        if (parts == null) {
+            return noSuchUpload(uploadId);
+        }
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (MultipartUploads.Part part : parts) {
+            entries.add(partInfo(part));
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("key", stripSlash(key));
+        result.put("uploadId", uploadId);
+        result.put("parts", entries);
+        return ResponseEntity.ok(result);
+    }
+
+    // POST /objects/{key}?uploadId= with {"parts": [{"partNumber": 1, "etag": "..."}, ...]}
+    // composes the object from its parts; without a body every uploaded part is used
+    @PostMapping(value = "/objects/{*key}", params = "uploadId")
+    public ResponseEntity<Map<String, Object>> completeUpload(@PathVariable("key") String key,
+                                                              @RequestParam("uploadId") String uploadId,
+                                                              @RequestBody(required = false) Map<String, List<Map<String, Object>>> body)
+            throws IOException {
+        List<Map<String, Object>> parts = body == null ? null : body.get("parts");
+        ObjectManifest manifest = multipartUploads.complete(uploadId, stripSlash(key), parts);
+        if (manifest == null) {
+            return noSuchUpload(uploadId);
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("key", manifest.getKey());
+        result.put("size", manifest.getSize());
+        result.put("etag", manifest.getEtag());
+        result.put("chunks", manifest.getChunks().size());
+        return ResponseEntity.ok().eTag(manifest.getEtag()).body(result);
+    }
+
+    // DELETE /objects/{key}?uploadId= abandons an upload and its parts
+    @DeleteMapping(value = "/objects/{*key}", params = "uploadId")
+    public ResponseEntity<Map<String, Object>> abortUpload(@PathVariable("key") String key,
+                                                           @RequestParam("uploadId") String uploadId) {
+        if (!multipartUploads.abort(uploadId, stripSlash(key))) {
+            return noSuchUpload(uploadId);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    private static Map<String, Object> partInfo(MultipartUploads.Part part) {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("partNumber", part.getPartNumber());
+        info.put("size", part.getSize());
+        info.put("etag", part.getEtag());
+        return info;
+    }
+
+    private static ResponseEntity<Map<String, Object>> noSuchUpload(String uploadId) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("error", "No such upload: " + uploadId);
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(result);
+    }
+
+    // GET /objects?prefix=&delimiter=&max-keys=&continuation-token= lists keys in order, a page at a time
+    @GetMapping("/objects")
+    public Map<String, Object> listObjects(@RequestParam(value = "prefix", defaultValue = "") String prefix,
+                                           @RequestParam(value = "delimiter", defaultValue = "") String delimiter,
+                                           @RequestParam(value = "max-keys", defaultValue = "1000") int maxKeys,
+                                           @RequestParam(value = "continuation-token", required = false) String token)
+            throws IOException {
+        ObjectListing listing = objectLister.list(prefix, delimiter, maxKeys, token);
+        List<Map<String, Object>> contents = new ArrayList<>();
+        for (ObjectManifest manifest : listing.getContents()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("key", manifest.getKey());
+            entry.put("size", manifest.getSize());
+            entry.put("etag", manifest.getEtag());
+            entry.put("lastModified", manifest.getLastModified());
+            contents.add(entry);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("prefix", prefix);
+        result.put("delimiter", delimiter);
+        result.put("maxKeys", Math.min(maxKeys, ObjectLister.MAX_KEYS));
+        result.put("keyCount", contents.size() + listing.getCommonPrefixes().size());
+        result.put("isTruncated", listing.isTruncated());
+        result.put("contents", contents);
+        result.put("commonPrefixes", listing.getCommonPrefixes());
+        if (listing.getNextContinuationToken() != null) {
+            result.put("nextContinuationToken", listing.getNextContinuationToken());
+        }
+        return result;
+    }
+
+    // GET /objects/{key} streams the object body back chunk by chunk; small
+    // objects are served from and loaded into the frontend cache. A single
+    // Range: bytes=a-b is answered with just those bytes, read from the chunks
+    // covering them.
+    @GetMapping("/objects/{*key}")
+    public ResponseEntity<StreamingResponseBody> getObjectBody(@PathVariable("key") String key,
+                                                               @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader)
+            throws IOException {
+        key = stripSlash(key);
+        HttpRange range = parseRange(rangeHeader);
+        CachedObject cached = objectCache.get(key);
+        if (cached != null) {
+            ObjectManifest manifest = cached.getManifest();
+            if (range == null) {
+                return objectResponse(manifest, bodyOf(cached.getBody()));
+            }
+            return rangeResponse(manifest, range, (offset, length) -> {
+                ByteBuffer slice = cached.getBody();
+                slice.position((int) offset).limit((int) (offset + length));
+                return bodyOf(slice);
+            });
+        }
+        long ticket = objectCache.ticket(key);
+        ObjectManifest manifest = objectService.get(key);
+        if (manifest == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        if (range != null) {
+            return rangeResponse(manifest, range,
+                (offset, length) -> out -> objectService.writeTo(manifest, offset, length, out));
+        }
+        if (objectCache.admits(manifest.getSize())) {
+            byte[] data = objectService.readAll(manifest);
+            objectCache.put(manifest, data, ticket);
+            return objectResponse(manifest, bodyOf(ByteBuffer.wrap(data)));
+        }
+        return objectResponse(manifest, out -> objectService.writeTo(manifest, out));
+    }
+
+    // POST /objects:batchHead with {"keys": [...]} returns the metadata of up
+    // to MAX_BATCH_KEYS objects, looked up with one call per partition server
+    @PostMapping("/objects:batchHead")
+    public Map<String, Object> batchHead(@RequestBody Map<String, Object> body) throws IOException {
+        List<String> keys = batchKeys(body);
+        PartitionMapCache.BatchRoute<ObjectManifest> manifests = objectService.getAll(keys);
+        List<Map<String, Object>> objects = new ArrayList<>();
+        List<Map<String, Object>> errors = new ArrayList<>();
+        for (String key : keys) {
+            ObjectManifest manifest = manifests.getResults().get(key);
+            if (manifest != null) {
+                objects.add(headInfo(manifest));
+            } else {
+                errors.add(batchError(key, manifests.getErrors().getOrDefault(key, "NoSuchKey")));
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("objects", objects);
+        result.put("errors", errors);
+        return result;
+    }
+
+    // POST /objects:batchDelete with {"keys": [...]} deletes up to
+    // MAX_BATCH_KEYS objects. As in S3, a key that did not exist counts as
+    // deleted; only keys no partition server could act on are errors.
+    @PostMapping("/objects:batchDelete")
+    public Map<String, Object> batchDelete(@RequestBody Map<String, Object> body) throws IOException {
+        List<String> keys = batchKeys(body);
+        PartitionMapCache.BatchRoute<Boolean> deletions = objectService.deleteAll(keys);
+        List<String> deleted = new ArrayList<>();
+        List<Map<String, Object>> errors = new ArrayList<>();
+        for (String key : keys) {
+            if (deletions.getResults().containsKey(key)) {
+                deleted.add(key);
+            } else {
+                errors.add(batchError(key, deletions.getErrors().get(key)));
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("deleted", deleted);
+        result.put("errors", errors);
+        return result;
+    }
+
+    // POST /objects:batchGet with {"keys": [...]} streams up to MAX_BATCH_KEYS
+    // small objects back as newline-delimited JSON, one line per key in request
+    // order: its metadata and base64 body, or an error. Manifests are fetched
+    // with one call per partition server, then bodies are read a few at a time
+    // concurrently, from the cache where possible, and each line is written as
+    // soon as its body is in.
+    @PostMapping("/objects:batchGet")
+    public ResponseEntity<StreamingResponseBody> batchGet(@RequestBody Map<String, Object> body) throws IOException {
+        List<String> keys = batchKeys(body);
+        Map<String, CachedObject> cached = new HashMap<>();
+        Map<String, Long> tickets = new HashMap<>();
+        List<String> uncached = new ArrayList<>();
+        for (String key : keys) {
+            CachedObject hit = objectCache.get(key);
+            if (hit != null) {
+                cached.put(key, hit);
+            } else {
+                tickets.put(key, objectCache.ticket(key));
+                uncached.add(key);
+            }
+        }
+        PartitionMapCache.BatchRoute<ObjectManifest> manifests = objectService.getAll(uncached);
+        StreamingResponseBody stream = out -> {
+            Deque<RpcClient.Subtask<Map<String, Object>>> ahead = new ArrayDeque<>();
+            try (RpcClient.Scope scope = rpc.open()) {
+                int next = 0;
+                while (next < keys.size() || !ahead.isEmpty()) {
+                    while (next < keys.size() && ahead.size() < BATCH_READ_AHEAD) {
+                        String key = keys.get(next++);
+                        ahead.add(scope.fork(() -> batchEntry(key, cached.get(key), manifests, tickets.get(key))));
+                    }
+                    out.write(objectMapper.writeValueAsBytes(ahead.poll().get()));
+                    out.write('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(stream);
+    }
+
+    // One line of a batch GET. A body that cannot be read becomes an error line
+    // rather than cutting the stream short for every other key.
+    private Map<String, Object> batchEntry(String key, CachedObject cached,
+                                           PartitionMapCache.BatchRoute<ObjectManifest> manifests, Long ticket) {
+        if (cached != null) {
+            Map<String, Object> entry = headInfo(cached.getManifest());
+            ByteBuffer data = cached.getBody();
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            entry.put("body", bytes);
+            return entry;
+        }
+        ObjectManifest manifest = manifests.getResults().get(key);
+        if (manifest == null) {
+            return batchError(key, manifests.getErrors().getOrDefault(key, "NoSuchKey"));
+        }
+        if (manifest.getSize() > maxBatchObjectBytes) {
+            return batchError(key, "Object is larger than " + maxBatchObjectBytes
+                + " bytes; use GET /objects/" + key);
+        }
+        Map<String, Object> entry = headInfo(manifest);
+        try {
+            byte[] data = objectService.readAll(manifest);
+            objectCache.put(manifest, data, ticket);
+            entry.put("body", data);
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            return batchError(key, e.getMessage());
+        }
+    }
+
+    private static List<String> batchKeys(Map<String, Object> body) {
+        Object keys = body == null ? null : body.get("keys");
+        if (!(keys instanceof List) || ((List<?>) keys).isEmpty()) {
+            throw new IllegalArgumentException("Request needs a non-empty list of keys");
+        }
+        List<?> list = (List<?>) keys;
+        if (list.size() > MAX_BATCH_KEYS) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_KEYS + " keys per batch");
+        }
+        List<String> result = new ArrayList<>(list.size());
+        for (Object key : list) {
+            if (!(key instanceof String) || ((String) key).isEmpty()) {
+                throw new IllegalArgumentException("Every key must be a non-empty string");
+            }
+            result.add((String) key);
+        }
+        return result;
+    }
+
+    private static Map<String, Object> headInfo(ObjectManifest manifest) {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("key", manifest.getKey());
+        info.put("size", manifest.getSize());
+        info.put("etag", manifest.getEtag());
+        info.put("lastModified", manifest.getLastModified());
+        return info;
+    }
+
+    private static Map<String, Object> batchError(String key, String error) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("key", key);
+        entry.put("error", error);
+        return entry;
+    }
+
+    // GET /cache reports hit ratio, byte usage and evictions of the object cache
+    @GetMapping("/cache")
+    public Map<String, Object> getCacheStats() {
+        return objectCache.getStats();
+    }
+
+    private static ResponseEntity<StreamingResponseBody> objectResponse(ObjectManifest manifest,
+                                                                        StreamingResponseBody body) {
+        return ResponseEntity.ok()
+            .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .contentLength(manifest.getSize())
+            .eTag(manifest.getEtag())
+            .lastModified(manifest.getLastModified())
+            .body(body);
+    }
+
+    private interface RangeBody {
+        StreamingResponseBody of(long offset, long length);
+    }
+
+    private static ResponseEntity<StreamingResponseBody> rangeResponse(ObjectManifest manifest, HttpRange range,
+                                                                       RangeBody body) {
+        long size = manifest.getSize();
+        long start = -1;
+        long end = -1;
+        try {
+            start = range.getRangeStart(size);
+            end = range.getRangeEnd(size);
+        } catch (IllegalArgumentException e) {
+            // Reported below as not satisfiable
+        }
+        if (start < 0 || start > end) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                .build();
+        }
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+            .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+            .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size)
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .contentLength(end - start + 1)
+            .eTag(manifest.getEtag())
+            .lastModified(manifest.getLastModified())
+            .body(body.of(start, end - start + 1));
+    }
+
+    // The requested range, or null to send the whole body. Like S3, a header
+    // that does not parse or asks for several ranges is ignored.
+    private static HttpRange parseRange(String header) {
+        if (header == null) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static StreamingResponseBody bodyOf(ByteBuffer data) {
+        return out -> {
+            WritableByteChannel target = Channels.newChannel(out);
+            while (data.hasRemaining()) {
+                target.write(data);
+            }
+        };
+    }
+
+    private static String stripSlash(String key) {
+        return key.startsWith("/") ? key.substring(1) : key;
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> badRequest(IllegalArgumentException e) {
+        Map<String, String> result = new HashMap<>();
+        result.put("error", e.getMessage());
+        return ResponseEntity.badRequest().body(result);
+    }
+}
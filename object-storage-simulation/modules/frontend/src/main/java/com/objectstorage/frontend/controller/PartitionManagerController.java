@@ -1,5 +1,9 @@
 package com.objectstorage.frontend.controller;
 
+import com.objectstorage.common.trace.Span;
+import com.objectstorage.common.trace.Tracer;
+import com.objectstorage.partitionmanager.partition.Partition;
+import com.objectstorage.partitionmanager.partition.PartitionMap;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -13,6 +17,14 @@ import java.util.Map;
 @RequestMapping("/partition-manager")
 @CrossOrigin(origins = "http://localhost:5173")
 public class PartitionManagerController {
+    private final PartitionMap partitionMap;
+    private final Tracer tracer;
+
+    public PartitionManagerController(PartitionMap partitionMap, Tracer tracer) {
+        this.partitionMap = partitionMap;
+        this.tracer = tracer;
+    }
+
     @GetMapping("/health")
     public String health() {
         return "Partition Manager is up";
@@ -20,10 +32,23 @@ public class PartitionManagerController {
 
     // GET /partition-for-key?key=...
     @GetMapping("/partition-for-key")
-    public ResponseEntity<Map<String, String>> getPartitionForKey(@RequestParam("key") String key) {
-        Map<String, String> result = new HashMap<>();
-        result.put("partitionServer", "Partition Server 1");
-        result.put("key", key != null ? key : "none");
+    public ResponseEntity<Map<String, Object>> getPartitionForKey(@RequestParam("key") String key) {
+        Map<String, Object> result = new HashMap<>();
+        Partition partition;
+        try (Span span = tracer.start(Tracer.PARTITION_MANAGER, "route")) {
+            // Only a leader holding its lease answers, from its own copy of the map
+            if (!partitionMap.isReadable()) {
+                span.fail("No Partition Manager leader");
+                result.put("error", "No Partition Manager leader; leader election in progress");
+                return ResponseEntity.status(503).body(result);
+            }
+            partition = partitionMap.route(key);
+        }
+        result.put("partitionServer", partition.getServer());
+        result.put("partitionId", partition.getId());
+        result.put("range", partition.getRange().toString());
+        result.put("version", partitionMap.getVersion());
+        result.put("key", key);
         return ResponseEntity.ok(result);
     }
     // TODO: Add endpoints for partition assignment, status, etc.
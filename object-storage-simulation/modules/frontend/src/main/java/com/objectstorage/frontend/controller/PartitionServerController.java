@@ -1,32 +1,77 @@
 package com.objectstorage.frontend.controller;
 
+import com.objectstorage.common.object.ObjectManifest;
+import com.objectstorage.common.trace.Span;
+import com.objectstorage.common.trace.Tracer;
+import com.objectstorage.frontend.service.ObjectService;
+import com.objectstorage.frontend.service.PartitionServerRegistry;
+import com.objectstorage.partitionserver.server.NotOwnerException;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/partition-server")
 @CrossOrigin(origins = "http://localhost:5173")
 public class PartitionServerController {
+    private final PartitionServerRegistry partitionServers;
+    private final ObjectService objectService;
+    private final Tracer tracer;
+
+    public PartitionServerController(PartitionServerRegistry partitionServers, ObjectService objectService,
+                                     Tracer tracer) {
+        this.partitionServers = partitionServers;
+        this.objectService = objectService;
+        this.tracer = tracer;
+    }
+
     @GetMapping("/health")
     public String health() {
         return "Partition Server is up";
     }
 
-    // GET /file/{filename}
+    // GET /file/{filename}?server=...
     @GetMapping("/file/{filename}")
-    public ResponseEntity<Map<String, String>> getFile(@PathVariable("filename") String filename) {
-        // Dummy logic: always return some file metadata
+    public ResponseEntity<Map<String, String>> getFile(@PathVariable("filename") String filename,
+                                                       @RequestParam(value = "server", required = false) String server) throws IOException {
         Map<String, String> result = new HashMap<>();
         result.put("filename", filename);
-        result.put("primaryExtentNode", "Extent Node 1");
-        result.put("secondaryExtentNode1", "Extent Node 2");
-        result.put("secondaryExtentNode2", "Extent Node 3");
+        ObjectManifest manifest;
+        if (server != null) {
+            // The named server only answers for keys in the ranges it owns
+            try (Span span = tracer.start(Tracer.PARTITION_SERVER, "getObject").component(server)) {
+                manifest = partitionServers.get(server).getObject(filename);
+            } catch (NotOwnerException e) {
+                result.put("error", "Not owner");
+                result.put("message", e.getMessage());
+                result.put("version", String.valueOf(e.getMapVersion()));
+                return ResponseEntity.status(409).body(result);
+            }
+            result.put("partitionServer", server);
+        } else {
+            manifest = objectService.get(filename);
+        }
+        if (manifest == null) {
+            result.put("error", "File not found");
+            return ResponseEntity.status(404).body(result);
+        }
+        // Replica order in the manifest is primary first
+        List<String> nodes = manifest.getChunks().isEmpty() ? new ArrayList<>()
+            : new ArrayList<>(manifest.getChunks().get(0).getReplicas().keySet());
+        for (int i = 0; i < nodes.size(); i++) {
+            result.put(i == 0 ? "primaryExtentNode" : "secondaryExtentNode" + i, nodes.get(i));
+        }
+        result.put("size", String.valueOf(manifest.getSize()));
+        result.put("etag", manifest.getEtag());
         return ResponseEntity.ok(result);
     }
     // TODO: Add endpoints for file storage, status, etc.
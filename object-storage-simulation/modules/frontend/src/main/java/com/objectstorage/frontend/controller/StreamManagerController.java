@@ -1,33 +1,125 @@
 package com.objectstorage.frontend.controller;
 
+import com.objectstorage.common.trace.Span;
+import com.objectstorage.common.trace.Tracer;
+import com.objectstorage.frontend.service.ClusterSnapshot;
+import com.objectstorage.frontend.service.ClusterState;
+import com.objectstorage.frontend.service.ReplicaSelector;
+import com.objectstorage.streammanager.gc.ExtentCompactor;
+import com.objectstorage.streammanager.scrub.ExtentScrubber;
+import com.objectstorage.streammanager.stream.ExtentInfo;
+import com.objectstorage.streammanager.stream.StreamManager;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 @RestController
 @RequestMapping("/stream-manager")
 @CrossOrigin(origins = "http://localhost:5173")
 public class StreamManagerController {
+    private final ClusterState clusterState;
+    private final ReplicaSelector replicaSelector;
+    private final StreamManager streamManager;
+    private final ExtentCompactor extentCompactor;
+    private final ExtentScrubber extentScrubber;
+    private final Tracer tracer;
+
+    public StreamManagerController(ClusterState clusterState, ReplicaSelector replicaSelector,
+                                   StreamManager streamManager, ExtentCompactor extentCompactor,
+                                   ExtentScrubber extentScrubber, Tracer tracer) {
+        this.tracer = tracer;
+        this.clusterState = clusterState;
+        this.replicaSelector = replicaSelector;
+        this.streamManager = streamManager;
+        this.extentCompactor = extentCompactor;
+        this.extentScrubber = extentScrubber;
+    }
+
+    // Every extent with its replicas and, once sealed, how much of it is live
+    @GetMapping("/extents")
+    public List<Map<String, Object>> getExtents() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (ExtentInfo extent : streamManager.getExtents()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", extent.getId());
+            entry.put("replicas", extent.getReplicas());
+            entry.put("sealed", extent.isSealed());
+            entry.put("erasureCoded", extent.isErasureCoded());
+            entry.put("damagedReplicas", extent.getDamagedReplicas());
+            entry.put("liveBytes", extent.getLiveBytes());
+            if (extent.isSealed()) {
+                entry.put("length", extent.getSealedLength());
+                entry.put("liveRatio", StreamManager.liveRatio(extent));
+            }
+            result.add(entry);
+        }
+        return result;
+    }
+
+    // Runs a compaction round now instead of waiting for the scheduler
+    @PostMapping("/compact")
+    public Map<String, Object> compact() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("changes", extentCompactor.compact());
+        return result;
+    }
+
+    // Starts a scrub round now instead of waiting for the scheduler. A round is
+    // held to the scrub byte rate and can take minutes, so it runs in the
+    // background and what it finds shows up under /integrity.
+    @PostMapping("/scrub")
+    public ResponseEntity<Map<String, Object>> scrub() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("started", extentScrubber.requestScrub());
+        result.put("integrity", "/stream-manager/integrity");
+        return ResponseEntity.accepted().body(result);
+    }
+
+    // Blocks waiting to be repaired and what the scrubber found and fixed lately
+    @GetMapping("/integrity")
+    public Map<String, Object> integrity() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("pendingRepairs", extentScrubber.getPendingRepairs());
+        result.put("recent", extentScrubber.getRecentEvents());
+        return result;
+    }
+
     @PostMapping("/get-file")
     public ResponseEntity<Map<String, String>> getFile(@RequestBody Map<String, Object> body) {
         String filename = Objects.toString(body.get("filename"), "");
-        List<String> extents = com.objectstorage.frontend.controller.FileController.fileToExtentNodes.getOrDefault(filename, List.of());
-        String foundNode = null;
-        for (String node : extents) {
-            if ("up".equals(com.objectstorage.frontend.controller.FileController.componentStatus.getOrDefault(node, "up"))) {
-                foundNode = node;
-                break;
+        ClusterSnapshot cluster = clusterState.snapshot();
+        // Any live replica can serve the read, not just the primary, but one
+        // holding a damaged block of the file only if no other is live
+        String foundNode;
+        Set<String> damaged = damagedReplicas(filename);
+        try (Span span = tracer.start(Tracer.STREAM_MANAGER, "chooseReplica")) {
+            List<String> intact = new ArrayList<>(cluster.getExtentNodes(filename));
+            intact.removeAll(damaged);
+            foundNode = replicaSelector.choose(intact, cluster);
+            if (foundNode == null) {
+                foundNode = replicaSelector.choose(cluster.getExtentNodes(filename), cluster);
+            }
+            if (foundNode == null) {
+                span.fail("All extent nodes are down");
             }
         }
         Map<String, String> result = new HashMap<>();
         result.put("filename", filename);
+        if (!damaged.isEmpty()) {
+            result.put("awaitingRepair", String.join(", ", damaged));
+        }
         if (foundNode != null) {
             result.put("extentNodeId", foundNode);
             return ResponseEntity.ok(result);
@@ -36,5 +128,16 @@ public class StreamManagerController {
             return ResponseEntity.status(503).body(result);
         }
     }
+    // Nodes whose replica of an extent holding part of the file has a block
+    // waiting to be repaired
+    private Set<String> damagedReplicas(String filename) {
+        Set<String> damaged = new TreeSet<>();
+        for (ExtentInfo extent : streamManager.getExtents()) {
+            if (extent.isReferencedBy(filename)) {
+                damaged.addAll(extent.getDamagedReplicas());
+            }
+        }
+        return damaged;
+    }
     // TODO: Add endpoints for stream management, status, etc.
 } 
\ No newline at end of file
@@ -0,0 +1,115 @@
+package com.objectstorage.frontend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Pushes cluster changes to dashboards over server-sent events, so they need
+// not poll. A new subscriber first gets a snapshot of everything, then one
+// event per change. Events carry the new values of what changed rather than
+// deltas, so an event that raced with the snapshot and is applied twice does
+// no harm.
+//
+// Every event is serialised once however many dashboards are connected, and
+// events go out from a single thread in the order they were published; a
+// client that cannot be written to is dropped. A periodic comment line keeps
+// idle connections open through proxies and finds clients that went away.
+@Component
+public class ClusterEvents {
+    private final ObjectMapper objectMapper;
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService sender = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cluster-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Only touched on the sender thread
+    private long lastId;
+
+    public ClusterEvents(ObjectMapper objectMapper,
+                         @Value("${objectstorage.events.heartbeat-ms:15000}") long heartbeatMillis) {
+        this.objectMapper = objectMapper;
+        sender.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Opens a stream that starts with the snapshot supplier's view of the
+    // cluster. The snapshot is taken on the sender thread, so no event
+    // published before it can arrive after it.
+    public SseEmitter subscribe(Supplier<Object> snapshot) {
+        SseEmitter emitter = new SseEmitter(0L);
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(e -> subscribers.remove(emitter));
+        sender.execute(() -> {
+            try {
+                emitter.send(SseEmitter.event().name("snapshot").id(String.valueOf(lastId))
+                    .data(toJson(snapshot.get())));
+                subscribers.add(emitter);
+            } catch (IOException | RuntimeException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    public void publish(String name, Object data) {
+        sender.execute(() -> {
+            String json;
+            try {
+                json = toJson(data);
+            } catch (RuntimeException e) {
+                return;
+            }
+            String id = String.valueOf(++lastId);
+            for (SseEmitter emitter : subscribers) {
+                send(emitter, SseEmitter.event().name(name).id(id).data(json));
+            }
+        });
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void heartbeat() {
+        for (SseEmitter emitter : subscribers) {
+            send(emitter, SseEmitter.event().comment("heartbeat"));
+        }
+    }
+
+    private void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | RuntimeException e) {
+            subscribers.remove(emitter);
+            emitter.completeWithError(e);
+        }
+    }
+
+    private String toJson(Object data) {
+        try {
+            return objectMapper.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialise event", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        sender.shutdownNow();
+        for (SseEmitter emitter : subscribers) {
+            emitter.complete();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.objectstorage.frontend.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// One immutable version of the simulated cluster's topology: the status of
+// every component and the extent nodes each demo file was written to. Changes
+// produce a new snapshot with the next version and leave this one untouched,
+// so a request can read a consistent view without any locking.
+public final class ClusterSnapshot {
+    public static final String UP = "up";
+    public static final String DOWN = "down";
+
+    static final ClusterSnapshot EMPTY = new ClusterSnapshot(0,
+        Collections.<String, String>emptyMap(), Collections.<String, List<String>>emptyMap());
+
+    private final long version;
+    private final Map<String, String> componentStatus;
+    private final Map<String, List<String>> fileToExtentNodes;
+
+    private ClusterSnapshot(long version, Map<String, String> componentStatus,
+                            Map<String, List<String>> fileToExtentNodes) {
+        this.version = version;
+        this.componentStatus = componentStatus;
+        this.fileToExtentNodes = fileToExtentNodes;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean hasComponent(String name) {
+        return componentStatus.containsKey(name);
+    }
+
+    // Components nobody has reported on count as up
+    public String getStatus(String name) {
+        String status = componentStatus.get(name);
+        return status != null ? status : UP;
+    }
+
+    public boolean isUp(String name) {
+        return UP.equals(getStatus(name));
+    }
+
+    // Every component's status, in the order the components were registered
+    public Map<String, String> getComponentStatus() {
+        return componentStatus;
+    }
+
+    public List<String> getExtentNodes(String file) {
+        List<String> nodes = fileToExtentNodes.get(file);
+        return nodes != null ? nodes : Collections.<String>emptyList();
+    }
+
+    ClusterSnapshot withComponents(List<String> components) {
+        Map<String, String> status = new LinkedHashMap<>();
+        for (String name : components) {
+            status.put(name, UP);
+        }
+        return new ClusterSnapshot(version + 1, Collections.unmodifiableMap(status),
+            Collections.<String, List<String>>emptyMap());
+    }
+
+    ClusterSnapshot withStatus(String name, String status) {
+        if (!componentStatus.containsKey(name) || componentStatus.get(name).equals(status)) {
+            return this;
+        }
+        Map<String, String> copy = new LinkedHashMap<>(componentStatus);
+        copy.put(name, status);
+        return new ClusterSnapshot(version + 1, Collections.unmodifiableMap(copy), fileToExtentNodes);
+    }
+
+    ClusterSnapshot withExtentNodes(String file, List<String> nodes) {
+        Map<String, List<String>> copy = new LinkedHashMap<>(fileToExtentNodes);
+        copy.put(file, Collections.unmodifiableList(new ArrayList<>(nodes)));
+        return new ClusterSnapshot(version + 1, componentStatus, Collections.unmodifiableMap(copy));
+    }
+}
@@ -0,0 +1,89 @@
+package com.objectstorage.frontend.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+// The simulated cluster's topology, published as immutable snapshots through a
+// single atomic reference. Reads on the request path are a single volatile
+// load and never wait; the rare topology changes copy the snapshot and swap it
+// in with compare-and-set, retrying if another change got there first.
+@Component
+public class ClusterState {
+    private final AtomicReference<ClusterSnapshot> current = new AtomicReference<>(ClusterSnapshot.EMPTY);
+    private final List<ClusterStateListener> listeners = new CopyOnWriteArrayList<>();
+    // Last snapshot handed to listeners; guarded by listeners
+    private ClusterSnapshot delivered = ClusterSnapshot.EMPTY;
+
+    public ClusterSnapshot snapshot() {
+        return current.get();
+    }
+
+    public boolean isUp(String component) {
+        return current.get().isUp(component);
+    }
+
+    public void subscribe(ClusterStateListener listener) {
+        listeners.add(listener);
+    }
+
+    // Registers the components, all up, and forgets everything else
+    public ClusterSnapshot reset(List<String> components) {
+        return update(snapshot -> snapshot.withComponents(components));
+    }
+
+    public ClusterSnapshot setStatus(String component, String status) {
+        return update(snapshot -> snapshot.withStatus(component, status));
+    }
+
+    // Moves a component from expected to status; false if it was not in expected.
+    // Lets exactly one of several racing requests act on a transition.
+    public boolean compareAndSetStatus(String component, String expected, String status) {
+        while (true) {
+            ClusterSnapshot previous = current.get();
+            if (!previous.hasComponent(component) || !previous.getStatus(component).equals(expected)) {
+                return false;
+            }
+            ClusterSnapshot next = previous.withStatus(component, status);
+            if (current.compareAndSet(previous, next)) {
+                publish();
+                return true;
+            }
+        }
+    }
+
+    public ClusterSnapshot setExtentNodes(String file, List<String> nodes) {
+        return update(snapshot -> snapshot.withExtentNodes(file, nodes));
+    }
+
+    private ClusterSnapshot update(UnaryOperator<ClusterSnapshot> change) {
+        while (true) {
+            ClusterSnapshot previous = current.get();
+            ClusterSnapshot next = change.apply(previous);
+            if (next == previous) {
+                return previous;
+            }
+            if (current.compareAndSet(previous, next)) {
+                publish();
+                return next;
+            }
+        }
+    }
+
+    private void publish() {
+        synchronized (listeners) {
+            ClusterSnapshot latest = current.get();
+            if (latest.getVersion() <= delivered.getVersion()) {
+                return;
+            }
+            ClusterSnapshot previous = delivered;
+            delivered = latest;
+            for (ClusterStateListener listener : listeners) {
+                listener.clusterStateChanged(previous, latest);
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.objectstorage.frontend.service;
+
+// Told about every published change to the cluster state, in version order.
+// Changes published while a listener is still running may arrive merged into
+// one call, so listeners should diff previous against current.
+public interface ClusterStateListener {
+    void clusterStateChanged(ClusterSnapshot previous, ClusterSnapshot current);
+}
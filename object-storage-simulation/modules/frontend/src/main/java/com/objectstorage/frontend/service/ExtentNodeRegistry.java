@@ -0,0 +1,87 @@
+package com.objectstorage.frontend.service;
+
+import com.objectstorage.extentnode.storage.Extent;
+import com.objectstorage.extentnode.storage.ExtentStore;
+import com.objectstorage.extentnode.storage.Fragment;
+import com.objectstorage.streammanager.stream.StreamManager;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Owns the on-disk extent store of every simulated extent node, each in its own
+// directory under the simulation's data root. The stream manager keeps its
+// extent metadata only in memory, so on startup every store is opened and the
+// replicated extents found in them are registered with it again, sealed at the
+// length all their replicas hold. Extents left only as erasure-coded fragments
+// are not restored, but their ids are never reused.
+@Component
+public class ExtentNodeRegistry {
+    private final Path root;
+    private final long maxExtentSize;
+    private final boolean syncWrites;
+    private final Map<String, ExtentStore> stores = new ConcurrentHashMap<>();
+
+    public ExtentNodeRegistry(Path dataRoot, StreamManager streamManager,
+                              @Value("${objectstorage.max-extent-size:" + ExtentStore.DEFAULT_MAX_EXTENT_SIZE + "}") long maxExtentSize,
+                              @Value("${objectstorage.sync-writes:false}") boolean syncWrites) {
+        this.root = dataRoot;
+        this.maxExtentSize = maxExtentSize;
+        this.syncWrites = syncWrites;
+        restore(streamManager);
+    }
+
+    private void restore(StreamManager streamManager) {
+        Map<Long, List<String>> replicas = new TreeMap<>();
+        Map<Long, Long> lengths = new TreeMap<>();
+        for (String node : streamManager.getNodes()) {
+            ExtentStore store = get(node);
+            for (Extent extent : store.getExtents()) {
+                replicas.computeIfAbsent(extent.getId(), id -> new ArrayList<>()).add(node);
+                lengths.merge(extent.getId(), extent.getSize(), Math::min);
+            }
+            for (Fragment fragment : store.getFragments()) {
+                streamManager.reserveExtentId(fragment.getExtentId());
+            }
+        }
+        for (Map.Entry<Long, List<String>> extent : replicas.entrySet()) {
+            streamManager.restoreExtent(extent.getKey(), extent.getValue(), lengths.get(extent.getKey()));
+        }
+    }
+
+    public ExtentStore get(String extentNode) {
+        return stores.computeIfAbsent(extentNode, name -> {
+            Path dir = root.resolve(name.toLowerCase(Locale.ROOT).replace(' ', '-'));
+            try {
+                return new ExtentStore(dir, maxExtentSize, syncWrites);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open extent store for " + name, e);
+            }
+        });
+    }
+
+    public long getMaxExtentSize() {
+        return maxExtentSize;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        for (ExtentStore store : stores.values()) {
+            store.close();
+        }
+        stores.clear();
+    }
+}
@@ -0,0 +1,293 @@
+package com.objectstorage.frontend.service;
+
+import com.objectstorage.common.object.ObjectChunk;
+import com.objectstorage.common.object.ObjectManifest;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// S3-style multipart uploads. Parts are uploaded independently, concurrently
+// if the client likes, and each part is written through the replica chain of
+// its own placement, so the parts of one upload spread over different extent
+// nodes. Completing an upload commits a manifest that lists the parts' chunks
+// in order: the object is composed from the blocks already on disk and no
+// data is copied. Uploads left neither completed nor aborted are dropped once
+// they expire. Until then the extents holding their parts are pinned, so
+// compaction does not reclaim blocks no manifest refers to yet.
+@Service
+public class MultipartUploads {
+    public static final int MAX_PART_NUMBER = 10000;
+
+    private final ObjectService objectService;
+    private final ConcurrentMap<String, Upload> uploads = new ConcurrentHashMap<>();
+    private final long expireAfterMillis;
+    private final long sweepIntervalMillis;
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "multipart-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MultipartUploads(ObjectService objectService,
+                            @Value("${objectstorage.multipart.expire-after-ms:86400000}") long expireAfterMillis,
+                            @Value("${objectstorage.multipart.sweep-interval-ms:60000}") long sweepIntervalMillis) {
+        this.objectService = objectService;
+        this.expireAfterMillis = expireAfterMillis;
+        this.sweepIntervalMillis = sweepIntervalMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        sweeper.scheduleWithFixedDelay(this::expireStale, sweepIntervalMillis, sweepIntervalMillis,
+            TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    public String initiate(String key) {
+        String uploadId = UUID.randomUUID().toString().replace("-", "");
+        uploads.put(uploadId, new Upload(key, System.currentTimeMillis()));
+        return uploadId;
+    }
+
+    // Stores one part, replacing any earlier part with the same number; null if
+    // there is no such upload in progress for key
+    public Part uploadPart(String uploadId, String key, int partNumber, InputStream body) throws IOException {
+        if (partNumber < 1 || partNumber > MAX_PART_NUMBER) {
+            throw new IllegalArgumentException("Part number must be between 1 and " + MAX_PART_NUMBER);
+        }
+        Upload upload = find(uploadId, key);
+        if (upload == null) {
+            return null;
+        }
+        StoredBody stored = objectService.store(body, objectService.placementFor(uploadId + "/" + partNumber));
+        Part part = new Part(partNumber, stored);
+        Part replaced;
+        synchronized (upload) {
+            if (upload.closed) {
+                replaced = part;
+                part = null;
+            } else {
+                replaced = upload.parts.put(partNumber, part);
+            }
+        }
+        if (replaced != null) {
+            objectService.release(replaced.body);
+        }
+        return part;
+    }
+
+    // The parts uploaded so far, in part number order; null if there is no such upload
+    public List<Part> listParts(String uploadId, String key) {
+        Upload upload = find(uploadId, key);
+        if (upload == null) {
+            return null;
+        }
+        synchronized (upload) {
+            return new ArrayList<>(upload.parts.values());
+        }
+    }
+
+    // Commits the object made of the given parts, which must have been uploaded
+    // and be listed in ascending order with their ETags. With no list, every
+    // uploaded part is used. Null if there is no such upload.
+    public ObjectManifest complete(String uploadId, String key, List<Map<String, Object>> requested)
+            throws IOException {
+        Upload upload = find(uploadId, key);
+        if (upload == null) {
+            return null;
+        }
+        List<Part> parts;
+        synchronized (upload) {
+            if (upload.closed) {
+                return null;
+            }
+            parts = select(upload.parts, requested);
+            upload.closed = true;
+        }
+        List<ObjectChunk> chunks = new ArrayList<>();
+        MessageDigest etags = ObjectService.newMd5();
+        long size = 0;
+        for (Part part : parts) {
+            for (ObjectChunk chunk : part.body.getChunks()) {
+                chunks.add(new ObjectChunk(size + chunk.getObjectOffset(), chunk.getLength(), chunk.getReplicas()));
+            }
+            size += part.body.getSize();
+            etags.update(hexToBytes(part.getEtag()));
+        }
+        // Same form as S3: the MD5 of the parts' MD5s and the part count
+        String etag = ObjectService.toHex(etags.digest()) + "-" + parts.size();
+        ObjectManifest manifest = new ObjectManifest(key, size, etag, System.currentTimeMillis(), chunks);
+        try {
+            objectService.commit(manifest);
+        } catch (IOException | RuntimeException e) {
+            // Let the client retry the completion
+            synchronized (upload) {
+                upload.closed = false;
+            }
+            throw e;
+        }
+        uploads.remove(uploadId, upload);
+        // The manifest now keeps the chosen parts' blocks live
+        unpinParts(upload);
+        return manifest;
+    }
+
+    // Returns false if there is no such upload
+    public boolean abort(String uploadId, String key) {
+        Upload upload = find(uploadId, key);
+        if (upload == null) {
+            return false;
+        }
+        synchronized (upload) {
+            // Too late once a completion has started
+            if (upload.closed) {
+                return false;
+            }
+            upload.closed = true;
+        }
+        unpinParts(upload);
+        return uploads.remove(uploadId, upload);
+    }
+
+    // Drops uploads started longer than the expiry ago. Their parts stay in
+    // their extents as unreferenced blocks until the extents are compacted.
+    public List<String> expireStale() {
+        List<String> changes = new ArrayList<>();
+        long cutoff = System.currentTimeMillis() - expireAfterMillis;
+        Iterator<Map.Entry<String, Upload>> it = uploads.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Upload> entry = it.next();
+            Upload upload = entry.getValue();
+            int partCount;
+            synchronized (upload) {
+                if (upload.closed || upload.initiated > cutoff) {
+                    continue;
+                }
+                upload.closed = true;
+                partCount = upload.parts.size();
+            }
+            it.remove();
+            unpinParts(upload);
+            changes.add("Expired upload " + entry.getKey() + " of " + upload.key
+                + " with " + partCount + " parts");
+        }
+        return changes;
+    }
+
+    // Only called once the upload is closed, so its parts no longer change
+    private void unpinParts(Upload upload) {
+        List<Part> parts;
+        synchronized (upload) {
+            parts = new ArrayList<>(upload.parts.values());
+        }
+        for (Part part : parts) {
+            objectService.release(part.body);
+        }
+    }
+
+    private Upload find(String uploadId, String key) {
+        Upload upload = uploads.get(uploadId);
+        return upload != null && upload.key.equals(key) ? upload : null;
+    }
+
+    private static List<Part> select(NavigableMap<Integer, Part> uploaded, List<Map<String, Object>> requested) {
+        if (requested == null || requested.isEmpty()) {
+            if (uploaded.isEmpty()) {
+                throw new IllegalArgumentException("Upload has no parts");
+            }
+            return new ArrayList<>(uploaded.values());
+        }
+        List<Part> parts = new ArrayList<>();
+        int previous = 0;
+        for (Map<String, Object> entry : requested) {
+            Object number = entry.get("partNumber");
+            if (!(number instanceof Number)) {
+                throw new IllegalArgumentException("Every part needs a partNumber");
+            }
+            int partNumber = ((Number) number).intValue();
+            if (partNumber <= previous) {
+                throw new IllegalArgumentException("Parts must be listed in ascending order");
+            }
+            previous = partNumber;
+            Part part = uploaded.get(partNumber);
+            if (part == null) {
+                throw new IllegalArgumentException("Part " + partNumber + " was not uploaded");
+            }
+            Object etag = entry.get("etag");
+            if (etag != null && !stripQuotes(etag.toString()).equals(part.getEtag())) {
+                throw new IllegalArgumentException("ETag of part " + partNumber + " does not match");
+            }
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    private static String stripQuotes(String etag) {
+        return etag.length() >= 2 && etag.startsWith("\"") && etag.endsWith("\"")
+            ? etag.substring(1, etag.length() - 1) : etag;
+    }
+
+    private static byte[] hexToBytes(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    public static final class Part {
+        private final int partNumber;
+        private final StoredBody body;
+
+        Part(int partNumber, StoredBody body) {
+            this.partNumber = partNumber;
+            this.body = body;
+        }
+
+        public int getPartNumber() {
+            return partNumber;
+        }
+
+        public long getSize() {
+            return body.getSize();
+        }
+
+        public String getEtag() {
+            return body.getMd5();
+        }
+    }
+
+    private static final class Upload {
+        final String key;
+        final long initiated;
+        // Guarded by this Upload
+        final NavigableMap<Integer, Part> parts = new TreeMap<>();
+        boolean closed;
+
+        Upload(String key, long initiated) {
+            this.key = key;
+            this.initiated = initiated;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.objectstorage.frontend.service;
+
+import com.objectstorage.common.object.ObjectManifest;
+import com.objectstorage.common.partition.KeyRange;
+import com.objectstorage.common.trace.Span;
+import com.objectstorage.common.trace.Tracer;
+import com.objectstorage.partitionserver.server.PartitionServer;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Prefix listing over the whole key space. Every partition server pages through
+// its own sorted index for the ranges it owns and the pages are merged in key
+// order, so a listing reads about as many keys as it returns no matter how many
+// objects the bucket holds. Keys rolled up into a common prefix are skipped by
+// seeking past the prefix rather than read and discarded. Whenever several
+// servers need a new page at once they are asked concurrently.
+@Service
+public class ObjectLister {
+    public static final int MAX_KEYS = 1000;
+    // Keys fetched from a partition server per call; small enough that seeking
+    // past a common prefix wastes little, large enough to keep calls few
+    private static final int FETCH_SIZE = 128;
+
+    private final PartitionServerRegistry partitionServers;
+    private final RpcClient rpc;
+    private final Tracer tracer;
+
+    public ObjectLister(PartitionServerRegistry partitionServers, RpcClient rpc, Tracer tracer) {
+        this.partitionServers = partitionServers;
+        this.rpc = rpc;
+        this.tracer = tracer;
+    }
+
+    public ObjectListing list(String prefix, String delimiter, int maxKeys, String continuationToken)
+            throws IOException {
+        if (maxKeys < 0) {
+            throw new IllegalArgumentException("max-keys must not be negative");
+        }
+        maxKeys = Math.min(maxKeys, MAX_KEYS);
+        String start = continuationToken == null ? prefix : decodeToken(continuationToken);
+        if (start.compareTo(prefix) < 0) {
+            throw new IllegalArgumentException("Continuation token does not belong to prefix " + prefix);
+        }
+        if (maxKeys == 0) {
+            // Nothing was asked for, so there is nothing to resume from: a token
+            // here would just be the start key, which is empty for the empty prefix
+            return new ObjectListing(new ArrayList<>(), new ArrayList<>(), false, null);
+        }
+        String end = successor(prefix);
+        int fetchSize = Math.min(maxKeys + 1, FETCH_SIZE);
+
+        PriorityQueue<Source> heap = new PriorityQueue<>(Comparator.comparing(Source::headKey));
+        List<Source> sources = new ArrayList<>();
+        for (PartitionServer server : partitionServers.getAll()) {
+            sources.add(new Source(server, tracer, start, end, fetchSize));
+        }
+        fillAll(sources, heap);
+
+        List<ObjectManifest> contents = new ArrayList<>();
+        List<String> commonPrefixes = new ArrayList<>();
+        String resume = start;
+        while (contents.size() + commonPrefixes.size() < maxKeys && !heap.isEmpty()) {
+            Source top = heap.poll();
+            ObjectManifest manifest = top.take();
+            if (top.fill()) {
+                heap.add(top);
+            }
+            String key = manifest.getKey();
+            int split = delimiter.isEmpty() ? -1 : key.indexOf(delimiter, prefix.length());
+            if (split < 0) {
+                contents.add(manifest);
+                resume = key + '\0';
+                continue;
+            }
+            String commonPrefix = key.substring(0, split + delimiter.length());
+            commonPrefixes.add(commonPrefix);
+            resume = successor(commonPrefix);
+            if (resume == null) {
+                heap.clear();
+            } else {
+                seek(heap, resume);
+            }
+        }
+        boolean truncated = !heap.isEmpty();
+        return new ObjectListing(contents, commonPrefixes, truncated, truncated ? encodeToken(resume) : null);
+    }
+
+    private void seek(PriorityQueue<Source> heap, String from) throws IOException {
+        List<Source> sources = new ArrayList<>(heap);
+        heap.clear();
+        for (Source source : sources) {
+            source.seek(from);
+        }
+        fillAll(sources, heap);
+    }
+
+    // Adds every source that still has keys to heap, fetching pages concurrently
+    private void fillAll(List<Source> sources, PriorityQueue<Source> heap) throws IOException {
+        List<Boolean> filled = rpc.invokeAll(sources, Source::fill);
+        for (int i = 0; i < sources.size(); i++) {
+            if (filled.get(i)) {
+                heap.add(sources.get(i));
+            }
+        }
+    }
+
+    // Smallest string greater than every string starting with prefix, or null
+    // if there is none (the empty prefix covers the whole key space)
+    static String successor(String prefix) {
+        int last = prefix.length() - 1;
+        while (last >= 0 && prefix.charAt(last) == Character.MAX_VALUE) {
+            last--;
+        }
+        if (last < 0) {
+            return null;
+        }
+        return prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+    }
+
+    // Tokens are opaque to clients: the key the next page starts from
+    private static String encodeToken(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeToken(String token) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid continuation token");
+        }
+    }
+
+    // A partition server's objects from a start key onwards, fetched a page at a time
+    private static final class Source {
+        private final PartitionServer server;
+        private final Tracer tracer;
+        private final String end;
+        private final int fetchSize;
+        private final Deque<ObjectManifest> buffer = new ArrayDeque<>();
+        private String from;
+        private boolean exhausted;
+
+        Source(PartitionServer server, Tracer tracer, String from, String end, int fetchSize) {
+            this.server = server;
+            this.tracer = tracer;
+            this.from = from;
+            this.end = end;
+            this.fetchSize = fetchSize;
+        }
+
+        // Makes sure the next key is buffered; false once the server has no more
+        boolean fill() throws IOException {
+            if (!buffer.isEmpty()) {
+                return true;
+            }
+            if (exhausted || (end != null && from.compareTo(end) >= 0)) {
+                return false;
+            }
+            List<ObjectManifest> page;
+            try (Span span = tracer.start(Tracer.PARTITION_SERVER, "listObjects").component(server.getName())) {
+                try {
+                    page = server.listObjects(new KeyRange(from, end), fetchSize);
+                } catch (IOException | RuntimeException e) {
+                    span.fail(e);
+                    throw e;
+                }
+            }
+            buffer.addAll(page);
+            exhausted = page.size() < fetchSize;
+            if (!page.isEmpty()) {
+                from = page.get(page.size() - 1).getKey() + '\0';
+            }
+            return !buffer.isEmpty();
+        }
+
+        String headKey() {
+            return buffer.peekFirst().getKey();
+        }
+
+        ObjectManifest take() {
+            return buffer.pollFirst();
+        }
+
+        void seek(String key) {
+            while (!buffer.isEmpty() && buffer.peekFirst().getKey().compareTo(key) < 0) {
+                buffer.pollFirst();
+            }
+            if (buffer.isEmpty() && from.compareTo(key) < 0) {
+                from = key;
+            }
+        }
+    }
+}
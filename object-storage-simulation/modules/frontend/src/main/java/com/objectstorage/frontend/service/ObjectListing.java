@@ -0,0 +1,39 @@
+package com.objectstorage.frontend.service;
+
+import com.objectstorage.common.object.ObjectManifest;
+
+import java.util.Collections;
+import java.util.List;
+
+// One page of a prefix listing. nextContinuationToken is set only when the
+// listing was truncated.
+public final class ObjectListing {
+    private final List<ObjectManifest> contents;
+    private final List<String> commonPrefixes;
+    private final boolean truncated;
+    private final String nextContinuationToken;
+
+    public ObjectListing(List<ObjectManifest> contents, List<String> commonPrefixes,
+                         boolean truncated, String nextContinuationToken) {
+        this.contents = Collections.unmodifiableList(contents);
+        this.commonPrefixes = Collections.unmodifiableList(commonPrefixes);
+        this.truncated = truncated;
+        this.nextContinuationToken = nextContinuationToken;
+    }
+
+    public List<ObjectManifest> getContents() {
+        return contents;
+    }
+
+    public List<String> getCommonPrefixes() {
+        return commonPrefixes;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public String getNextContinuationToken() {
+        return nextContinuationToken;
+    }
+}
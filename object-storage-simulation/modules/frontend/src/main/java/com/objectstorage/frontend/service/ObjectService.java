@@ -0,0 +1,457 @@
+package com.objectstorage.frontend.service;
+
+import com.objectstorage.common.extent.BlockLocation;
+import com.objectstorage.common.object.ObjectChunk;
+import com.objectstorage.common.object.ObjectManifest;
+import com.objectstorage.common.trace.Span;
+import com.objectstorage.common.trace.Tracer;
+import com.objectstorage.extentnode.replication.ChainReplicator;
+import com.objectstorage.extentnode.storage.ChecksumMismatchException;
+import com.objectstorage.extentnode.storage.Extent;
+import com.objectstorage.partitionserver.server.PartitionServer;
+import com.objectstorage.streammanager.erasure.FragmentReader;
+import com.objectstorage.streammanager.gc.ManifestDirectory;
+import com.objectstorage.streammanager.scrub.ExtentScrubber;
+import com.objectstorage.streammanager.stream.ExtentInfo;
+import com.objectstorage.streammanager.stream.StreamManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Streams object bodies in and out of the simulated extent nodes. A PUT is cut
+// into fixed-size chunks held in pooled direct buffers, and a few chunks at a
+// time travel down the replica chain together, so heap use per request stays
+// constant no matter how large the object is and the PUT pays for roughly one
+// copy rather than three in a row. A GET reads the next few chunks from their
+// extent nodes concurrently, each as a read-only view of the mapped extent
+// file, and writes them to the response in order. Extent nodes verify the
+// blocks they serve; a replica whose copy fails its checksum is handed to the
+// ExtentScrubber for repair and the read moves on to the next replica.
+// Manifests are committed to and read from the partition server owning the key.
+// Every call into another tier is a span of the request's trace.
+@Service
+public class ObjectService implements ManifestDirectory {
+    public static final int REPLICA_COUNT = 3;
+    private static final int BUFFER_POOL_SIZE = 16;
+    // Chunks of one PUT that may be on their way down the replica chain at once
+    private static final int MAX_CHUNKS_IN_FLIGHT = 4;
+
+    private final ExtentNodeRegistry extentNodes;
+    private final PartitionMapCache partitionMapCache;
+    private final PartitionServerRegistry partitionServers;
+    private final StreamManager streamManager;
+    private final ChainReplicator replicator;
+    private final FragmentReader fragmentReader;
+    private final ExtentScrubber scrubber;
+    private final ClusterState clusterState;
+    private final RpcClient rpc;
+    private final ReplicaSelector replicaSelector;
+    private final Tracer tracer;
+    // One stream per preferred replica set
+    private final ConcurrentMap<List<String>, ReplicatedStream> streams = new ConcurrentHashMap<>();
+    private final int chunkSize;
+    private final BlockingQueue<ByteBuffer> bufferPool = new ArrayBlockingQueue<>(BUFFER_POOL_SIZE);
+
+    public ObjectService(ExtentNodeRegistry extentNodes, PartitionMapCache partitionMapCache,
+                         PartitionServerRegistry partitionServers, StreamManager streamManager,
+                         ChainReplicator replicator, FragmentReader fragmentReader, ExtentScrubber scrubber,
+                         ClusterState clusterState, RpcClient rpc, ReplicaSelector replicaSelector, Tracer tracer, @Value("${objectstorage.chunk-size:1048576}") int chunkSize) {
+        this.extentNodes = extentNodes;
+        this.partitionMapCache = partitionMapCache;
+        this.partitionServers = partitionServers;
+        this.streamManager = streamManager;
+        this.replicator = replicator;
+        this.fragmentReader = fragmentReader;
+        this.scrubber = scrubber;
+        this.clusterState = clusterState;
+        this.rpc = rpc;
+        this.replicaSelector = replicaSelector;
+        this.tracer = tracer;
+        // A chunk that does not fit even an empty extent could never be stored
+        if (chunkSize <= 0 || chunkSize + (long) Extent.HEADER_SIZE > extentNodes.getMaxExtentSize()) {
+            throw new IllegalArgumentException("Chunk size " + chunkSize + " does not fit in an extent of "
+                + extentNodes.getMaxExtentSize() + " bytes with its " + Extent.HEADER_SIZE + "-byte block header");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    // Primary plus two secondaries in round-robin order, offset by the key hash
+    public List<String> placementFor(String key) {
+        List<String> all = streamManager.getNodes();
+        int base = (key.hashCode() & Integer.MAX_VALUE) % all.size();
+        List<String> nodes = new ArrayList<>();
+        for (int j = 0; j < REPLICA_COUNT; j++) {
+            nodes.add(all.get((base + j) % all.size()));
+        }
+        return nodes;
+    }
+
+    public ObjectManifest put(String key, InputStream body, List<String> replicas) throws IOException {
+        StoredBody stored = store(body, replicas);
+        try {
+            ObjectManifest manifest = new ObjectManifest(key, stored.getSize(), stored.getMd5(),
+                System.currentTimeMillis(), stored.getChunks());
+            commit(manifest);
+            return manifest;
+        } finally {
+            release(stored);
+        }
+    }
+
+    // Writes body through the replica chain of replicas without making it
+    // visible under any key. The extents of the stored chunks stay pinned
+    // against compaction until the caller calls release, once the chunks are
+    // committed or abandoned.
+    public StoredBody store(InputStream body, List<String> replicas) throws IOException {
+        ReplicatedStream stream = streams.computeIfAbsent(replicas,
+            nodes -> new ReplicatedStream(nodes, streamManager, replicator, tracer));
+        MessageDigest md5 = newMd5();
+        List<ObjectChunk> chunks = new ArrayList<>();
+        Deque<PendingChunk> inFlight = new ArrayDeque<>();
+        ReadableByteChannel src = Channels.newChannel(body);
+        long size = 0;
+        boolean eof = false;
+        boolean stored = false;
+        try {
+            while (!eof) {
+                ByteBuffer buffer = acquireBuffer();
+                try {
+                    eof = fill(src, buffer);
+                } catch (IOException | RuntimeException e) {
+                    releaseBuffer(buffer);
+                    throw e;
+                }
+                buffer.flip();
+                if (!buffer.hasRemaining()) {
+                    releaseBuffer(buffer);
+                    break;
+                }
+                int length = buffer.remaining();
+                md5.update(buffer.duplicate());
+                // The buffer goes back to the pool only once every replica has it
+                CompletableFuture<Map<String, BlockLocation>> replicated = stream.append(buffer);
+                replicated.whenComplete((locations, failure) -> releaseBuffer(buffer));
+                inFlight.add(new PendingChunk(size, length, replicated));
+                size += length;
+                if (inFlight.size() >= MAX_CHUNKS_IN_FLIGHT) {
+                    chunks.add(pin(inFlight.poll().await()));
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                chunks.add(pin(inFlight.poll().await()));
+            }
+            stored = true;
+        } finally {
+            if (!stored) {
+                streamManager.unpin(chunks);
+            }
+        }
+        return new StoredBody(chunks, size, toHex(md5.digest()));
+    }
+
+    // Pinned as soon as it is written, before its extent can have been sealed
+    // long enough to be compacted
+    private ObjectChunk pin(ObjectChunk chunk) {
+        streamManager.pin(Collections.singletonList(chunk));
+        return chunk;
+    }
+
+    public void release(StoredBody stored) {
+        streamManager.unpin(stored.getChunks());
+    }
+
+    // Points key's chunks at the copies compaction made of them, on the
+    // partition server owning the key
+    @Override
+    public boolean relocate(String key, Map<BlockLocation, Map<String, BlockLocation>> moves) throws IOException {
+        return onOwner(key, "relocateChunks", server -> server.relocateChunks(key, moves));
+    }
+
+    // Makes manifest visible on the partition server owning its key
+    public void commit(ObjectManifest manifest) throws IOException {
+        onOwner(manifest.getKey(), "putObject", server -> {
+            server.putObject(manifest);
+            return null;
+        });
+    }
+
+    @Override
+    public ObjectManifest get(String key) throws IOException {
+        return onOwner(key, "getObject", server -> server.getObject(key));
+    }
+
+    // Manifests of many keys with one call per owning partition server; keys
+    // without an object map to null
+    public PartitionMapCache.BatchRoute<ObjectManifest> getAll(Collection<String> keys) throws IOException {
+        return partitionMapCache.routeAll(keys,
+            (name, group) -> onServer(name, "getObjects", server -> server.getObjects(group)));
+    }
+
+    // Deletes many keys with one call per owning partition server; maps each
+    // key to whether it existed
+    public PartitionMapCache.BatchRoute<Boolean> deleteAll(Collection<String> keys) throws IOException {
+        return partitionMapCache.routeAll(keys,
+            (name, group) -> onServer(name, "deleteObjects", server -> server.deleteObjects(group)));
+    }
+
+    private interface ServerCall<T> {
+        T apply(PartitionServer server) throws IOException;
+    }
+
+    // Runs call on the partition server owning key, routed by the cached map
+    private <T> T onOwner(String key, String operation, ServerCall<T> call) throws IOException {
+        try {
+            return partitionMapCache.route(key, assignment -> {
+                try {
+                    return onServer(assignment.getServer(), operation, call);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).getResult();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private <T> T onServer(String name, String operation, ServerCall<T> call) throws IOException {
+        try (Span span = tracer.start(Tracer.PARTITION_SERVER, operation).component(name)) {
+            try {
+                return call.apply(partitionServers.get(name));
+            } catch (IOException | RuntimeException e) {
+                span.fail(e);
+                throw e;
+            }
+        }
+    }
+
+    // Writes the whole body to out
+    public void writeTo(ObjectManifest manifest, OutputStream out) throws IOException {
+        writeTo(manifest, 0, manifest.getSize(), out);
+    }
+
+    // Writes bytes [offset, offset + length) of the body to out, reading only
+    // the chunks that cover them and only the covered part of the first and
+    // last. Up to MAX_CHUNKS_IN_FLIGHT chunks are read ahead concurrently; a
+    // chunk that cannot be read cancels the ones behind it, and reads already
+    // under way stop before asking another extent node.
+    public void writeTo(ObjectManifest manifest, long offset, long length, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        List<ObjectChunk> chunks = manifest.chunksCovering(offset, length);
+        long end = offset + length;
+        Deque<RpcClient.Subtask<ByteBuffer>> ahead = new ArrayDeque<>();
+        try (RpcClient.Scope scope = rpc.open()) {
+            int next = 0;
+            while (next < chunks.size() || !ahead.isEmpty()) {
+                while (next < chunks.size() && ahead.size() < MAX_CHUNKS_IN_FLIGHT) {
+                    ObjectChunk chunk = chunks.get(next++);
+                    long from = Math.max(offset, chunk.getObjectOffset()) - chunk.getObjectOffset();
+                    long to = Math.min(end, chunk.getObjectOffset() + chunk.getLength()) - chunk.getObjectOffset();
+                    ahead.add(scope.fork(() -> readChunk(scope, manifest, chunk, (int) from, (int) (to - from))));
+                }
+                ByteBuffer data = ahead.poll().get();
+                while (data.hasRemaining()) {
+                    target.write(data);
+                }
+            }
+        }
+    }
+
+    // The whole body in one array, for objects small enough to cache
+    public byte[] readAll(ObjectManifest manifest) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) manifest.getSize());
+        writeTo(manifest, out);
+        return out.toByteArray();
+    }
+
+    // length bytes from position from of the chunk, read from its live
+    // replicas, or from its fragments once its extent has been erasure coded.
+    // The replica is picked by ReplicaSelector and a second one is asked too
+    // if the first is slower than usual or fails, e.g. on a checksum mismatch.
+    // Replicas with a block awaiting repair are only asked after the others.
+    private ByteBuffer readChunk(RpcClient.Scope scope, ObjectManifest manifest, ObjectChunk chunk, int from,
+                                 int length) throws IOException {
+        // Every replica holds the chunk at the same place in the same extent
+        BlockLocation location = chunk.getReplicas().values().iterator().next();
+        ExtentInfo extent = locate(location);
+        scope.checkNotFailed();
+        if (extent.isErasureCoded()) {
+            return readFragments(extent, location.getOffset() + from, length);
+        }
+        List<String> live = new ArrayList<>();
+        for (String node : chunk.getReplicas().keySet()) {
+            if (clusterState.isUp(node)) {
+                live.add(node);
+            }
+        }
+        if (live.isEmpty()) {
+            throw new IOException("All extent nodes holding " + manifest.getKey()
+                + " at offset " + chunk.getObjectOffset() + " are down");
+        }
+        List<String> ranked = replicaSelector.rank(live);
+        ranked.sort(Comparator.comparing(extent::isDamaged));
+        return rpc.firstOf(scope, ranked, replicaSelector.getHedgeDelayNanos(),
+            node -> replicaSelector.read(node, () -> readExtent(node, "read", length, () -> extentNodes.get(node).read(
+                location.getExtentId(), chunk.getReplicas().get(node).getOffset() + from, length))));
+    }
+
+    // The chunk's block as stored on node, rebuilt from fragments if the extent
+    // has been erasure coded since. If node's copy fails its checksum the
+    // chunk's other live replicas are tried in turn.
+    public ServedBlock readBlock(String node, ObjectChunk chunk) throws IOException {
+        BlockLocation location = chunk.getReplicas().get(node);
+        ExtentInfo extent = locate(location);
+        if (extent.isErasureCoded()) {
+            return new ServedBlock(readFragments(extent, location.getOffset(), location.getLength()), node,
+                Collections.<String>emptyList());
+        }
+        List<String> others = new ArrayList<>();
+        for (String other : chunk.getReplicas().keySet()) {
+            if (!other.equals(node) && clusterState.isUp(other)) {
+                others.add(other);
+            }
+        }
+        List<String> candidates = new ArrayList<>();
+        candidates.add(node);
+        candidates.addAll(replicaSelector.rank(others));
+        List<String> damaged = new ArrayList<>();
+        ChecksumMismatchException mismatch = null;
+        for (String candidate : candidates) {
+            BlockLocation replica = chunk.getReplicas().get(candidate);
+            try {
+                ByteBuffer data = readExtent(candidate, "read", replica.getLength(),
+                    () -> extentNodes.get(candidate).read(replica));
+                return new ServedBlock(data, candidate, damaged);
+            } catch (ChecksumMismatchException e) {
+                damaged.add(candidate);
+                mismatch = e;
+            }
+        }
+        throw mismatch;
+    }
+
+    // The stream manager's record of the extent holding location
+    private ExtentInfo locate(BlockLocation location) {
+        try (Span span = tracer.start(Tracer.STREAM_MANAGER, "getExtent")) {
+            try {
+                ExtentInfo extent = streamManager.getExtent(location.getExtentId());
+                streamManager.recordRead(extent.getId());
+                return extent;
+            } catch (RuntimeException e) {
+                span.fail(e);
+                throw e;
+            }
+        }
+    }
+
+    private interface ExtentRead {
+        ByteBuffer read() throws IOException;
+    }
+
+    private ByteBuffer readExtent(String node, String operation, long length, ExtentRead read) throws IOException {
+        try (Span span = tracer.start(Tracer.EXTENT_NODE, operation).component(node)) {
+            try {
+                ByteBuffer data = read.read();
+                span.addBytes(length);
+                return data;
+            } catch (ChecksumMismatchException e) {
+                span.fail(e);
+                // The caller moves on to another replica; this one is rewritten from a good copy
+                scrubber.queueRepair(node, e.getExtentId(), e.getBlock());
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                span.fail(e);
+                throw e;
+            }
+        }
+    }
+
+    // The fragment nodes are read inside FragmentReader, so the whole rebuild
+    // is one extent node span
+    private ByteBuffer readFragments(ExtentInfo extent, long offset, int length) throws IOException {
+        return readExtent(null, "readFragments", length, () -> fragmentReader.read(extent, offset, length));
+    }
+
+    // Reads until buffer is full; returns true if the body ended first
+    private static boolean fill(ReadableByteChannel src, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (src.read(buffer) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        return buffer != null ? buffer.clear() : ByteBuffer.allocateDirect(chunkSize);
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        bufferPool.offer(buffer);
+    }
+
+    private static final class PendingChunk {
+        final long objectOffset;
+        final int length;
+        final CompletableFuture<Map<String, BlockLocation>> replicated;
+
+        PendingChunk(long objectOffset, int length, CompletableFuture<Map<String, BlockLocation>> replicated) {
+            this.objectOffset = objectOffset;
+            this.length = length;
+            this.replicated = replicated;
+        }
+
+        ObjectChunk await() throws IOException {
+            try {
+                return new ObjectChunk(objectOffset, length, replicated.join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) cause).getCause();
+                }
+                throw new IOException("Replicated append failed: " + cause.getMessage(), cause);
+            }
+        }
+    }
+
+    static MessageDigest newMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
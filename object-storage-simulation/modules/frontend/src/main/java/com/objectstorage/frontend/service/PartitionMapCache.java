@@ -0,0 +1,250 @@
+package com.objectstorage.frontend.service;
+
+import com.objectstorage.common.partition.PartitionAssignment;
+import com.objectstorage.common.partition.PartitionTable;
+import com.objectstorage.common.trace.Span;
+import com.objectstorage.common.trace.Tracer;
+import com.objectstorage.partitionmanager.partition.PartitionMap;
+import com.objectstorage.partitionserver.server.NotOwnerException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// The front-end's own copy of the partition map. Keys are routed from this
+// copy, so the partition manager is only contacted when a partition server
+// rejects a request as "not owner" and the copy has to be refreshed.
+@Component
+public class PartitionMapCache {
+    private static final int MAX_ROUTING_ATTEMPTS = 3;
+
+    private final PartitionMap partitionMap;
+    private final ClusterState clusterState;
+    private final Tracer tracer;
+    private final RpcClient rpc;
+    private final AtomicLong refreshes = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    public PartitionMapCache(PartitionMap partitionMap, ClusterState clusterState, Tracer tracer, RpcClient rpc) {
+        this.partitionMap = partitionMap;
+        this.clusterState = clusterState;
+        this.tracer = tracer;
+        this.rpc = rpc;
+        this.snapshot = load();
+    }
+
+    // Result of routing a key: the server that accepted it and whether the
+    // partition manager had to be consulted to get there
+    public static final class Route<T> {
+        private final PartitionAssignment assignment;
+        private final long version;
+        private final boolean refreshed;
+        private final T result;
+
+        Route(PartitionAssignment assignment, long version, boolean refreshed, T result) {
+            this.assignment = assignment;
+            this.version = version;
+            this.refreshed = refreshed;
+            this.result = result;
+        }
+
+        public PartitionAssignment getAssignment() {
+            return assignment;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public boolean isRefreshed() {
+            return refreshed;
+        }
+
+        public T getResult() {
+            return result;
+        }
+    }
+
+    // Result of routing a batch of keys: the answer for every key some server
+    // accepted, and why each of the others could not be served
+    public static final class BatchRoute<T> {
+        private final Map<String, T> results;
+        private final Map<String, String> errors;
+        private final boolean refreshed;
+
+        BatchRoute(Map<String, T> results, Map<String, String> errors, boolean refreshed) {
+            this.results = results;
+            this.errors = errors;
+            this.refreshed = refreshed;
+        }
+
+        // May map a key to null, e.g. a key without an object
+        public Map<String, T> getResults() {
+            return results;
+        }
+
+        public Map<String, String> getErrors() {
+            return errors;
+        }
+
+        public boolean isRefreshed() {
+            return refreshed;
+        }
+    }
+
+    // One call to a partition server for a group of keys. The answer leaves out
+    // the keys the server does not own.
+    public interface BatchCall<T> {
+        Map<String, T> apply(String server, List<String> keys) throws IOException;
+    }
+
+    public PartitionAssignment lookup(String key) {
+        return snapshot.ranges.floorEntry(key).getValue();
+    }
+
+    public long getVersion() {
+        return snapshot.version;
+    }
+
+    public long getRefreshCount() {
+        return refreshes.get();
+    }
+
+    // Sends call to the partition server the cached map names for key. When that
+    // server answers "not owner", or cannot be reached at all, the map is
+    // refreshed from the partition manager and the call retried on the new owner.
+    public <T> Route<T> route(String key, Function<PartitionAssignment, T> call) {
+        boolean refreshed = false;
+        for (int attempt = 1; ; attempt++) {
+            Snapshot current = snapshot;
+            PartitionAssignment assignment = current.ranges.floorEntry(key).getValue();
+            boolean last = attempt >= MAX_ROUTING_ATTEMPTS;
+            if (clusterState.isUp(assignment.getServer()) || last) {
+                try {
+                    return new Route<>(assignment, current.version, refreshed, call.apply(assignment));
+                } catch (NotOwnerException e) {
+                    if (last) {
+                        throw e;
+                    }
+                }
+            }
+            refresh(current.version);
+            refreshed = true;
+        }
+    }
+
+    // route for many keys at once: the keys are grouped by the partition server
+    // the cached map names for them and every server gets one call, all of them
+    // concurrently, each answer merged in as it arrives. Keys a server leaves out
+    // of its answer, or whose server is down, are routed again after a refresh
+    // like in route. A server whose call fails fails only its own keys.
+    public <T> BatchRoute<T> routeAll(Collection<String> keys, BatchCall<T> call) throws IOException {
+        Map<String, T> results = Collections.synchronizedMap(new HashMap<String, T>());
+        Map<String, String> errors = new ConcurrentHashMap<>();
+        boolean refreshed = false;
+        List<String> pending = new ArrayList<>(new LinkedHashSet<>(keys));
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            Snapshot current = snapshot;
+            boolean last = attempt >= MAX_ROUTING_ATTEMPTS;
+            Map<String, List<String>> groups = new LinkedHashMap<>();
+            List<String> retry = new ArrayList<>();
+            for (String key : pending) {
+                String server = current.ranges.floorEntry(key).getValue().getServer();
+                if (clusterState.isUp(server) || last) {
+                    groups.computeIfAbsent(server, s -> new ArrayList<>()).add(key);
+                } else {
+                    retry.add(key);
+                }
+            }
+            List<List<String>> rejected = rpc.invokeAll(new ArrayList<>(groups.entrySet()), group -> {
+                List<String> left = new ArrayList<>();
+                try {
+                    Map<String, T> answer = call.apply(group.getKey(), group.getValue());
+                    for (String key : group.getValue()) {
+                        if (answer.containsKey(key)) {
+                            results.put(key, answer.get(key));
+                        } else {
+                            left.add(key);
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    String error = group.getKey() + " failed: " + e.getMessage();
+                    for (String key : group.getValue()) {
+                        errors.put(key, error);
+                    }
+                }
+                return left;
+            });
+            for (List<String> left : rejected) {
+                retry.addAll(left);
+            }
+            if (retry.isEmpty()) {
+                break;
+            }
+            String failure = last ? "No partition server accepted the key" : null;
+            if (failure == null) {
+                try {
+                    refresh(current.version);
+                    refreshed = true;
+                } catch (IllegalStateException e) {
+                    failure = e.getMessage();
+                }
+            }
+            if (failure != null) {
+                for (String key : retry) {
+                    errors.put(key, failure);
+                }
+                break;
+            }
+            pending = retry;
+        }
+        return new BatchRoute<>(results, errors, refreshed);
+    }
+
+    // Reloads the map unless another request already replaced staleVersion
+    public synchronized void refresh(long staleVersion) {
+        if (snapshot.version != staleVersion) {
+            return;
+        }
+        try (Span span = tracer.start(Tracer.PARTITION_MANAGER, "getPartitionMap")) {
+            // Answered by the leader from its own copy while it holds the lease
+            if (!clusterState.isUp("Partition Manager") || !partitionMap.isReadable()) {
+                span.fail("Partition Manager is down");
+                throw new IllegalStateException("Partition Manager is down; cannot refresh the partition map");
+            }
+            snapshot = load();
+        }
+    }
+
+    private Snapshot load() {
+        refreshes.incrementAndGet();
+        PartitionTable table = partitionMap.snapshot();
+        NavigableMap<String, PartitionAssignment> ranges = new TreeMap<>();
+        for (PartitionAssignment assignment : table.getAssignments()) {
+            ranges.put(assignment.getRange().getStart(), assignment);
+        }
+        return new Snapshot(table.getVersion(), ranges);
+    }
+
+    private static final class Snapshot {
+        final long version;
+        final NavigableMap<String, PartitionAssignment> ranges;
+
+        Snapshot(long version, NavigableMap<String, PartitionAssignment> ranges) {
+            this.version = version;
+            this.ranges = ranges;
+        }
+    }
+}
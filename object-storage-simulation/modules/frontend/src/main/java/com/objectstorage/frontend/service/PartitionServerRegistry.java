@@ -0,0 +1,95 @@
+package com.objectstorage.frontend.service;
+
+import com.objectstorage.common.object.ObjectManifest;
+import com.objectstorage.common.partition.KeyRange;
+import com.objectstorage.partitionmanager.partition.PartitionMap;
+import com.objectstorage.partitionserver.config.PartitionServerConfig;
+import com.objectstorage.partitionserver.metadata.MetadataStore;
+import com.objectstorage.partitionserver.server.PartitionServer;
+import com.objectstorage.streammanager.stream.StreamManager;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// The simulated partition servers, each with its own metadata store under the
+// data root. The partition manager pushes every new partition table to all of
+// them, which is how each server learns the key ranges it owns without anyone
+// asking the partition manager per request; ranges that change hands take
+// their metadata along. Every manifest change is reported to the stream
+// manager so it can count the live bytes of each extent, and the manifests
+// already stored when the cluster starts are counted the same way.
+@Component
+public class PartitionServerRegistry {
+    private static final int RECOUNT_PAGE = 1000;
+
+    private final Map<String, PartitionServer> servers = new LinkedHashMap<>();
+
+    // extentNodes is only taken so that the extents on disk are registered with
+    // the stream manager before the stored manifests are counted against them
+    public PartitionServerRegistry(PartitionMap partitionMap, StreamManager streamManager,
+            ExtentNodeRegistry extentNodes, Path dataRoot,
+            @Value("${objectstorage.memtable-flush-bytes:" + PartitionServerConfig.DEFAULT_MEMTABLE_FLUSH_BYTES + "}") long flushBytes,
+            @Value("${objectstorage.compaction-trigger:" + PartitionServerConfig.DEFAULT_COMPACTION_TRIGGER + "}") int compactionTrigger,
+            @Value("${objectstorage.sync-writes:false}") boolean syncWrites) throws IOException {
+        for (String name : partitionMap.getServers()) {
+            Path dir = dataRoot.resolve(name.toLowerCase(Locale.ROOT).replace(' ', '-'));
+            MetadataStore store = new MetadataStore(dir, flushBytes, compactionTrigger, syncWrites);
+            PartitionServer server = new PartitionServer(name, store, partitionMap::route);
+            server.addListener(streamManager::updateReferences);
+            servers.put(name, server);
+        }
+        partitionMap.addListener(table -> {
+            try {
+                PartitionServer.reassign(servers.values(), table);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to move metadata for partition map version " + table.getVersion(), e);
+            }
+        });
+        for (PartitionServer server : servers.values()) {
+            server.assign(partitionMap.snapshot());
+            recountReferences(server, streamManager);
+        }
+    }
+
+    private static void recountReferences(PartitionServer server, StreamManager streamManager) throws IOException {
+        String from = "";
+        while (true) {
+            List<ObjectManifest> page = server.listObjects(new KeyRange(from, null), RECOUNT_PAGE);
+            for (ObjectManifest manifest : page) {
+                streamManager.updateReferences(manifest.getKey(), null, manifest);
+            }
+            if (page.size() < RECOUNT_PAGE) {
+                return;
+            }
+            from = page.get(page.size() - 1).getKey() + '\0';
+        }
+    }
+
+    public PartitionServer get(String name) {
+        PartitionServer server = servers.get(name);
+        if (server == null) {
+            throw new IllegalArgumentException("Unknown partition server " + name);
+        }
+        return server;
+    }
+
+    public Collection<PartitionServer> getAll() {
+        return servers.values();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        for (PartitionServer server : servers.values()) {
+            server.getStore().close();
+        }
+    }
+}
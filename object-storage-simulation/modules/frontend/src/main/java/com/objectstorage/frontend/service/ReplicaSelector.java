@@ -0,0 +1,130 @@
+package com.objectstorage.frontend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Decides which replica serves a read. Every extent node has an EWMA of its
+// read latency and a count of reads in flight; a read goes to the better of
+// two randomly drawn replicas (power of two choices), which spreads hot
+// objects over all their replicas while steering clear of slow or busy nodes.
+// The hedge delay, after which a second replica is asked as well, tracks the
+// p95 of recent read latencies.
+@Component
+public class ReplicaSelector {
+    private static final double ALPHA = 0.2;
+    private static final int SAMPLES = 512;
+    // Recompute the p95 once per this many reads
+    private static final int RECOMPUTE_EVERY = 64;
+    // Failed reads count as this slow so the node is avoided for a while
+    private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ConcurrentMap<String, NodeStats> stats = new ConcurrentHashMap<>();
+    private final long minHedgeDelayNanos;
+    // Recent latencies across all nodes; guarded by this
+    private final long[] samples = new long[SAMPLES];
+    private long sampleCount;
+    private volatile long hedgeDelayNanos;
+
+    public ReplicaSelector(@Value("${objectstorage.read.min-hedge-delay-us:200}") long minHedgeDelayMicros,
+                           @Value("${objectstorage.read.initial-hedge-delay-ms:10}") long initialHedgeDelayMillis) {
+        this.minHedgeDelayNanos = TimeUnit.MICROSECONDS.toNanos(minHedgeDelayMicros);
+        this.hedgeDelayNanos = Math.max(minHedgeDelayNanos, TimeUnit.MILLISECONDS.toNanos(initialHedgeDelayMillis));
+    }
+
+    // nodes in the order they should be tried: the power-of-two pick first,
+    // then the rest from best to worst score
+    public List<String> rank(Collection<String> nodes) {
+        List<String> ranked = new ArrayList<>(nodes);
+        if (ranked.size() < 2) {
+            return ranked;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = random.nextInt(ranked.size());
+        int b = random.nextInt(ranked.size() - 1);
+        if (b >= a) {
+            b++;
+        }
+        String first = score(ranked.get(a)) <= score(ranked.get(b)) ? ranked.get(a) : ranked.get(b);
+        ranked.remove(first);
+        ranked.sort(Comparator.comparingDouble(this::score));
+        ranked.add(0, first);
+        return ranked;
+    }
+
+    // The replica a read of a file held on nodes should go to, or null if none is up
+    public String choose(Collection<String> nodes, ClusterSnapshot cluster) {
+        List<String> live = new ArrayList<>();
+        for (String node : nodes) {
+            if (cluster.isUp(node)) {
+                live.add(node);
+            }
+        }
+        return live.isEmpty() ? null : rank(live).get(0);
+    }
+
+    public long getHedgeDelayNanos() {
+        return hedgeDelayNanos;
+    }
+
+    // Runs a read against node, recording its latency and whether it failed
+    public <R> R read(String node, RpcClient.Call<R> call) throws IOException {
+        NodeStats nodeStats = stats.computeIfAbsent(node, n -> new NodeStats());
+        nodeStats.inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            R result = call.call();
+            ok = true;
+            return result;
+        } finally {
+            nodeStats.inFlight.decrementAndGet();
+            long elapsed = System.nanoTime() - start;
+            if (ok) {
+                nodeStats.record(elapsed);
+                recordSample(elapsed);
+            } else {
+                nodeStats.record(Math.max(elapsed, FAILURE_PENALTY_NANOS));
+            }
+        }
+    }
+
+    private double score(String node) {
+        NodeStats s = stats.get(node);
+        // Unmeasured nodes look fast so they get tried
+        return s == null ? 0 : s.ewmaNanos * (s.inFlight.get() + 1);
+    }
+
+    private synchronized void recordSample(long nanos) {
+        samples[(int) (sampleCount % SAMPLES)] = nanos;
+        sampleCount++;
+        if (sampleCount % RECOMPUTE_EVERY == 0) {
+            long[] sorted = Arrays.copyOf(samples, (int) Math.min(sampleCount, SAMPLES));
+            Arrays.sort(sorted);
+            hedgeDelayNanos = Math.max(minHedgeDelayNanos, sorted[(int) (sorted.length * 0.95)]);
+        }
+    }
+
+    private static final class NodeStats {
+        final AtomicInteger inFlight = new AtomicInteger();
+        // Written under the lock of this NodeStats
+        volatile double ewmaNanos;
+        boolean measured;
+
+        synchronized void record(long nanos) {
+            ewmaNanos = measured ? ALPHA * nanos + (1 - ALPHA) * ewmaNanos : nanos;
+            measured = true;
+        }
+    }
+}
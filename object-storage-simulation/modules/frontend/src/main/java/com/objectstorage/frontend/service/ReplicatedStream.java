@@ -0,0 +1,117 @@
+package com.objectstorage.frontend.service;
+
+import com.objectstorage.common.extent.BlockLocation;
+import com.objectstorage.common.trace.Span;
+import com.objectstorage.common.trace.Tracer;
+import com.objectstorage.extentnode.replication.ChainReplicator;
+import com.objectstorage.streammanager.stream.ExtentInfo;
+import com.objectstorage.streammanager.stream.StreamManager;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// The write side of one stream: blocks are appended through the replica chain
+// of the stream's current extent. When the extent fills up or a replica fails
+// it is sealed at the length every reachable replica holds and a new extent on
+// healthy nodes takes over, and blocks that were not acknowledged are retried
+// there. Writers never wait for a repair, and no reader can see a block that
+// was not acknowledged.
+class ReplicatedStream {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final List<String> preferredNodes;
+    private final StreamManager streamManager;
+    private final ChainReplicator replicator;
+    private final Tracer tracer;
+    private ExtentInfo current;
+
+    ReplicatedStream(List<String> preferredNodes, StreamManager streamManager, ChainReplicator replicator,
+                     Tracer tracer) {
+        this.preferredNodes = preferredNodes;
+        this.streamManager = streamManager;
+        this.replicator = replicator;
+        this.tracer = tracer;
+    }
+
+    // Completes with the block's location on every replica, primary first
+    CompletableFuture<Map<String, BlockLocation>> append(ByteBuffer data) {
+        CompletableFuture<Map<String, BlockLocation>> result = new CompletableFuture<>();
+        append(data, 1, result);
+        return result;
+    }
+
+    private void append(ByteBuffer data, int attempt, CompletableFuture<Map<String, BlockLocation>> result) {
+        ExtentInfo extent;
+        try {
+            extent = currentExtent();
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        // Recovery seals the extent and waits on the replication pipelines, so it
+        // must not run on one of their threads
+        replicator.append(extent.getId(), extent.getReplicas(), data).whenCompleteAsync((location, failure) -> {
+            if (failure == null && location != null) {
+                result.complete(locations(extent, location));
+                return;
+            }
+            if (failure != null && attempt >= MAX_ATTEMPTS) {
+                result.completeExceptionally(failure);
+                return;
+            }
+            try {
+                seal(extent);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            // Rolling over cannot help a block that did not fit an empty extent
+            if (failure == null && extent.getSealedLength() == 0) {
+                result.completeExceptionally(new IllegalArgumentException("Block of " + data.remaining()
+                    + " bytes does not fit in an empty extent"));
+                return;
+            }
+            // A full extent is not a failure and does not use up an attempt
+            append(data, failure == null ? attempt : attempt + 1, result);
+        });
+    }
+
+    private synchronized ExtentInfo currentExtent() {
+        if (current == null || current.isSealed()) {
+            try (Span span = tracer.start(Tracer.STREAM_MANAGER, "createExtent")) {
+                try {
+                    current = streamManager.createExtent(preferredNodes, ObjectService.REPLICA_COUNT);
+                } catch (RuntimeException e) {
+                    span.fail(e);
+                    throw e;
+                }
+            }
+        }
+        return current;
+    }
+
+    private synchronized void seal(ExtentInfo extent) {
+        if (extent.isSealed()) {
+            return;
+        }
+        long length = replicator.seal(extent.getId(), extent.getReplicas());
+        try (Span span = tracer.start(Tracer.STREAM_MANAGER, "sealExtent")) {
+            streamManager.sealExtent(extent.getId(), length);
+        }
+        if (current == extent) {
+            current = null;
+        }
+    }
+
+    private static Map<String, BlockLocation> locations(ExtentInfo extent, BlockLocation location) {
+        Map<String, BlockLocation> locations = new LinkedHashMap<>();
+        for (String node : extent.getReplicas()) {
+            locations.put(node, location);
+        }
+        return Collections.unmodifiableMap(locations);
+    }
+}
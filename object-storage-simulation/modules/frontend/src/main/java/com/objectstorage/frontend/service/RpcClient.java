@@ -0,0 +1,306 @@
+package com.objectstorage.frontend.service;
+
+import com.objectstorage.common.trace.Span;
+import com.objectstorage.common.trace.Tracer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Issues independent calls to the other tiers concurrently. Calls are grouped
+// in a Scope, in the manner of structured concurrency: the first call to fail
+// or run past its deadline fails the whole scope, its siblings are cancelled
+// and whoever waits on any of them gets that first failure. Each call runs on
+// its own virtual thread when the JVM has them, so a slow hop parks a cheap
+// thread instead of exhausting a pool; before Java 21 a cached pool of
+// platform threads stands in. Every call continues the caller's trace, and
+// the time it waited for a thread counts as the queue time of the first span
+// it starts.
+@Component
+public class RpcClient {
+    private final Tracer tracer;
+    private final Executor executor;
+    // Only set when falling back to platform threads, which need shutting down
+    private final ExecutorService fallback;
+    private final long timeoutMillis;
+
+    public RpcClient(Tracer tracer, @Value("${objectstorage.rpc.timeout-ms:2000}") long timeoutMillis) {
+        this.tracer = tracer;
+        this.timeoutMillis = timeoutMillis;
+        Executor virtualThreads;
+        try {
+            virtualThreads = new VirtualThreadTaskExecutor("rpc-");
+        } catch (UnsupportedOperationException e) {
+            virtualThreads = null;
+        }
+        if (virtualThreads != null) {
+            this.executor = virtualThreads;
+            this.fallback = null;
+        } else {
+            this.fallback = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "rpc");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor = fallback;
+        }
+    }
+
+    public Scope open() {
+        return new Scope(timeoutMillis);
+    }
+
+    // Runs call on every item concurrently and returns the results in order
+    public <T, R> List<R> invokeAll(List<T> items, Function<T, R> call) throws IOException {
+        try (Scope scope = open()) {
+            List<Subtask<R>> subtasks = new ArrayList<>(items.size());
+            for (T item : items) {
+                subtasks.add(scope.fork(() -> call.apply(item)));
+            }
+            List<R> results = new ArrayList<>(items.size());
+            for (Subtask<R> subtask : subtasks) {
+                results.add(subtask.get());
+            }
+            return results;
+        }
+    }
+
+    // Hedged call: runs call on the first target and, if it has not answered
+    // within hedgeDelayNanos, on the next one as well, and so on; a target that
+    // fails hands over to the next at once. Returns the first result and drops
+    // the others. Fails once every target has failed or the deadline passes.
+    // Made from within scope, no further target is called once the scope has
+    // failed, and a hedge still waiting for a thread when the answer is in
+    // never calls its target at all.
+    public <T, R> R firstOf(Scope scope, List<T> targets, long hedgeDelayNanos, Function<T, R> call)
+            throws IOException {
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("No targets to call");
+        }
+        BlockingQueue<Outcome<R>> outcomes = new LinkedBlockingQueue<>();
+        AtomicBoolean settled = new AtomicBoolean();
+        try {
+            return awaitFirst(scope, targets, hedgeDelayNanos, call, outcomes, settled);
+        } finally {
+            settled.set(true);
+        }
+    }
+
+    private <T, R> R awaitFirst(Scope scope, List<T> targets, long hedgeDelayNanos, Function<T, R> call,
+                                BlockingQueue<Outcome<R>> outcomes, AtomicBoolean settled) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        int started = 0;
+        int finished = 0;
+        Throwable lastFailure = null;
+        start(scope, targets.get(started++), call, outcomes, settled);
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            long wait = started < targets.size() ? Math.min(hedgeDelayNanos, remaining) : remaining;
+            Outcome<R> outcome;
+            try {
+                outcome = remaining > 0 ? outcomes.poll(wait, TimeUnit.NANOSECONDS) : null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a call", e);
+            }
+            if (outcome == null) {
+                if (started == targets.size() || deadline - System.nanoTime() <= 0) {
+                    throw new IOException("Call timed out after " + timeoutMillis + " ms");
+                }
+                scope.checkNotFailed();
+                // Slow to answer: hedge with the next target
+                start(scope, targets.get(started++), call, outcomes, settled);
+                continue;
+            }
+            finished++;
+            if (outcome.failure == null) {
+                return outcome.value;
+            }
+            lastFailure = outcome.failure;
+            if (started < targets.size()) {
+                scope.checkNotFailed();
+                start(scope, targets.get(started++), call, outcomes, settled);
+            } else if (finished == started) {
+                if (lastFailure instanceof IOException) {
+                    throw (IOException) lastFailure;
+                }
+                throw (RuntimeException) lastFailure;
+            }
+        }
+    }
+
+    private <T, R> void start(Scope scope, T target, Function<T, R> call, BlockingQueue<Outcome<R>> outcomes,
+                              AtomicBoolean settled) {
+        execute(() -> {
+            if (settled.get() || scope.isFailed()) {
+                outcomes.add(new Outcome<R>(null, new CancellationException("Call no longer needed")));
+                return;
+            }
+            try {
+                outcomes.add(new Outcome<>(call.apply(target), null));
+            } catch (IOException | RuntimeException e) {
+                outcomes.add(new Outcome<R>(null, e));
+            }
+        });
+    }
+
+    // Runs task on its own thread within the submitting thread's trace
+    private void execute(Runnable task) {
+        Span parent = tracer.capture();
+        long submitted = System.nanoTime();
+        executor.execute(() -> {
+            try (Tracer.Attachment ignored = tracer.attach(parent, submitted)) {
+                task.run();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        if (fallback != null) {
+            fallback.shutdownNow();
+        }
+    }
+
+    public interface Call<R> {
+        R call() throws IOException;
+    }
+
+    public interface Function<T, R> {
+        R apply(T item) throws IOException;
+    }
+
+    private static final class Outcome<R> {
+        final R value;
+        final Throwable failure;
+
+        Outcome(R value, Throwable failure) {
+            this.value = value;
+            this.failure = failure;
+        }
+    }
+
+    // A group of calls that succeed or fail together. Closing the scope cancels
+    // whatever is still running.
+    public final class Scope implements AutoCloseable {
+        private final long callTimeoutMillis;
+        private final List<Subtask<?>> subtasks = new ArrayList<>();
+        private volatile Throwable failure;
+
+        private Scope(long callTimeoutMillis) {
+            this.callTimeoutMillis = callTimeoutMillis;
+        }
+
+        public <R> Subtask<R> fork(Call<R> call) {
+            Subtask<R> subtask = new Subtask<>(this, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(callTimeoutMillis));
+            synchronized (subtasks) {
+                if (failure != null) {
+                    subtask.result.completeExceptionally(failure);
+                    return subtask;
+                }
+                subtasks.add(subtask);
+            }
+            execute(() -> {
+                if (subtask.result.isDone()) {
+                    return;
+                }
+                try {
+                    subtask.result.complete(call.call());
+                } catch (IOException | RuntimeException e) {
+                    fail(e);
+                }
+            });
+            return subtask;
+        }
+
+        // Whether a call of the scope has failed or the scope has been closed.
+        // Cancelled calls are not interrupted: an interrupt in the middle of a
+        // FileChannel operation closes the channel for every other reader of the
+        // extent. Instead a call made of several reads checks this between them
+        // and gives up; otherwise it runs to completion and its result is dropped.
+        public boolean isFailed() {
+            return failure != null;
+        }
+
+        // Throws CancellationException if the scope has failed
+        public void checkNotFailed() {
+            if (failure != null) {
+                throw new CancellationException("Scope failed: " + failure);
+            }
+        }
+
+        void fail(Throwable cause) {
+            List<Subtask<?>> pending;
+            synchronized (subtasks) {
+                if (failure != null) {
+                    return;
+                }
+                failure = cause;
+                pending = new ArrayList<>(subtasks);
+            }
+            for (Subtask<?> subtask : pending) {
+                subtask.result.completeExceptionally(cause);
+            }
+        }
+
+        @Override
+        public void close() {
+            fail(new CancellationException("Scope closed"));
+        }
+    }
+
+    public static final class Subtask<R> {
+        private final Scope scope;
+        private final long deadlineNanos;
+        private final CompletableFuture<R> result = new CompletableFuture<>();
+
+        private Subtask(Scope scope, long deadlineNanos) {
+            this.scope = scope;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        // Waits for the call's result until its deadline; a failed sibling fails it too
+        public R get() throws IOException {
+            try {
+                return result.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                IOException timeout = new IOException("Call timed out after "
+                    + scope.callTimeoutMillis + " ms");
+                scope.fail(timeout);
+                throw timeout;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                scope.fail(e);
+                throw new IOException("Interrupted while waiting for a call", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) cause).getCause();
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.objectstorage.frontend.service;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+// A block read from a particular replica, or from another one if that copy
+// failed its checksum: the data, the node that served it and the nodes whose
+// copies were found damaged on the way.
+public final class ServedBlock {
+    private final ByteBuffer data;
+    private final String node;
+    private final List<String> damaged;
+
+    ServedBlock(ByteBuffer data, String node, List<String> damaged) {
+        this.data = data;
+        this.node = node;
+        this.damaged = Collections.unmodifiableList(damaged);
+    }
+
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public List<String> getDamaged() {
+        return damaged;
+    }
+}
@@ -0,0 +1,33 @@
+package com.objectstorage.frontend.service;
+
+import com.objectstorage.common.object.ObjectChunk;
+
+import java.util.Collections;
+import java.util.List;
+
+// A body written to the extent nodes but not yet referenced by any manifest.
+// Chunk offsets count from the start of this body.
+public final class StoredBody {
+    private final List<ObjectChunk> chunks;
+    private final long size;
+    private final String md5;
+
+    StoredBody(List<ObjectChunk> chunks, long size, String md5) {
+        this.chunks = Collections.unmodifiableList(chunks);
+        this.size = size;
+        this.md5 = md5;
+    }
+
+    public List<ObjectChunk> getChunks() {
+        return chunks;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    // Hex MD5 of the body
+    public String getMd5() {
+        return md5;
+    }
+}
@@ -0,0 +1,199 @@
+package com.objectstorage.frontend.trace;
+
+import com.objectstorage.common.trace.Span;
+import com.objectstorage.common.trace.Tracer;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+// Opens the frontend span of every request, the root of its trace. A client
+// may pass its own trace id in X-Trace-Id; either way the id is sent back in
+// the same header so the spans can be fetched from /metrics/traces. The span
+// is named after the handler's URL pattern rather than the raw path, so keys
+// do not each get a histogram of their own, and it counts the bytes of the
+// request and response bodies. Streamed responses are finished on another
+// thread, so their span ends when the async request completes.
+@Component
+public class TracingFilter extends OncePerRequestFilter {
+    public static final String TRACE_HEADER = "X-Trace-Id";
+
+    private final Tracer tracer;
+
+    public TracingFilter(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Span span = tracer.startTrace(request.getHeader(TRACE_HEADER), Tracer.FRONTEND, request.getMethod());
+        response.setHeader(TRACE_HEADER, span.getTraceId());
+        CountingResponse counting = new CountingResponse(response, span);
+        boolean async = false;
+        try {
+            chain.doFilter(new CountingRequest(request, span), counting);
+            async = request.isAsyncStarted();
+        } catch (IOException | ServletException | RuntimeException e) {
+            span.fail(e);
+            throw e;
+        } finally {
+            span.operation(operationOf(request));
+            if (async) {
+                span.detach();
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        finish(span, counting);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                        span.fail("Timed out");
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        span.fail(event.getThrowable());
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                finish(span, counting);
+            }
+        }
+    }
+
+    private static void finish(Span span, HttpServletResponse response) {
+        if (response.getStatus() >= 500) {
+            span.fail("HTTP " + response.getStatus());
+        }
+        span.close();
+    }
+
+    private static String operationOf(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : "unmapped");
+    }
+
+    private static final class CountingRequest extends HttpServletRequestWrapper {
+        private final Span span;
+        private ServletInputStream counted;
+
+        CountingRequest(HttpServletRequest request, Span span) {
+            super(request);
+            this.span = span;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (counted == null) {
+                ServletInputStream in = super.getInputStream();
+                counted = new ServletInputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        int b = in.read();
+                        if (b >= 0) {
+                            span.addBytes(1);
+                        }
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int n = in.read(b, off, len);
+                        if (n > 0) {
+                            span.addBytes(n);
+                        }
+                        return n;
+                    }
+
+                    @Override
+                    public boolean isFinished() {
+                        return in.isFinished();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return in.isReady();
+                    }
+
+                    @Override
+                    public void setReadListener(ReadListener listener) {
+                        in.setReadListener(listener);
+                    }
+                };
+            }
+            return counted;
+        }
+    }
+
+    // Counts what is written to the body through the output stream, which is
+    // how both JSON and object bodies are sent
+    private static final class CountingResponse extends HttpServletResponseWrapper {
+        private final Span span;
+        private ServletOutputStream counted;
+
+        CountingResponse(HttpServletResponse response, Span span) {
+            super(response);
+            this.span = span;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (counted == null) {
+                ServletOutputStream out = super.getOutputStream();
+                counted = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        out.write(b);
+                        span.addBytes(1);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                        span.addBytes(len);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        out.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        out.close();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return out.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        out.setWriteListener(listener);
+                    }
+                };
+            }
+            return counted;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.objectstorage.frontend.cache;
+
+import com.objectstorage.common.object.ObjectManifest;
+import com.objectstorage.frontend.service.PartitionServerRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ObjectCacheTest {
+    private static final int OBJECT_BYTES = 1024;
+
+    @Test
+    void servesWhatWasPutUntilItIsInvalidated() {
+        ObjectCache cache = cache(64 * OBJECT_BYTES, 16);
+        put(cache, "a", cache.ticket("a"));
+        CachedObject cached = cache.get("a");
+        assertNotNull(cached);
+        assertEquals("a", cached.getManifest().getKey());
+        assertEquals(OBJECT_BYTES, cached.getBody().remaining());
+
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    void dropsAnInsertReadBeforeItsKeyWasInvalidated() {
+        ObjectCache cache = cache(64 * OBJECT_BYTES, 1);
+        long stale = cache.ticket("a");
+        cache.invalidate("a");
+        put(cache, "a", stale);
+        assertNull(cache.get("a"));
+
+        put(cache, "a", cache.ticket("a"));
+        assertNotNull(cache.get("a"));
+    }
+
+    @Test
+    void keepsAnInsertWhenOnlyOtherKeysWereInvalidated() {
+        // One shard, so every key shares it
+        ObjectCache cache = cache(64 * OBJECT_BYTES, 1);
+        long ticket = cache.ticket("a");
+        for (int i = 0; i < 10; i++) {
+            cache.invalidate("other-" + i);
+        }
+        put(cache, "a", ticket);
+        assertNotNull(cache.get("a"));
+    }
+
+    @Test
+    void dropsAnInsertOlderThanEveryInvalidationItCanStillCheck() {
+        ObjectCache cache = cache(64 * OBJECT_BYTES, 1);
+        long ticket = cache.ticket("a");
+        for (int i = 0; i < 5000; i++) {
+            cache.invalidate("other-" + i);
+        }
+        put(cache, "a", ticket);
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    void aScanOfOneOffKeysDoesNotFlushPopularObjects() {
+        ObjectCache cache = cache(100 * OBJECT_BYTES, 1);
+        for (int i = 0; i < 20; i++) {
+            String key = "hot-" + i;
+            cache.get(key);
+            put(cache, key, cache.ticket(key));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 20; i++) {
+                assertNotNull(cache.get("hot-" + i));
+            }
+        }
+        // Each scanned key is missed once and then cached, as a GET would,
+        // while the popular objects go on being read
+        for (int i = 0; i < 1000; i++) {
+            String key = "scan-" + i;
+            assertNull(cache.get(key));
+            put(cache, key, cache.ticket(key));
+            cache.get("hot-" + i % 20);
+        }
+        for (int i = 0; i < 20; i++) {
+            assertNotNull(cache.get("hot-" + i), "hot-" + i);
+        }
+        assertTrue((Long) cache.getStats().get("rejections") > 0);
+        assertTrue((Long) cache.getStats().get("bytes") <= 100 * OBJECT_BYTES);
+    }
+
+    @Test
+    void admitsANewcomerAskedForMoreOftenThanTheColdestResident() {
+        ObjectCache cache = cache(100 * OBJECT_BYTES, 1);
+        for (int i = 0; i < 200; i++) {
+            String key = "cold-" + i;
+            cache.get(key);
+            put(cache, key, cache.ticket(key));
+        }
+        for (int i = 0; i < 10; i++) {
+            cache.get("popular");
+        }
+        put(cache, "popular", cache.ticket("popular"));
+        // Pushed out of the window into the main space by later inserts
+        put(cache, "cold-0", cache.ticket("cold-0"));
+        put(cache, "cold-1", cache.ticket("cold-1"));
+        assertNotNull(cache.get("popular"));
+        assertTrue((Long) cache.getStats().get("evictions") > 0);
+    }
+
+    @Test
+    void neverCachesObjectsLargerThanTheLimit() {
+        ObjectCache cache = cache(64 * OBJECT_BYTES, 1);
+        assertTrue(cache.admits(OBJECT_BYTES));
+        assertFalse(cache.admits(OBJECT_BYTES + 1));
+        cache.put(manifest("big"), new byte[OBJECT_BYTES + 1], cache.ticket("big"));
+        assertNull(cache.get("big"));
+    }
+
+    private static ObjectCache cache(long maxBytes, int shards) {
+        PartitionServerRegistry registry = mock(PartitionServerRegistry.class);
+        when(registry.getAll()).thenReturn(Collections.emptyList());
+        return new ObjectCache(registry, maxBytes, OBJECT_BYTES, shards, false);
+    }
+
+    private static void put(ObjectCache cache, String key, long ticket) {
+        cache.put(manifest(key), new byte[OBJECT_BYTES], ticket);
+    }
+
+    private static ObjectManifest manifest(String key) {
+        return new ObjectManifest(key, OBJECT_BYTES, "etag", 0, Collections.emptyList());
+    }
+}
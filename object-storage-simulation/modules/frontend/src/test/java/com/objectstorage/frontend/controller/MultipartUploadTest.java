@@ -0,0 +1,159 @@
+package com.objectstorage.frontend.controller;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MultipartUploadTest {
+    private static final int CHUNK_SIZE = 1000;
+
+    @TempDir
+    static Path dataDir;
+
+    private static TestCluster cluster;
+
+    @BeforeAll
+    static void start() {
+        // Parts span several chunks, and nothing is served from the cache
+        cluster = new TestCluster(dataDir, "objectstorage.chunk-size=" + CHUNK_SIZE,
+            "objectstorage.cache.max-bytes=0");
+    }
+
+    @AfterAll
+    static void stop() {
+        cluster.close();
+    }
+
+    @Test
+    void composesTheObjectFromItsPartsInPartNumberOrder() throws Exception {
+        String uploadId = initiate("composed");
+        byte[][] parts = {body(2500, 1), body(1000, 2), body(10, 3)};
+        // Uploaded out of order, and part 1 twice; the later upload wins
+        uploadPart("composed", uploadId, 2, parts[1]);
+        uploadPart("composed", uploadId, 1, body(7, 9));
+        uploadPart("composed", uploadId, 3, parts[2]);
+        uploadPart("composed", uploadId, 1, parts[0]);
+
+        Map<String, Object> listing = cluster.json(cluster.get("/objects/composed?uploadId=" + uploadId));
+        List<?> listed = (List<?>) listing.get("parts");
+        assertEquals(3, listed.size());
+        assertEquals(2500, ((Map<?, ?>) listed.get(0)).get("size"));
+
+        HttpResponse<byte[]> completed = cluster.send("POST", "/objects/composed?uploadId=" + uploadId, null);
+        assertEquals(200, completed.statusCode());
+        Map<String, Object> manifest = cluster.json(completed);
+        assertEquals(3510, manifest.get("size"));
+        assertTrue(((String) manifest.get("etag")).endsWith("-3"));
+        // 3 + 1 + 1 chunks, composed without rewriting any of them
+        assertEquals(5, manifest.get("chunks"));
+
+        HttpResponse<byte[]> object = cluster.get("/objects/composed");
+        assertEquals(200, object.statusCode());
+        assertArrayEquals(concat(parts), object.body());
+        // A completed upload is gone
+        assertEquals(404, cluster.send("POST", "/objects/composed?uploadId=" + uploadId, null).statusCode());
+    }
+
+    @Test
+    void completesWithTheListedPartsOnly() throws Exception {
+        String uploadId = initiate("chosen");
+        byte[] first = body(1200, 4);
+        byte[] second = body(300, 5);
+        byte[] third = body(800, 6);
+        String firstEtag = uploadPart("chosen", uploadId, 1, first);
+        uploadPart("chosen", uploadId, 2, second);
+        String thirdEtag = uploadPart("chosen", uploadId, 3, third);
+
+        byte[] request = cluster.toJson(Map.of("parts", Arrays.asList(
+            Map.of("partNumber", 1, "etag", firstEtag),
+            Map.of("partNumber", 3, "etag", thirdEtag))));
+        HttpResponse<byte[]> completed = cluster.send("POST", "/objects/chosen?uploadId=" + uploadId, request,
+            "Content-Type", "application/json");
+        assertEquals(200, completed.statusCode());
+        assertArrayEquals(concat(first, third), cluster.get("/objects/chosen").body());
+    }
+
+    @Test
+    void rejectsPartsListedOutOfOrderOrWithTheWrongEtag() throws Exception {
+        String uploadId = initiate("rejected");
+        String firstEtag = uploadPart("rejected", uploadId, 1, body(10, 7));
+        String secondEtag = uploadPart("rejected", uploadId, 2, body(10, 8));
+
+        byte[] outOfOrder = cluster.toJson(Map.of("parts", Arrays.asList(
+            Map.of("partNumber", 2, "etag", secondEtag),
+            Map.of("partNumber", 1, "etag", firstEtag))));
+        assertEquals(400, cluster.send("POST", "/objects/rejected?uploadId=" + uploadId, outOfOrder,
+            "Content-Type", "application/json").statusCode());
+        byte[] wrongEtag = cluster.toJson(Map.of("parts", Arrays.asList(
+            Map.of("partNumber", 1, "etag", secondEtag))));
+        assertEquals(400, cluster.send("POST", "/objects/rejected?uploadId=" + uploadId, wrongEtag,
+            "Content-Type", "application/json").statusCode());
+
+        // Neither attempt used up the upload
+        assertEquals(200, cluster.send("POST", "/objects/rejected?uploadId=" + uploadId, null).statusCode());
+    }
+
+    @Test
+    void abortDropsTheUploadAndItsParts() throws Exception {
+        String uploadId = initiate("aborted");
+        uploadPart("aborted", uploadId, 1, body(1500, 10));
+
+        assertEquals(204, cluster.send("DELETE", "/objects/aborted?uploadId=" + uploadId, null).statusCode());
+        assertEquals(404, cluster.get("/objects/aborted").statusCode());
+        assertEquals(404, cluster.get("/objects/aborted?uploadId=" + uploadId).statusCode());
+        assertEquals(404, cluster.put("/objects/aborted?uploadId=" + uploadId + "&partNumber=2", body(10, 11))
+            .statusCode());
+        assertEquals(404, cluster.send("POST", "/objects/aborted?uploadId=" + uploadId, null).statusCode());
+        assertEquals(404, cluster.send("DELETE", "/objects/aborted?uploadId=" + uploadId, null).statusCode());
+    }
+
+    @Test
+    void anUploadBelongsToItsKey() throws Exception {
+        String uploadId = initiate("owner");
+        assertEquals(404, cluster.put("/objects/someone-else?uploadId=" + uploadId + "&partNumber=1", body(10, 12))
+            .statusCode());
+        assertEquals(400, cluster.put("/objects/owner?uploadId=" + uploadId + "&partNumber=0", body(10, 12))
+            .statusCode());
+    }
+
+    private static String initiate(String key) throws Exception {
+        HttpResponse<byte[]> response = cluster.send("POST", "/objects/" + key + "?uploads", null);
+        assertEquals(200, response.statusCode());
+        return (String) cluster.json(response).get("uploadId");
+    }
+
+    private static String uploadPart(String key, String uploadId, int partNumber, byte[] data) throws Exception {
+        HttpResponse<byte[]> response = cluster.put("/objects/" + key + "?uploadId=" + uploadId
+            + "&partNumber=" + partNumber, data);
+        assertEquals(200, response.statusCode());
+        return (String) cluster.json(response).get("etag");
+    }
+
+    private static byte[] body(int size, int seed) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 7 + seed);
+        }
+        return data;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
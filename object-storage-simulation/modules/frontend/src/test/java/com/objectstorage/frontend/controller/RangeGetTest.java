@@ -0,0 +1,95 @@
+package com.objectstorage.frontend.controller;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RangeGetTest {
+    private static final int CHUNK_SIZE = 1000;
+    private static final int SIZE = 3500;
+
+    @TempDir
+    static Path dataDir;
+
+    private static TestCluster cluster;
+    private static byte[] data;
+
+    @BeforeAll
+    static void start() throws Exception {
+        // Every range is read from the chunks, never from the cache
+        cluster = new TestCluster(dataDir, "objectstorage.chunk-size=" + CHUNK_SIZE,
+            "objectstorage.cache.max-bytes=0");
+        data = new byte[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            data[i] = (byte) (i * 31 + i / CHUNK_SIZE);
+        }
+        assertEquals(200, cluster.put("/objects/ranged", data).statusCode());
+    }
+
+    @AfterAll
+    static void stop() {
+        cluster.close();
+    }
+
+    @Test
+    void returnsTheWholeBodyWithoutARange() throws Exception {
+        HttpResponse<byte[]> response = cluster.get("/objects/ranged");
+        assertEquals(200, response.statusCode());
+        assertArrayEquals(data, response.body());
+    }
+
+    @Test
+    void returnsARangeSpanningSeveralChunks() throws Exception {
+        assertRange("bytes=990-2010", 990, 2010);
+        // Exactly one chunk, and a single byte on a chunk boundary
+        assertRange("bytes=1000-1999", 1000, 1999);
+        assertRange("bytes=3000-3000", 3000, 3000);
+    }
+
+    @Test
+    void returnsOpenEndedAndSuffixRanges() throws Exception {
+        assertRange("bytes=2500-", 2500, SIZE - 1);
+        assertRange("bytes=-600", SIZE - 600, SIZE - 1);
+        // An end past the object is cut short
+        assertRange("bytes=3400-9999", 3400, SIZE - 1);
+        assertRange("bytes=-9999", 0, SIZE - 1);
+    }
+
+    @Test
+    void rejectsARangeThatStartsPastTheObject() throws Exception {
+        HttpResponse<byte[]> response = cluster.get("/objects/ranged", "Range", "bytes=" + SIZE + "-");
+        assertEquals(416, response.statusCode());
+        assertEquals("bytes */" + SIZE, response.headers().firstValue("Content-Range").orElse(null));
+    }
+
+    @Test
+    void ignoresARangeItCannotServe() throws Exception {
+        HttpResponse<byte[]> unparsable = cluster.get("/objects/ranged", "Range", "lines=1-2");
+        assertEquals(200, unparsable.statusCode());
+        assertArrayEquals(data, unparsable.body());
+        HttpResponse<byte[]> several = cluster.get("/objects/ranged", "Range", "bytes=0-1,5-6");
+        assertEquals(200, several.statusCode());
+        assertArrayEquals(data, several.body());
+    }
+
+    @Test
+    void answersARangeOfAMissingObjectWithNotFound() throws Exception {
+        assertEquals(404, cluster.get("/objects/missing", "Range", "bytes=0-1").statusCode());
+    }
+
+    private static void assertRange(String range, int start, int end) throws Exception {
+        HttpResponse<byte[]> response = cluster.get("/objects/ranged", "Range", range);
+        assertEquals(206, response.statusCode(), range);
+        assertEquals("bytes " + start + "-" + end + "/" + SIZE,
+            response.headers().firstValue("Content-Range").orElse(null));
+        assertArrayEquals(Arrays.copyOfRange(data, start, end + 1), response.body(), range);
+    }
+}
@@ -0,0 +1,84 @@
+package com.objectstorage.frontend.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.objectstorage.frontend.FrontendApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// The whole simulation started on a random port with its data under dataDir,
+// and a client for its HTTP API. Background schedulers are pushed out of the
+// way so they cannot change anything while a test runs.
+final class TestCluster implements AutoCloseable {
+    private static final String NEVER = String.valueOf(Long.MAX_VALUE / 4);
+
+    private final ConfigurableApplicationContext context;
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ObjectMapper json = new ObjectMapper();
+    private final String baseUrl;
+
+    TestCluster(Path dataDir, String... extraProperties) {
+        List<String> properties = new ArrayList<>();
+        properties.add("server.port=0");
+        properties.add("spring.main.banner-mode=off");
+        properties.add("logging.level.root=WARN");
+        properties.add("objectstorage.data-dir=" + dataDir);
+        properties.add("partition-manager.balance-interval-ms=" + NEVER);
+        properties.add("stream-manager.erasure.interval-ms=" + NEVER);
+        properties.add("stream-manager.gc.interval-ms=" + NEVER);
+        properties.add("stream-manager.scrub.interval-ms=" + NEVER);
+        properties.add("objectstorage.multipart.sweep-interval-ms=" + NEVER);
+        properties.addAll(List.of(extraProperties));
+        this.context = new SpringApplicationBuilder(FrontendApplication.class)
+            .properties(properties.toArray(new String[0]))
+            .run();
+        this.baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    HttpResponse<byte[]> send(String method, String path, byte[] body, String... headers)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofByteArray(body));
+        if (headers.length > 0) {
+            request.headers(headers);
+        } else if (body != null) {
+            request.header("Content-Type", "application/octet-stream");
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    HttpResponse<byte[]> put(String path, byte[] body) throws IOException, InterruptedException {
+        return send("PUT", path, body);
+    }
+
+    HttpResponse<byte[]> get(String path, String... headers) throws IOException, InterruptedException {
+        return send("GET", path, null, headers);
+    }
+
+    // The JSON object a response carries
+    Map<String, Object> json(HttpResponse<byte[]> response) throws IOException {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = json.readValue(response.body(), Map.class);
+        return map;
+    }
+
+    byte[] toJson(Object value) throws IOException {
+        return json.writeValueAsBytes(value);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,159 @@
+package com.objectstorage.frontend.service;
+
+import com.objectstorage.common.metrics.MetricsRegistry;
+import com.objectstorage.common.object.ObjectManifest;
+import com.objectstorage.common.partition.KeyRange;
+import com.objectstorage.common.partition.PartitionAssignment;
+import com.objectstorage.common.partition.PartitionTable;
+import com.objectstorage.common.trace.Tracer;
+import com.objectstorage.partitionserver.metadata.MetadataStore;
+import com.objectstorage.partitionserver.server.PartitionServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ObjectListerTest {
+    // Three servers splitting the key space at "g" and "p"
+    private static final PartitionTable TABLE = new PartitionTable(1, Arrays.asList(
+        new PartitionAssignment(1, new KeyRange("", "g"), "Server 1"),
+        new PartitionAssignment(2, new KeyRange("g", "p"), "Server 2"),
+        new PartitionAssignment(3, new KeyRange("p", null), "Server 3")));
+
+    @TempDir
+    Path dir;
+
+    private final List<PartitionServer> servers = new ArrayList<>();
+    private ObjectLister lister;
+
+    @BeforeEach
+    void startServers() throws IOException {
+        for (PartitionAssignment partition : TABLE.getAssignments()) {
+            String name = partition.getServer();
+            MetadataStore store = new MetadataStore(dir.resolve(name.replace(' ', '-')), 1 << 20, 4, false);
+            PartitionServer server = new PartitionServer(name, store);
+            server.assign(TABLE);
+            servers.add(server);
+        }
+        PartitionServerRegistry registry = mock(PartitionServerRegistry.class);
+        when(registry.getAll()).thenReturn(servers);
+        Tracer tracer = new Tracer(new MetricsRegistry(), 10);
+        lister = new ObjectLister(registry, new RpcClient(tracer, 2000), tracer);
+    }
+
+    @AfterEach
+    void closeServers() throws IOException {
+        for (PartitionServer server : servers) {
+            server.getStore().close();
+        }
+    }
+
+    @Test
+    void pagesThroughEveryServerInKeyOrder() throws IOException {
+        List<String> keys = new ArrayList<>();
+        for (char c = 'a'; c <= 'z'; c++) {
+            keys.add(c + "-one");
+            keys.add(c + "-two");
+        }
+        put(keys);
+
+        List<String> listed = new ArrayList<>();
+        String token = null;
+        int pages = 0;
+        do {
+            ObjectListing page = lister.list("", "", 7, token);
+            assertTrue(page.getContents().size() <= 7);
+            listed.addAll(keys(page));
+            token = page.getNextContinuationToken();
+            assertEquals(page.isTruncated(), token != null);
+            assertTrue(token == null || !token.isEmpty());
+            pages++;
+        } while (token != null);
+
+        assertEquals(keys, listed);
+        assertEquals(8, pages);
+    }
+
+    @Test
+    void aPageEndingOnTheLastKeyIsNotTruncated() throws IOException {
+        put(Arrays.asList("a", "h", "q"));
+        ObjectListing page = lister.list("", "", 3, null);
+        assertEquals(Arrays.asList("a", "h", "q"), keys(page));
+        assertFalse(page.isTruncated());
+        assertNull(page.getNextContinuationToken());
+    }
+
+    @Test
+    void zeroMaxKeysReturnsAnEmptyUntruncatedPage() throws IOException {
+        put(Arrays.asList("a", "h", "q"));
+        ObjectListing page = lister.list("", "", 0, null);
+        assertTrue(page.getContents().isEmpty());
+        assertTrue(page.getCommonPrefixes().isEmpty());
+        assertFalse(page.isTruncated());
+        assertNull(page.getNextContinuationToken());
+    }
+
+    @Test
+    void rollsKeysUpIntoCommonPrefixesAcrossPages() throws IOException {
+        put(Arrays.asList("photos/2024/a.jpg", "photos/2024/b.jpg", "photos/2025/c.jpg", "photos/index.html",
+            "photos/z/d.jpg", "readme"));
+
+        ObjectListing first = lister.list("photos/", "/", 2, null);
+        assertEquals(Arrays.asList("photos/2024/", "photos/2025/"), first.getCommonPrefixes());
+        assertTrue(first.getContents().isEmpty());
+        assertNotNull(first.getNextContinuationToken());
+
+        ObjectListing second = lister.list("photos/", "/", 2, first.getNextContinuationToken());
+        assertEquals(Collections.singletonList("photos/index.html"), keys(second));
+        assertEquals(Collections.singletonList("photos/z/"), second.getCommonPrefixes());
+        assertFalse(second.isTruncated());
+    }
+
+    @Test
+    void onlyListsKeysUnderThePrefix() throws IOException {
+        put(Arrays.asList("fa", "fb", "g", "ga", "gb", "h"));
+        assertEquals(Arrays.asList("g", "ga", "gb"), keys(lister.list("g", "", 10, null)));
+    }
+
+    @Test
+    void rejectsBadArguments() {
+        assertThrows(IllegalArgumentException.class, () -> lister.list("", "", -1, null));
+        assertThrows(IllegalArgumentException.class, () -> lister.list("", "", 10, "not base64!"));
+        // A token for "a" cannot continue a listing of prefix "b"
+        assertThrows(IllegalArgumentException.class, () -> lister.list("b", "", 10, "YQ"));
+    }
+
+    private void put(List<String> keys) throws IOException {
+        for (String key : keys) {
+            for (PartitionServer server : servers) {
+                if (server.owns(key)) {
+                    server.putObject(new ObjectManifest(key, 0, "etag", 0, Collections.emptyList()));
+                }
+            }
+        }
+    }
+
+    private static List<String> keys(ObjectListing listing) {
+        List<String> keys = new ArrayList<>();
+        for (ObjectManifest manifest : listing.getContents()) {
+            keys.add(manifest.getKey());
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,142 @@
+package com.objectstorage.frontend.service;
+
+import com.objectstorage.common.extent.BlockLocation;
+import com.objectstorage.common.metrics.MetricsRegistry;
+import com.objectstorage.common.trace.Tracer;
+import com.objectstorage.extentnode.replication.ChainReplicator;
+import com.objectstorage.extentnode.storage.Extent;
+import com.objectstorage.extentnode.storage.ExtentStore;
+import com.objectstorage.streammanager.stream.ExtentInfo;
+import com.objectstorage.streammanager.stream.StreamManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplicatedStreamTest {
+    private static final List<String> NODES = Arrays.asList("Node 1", "Node 2", "Node 3", "Node 4", "Node 5");
+    // Room for three 100-byte blocks and their headers
+    private static final long MAX_EXTENT_SIZE = 3 * (100 + Extent.HEADER_SIZE);
+
+    @TempDir
+    Path dir;
+
+    private final Map<String, ExtentStore> stores = new HashMap<>();
+    private StreamManager streamManager;
+    private ChainReplicator replicator;
+    private ReplicatedStream stream;
+
+    @BeforeEach
+    void startCluster() throws IOException {
+        for (String node : NODES) {
+            stores.put(node, new ExtentStore(dir.resolve(node.replace(' ', '-')), MAX_EXTENT_SIZE, false));
+        }
+        streamManager = new StreamManager(NODES);
+        replicator = new ChainReplicator(stores::get, streamManager::isAvailable);
+        stream = new ReplicatedStream(NODES.subList(0, 3), streamManager, replicator,
+            new Tracer(new MetricsRegistry(), 10));
+    }
+
+    @AfterEach
+    void stopCluster() throws IOException {
+        replicator.close();
+        for (ExtentStore store : stores.values()) {
+            store.close();
+        }
+    }
+
+    @Test
+    void rollsToANewExtentWhenTheCurrentOneIsFull() throws IOException {
+        Set<Long> extents = new LinkedHashSet<>();
+        for (int i = 0; i < 10; i++) {
+            Map<String, BlockLocation> locations = stream.append(block(i)).join();
+            assertEquals(3, locations.size());
+            for (Map.Entry<String, BlockLocation> replica : locations.entrySet()) {
+                assertEquals(block(i), stores.get(replica.getKey()).read(replica.getValue()));
+            }
+            extents.add(locations.values().iterator().next().getExtentId());
+        }
+        assertEquals(4, extents.size());
+        // Every extent but the last was sealed holding its three blocks
+        Long[] ids = extents.toArray(new Long[0]);
+        for (int i = 0; i < ids.length - 1; i++) {
+            ExtentInfo extent = streamManager.getExtent(ids[i]);
+            assertTrue(extent.isSealed());
+            assertEquals(MAX_EXTENT_SIZE, extent.getSealedLength());
+        }
+        assertFalse(streamManager.getExtent(ids[ids.length - 1]).isSealed());
+    }
+
+    @Test
+    void sealsAndMovesToHealthyNodesWhenAReplicaFails() throws IOException {
+        Map<String, BlockLocation> before = stream.append(block(0)).join();
+        long firstExtent = before.values().iterator().next().getExtentId();
+        String failed = "Node 2";
+        assertTrue(before.containsKey(failed));
+        streamManager.setNodeAvailable(failed, false);
+
+        Map<String, BlockLocation> after = stream.append(block(1)).join();
+        BlockLocation moved = after.values().iterator().next();
+        assertNotEquals(firstExtent, moved.getExtentId());
+        assertFalse(after.containsKey(failed));
+        for (Map.Entry<String, BlockLocation> replica : after.entrySet()) {
+            assertEquals(block(1), stores.get(replica.getKey()).read(replica.getValue()));
+        }
+
+        // The old extent keeps exactly the acknowledged block on its healthy replicas
+        ExtentInfo sealed = streamManager.getExtent(firstExtent);
+        BlockLocation acknowledged = before.get(failed);
+        assertTrue(sealed.isSealed());
+        assertEquals(acknowledged.getOffset() + acknowledged.getLength(), sealed.getSealedLength());
+        for (String node : before.keySet()) {
+            if (!node.equals(failed)) {
+                assertEquals(block(0), stores.get(node).read(before.get(node)));
+                assertEquals(sealed.getSealedLength(), stores.get(node).getLength(firstExtent));
+            }
+        }
+    }
+
+    @Test
+    void failsABlockThatCannotFitAnEmptyExtent() {
+        CompletionException e = assertThrows(CompletionException.class,
+            () -> stream.append(ByteBuffer.allocate((int) MAX_EXTENT_SIZE)).join());
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+        // The stream is still usable afterwards
+        assertEquals(3, stream.append(block(0)).join().size());
+    }
+
+    @Test
+    void failsOnceTooFewNodesAreLeft() {
+        for (String node : NODES.subList(0, 3)) {
+            streamManager.setNodeAvailable(node, false);
+        }
+        CompletionException e = assertThrows(CompletionException.class, () -> stream.append(block(0)).join());
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    private static ByteBuffer block(int i) {
+        byte[] bytes = new byte[100];
+        byte[] label = ("block " + i).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(label, 0, bytes, 0, label.length);
+        return ByteBuffer.wrap(bytes);
+    }
+}
@@ -0,0 +1,115 @@
+package com.objectstorage.frontend.service;
+
+import com.objectstorage.common.metrics.MetricsRegistry;
+import com.objectstorage.common.trace.Tracer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RpcClientTest {
+    private static final long HEDGE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final RpcClient rpc = new RpcClient(new Tracer(new MetricsRegistry(), 10), 2000);
+
+    @AfterEach
+    void close() {
+        rpc.close();
+    }
+
+    @Test
+    void invokeAllReturnsResultsInOrderAndFailsWithTheFirstFailure() throws IOException {
+        assertEquals(Arrays.asList(2, 4, 6), rpc.invokeAll(Arrays.asList(1, 2, 3), i -> i * 2));
+        IOException e = assertThrows(IOException.class, () -> rpc.invokeAll(Arrays.asList(1, 2, 3), i -> {
+            if (i == 2) {
+                throw new IOException("node 2 is down");
+            }
+            return i;
+        }));
+        assertEquals("node 2 is down", e.getMessage());
+    }
+
+    @Test
+    void firstOfHedgesASlowTargetAndMovesOnFromAFailedOne() throws IOException {
+        try (RpcClient.Scope scope = rpc.open()) {
+            String answer = rpc.firstOf(scope, Arrays.asList("slow", "fast"), HEDGE_NANOS, target -> {
+                if (target.equals("slow")) {
+                    sleep(1000);
+                }
+                return target;
+            });
+            assertEquals("fast", answer);
+
+            answer = rpc.firstOf(scope, Arrays.asList("broken", "good"), TimeUnit.SECONDS.toNanos(10), target -> {
+                if (target.equals("broken")) {
+                    throw new IOException("checksum mismatch");
+                }
+                return target;
+            });
+            assertEquals("good", answer);
+        }
+    }
+
+    @Test
+    void firstOfCallsNothingOnceItsScopeHasFailed() {
+        List<String> called = new CopyOnWriteArrayList<>();
+        RpcClient.Scope scope = rpc.open();
+        scope.close();
+        assertTrue(scope.isFailed());
+        assertThrows(CancellationException.class,
+            () -> rpc.firstOf(scope, Arrays.asList("a", "b"), HEDGE_NANOS, target -> {
+                called.add(target);
+                return target;
+            }));
+        assertEquals(List.of(), called);
+    }
+
+    @Test
+    void firstOfStopsHedgingWhenItsScopeFailsMidway() {
+        List<String> called = new CopyOnWriteArrayList<>();
+        RpcClient.Scope scope = rpc.open();
+        // A sibling failing while the first target is still busy
+        assertThrows(CancellationException.class,
+            () -> rpc.firstOf(scope, Arrays.asList("a", "b", "c"), HEDGE_NANOS, target -> {
+                called.add(target);
+                scope.fail(new IOException("sibling failed"));
+                sleep(500);
+                return target;
+            }));
+        assertEquals(List.of("a"), called);
+    }
+
+    @Test
+    void forksOfAFailedScopeAreNotRun() {
+        List<Integer> called = new CopyOnWriteArrayList<>();
+        RpcClient.Scope scope = rpc.open();
+        RpcClient.Subtask<Integer> failing = scope.fork(() -> {
+            throw new IOException("first read failed");
+        });
+        assertThrows(IOException.class, failing::get);
+        RpcClient.Subtask<Integer> later = scope.fork(() -> {
+            called.add(1);
+            return 1;
+        });
+        IOException e = assertThrows(IOException.class, later::get);
+        assertEquals("first read failed", e.getMessage());
+        assertEquals(List.of(), called);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
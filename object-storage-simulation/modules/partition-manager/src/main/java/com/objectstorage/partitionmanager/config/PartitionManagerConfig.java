@@ -0,0 +1,57 @@
+package com.objectstorage.partitionmanager.config;
+
+import com.objectstorage.partitionmanager.partition.PartitionBalancer;
+import com.objectstorage.partitionmanager.partition.MapState;
+import com.objectstorage.partitionmanager.partition.PartitionMap;
+import com.objectstorage.partitionmanager.partition.ReplicatedMapJournal;
+import com.objectstorage.partitionmanager.raft.RaftGroup;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@Configuration
+public class PartitionManagerConfig {
+    // The partition manager's replicas keep the layout in a replicated log under
+    // the cluster's data root when there is one, so a restart with the same data
+    // dir finds every split, merge and move it had committed
+    @Bean(destroyMethod = "close")
+    public RaftGroup partitionManagerReplicas(ObjectProvider<Path> dataRoot,
+            @Value("${partition-manager.replicas:Partition Manager 1,Partition Manager 2,Partition Manager 3}") List<String> replicas,
+            @Value("${partition-manager.raft.sync:true}") boolean sync,
+            @Value("${partition-manager.raft.heartbeat-ms:50}") long heartbeatMillis,
+            @Value("${partition-manager.raft.election-timeout-ms:300}") long electionTimeoutMillis,
+            @Value("${partition-manager.raft.snapshot-entries:64}") int snapshotEntries) throws IOException {
+        Path root = dataRoot.getIfAvailable();
+        Path dir = root != null ? root.resolve("partition-manager") : Files.createTempDirectory("partition-manager-");
+        RaftGroup group = new RaftGroup(replicas, dir, MapState::new, sync, heartbeatMillis, electionTimeoutMillis,
+            snapshotEntries);
+        group.start();
+        return group;
+    }
+
+    @Bean
+    public PartitionMap partitionMap(RaftGroup partitionManagerReplicas,
+            @Value("${partition-manager.servers:Partition Server 1,Partition Server 2,Partition Server 3}") List<String> servers,
+            @Value("${partition-manager.initial-boundaries:h,q}") List<String> boundaries,
+            @Value("${partition-manager.raft.startup-timeout-ms:10000}") long startupTimeoutMillis)
+            throws InterruptedException {
+        return ReplicatedMapJournal.open(partitionManagerReplicas, servers, boundaries, startupTimeoutMillis);
+    }
+
+    @Bean(destroyMethod = "close")
+    public PartitionBalancer partitionBalancer(PartitionMap partitionMap,
+            @Value("${partition-manager.split-threshold:500}") double splitThreshold,
+            @Value("${partition-manager.merge-threshold:10}") double mergeThreshold,
+            @Value("${partition-manager.balance-interval-ms:5000}") long intervalMillis) {
+        PartitionBalancer balancer = new PartitionBalancer(partitionMap, splitThreshold, mergeThreshold,
+            partitionMap.getServers().size());
+        balancer.start(intervalMillis);
+        return balancer;
+    }
+}
@@ -1,18 +1,31 @@
 package com.objectstorage.partitionmanager.controller;
 
+import com.objectstorage.partitionmanager.partition.Partition;
+import com.objectstorage.partitionmanager.partition.PartitionMap;
+import com.objectstorage.partitionmanager.raft.RaftGroup;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestParam;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/partition-manager")
 @CrossOrigin(origins = "http://localhost:5173")
 public class PartitionManagerController {
+    private final PartitionMap partitionMap;
+    private final RaftGroup replicas;
+
+    public PartitionManagerController(PartitionMap partitionMap, RaftGroup replicas) {
+        this.partitionMap = partitionMap;
+        this.replicas = replicas;
+    }
+
     @GetMapping("/health")
     public String health() {
         return "Partition Manager is up";
@@ -20,11 +33,46 @@ public class PartitionManagerController {
 
     // GET /partition-for-key?key=...
     @GetMapping("/partition-for-key")
-    public ResponseEntity<Map<String, String>> getPartitionForKey(@RequestParam String key) {
-        // Dummy logic: always return Partition Server 1
-        Map<String, String> result = new HashMap<>();
-        result.put("partitionServer", "Partition Server 1");
+    public ResponseEntity<Map<String, Object>> getPartitionForKey(@RequestParam String key) {
+        // Only a leader holding its lease answers, from its own copy of the map
+        if (!partitionMap.isReadable()) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "No Partition Manager leader; leader election in progress");
+            return ResponseEntity.status(503).body(error);
+        }
+        Partition partition = partitionMap.route(key);
+        Map<String, Object> result = describe(partition);
+        result.put("key", key);
+        result.put("version", partitionMap.getVersion());
         return ResponseEntity.ok(result);
     }
-    // TODO: Add endpoints for partition assignment, status, etc.
-} 
\ No newline at end of file
+
+    // GET /partitions lists every key range in order with its server and load
+    @GetMapping("/partitions")
+    public Map<String, Object> getPartitions() {
+        List<Map<String, Object>> ranges = new ArrayList<>();
+        for (Partition partition : partitionMap.getPartitions()) {
+            ranges.add(describe(partition));
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("version", partitionMap.getVersion());
+        result.put("partitions", ranges);
+        return result;
+    }
+
+    // GET /replicas shows each replica's role, term, commit and snapshot index
+    @GetMapping("/replicas")
+    public List<Map<String, Object>> getReplicas() {
+        return replicas.getStatus();
+    }
+
+    static Map<String, Object> describe(Partition partition) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("partitionId", partition.getId());
+        result.put("partitionServer", partition.getServer());
+        result.put("rangeStart", partition.getRange().getStart());
+        result.put("rangeEnd", partition.getRange().getEnd());
+        result.put("requestRate", partition.getRequestRate());
+        return result;
+    }
+}
@@ -0,0 +1,129 @@
+package com.objectstorage.partitionmanager.partition;
+
+import com.objectstorage.common.partition.KeyRange;
+import com.objectstorage.common.partition.PartitionAssignment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// One change to the partition layout as it goes through the replicated log:
+// the ranges it (re)assigns, keyed by their start, the range starts it drops
+// and the servers whose availability it sets, plus the map version and next
+// partition id after it. Ranges are listed in the order they must be published
+// so that every key keeps an owner. A reset change replaces the whole layout;
+// it is also the form snapshots take.
+public final class MapChange {
+    private final boolean reset;
+    private final long version;
+    private final long nextPartitionId;
+    private final Map<String, Boolean> servers = new LinkedHashMap<>();
+    private final List<PartitionAssignment> assigned = new ArrayList<>();
+    private final List<String> removed = new ArrayList<>();
+
+    MapChange(boolean reset, long version, long nextPartitionId) {
+        this.reset = reset;
+        this.version = version;
+        this.nextPartitionId = nextPartitionId;
+    }
+
+    MapChange server(String server, boolean available) {
+        servers.put(server, available);
+        return this;
+    }
+
+    MapChange assign(long partitionId, KeyRange range, String server) {
+        assigned.add(new PartitionAssignment(partitionId, range, server));
+        return this;
+    }
+
+    MapChange remove(String rangeStart) {
+        removed.add(rangeStart);
+        return this;
+    }
+
+    public boolean isReset() {
+        return reset;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getNextPartitionId() {
+        return nextPartitionId;
+    }
+
+    public Map<String, Boolean> getServers() {
+        return Collections.unmodifiableMap(servers);
+    }
+
+    public List<PartitionAssignment> getAssigned() {
+        return Collections.unmodifiableList(assigned);
+    }
+
+    public List<String> getRemoved() {
+        return Collections.unmodifiableList(removed);
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeBoolean(reset);
+            out.writeLong(version);
+            out.writeLong(nextPartitionId);
+            out.writeInt(servers.size());
+            for (Map.Entry<String, Boolean> entry : servers.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeBoolean(entry.getValue());
+            }
+            out.writeInt(assigned.size());
+            for (PartitionAssignment assignment : assigned) {
+                out.writeLong(assignment.getPartitionId());
+                out.writeUTF(assignment.getRange().getStart());
+                // The last range is unbounded
+                out.writeBoolean(assignment.getRange().getEnd() != null);
+                if (assignment.getRange().getEnd() != null) {
+                    out.writeUTF(assignment.getRange().getEnd());
+                }
+                out.writeUTF(assignment.getServer());
+            }
+            out.writeInt(removed.size());
+            for (String start : removed) {
+                out.writeUTF(start);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static MapChange decode(byte[] encoded) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+            MapChange change = new MapChange(in.readBoolean(), in.readLong(), in.readLong());
+            for (int i = in.readInt(); i > 0; i--) {
+                change.server(in.readUTF(), in.readBoolean());
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                long partitionId = in.readLong();
+                String start = in.readUTF();
+                String end = in.readBoolean() ? in.readUTF() : null;
+                change.assign(partitionId, new KeyRange(start, end), in.readUTF());
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                change.remove(in.readUTF());
+            }
+            return change;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.objectstorage.partitionmanager.partition;
+
+// Where a PartitionMap makes each change durable before applying it
+interface MapJournal {
+    // Throws if the change could not be made durable; the map is then left as it was
+    void commit(MapChange change);
+
+    // Whether the map may answer reads right now
+    boolean isReadable();
+}
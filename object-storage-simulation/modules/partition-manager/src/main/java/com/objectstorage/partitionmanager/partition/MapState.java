@@ -0,0 +1,67 @@
+package com.objectstorage.partitionmanager.partition;
+
+import com.objectstorage.common.partition.PartitionAssignment;
+import com.objectstorage.partitionmanager.raft.StateMachine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// A partition manager replica's copy of the layout: just the committed
+// assignments and server availability, without the load figures the live
+// PartitionMap keeps. Version 0 means nothing has been committed yet.
+public class MapState implements StateMachine {
+    private final TreeMap<String, PartitionAssignment> assignments = new TreeMap<>();
+    private final Map<String, Boolean> servers = new LinkedHashMap<>();
+    private long version;
+    private long nextPartitionId = 1;
+
+    @Override
+    public void apply(byte[] command) {
+        if (command.length > 0) {
+            apply(MapChange.decode(command));
+        }
+    }
+
+    void apply(MapChange change) {
+        if (change.isReset()) {
+            assignments.clear();
+            servers.clear();
+        }
+        servers.putAll(change.getServers());
+        for (PartitionAssignment assignment : change.getAssigned()) {
+            assignments.put(assignment.getRange().getStart(), assignment);
+        }
+        for (String start : change.getRemoved()) {
+            assignments.remove(start);
+        }
+        version = change.getVersion();
+        nextPartitionId = change.getNextPartitionId();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // The whole layout as one reset change
+    public MapChange toChange() {
+        MapChange change = new MapChange(true, version, nextPartitionId);
+        for (Map.Entry<String, Boolean> server : servers.entrySet()) {
+            change.server(server.getKey(), server.getValue());
+        }
+        for (PartitionAssignment assignment : assignments.values()) {
+            change.assign(assignment.getPartitionId(), assignment.getRange(), assignment.getServer());
+        }
+        return change;
+    }
+
+    @Override
+    public byte[] snapshot() {
+        return toChange().encode();
+    }
+
+    @Override
+    public void restore(byte[] snapshot) {
+        apply(MapChange.decode(snapshot));
+    }
+}
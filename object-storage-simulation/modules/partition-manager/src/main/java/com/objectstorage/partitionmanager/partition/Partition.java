@@ -0,0 +1,87 @@
+package com.objectstorage.partitionmanager.partition;
+
+import com.objectstorage.common.partition.KeyRange;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// One contiguous key range and the partition server serving it. The range never
+// changes; splits and merges replace partitions with new ones. Request counts
+// and a small ring of recently requested keys feed the balancer's decisions.
+public class Partition {
+    private static final int KEY_SAMPLES = 64;
+
+    private final long id;
+    private final KeyRange range;
+    private volatile String server;
+    private final LongAdder requests = new LongAdder();
+    private final AtomicReferenceArray<String> sampledKeys = new AtomicReferenceArray<>(KEY_SAMPLES);
+    private final AtomicInteger sampleCursor = new AtomicInteger();
+    private volatile double requestRate;
+
+    Partition(long id, KeyRange range, String server) {
+        this.id = id;
+        this.range = range;
+        this.server = server;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public KeyRange getRange() {
+        return range;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    void setServer(String server) {
+        this.server = server;
+    }
+
+    // Smoothed requests per second as of the last balancer round
+    public double getRequestRate() {
+        return requestRate;
+    }
+
+    void setRequestRate(double requestRate) {
+        this.requestRate = requestRate;
+    }
+
+    void recordRequest(String key) {
+        requests.increment();
+        sampledKeys.set(sampleCursor.getAndIncrement() & (KEY_SAMPLES - 1), key);
+    }
+
+    long drainRequests() {
+        return requests.sumThenReset();
+    }
+
+    // Median of the recently requested keys, or null if there is no key that
+    // would leave both halves of a split non-empty.
+    String medianSampledKey() {
+        List<String> keys = new ArrayList<>(KEY_SAMPLES);
+        for (int i = 0; i < KEY_SAMPLES; i++) {
+            String key = sampledKeys.get(i);
+            if (key != null && key.compareTo(range.getStart()) > 0 && range.contains(key)) {
+                keys.add(key);
+            }
+        }
+        if (keys.isEmpty()) {
+            return null;
+        }
+        Collections.sort(keys);
+        return keys.get(keys.size() / 2);
+    }
+
+    @Override
+    public String toString() {
+        return "Partition " + id + " " + range + " on " + server;
+    }
+}
@@ -0,0 +1,148 @@
+package com.objectstorage.partitionmanager.partition;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Periodically turns per-partition request counts into smoothed rates, splits
+// ranges that run hot, merges adjacent ranges that have gone cold and moves
+// partitions off overloaded servers. Each round returns what it changed.
+public class PartitionBalancer implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(PartitionBalancer.class);
+    private static final double SMOOTHING = 0.5;
+
+    private final PartitionMap partitionMap;
+    private final double splitThreshold;
+    private final double mergeThreshold;
+    private final int minPartitions;
+    private final ScheduledExecutorService scheduler;
+    private long lastRound = System.nanoTime();
+
+    // Thresholds are in requests per second per partition
+    public PartitionBalancer(PartitionMap partitionMap, double splitThreshold, double mergeThreshold, int minPartitions) {
+        if (mergeThreshold * 2 >= splitThreshold) {
+            throw new IllegalArgumentException("Merge threshold must be well below half the split threshold");
+        }
+        this.partitionMap = partitionMap;
+        this.splitThreshold = splitThreshold;
+        this.mergeThreshold = mergeThreshold;
+        this.minPartitions = minPartitions;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "partition-balancer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start(long intervalMillis) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                rebalance();
+            } catch (IllegalStateException e) {
+                // No partition manager leader to commit to, or the map changed
+                // under this round; the next round starts from the new layout
+            } catch (RuntimeException e) {
+                // E.g. a server that went down during the round. Letting it
+                // escape would cancel every later round.
+                log.warn("Rebalancing round failed", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized List<String> rebalance() {
+        List<String> changes = new ArrayList<>();
+        updateRates();
+        splitHotPartitions(changes);
+        mergeColdPartitions(changes);
+        evenOutServers(changes);
+        return changes;
+    }
+
+    private void updateRates() {
+        long now = System.nanoTime();
+        double seconds = Math.max((now - lastRound) / 1e9, 1e-3);
+        lastRound = now;
+        for (Partition partition : partitionMap.getPartitions()) {
+            double observed = partition.drainRequests() / seconds;
+            partition.setRequestRate(SMOOTHING * observed + (1 - SMOOTHING) * partition.getRequestRate());
+        }
+    }
+
+    private void splitHotPartitions(List<String> changes) {
+        for (Partition partition : partitionMap.getPartitions()) {
+            if (partition.getRequestRate() <= splitThreshold) {
+                continue;
+            }
+            String splitKey = partition.medianSampledKey();
+            if (splitKey == null) {
+                continue;
+            }
+            Partition[] halves = partitionMap.split(partition, splitKey, partitionMap.leastLoadedServer());
+            changes.add("Split " + partition.getRange() + " at " + splitKey + "; "
+                + halves[1].getRange() + " moved to " + halves[1].getServer());
+        }
+    }
+
+    private void mergeColdPartitions(List<String> changes) {
+        List<Partition> sorted = new ArrayList<>(partitionMap.getPartitions());
+        int remaining = sorted.size();
+        for (int i = 0; i + 1 < sorted.size() && remaining > minPartitions; i++) {
+            Partition lower = sorted.get(i);
+            Partition upper = sorted.get(i + 1);
+            if (lower.getRequestRate() + upper.getRequestRate() >= mergeThreshold) {
+                continue;
+            }
+            String server = partitionMap.isAvailable(lower.getServer()) ? lower.getServer() : upper.getServer();
+            Partition merged = partitionMap.merge(lower, upper, server);
+            changes.add("Merged " + lower.getRange() + " and " + upper.getRange() + " into " + merged.getRange()
+                + " on " + server);
+            remaining--;
+            i++;
+        }
+    }
+
+    // Moves the coldest partition from the busiest server to the idlest one while
+    // that narrows the gap, so a server coming back up picks up work again.
+    private void evenOutServers(List<String> changes) {
+        for (int moves = 0; moves < partitionMap.getPartitions().size(); moves++) {
+            Map<String, Integer> counts = partitionMap.serverPartitionCounts();
+            if (counts.size() < 2) {
+                return;
+            }
+            String busiest = null;
+            String idlest = null;
+            for (String server : counts.keySet()) {
+                if (busiest == null || counts.get(server) > counts.get(busiest)) {
+                    busiest = server;
+                }
+                if (idlest == null || counts.get(server) < counts.get(idlest)) {
+                    idlest = server;
+                }
+            }
+            if (counts.get(busiest) - counts.get(idlest) <= 1) {
+                return;
+            }
+            Partition coldest = null;
+            for (Partition partition : partitionMap.getPartitions()) {
+                if (partition.getServer().equals(busiest)
+                    && (coldest == null || partition.getRequestRate() < coldest.getRequestRate())) {
+                    coldest = partition;
+                }
+            }
+            partitionMap.assign(coldest, idlest);
+            changes.add("Moved " + coldest.getRange() + " from " + busiest + " to " + idlest);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,324 @@
+package com.objectstorage.partitionmanager.partition;
+
+import com.objectstorage.common.partition.KeyRange;
+import com.objectstorage.common.partition.PartitionAssignment;
+import com.objectstorage.common.partition.PartitionTable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Sorted map of key ranges to partition servers. Ranges are keyed by their start
+// key, so finding the owner of a key is a single floorEntry lookup. Lookups are
+// lock-free; changes to the layout are serialized and bump the map version.
+// Every change is built as a MapChange and, when the map has a journal, made
+// durable there before it is applied.
+public class PartitionMap {
+    private final ConcurrentNavigableMap<String, Partition> partitions = new ConcurrentSkipListMap<>();
+    private final Map<String, Boolean> servers = new LinkedHashMap<>();
+    private final AtomicLong nextPartitionId = new AtomicLong(1);
+    private final List<PartitionMapListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile long version;
+    private volatile MapJournal journal;
+
+    // Creates one partition per gap between the sorted boundary keys and hands
+    // them out round-robin to the given servers.
+    public PartitionMap(List<String> serverNames, List<String> boundaries) {
+        this(initialLayout(serverNames, boundaries));
+    }
+
+    // Rebuilds the map from a layout recovered from the journal
+    PartitionMap(MapChange layout) {
+        apply(layout);
+    }
+
+    private static MapChange initialLayout(List<String> serverNames, List<String> boundaries) {
+        if (serverNames.isEmpty()) {
+            throw new IllegalArgumentException("At least one partition server is required");
+        }
+        List<String> starts = new ArrayList<>();
+        starts.add("");
+        starts.addAll(boundaries);
+        MapChange layout = new MapChange(true, 1, starts.size() + 1);
+        for (String server : serverNames) {
+            layout.server(server, true);
+        }
+        for (int i = 0; i < starts.size(); i++) {
+            String end = i + 1 < starts.size() ? starts.get(i + 1) : null;
+            layout.assign(i + 1, new KeyRange(starts.get(i), end), serverNames.get(i % serverNames.size()));
+        }
+        return layout;
+    }
+
+    void setJournal(MapJournal journal) {
+        this.journal = journal;
+    }
+
+    // False while the journal cannot vouch that this map is current, such as
+    // during a partition manager leader election
+    public boolean isReadable() {
+        MapJournal current = journal;
+        return current == null || current.isReadable();
+    }
+
+    public Partition lookup(String key) {
+        return partitions.floorEntry(key).getValue();
+    }
+
+    // Looks up the owner of key and counts the request towards its load
+    public Partition route(String key) {
+        Partition partition = lookup(key);
+        partition.recordRequest(key);
+        return partition;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // Consistent copy of every assignment, tagged with the version it reflects
+    public synchronized PartitionTable snapshot() {
+        List<PartitionAssignment> assignments = new ArrayList<>(partitions.size());
+        for (Partition partition : partitions.values()) {
+            assignments.add(new PartitionAssignment(partition.getId(), partition.getRange(), partition.getServer()));
+        }
+        return new PartitionTable(version, assignments);
+    }
+
+    public void addListener(PartitionMapListener listener) {
+        listeners.add(listener);
+    }
+
+    // The whole layout as one reset change
+    synchronized MapChange layout() {
+        MapChange layout = new MapChange(true, version, nextPartitionId.get());
+        for (Map.Entry<String, Boolean> server : servers.entrySet()) {
+            layout.server(server.getKey(), server.getValue());
+        }
+        for (Partition partition : partitions.values()) {
+            layout.assign(partition.getId(), partition.getRange(), partition.getServer());
+        }
+        return layout;
+    }
+
+    // Replaces the layout with the one committed in the journal. It is read
+    // under this map's lock so no change of this map can be in flight.
+    synchronized void reload(Supplier<MapChange> committed) {
+        apply(committed.get());
+    }
+
+    private void commit(MapChange change) {
+        MapJournal current = journal;
+        if (current != null) {
+            current.commit(change);
+        }
+        apply(change);
+    }
+
+    // Partitions keep their identity, and with it their load figures, as long
+    // as their id is unchanged
+    private void apply(MapChange change) {
+        if (change.isReset()) {
+            servers.clear();
+        }
+        servers.putAll(change.getServers());
+        Set<String> starts = new HashSet<>();
+        for (PartitionAssignment assignment : change.getAssigned()) {
+            String start = assignment.getRange().getStart();
+            starts.add(start);
+            Partition current = partitions.get(start);
+            if (current != null && current.getId() == assignment.getPartitionId()) {
+                current.setServer(assignment.getServer());
+            } else {
+                partitions.put(start, new Partition(assignment.getPartitionId(), assignment.getRange(),
+                    assignment.getServer()));
+            }
+        }
+        for (String start : change.getRemoved()) {
+            partitions.remove(start);
+        }
+        if (change.isReset()) {
+            partitions.keySet().retainAll(starts);
+        }
+        nextPartitionId.set(change.getNextPartitionId());
+        if (change.getVersion() != version) {
+            version = change.getVersion();
+            changed();
+        }
+    }
+
+    private void changed() {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        PartitionTable table = snapshot();
+        for (PartitionMapListener listener : listeners) {
+            listener.partitionMapChanged(table);
+        }
+    }
+
+    public Collection<Partition> getPartitions() {
+        return new ArrayList<>(partitions.values());
+    }
+
+    public synchronized List<String> getServers() {
+        return new ArrayList<>(servers.keySet());
+    }
+
+    public synchronized List<String> getAvailableServers() {
+        List<String> available = new ArrayList<>();
+        for (Map.Entry<String, Boolean> entry : servers.entrySet()) {
+            if (entry.getValue()) {
+                available.add(entry.getKey());
+            }
+        }
+        return available;
+    }
+
+    public synchronized boolean isAvailable(String server) {
+        return Boolean.TRUE.equals(servers.get(server));
+    }
+
+    public synchronized void addServer(String server) {
+        if (!servers.containsKey(server)) {
+            commit(new MapChange(false, version, nextPartitionId.get()).server(server, true));
+        }
+    }
+
+    // Marks a server up or down. Partitions of a server going down are moved to
+    // the least loaded remaining servers; returns the partitions that moved.
+    public synchronized List<Partition> setServerAvailable(String server, boolean available) {
+        if (!servers.containsKey(server)) {
+            throw new IllegalArgumentException("Unknown partition server " + server);
+        }
+        // Pick each partition's new server as if the earlier ones had already moved
+        Map<String, Double> loads = serverLoads();
+        Map<String, Integer> counts = serverPartitionCounts();
+        loads.remove(server);
+        counts.remove(server);
+        Map<Partition, String> targets = new LinkedHashMap<>();
+        if (!available && !loads.isEmpty()) {
+            for (Partition partition : partitions.values()) {
+                if (partition.getServer().equals(server)) {
+                    String target = leastLoaded(loads, counts);
+                    loads.put(target, loads.get(target) + partition.getRequestRate());
+                    counts.put(target, counts.get(target) + 1);
+                    targets.put(partition, target);
+                }
+            }
+        }
+        MapChange change = new MapChange(false, targets.isEmpty() ? version : version + 1, nextPartitionId.get())
+            .server(server, available);
+        for (Map.Entry<Partition, String> target : targets.entrySet()) {
+            change.assign(target.getKey().getId(), target.getKey().getRange(), target.getValue());
+        }
+        commit(change);
+        return new ArrayList<>(targets.keySet());
+    }
+
+    public synchronized void assign(Partition partition, String server) {
+        if (!isAvailable(server)) {
+            throw new IllegalArgumentException("Partition server " + server + " is not available");
+        }
+        if (partitions.get(partition.getRange().getStart()) != partition) {
+            throw new IllegalStateException(partition + " is no longer in the map");
+        }
+        if (!partition.getServer().equals(server)) {
+            commit(new MapChange(false, version + 1, nextPartitionId.get())
+                .assign(partition.getId(), partition.getRange(), server));
+        }
+    }
+
+    // Splits partition at splitKey; the lower half stays where it is and the
+    // upper half goes to upperServer. Returns the two new partitions.
+    public synchronized Partition[] split(Partition partition, String splitKey, String upperServer) {
+        KeyRange range = partition.getRange();
+        if (partitions.get(range.getStart()) != partition) {
+            throw new IllegalStateException(partition + " is no longer in the map");
+        }
+        if (splitKey.compareTo(range.getStart()) <= 0 || !range.contains(splitKey)) {
+            throw new IllegalArgumentException("Split key " + splitKey + " is not inside " + range);
+        }
+        long lowerId = nextPartitionId.get();
+        long upperId = lowerId + 1;
+        // Publish the upper half first so every key always has an owner
+        commit(new MapChange(false, version + 1, upperId + 1)
+            .assign(upperId, new KeyRange(splitKey, range.getEnd()), upperServer)
+            .assign(lowerId, new KeyRange(range.getStart(), splitKey), partition.getServer()));
+        Partition lower = partitions.get(range.getStart());
+        Partition upper = partitions.get(splitKey);
+        lower.setRequestRate(partition.getRequestRate() / 2);
+        upper.setRequestRate(partition.getRequestRate() / 2);
+        return new Partition[] {lower, upper};
+    }
+
+    // Merges two adjacent partitions into one served by server
+    public synchronized Partition merge(Partition lower, Partition upper, String server) {
+        if (!lower.getRange().adjoins(upper.getRange())) {
+            throw new IllegalArgumentException(lower.getRange() + " and " + upper.getRange() + " are not adjacent");
+        }
+        if (partitions.get(lower.getRange().getStart()) != lower || partitions.get(upper.getRange().getStart()) != upper) {
+            throw new IllegalStateException("Partitions to merge are no longer in the map");
+        }
+        long mergedId = nextPartitionId.get();
+        // Widen the lower entry before dropping the upper one so no key goes unowned
+        commit(new MapChange(false, version + 1, mergedId + 1)
+            .assign(mergedId, new KeyRange(lower.getRange().getStart(), upper.getRange().getEnd()), server)
+            .remove(upper.getRange().getStart()));
+        Partition merged = partitions.get(lower.getRange().getStart());
+        merged.setRequestRate(lower.getRequestRate() + upper.getRequestRate());
+        return merged;
+    }
+
+    // Sum of smoothed request rates of the partitions each available server holds
+    public synchronized Map<String, Double> serverLoads() {
+        Map<String, Double> loads = new LinkedHashMap<>();
+        for (String server : getAvailableServers()) {
+            loads.put(server, 0.0);
+        }
+        for (Partition partition : partitions.values()) {
+            loads.computeIfPresent(partition.getServer(), (s, load) -> load + partition.getRequestRate());
+        }
+        return loads;
+    }
+
+    public synchronized Map<String, Integer> serverPartitionCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String server : getAvailableServers()) {
+            counts.put(server, 0);
+        }
+        for (Partition partition : partitions.values()) {
+            counts.computeIfPresent(partition.getServer(), (s, count) -> count + 1);
+        }
+        return counts;
+    }
+
+    // Available server with the lowest load, ties broken by fewest partitions
+    public synchronized String leastLoadedServer() {
+        String best = leastLoaded(serverLoads(), serverPartitionCounts());
+        if (best == null) {
+            throw new IllegalStateException("No partition server is available");
+        }
+        return best;
+    }
+
+    private static String leastLoaded(Map<String, Double> loads, Map<String, Integer> counts) {
+        String best = null;
+        for (String server : loads.keySet()) {
+            if (best == null || loads.get(server) < loads.get(best)
+                || (loads.get(server).equals(loads.get(best)) && counts.get(server) < counts.get(best))) {
+                best = server;
+            }
+        }
+        return best;
+    }
+}
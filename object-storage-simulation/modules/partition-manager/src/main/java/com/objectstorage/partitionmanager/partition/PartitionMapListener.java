@@ -0,0 +1,8 @@
+package com.objectstorage.partitionmanager.partition;
+
+import com.objectstorage.common.partition.PartitionTable;
+
+// Notified after every change to the partition layout, in version order
+public interface PartitionMapListener {
+    void partitionMapChanged(PartitionTable table);
+}
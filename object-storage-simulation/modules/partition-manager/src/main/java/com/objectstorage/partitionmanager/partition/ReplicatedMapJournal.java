@@ -0,0 +1,66 @@
+package com.objectstorage.partitionmanager.partition;
+
+import com.objectstorage.partitionmanager.raft.LeaderListener;
+import com.objectstorage.partitionmanager.raft.NotLeaderException;
+import com.objectstorage.partitionmanager.raft.RaftGroup;
+import com.objectstorage.partitionmanager.raft.StateMachine;
+
+import java.util.List;
+
+// Keeps a PartitionMap in step with the partition manager's replicated log:
+// every change is committed to a majority of replicas before the map applies
+// it, and reads are only vouched for while some replica holds the lease.
+// Whenever a new leader takes over, the map is reloaded from its state, which
+// also settles a change whose commit failed after reaching some replicas.
+public final class ReplicatedMapJournal implements MapJournal, LeaderListener {
+    private final RaftGroup replicas;
+    private final PartitionMap partitionMap;
+
+    private ReplicatedMapJournal(RaftGroup replicas, PartitionMap partitionMap) {
+        this.replicas = replicas;
+        this.partitionMap = partitionMap;
+    }
+
+    // Waits for the replicas to elect a leader and builds the map from what
+    // they have committed. Replicas that have never committed anything are
+    // seeded with the initial layout.
+    public static PartitionMap open(RaftGroup replicas, List<String> serverNames, List<String> boundaries,
+                                    long timeoutMillis) throws InterruptedException {
+        replicas.awaitLeader(timeoutMillis);
+        MapChange committed = replicas.query(ReplicatedMapJournal::layoutOf);
+        PartitionMap partitionMap;
+        if (committed.getVersion() == 0) {
+            partitionMap = new PartitionMap(serverNames, boundaries);
+            replicas.propose(partitionMap.layout().encode());
+        } else {
+            partitionMap = new PartitionMap(committed);
+        }
+        ReplicatedMapJournal journal = new ReplicatedMapJournal(replicas, partitionMap);
+        partitionMap.setJournal(journal);
+        replicas.addListener(journal);
+        return partitionMap;
+    }
+
+    private static MapChange layoutOf(StateMachine state) {
+        return ((MapState) state).toChange();
+    }
+
+    @Override
+    public void commit(MapChange change) {
+        replicas.propose(change.encode());
+    }
+
+    @Override
+    public boolean isReadable() {
+        return replicas.isReadable();
+    }
+
+    @Override
+    public void leaderElected(String leader, long term) {
+        try {
+            partitionMap.reload(() -> replicas.query(ReplicatedMapJournal::layoutOf));
+        } catch (NotLeaderException e) {
+            // Already lost again; the next leader reloads the map
+        }
+    }
+}
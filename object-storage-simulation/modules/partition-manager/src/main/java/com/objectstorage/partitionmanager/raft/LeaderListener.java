@@ -0,0 +1,7 @@
+package com.objectstorage.partitionmanager.raft;
+
+// Notified, outside any replica lock, once a newly elected leader has committed
+// an entry of its own term and so holds a read lease
+public interface LeaderListener {
+    void leaderElected(String leader, long term);
+}
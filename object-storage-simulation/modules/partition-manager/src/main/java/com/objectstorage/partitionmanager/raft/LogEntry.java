@@ -0,0 +1,15 @@
+package com.objectstorage.partitionmanager.raft;
+
+// One command in the replicated log. An empty command is the no-op a new
+// leader appends to commit everything before its term.
+final class LogEntry {
+    final long index;
+    final long term;
+    final byte[] command;
+
+    LogEntry(long index, long term, byte[] command) {
+        this.index = index;
+        this.term = term;
+        this.command = command;
+    }
+}
@@ -0,0 +1,9 @@
+package com.objectstorage.partitionmanager.raft;
+
+// No replica currently holds the leadership, or the leader could not reach a
+// majority; the caller may retry once a new leader has been elected
+public class NotLeaderException extends IllegalStateException {
+    public NotLeaderException(String message) {
+        super(message);
+    }
+}
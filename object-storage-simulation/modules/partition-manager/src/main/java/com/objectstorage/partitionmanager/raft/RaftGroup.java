@@ -0,0 +1,464 @@
+package com.objectstorage.partitionmanager.raft;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// A Raft-style replicated log over a few in-process replicas, each with its own
+// durable log and snapshots in a directory of its own. Messages between replicas
+// are method calls delivered under the group's lock, one at a time, as if over
+// a network that never reorders; a stopped replica simply does not answer.
+//
+// The leader holds a lease that starts when a heartbeat round reaches a
+// majority and runs for most of the election timeout. Followers neither vote
+// nor stand for election while they have heard from a leader within that
+// timeout, so no other leader can be elected before the lease runs out and
+// the holder can answer reads from its own state without a quorum round.
+//
+// Restarting a replica costs loading its last snapshot and replaying the log
+// entries after it. Every replica snapshots its state machine and drops the
+// entries it covers once enough have been applied, so both stay bounded
+// however long the cluster has been running.
+public class RaftGroup implements Closeable {
+    private static final int MAX_BATCH = 64;
+    // Bounds how many append round trips catching up one peer may take per heartbeat
+    private static final int MAX_CATCH_UP_ROUNDS = 8;
+
+    // How a replica came back: the snapshot it loaded, the entries it replayed
+    // on top and the entries it kept for the leader to confirm
+    public static final class Recovery {
+        private final String replica;
+        private final long snapshotIndex;
+        private final long replayedEntries;
+        private final long pendingEntries;
+        private final long millis;
+
+        Recovery(String replica, long snapshotIndex, long replayedEntries, long pendingEntries, long millis) {
+            this.replica = replica;
+            this.snapshotIndex = snapshotIndex;
+            this.replayedEntries = replayedEntries;
+            this.pendingEntries = pendingEntries;
+            this.millis = millis;
+        }
+
+        public String getReplica() {
+            return replica;
+        }
+
+        public long getSnapshotIndex() {
+            return snapshotIndex;
+        }
+
+        public long getReplayedEntries() {
+            return replayedEntries;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        @Override
+        public String toString() {
+            return "loaded snapshot at index " + snapshotIndex + " and replayed " + replayedEntries
+                + " log entries in " + millis + " ms (" + (pendingEntries - replayedEntries)
+                + " left for the leader to confirm)";
+        }
+    }
+
+    private static final class Lease {
+        final String leader;
+        final long term;
+        final long expiresAt;
+
+        Lease(String leader, long term, long expiresAt) {
+            this.leader = leader;
+            this.term = term;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final List<RaftReplica> replicas = new ArrayList<>();
+    private final long heartbeatMillis;
+    private final long leaseNanos;
+    private final int snapshotEntries;
+    private final List<LeaderListener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler;
+    // Read without the lock to answer lease reads
+    private volatile Lease lease;
+    // Guarded by this group
+    private long announcedTerm;
+    private final List<Lease> elected = new ArrayList<>();
+
+    // Each replica keeps its files in a subdirectory of dir named after it
+    public RaftGroup(List<String> replicaIds, Path dir, Supplier<StateMachine> stateMachines, boolean sync,
+                     long heartbeatMillis, long electionTimeoutMillis, int snapshotEntries) {
+        if (replicaIds.size() < 3 || replicaIds.size() % 2 == 0) {
+            throw new IllegalArgumentException("A replica group needs an odd number of at least three replicas");
+        }
+        if (heartbeatMillis * 3 > electionTimeoutMillis) {
+            throw new IllegalArgumentException("The election timeout must cover several heartbeats");
+        }
+        long electionTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(electionTimeoutMillis);
+        for (String id : replicaIds) {
+            replicas.add(new RaftReplica(id, dir.resolve(id.toLowerCase().replace(' ', '-')), stateMachines, sync,
+                electionTimeoutNanos));
+        }
+        this.heartbeatMillis = heartbeatMillis;
+        // Leaves a tenth of the timeout for the heartbeat to reach the followers
+        this.leaseNanos = electionTimeoutNanos * 9 / 10;
+        this.snapshotEntries = snapshotEntries;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "partition-manager-raft");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Recovers every replica from its directory and starts heartbeats and elections
+    public List<Recovery> start() throws IOException {
+        List<Recovery> recoveries = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (RaftReplica replica : replicas) {
+                recoveries.add(replica.start(now));
+            }
+        }
+        scheduler.scheduleWithFixedDelay(this::tick, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        return recoveries;
+    }
+
+    public void addListener(LeaderListener listener) {
+        listeners.add(listener);
+    }
+
+    // Whether some replica may answer reads locally right now
+    public boolean isReadable() {
+        Lease current = lease;
+        return current != null && current.expiresAt - System.nanoTime() > 0;
+    }
+
+    // The replica holding the lease, or null during an election
+    public String getLeader() {
+        Lease current = lease;
+        return current != null && current.expiresAt - System.nanoTime() > 0 ? current.leader : null;
+    }
+
+    // Appends command through the leader and returns its index once a majority
+    // of replicas has it on disk and the leader has applied it
+    public long propose(byte[] command) {
+        try {
+            synchronized (this) {
+                RaftReplica leader = leaseHolder();
+                if (leader == null) {
+                    throw new NotLeaderException("No leader has been elected");
+                }
+                long index;
+                try {
+                    index = leader.append(command);
+                } catch (IOException e) {
+                    crash(leader);
+                    throw new NotLeaderException("The leader failed to write its log: " + e.getMessage());
+                }
+                broadcast(leader, System.nanoTime());
+                if (!leader.isRunning() || leader.getCommitIndex() < index) {
+                    // Whether the entry survives is now up to the next election,
+                    // which every listener hears about
+                    abdicate(leader);
+                    throw new NotLeaderException("The leader could not reach a majority of replicas");
+                }
+                return index;
+            }
+        } finally {
+            announce();
+        }
+    }
+
+    // Runs read against the lease holder's state machine
+    public synchronized <T> T query(Function<StateMachine, T> read) {
+        RaftReplica leader = leaseHolder();
+        if (leader == null) {
+            throw new NotLeaderException("No leader has been elected");
+        }
+        return read.apply(leader.getStateMachine());
+    }
+
+    // Blocks until some replica holds the lease, e.g. while the group elects
+    // its first leader after starting
+    public synchronized void awaitLeader(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (leaseHolder() == null) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                throw new NotLeaderException("No leader was elected within " + timeoutMillis + " ms");
+            }
+            wait(remaining);
+        }
+    }
+
+    // Stops the current leader as if its process had died; returns its id, or
+    // null if there is no leader to stop
+    public synchronized String stopLeader() {
+        for (RaftReplica replica : replicas) {
+            if (replica.isRunning() && replica.getRole() == RaftReplica.Role.LEADER) {
+                crash(replica);
+                return replica.getId();
+            }
+        }
+        return null;
+    }
+
+    // Replicas that are not running
+    public synchronized List<String> getStopped() {
+        List<String> stopped = new ArrayList<>();
+        for (RaftReplica replica : replicas) {
+            if (!replica.isRunning()) {
+                stopped.add(replica.getId());
+            }
+        }
+        return stopped;
+    }
+
+    // Brings a stopped replica back from its snapshot and log; null if it is running
+    public synchronized Recovery restart(String id) throws IOException {
+        for (RaftReplica replica : replicas) {
+            if (replica.getId().equals(id)) {
+                if (replica.isRunning()) {
+                    return null;
+                }
+                try {
+                    return replica.start(System.nanoTime());
+                } catch (IOException e) {
+                    replica.stop();
+                    throw e;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unknown replica " + id);
+    }
+
+    public synchronized List<Map<String, Object>> getStatus() {
+        long now = System.nanoTime();
+        Lease current = lease;
+        List<Map<String, Object>> status = new ArrayList<>();
+        for (RaftReplica replica : replicas) {
+            Map<String, Object> entry = replica.describe();
+            if (current != null && current.leader.equals(replica.getId())) {
+                entry.put("leaseRemainingMs", Math.max(0, TimeUnit.NANOSECONDS.toMillis(current.expiresAt - now)));
+            }
+            status.add(entry);
+        }
+        return status;
+    }
+
+    private void tick() {
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (RaftReplica replica : replicas) {
+                if (!replica.isRunning()) {
+                    continue;
+                }
+                if (replica.getRole() == RaftReplica.Role.LEADER) {
+                    broadcast(replica, now);
+                } else if (now - replica.getElectionDeadline() >= 0) {
+                    elect(replica, now);
+                }
+            }
+        }
+        announce();
+    }
+
+    private void elect(RaftReplica candidate, long now) {
+        try {
+            candidate.becomeCandidate(now);
+        } catch (IOException e) {
+            crash(candidate);
+            return;
+        }
+        int votes = 1;
+        for (RaftReplica peer : replicas) {
+            if (peer == candidate || !peer.isRunning()) {
+                continue;
+            }
+            try {
+                if (peer.handleVote(candidate.getTerm(), candidate.getId(), candidate.getLog().lastIndex(),
+                        candidate.getLog().lastTerm(), now)) {
+                    votes++;
+                } else if (peer.getTerm() > candidate.getTerm()) {
+                    candidate.stepDown(peer.getTerm());
+                    return;
+                }
+            } catch (IOException e) {
+                crash(peer);
+            }
+        }
+        if (votes < majority()) {
+            return;
+        }
+        List<String> peers = new ArrayList<>();
+        for (RaftReplica peer : replicas) {
+            if (peer != candidate) {
+                peers.add(peer.getId());
+            }
+        }
+        try {
+            candidate.becomeLeader(peers);
+        } catch (IOException e) {
+            crash(candidate);
+            return;
+        }
+        broadcast(candidate, now);
+    }
+
+    // One heartbeat round: brings every reachable follower up to date, then
+    // commits what a majority holds and renews the lease if a majority answered
+    private void broadcast(RaftReplica leader, long now) {
+        int acks = 1;
+        for (RaftReplica peer : replicas) {
+            if (peer == leader || !peer.isRunning()) {
+                continue;
+            }
+            try {
+                if (replicate(leader, peer, now)) {
+                    acks++;
+                }
+            } catch (IOException e) {
+                crash(peer);
+            }
+            if (leader.getRole() != RaftReplica.Role.LEADER) {
+                abdicate(leader);
+                return;
+            }
+        }
+        try {
+            if (acks >= majority()) {
+                leader.advanceCommit(majority());
+                if (leader.isEstablished()) {
+                    lease = new Lease(leader.getId(), leader.getTerm(), now + leaseNanos);
+                    if (leader.getTerm() > announcedTerm) {
+                        announcedTerm = leader.getTerm();
+                        elected.add(lease);
+                        notifyAll();
+                    }
+                }
+            }
+            for (RaftReplica replica : replicas) {
+                if (replica.isRunning()) {
+                    replica.maybeCompact(snapshotEntries);
+                }
+            }
+        } catch (IOException e) {
+            crash(leader);
+        }
+    }
+
+    // Sends peer what it is missing, from the leader's snapshot if the entries
+    // are gone from its log. Returns whether the peer accepted the leader's term.
+    private boolean replicate(RaftReplica leader, RaftReplica peer, long now) throws IOException {
+        RaftLog log = leader.getLog();
+        boolean acked = false;
+        for (int round = 0; round < MAX_CATCH_UP_ROUNDS; round++) {
+            long next = leader.getNextIndex(peer.getId());
+            RaftReplica.Reply reply;
+            if (next <= log.getSnapshotIndex()) {
+                reply = peer.handleSnapshot(leader.getTerm(), leader.getId(), log.getSnapshotIndex(),
+                    log.getSnapshotTerm(), log.getSnapshot(), now);
+            } else {
+                reply = peer.handleAppend(leader.getTerm(), leader.getId(), next - 1, log.termAt(next - 1),
+                    log.entriesFrom(next, MAX_BATCH), leader.getCommitIndex(), now);
+            }
+            if (reply.term > leader.getTerm()) {
+                leader.stepDown(reply.term);
+                return false;
+            }
+            acked = true;
+            if (reply.success) {
+                leader.setMatchIndex(peer.getId(), reply.matchIndex);
+                leader.setNextIndex(peer.getId(), reply.matchIndex + 1);
+                if (reply.matchIndex >= log.lastIndex()) {
+                    break;
+                }
+            } else {
+                leader.setNextIndex(peer.getId(), Math.max(1, Math.min(next - 1, reply.matchIndex + 1)));
+            }
+        }
+        return acked;
+    }
+
+    private RaftReplica leaseHolder() {
+        Lease current = lease;
+        if (current == null || current.expiresAt - System.nanoTime() <= 0) {
+            return null;
+        }
+        for (RaftReplica replica : replicas) {
+            if (replica.getId().equals(current.leader) && replica.isRunning() && replica.isEstablished()
+                    && replica.getTerm() == current.term) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private void abdicate(RaftReplica leader) {
+        Lease current = lease;
+        if (current != null && current.leader.equals(leader.getId())) {
+            lease = null;
+        }
+        if (leader.isRunning() && leader.getRole() == RaftReplica.Role.LEADER) {
+            try {
+                leader.stepDown(leader.getTerm());
+            } catch (IOException e) {
+                crash(leader);
+            }
+        }
+    }
+
+    // A replica whose disk fails is treated like one whose process died
+    private void crash(RaftReplica replica) {
+        Lease current = lease;
+        if (current != null && current.leader.equals(replica.getId())) {
+            lease = null;
+        }
+        replica.stop();
+    }
+
+    private int majority() {
+        return replicas.size() / 2 + 1;
+    }
+
+    // Tells listeners about new leaders outside the lock, so they may call back in
+    private void announce() {
+        List<Lease> news;
+        synchronized (this) {
+            if (elected.isEmpty()) {
+                return;
+            }
+            news = new ArrayList<>(elected);
+            elected.clear();
+        }
+        for (Lease leader : news) {
+            for (LeaderListener listener : listeners) {
+                listener.leaderElected(leader.leader, leader.term);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        synchronized (this) {
+            for (RaftReplica replica : replicas) {
+                replica.stop();
+            }
+            lease = null;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.objectstorage.partitionmanager.raft;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+// Durable state of one replica, in a directory of its own:
+//  - "state" holds the current term and vote and is replaced atomically
+//  - "snapshot" holds the state machine as of some index and that entry's term
+//  - "log" holds the entries after the snapshot as [length][crc32c][index][term]
+//    [command] records, so, like a partition server's commit log, replay stops
+//    at the first torn or corrupt record and truncates it away
+//  - "commit" holds the last known commit index. It is written without a sync,
+//    so after a crash it may lag, which only means fewer entries are replayed
+//    before the leader says what else is committed.
+// Compaction writes the new snapshot before rewriting the log without the
+// entries it covers. A crash in between leaves covered entries in the log,
+// which loading skips.
+final class RaftLog implements Closeable {
+    private static final int RECORD_HEADER = 8;
+    private static final String STATE = "state";
+    private static final String SNAPSHOT = "snapshot";
+    private static final String LOG = "log";
+    private static final String COMMIT = "commit";
+
+    private final Path dir;
+    private final boolean sync;
+    private final CRC32C crc = new CRC32C();
+    // Entries after the snapshot, in index order, and where each starts in the file
+    private final List<LogEntry> entries = new ArrayList<>();
+    private final List<Long> offsets = new ArrayList<>();
+    private FileChannel channel;
+    private long term;
+    private String votedFor;
+    private long snapshotIndex;
+    private long snapshotTerm;
+    private byte[] snapshot;
+    private long commitHint;
+
+    RaftLog(Path dir, boolean sync) throws IOException {
+        this.dir = dir;
+        this.sync = sync;
+        Files.createDirectories(dir);
+        ByteBuffer state = readChecked(STATE);
+        if (state != null) {
+            term = state.getLong();
+            byte[] vote = new byte[state.remaining()];
+            state.get(vote);
+            votedFor = vote.length == 0 ? null : new String(vote, StandardCharsets.UTF_8);
+        }
+        ByteBuffer saved = readChecked(SNAPSHOT);
+        if (saved != null) {
+            snapshotIndex = saved.getLong();
+            snapshotTerm = saved.getLong();
+            snapshot = new byte[saved.remaining()];
+            saved.get(snapshot);
+        }
+        try {
+            ByteBuffer commit = readChecked(COMMIT);
+            commitHint = commit != null ? commit.getLong() : 0;
+        } catch (IOException e) {
+            // Only a hint; the leader will tell us again
+            commitHint = 0;
+        }
+        channel = FileChannel.open(dir.resolve(LOG), StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        replay();
+    }
+
+    long getTerm() {
+        return term;
+    }
+
+    String getVotedFor() {
+        return votedFor;
+    }
+
+    // Must be durable before the replica answers the request that changed them
+    void saveTerm(long term, String votedFor) throws IOException {
+        byte[] vote = votedFor == null ? new byte[0] : votedFor.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(8 + vote.length);
+        body.putLong(term).put(vote).flip();
+        writeAtomically(STATE, body, true);
+        this.term = term;
+        this.votedFor = votedFor;
+    }
+
+    long getSnapshotIndex() {
+        return snapshotIndex;
+    }
+
+    long getSnapshotTerm() {
+        return snapshotTerm;
+    }
+
+    // Null until the first snapshot
+    byte[] getSnapshot() {
+        return snapshot;
+    }
+
+    long getCommitHint() {
+        return Math.max(commitHint, snapshotIndex);
+    }
+
+    void saveCommitHint(long index) throws IOException {
+        ByteBuffer body = ByteBuffer.allocate(8);
+        body.putLong(index).flip();
+        writeAtomically(COMMIT, body, false);
+        commitHint = index;
+    }
+
+    long lastIndex() {
+        return entries.isEmpty() ? snapshotIndex : entries.get(entries.size() - 1).index;
+    }
+
+    long lastTerm() {
+        return entries.isEmpty() ? snapshotTerm : entries.get(entries.size() - 1).term;
+    }
+
+    // Term of the entry at index, or -1 if the log does not have it (any more)
+    long termAt(long index) {
+        if (index == snapshotIndex) {
+            return snapshotTerm;
+        }
+        if (index < snapshotIndex || index > lastIndex()) {
+            return -1;
+        }
+        return entries.get((int) (index - snapshotIndex - 1)).term;
+    }
+
+    LogEntry get(long index) {
+        return entries.get((int) (index - snapshotIndex - 1));
+    }
+
+    // Up to max entries starting at from, which must be after the snapshot
+    List<LogEntry> entriesFrom(long from, int max) {
+        int start = (int) (from - snapshotIndex - 1);
+        int end = Math.min(entries.size(), start + max);
+        return start >= end ? new ArrayList<LogEntry>() : new ArrayList<>(entries.subList(start, end));
+    }
+
+    // Entries held beyond the snapshot
+    int size() {
+        return entries.size();
+    }
+
+    void append(LogEntry entry) throws IOException {
+        long offset = channel.size();
+        ByteBuffer record = encode(entry);
+        while (record.hasRemaining()) {
+            channel.write(record, offset + record.position());
+        }
+        if (sync) {
+            channel.force(false);
+        }
+        entries.add(entry);
+        offsets.add(offset);
+    }
+
+    // Drops index and everything after it, which a new leader has overwritten
+    void truncateFrom(long index) throws IOException {
+        int from = (int) (index - snapshotIndex - 1);
+        if (from < 0 || from >= entries.size()) {
+            return;
+        }
+        channel.truncate(offsets.get(from));
+        if (sync) {
+            channel.force(false);
+        }
+        entries.subList(from, entries.size()).clear();
+        offsets.subList(from, offsets.size()).clear();
+    }
+
+    // Replaces the log up to index, whose entry has the given term, with a
+    // snapshot of the state machine after applying it. Entries after index
+    // are kept if the log agrees with the snapshot at index.
+    void compact(long index, long term, byte[] state) throws IOException {
+        boolean keepSuffix = termAt(index) == term;
+        ByteBuffer body = ByteBuffer.allocate(16 + state.length);
+        body.putLong(index).putLong(term).put(state).flip();
+        writeAtomically(SNAPSHOT, body, true);
+        List<LogEntry> kept = new ArrayList<>();
+        if (keepSuffix) {
+            for (LogEntry entry : entries) {
+                if (entry.index > index) {
+                    kept.add(entry);
+                }
+            }
+        }
+        snapshotIndex = index;
+        snapshotTerm = term;
+        snapshot = state;
+        rewrite(kept);
+    }
+
+    private void rewrite(List<LogEntry> kept) throws IOException {
+        Path tmp = dir.resolve(LOG + ".tmp");
+        List<Long> keptOffsets = new ArrayList<>();
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (LogEntry entry : kept) {
+                keptOffsets.add(out.position());
+                ByteBuffer record = encode(entry);
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+            }
+            out.force(false);
+        }
+        channel.close();
+        Files.move(tmp, dir.resolve(LOG), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(dir.resolve(LOG), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        entries.clear();
+        entries.addAll(kept);
+        offsets.clear();
+        offsets.addAll(keptOffsets);
+    }
+
+    private ByteBuffer encode(LogEntry entry) {
+        int bodyLength = 16 + entry.command.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + bodyLength);
+        record.position(RECORD_HEADER);
+        record.putLong(entry.index).putLong(entry.term).put(entry.command);
+        record.flip();
+        record.position(RECORD_HEADER);
+        crc.reset();
+        crc.update(record);
+        record.putInt(0, bodyLength).putInt(4, (int) crc.getValue());
+        record.position(0);
+        return record;
+    }
+
+    private void replay() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        while (position + RECORD_HEADER <= size) {
+            header.clear();
+            channel.read(header, position);
+            int bodyLength = header.getInt(0);
+            int checksum = header.getInt(4);
+            if (bodyLength < 16 || position + RECORD_HEADER + bodyLength > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(bodyLength);
+            channel.read(body, position + RECORD_HEADER);
+            body.flip();
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            long index = body.getLong();
+            long entryTerm = body.getLong();
+            byte[] command = new byte[body.remaining()];
+            body.get(command);
+            if (index > snapshotIndex) {
+                if (index != lastIndex() + 1) {
+                    break;
+                }
+                entries.add(new LogEntry(index, entryTerm, command));
+                offsets.add(position);
+            }
+            position += RECORD_HEADER + bodyLength;
+        }
+        if (position < size) {
+            channel.truncate(position);
+        }
+    }
+
+    // [crc32c][body], written to a temporary file and renamed over name
+    private void writeAtomically(String name, ByteBuffer body, boolean force) throws IOException {
+        crc.reset();
+        crc.update(body.duplicate());
+        ByteBuffer data = ByteBuffer.allocate(4 + body.remaining());
+        data.putInt((int) crc.getValue()).put(body).flip();
+        Path tmp = dir.resolve(name + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) {
+                out.write(data);
+            }
+            if (force) {
+                out.force(false);
+            }
+        }
+        Files.move(tmp, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // The body of a file written by writeAtomically, or null if there is none
+    private ByteBuffer readChecked(String name) throws IOException {
+        Path path = dir.resolve(name);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (data.remaining() < 4) {
+            throw new IOException(path + " is truncated");
+        }
+        int checksum = data.getInt();
+        crc.reset();
+        crc.update(data.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException(path + " is corrupt");
+        }
+        return data.slice();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,333 @@
+package com.objectstorage.partitionmanager.raft;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+// One member of a RaftGroup: its durable log, its copy of the state machine and
+// its view of the current term. The group delivers every message under its own
+// lock, so nothing here is synchronized. A stopped replica keeps only what is
+// on disk, like a crashed process.
+final class RaftReplica {
+    enum Role { FOLLOWER, CANDIDATE, LEADER }
+
+    // Answer to an append or snapshot; matchIndex is how far the log now agrees
+    // with the leader's, or on failure a hint where to retry from
+    static final class Reply {
+        final long term;
+        final boolean success;
+        final long matchIndex;
+
+        Reply(long term, boolean success, long matchIndex) {
+            this.term = term;
+            this.success = success;
+            this.matchIndex = matchIndex;
+        }
+    }
+
+    private final String id;
+    private final Path dir;
+    private final Supplier<StateMachine> stateMachines;
+    private final boolean sync;
+    private final long electionTimeoutNanos;
+    private RaftLog log;
+    private StateMachine stateMachine;
+    private Role role = Role.FOLLOWER;
+    private String leaderId;
+    private long commitIndex;
+    private long lastApplied;
+    private long electionDeadline;
+    private long lastLeaderContact;
+    // Leader only: the next entry to send each peer and how far its log is known to match
+    private final Map<String, Long> nextIndex = new HashMap<>();
+    private final Map<String, Long> matchIndex = new HashMap<>();
+    // Index of the no-op this leader appended when it took over
+    private long termStart;
+    private RaftGroup.Recovery lastRecovery;
+
+    RaftReplica(String id, Path dir, Supplier<StateMachine> stateMachines, boolean sync, long electionTimeoutNanos) {
+        this.id = id;
+        this.dir = dir;
+        this.stateMachines = stateMachines;
+        this.sync = sync;
+        this.electionTimeoutNanos = electionTimeoutNanos;
+    }
+
+    // Loads the latest snapshot and replays the log up to the last commit index
+    // this replica knew of; the leader brings it up to date from there
+    RaftGroup.Recovery start(long now) throws IOException {
+        long started = System.nanoTime();
+        log = new RaftLog(dir, sync);
+        stateMachine = stateMachines.get();
+        if (log.getSnapshot() != null) {
+            stateMachine.restore(log.getSnapshot());
+        }
+        lastApplied = log.getSnapshotIndex();
+        commitIndex = Math.min(log.getCommitHint(), log.lastIndex());
+        apply();
+        role = Role.FOLLOWER;
+        leaderId = null;
+        resetElectionTimer(now);
+        lastRecovery = new RaftGroup.Recovery(id, log.getSnapshotIndex(), lastApplied - log.getSnapshotIndex(),
+            log.size(), (System.nanoTime() - started) / 1_000_000);
+        return lastRecovery;
+    }
+
+    void stop() {
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                // Nothing left to do for a replica that is going away
+            }
+        }
+        log = null;
+        stateMachine = null;
+        role = Role.FOLLOWER;
+        leaderId = null;
+        nextIndex.clear();
+        matchIndex.clear();
+    }
+
+    boolean isRunning() {
+        return log != null;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    Role getRole() {
+        return role;
+    }
+
+    long getTerm() {
+        return log.getTerm();
+    }
+
+    long getCommitIndex() {
+        return commitIndex;
+    }
+
+    long getElectionDeadline() {
+        return electionDeadline;
+    }
+
+    StateMachine getStateMachine() {
+        return stateMachine;
+    }
+
+    RaftLog getLog() {
+        return log;
+    }
+
+    // Leader that has committed an entry of its own term, so its state machine
+    // reflects everything committed before it
+    boolean isEstablished() {
+        return role == Role.LEADER && commitIndex >= termStart;
+    }
+
+    Map<String, Object> describe() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("replica", id);
+        status.put("role", log == null ? "down" : role.name().toLowerCase());
+        if (log != null) {
+            status.put("term", log.getTerm());
+            status.put("leader", leaderId);
+            status.put("commitIndex", commitIndex);
+            status.put("lastApplied", lastApplied);
+            status.put("lastLogIndex", log.lastIndex());
+            status.put("snapshotIndex", log.getSnapshotIndex());
+            status.put("logEntries", log.size());
+        }
+        if (lastRecovery != null) {
+            status.put("lastRecovery", lastRecovery.toString());
+        }
+        return status;
+    }
+
+    void resetElectionTimer(long now) {
+        electionDeadline = now + electionTimeoutNanos + ThreadLocalRandom.current().nextLong(electionTimeoutNanos);
+    }
+
+    void becomeCandidate(long now) throws IOException {
+        log.saveTerm(log.getTerm() + 1, id);
+        role = Role.CANDIDATE;
+        leaderId = null;
+        resetElectionTimer(now);
+    }
+
+    // Appends a no-op so that committing it also commits whatever earlier
+    // terms left uncommitted in the log
+    void becomeLeader(List<String> peers) throws IOException {
+        role = Role.LEADER;
+        leaderId = id;
+        nextIndex.clear();
+        matchIndex.clear();
+        for (String peer : peers) {
+            nextIndex.put(peer, log.lastIndex() + 1);
+            matchIndex.put(peer, 0L);
+        }
+        termStart = append(new byte[0]);
+    }
+
+    void stepDown(long term) throws IOException {
+        if (term > log.getTerm()) {
+            log.saveTerm(term, null);
+        }
+        role = Role.FOLLOWER;
+        leaderId = null;
+    }
+
+    long append(byte[] command) throws IOException {
+        long index = log.lastIndex() + 1;
+        log.append(new LogEntry(index, log.getTerm(), command));
+        return index;
+    }
+
+    long getNextIndex(String peer) {
+        return nextIndex.get(peer);
+    }
+
+    void setNextIndex(String peer, long index) {
+        nextIndex.put(peer, index);
+    }
+
+    void setMatchIndex(String peer, long index) {
+        matchIndex.put(peer, Math.max(matchIndex.get(peer), index));
+    }
+
+    // Commits the highest entry of this term that a majority holds
+    void advanceCommit(int majority) throws IOException {
+        for (long n = log.lastIndex(); n > commitIndex; n--) {
+            if (log.termAt(n) != log.getTerm()) {
+                break;
+            }
+            int holders = 1;
+            for (long match : matchIndex.values()) {
+                if (match >= n) {
+                    holders++;
+                }
+            }
+            if (holders >= majority) {
+                commitIndex = n;
+                apply();
+                return;
+            }
+        }
+    }
+
+    // While a leader has been heard from within the election timeout its lease
+    // may still be running, so no vote is given to anyone else
+    boolean handleVote(long term, String candidate, long lastIndex, long lastTerm, long now) throws IOException {
+        if (role == Role.LEADER || (leaderId != null && now - lastLeaderContact < electionTimeoutNanos)) {
+            return false;
+        }
+        if (term > log.getTerm()) {
+            stepDown(term);
+        }
+        if (term < log.getTerm()) {
+            return false;
+        }
+        boolean upToDate = lastTerm > log.lastTerm() || (lastTerm == log.lastTerm() && lastIndex >= log.lastIndex());
+        String votedFor = log.getVotedFor();
+        if (!upToDate || (votedFor != null && !votedFor.equals(candidate))) {
+            return false;
+        }
+        if (votedFor == null) {
+            log.saveTerm(term, candidate);
+        }
+        resetElectionTimer(now);
+        return true;
+    }
+
+    Reply handleAppend(long term, String leader, long prevIndex, long prevTerm, List<LogEntry> entries,
+                       long leaderCommit, long now) throws IOException {
+        if (!followLeader(term, leader, now)) {
+            return new Reply(log.getTerm(), false, 0);
+        }
+        if (prevIndex > log.lastIndex()) {
+            return new Reply(log.getTerm(), false, log.lastIndex());
+        }
+        // Anything up to our snapshot is committed and so agrees with the leader
+        if (prevIndex > log.getSnapshotIndex() && log.termAt(prevIndex) != prevTerm) {
+            return new Reply(log.getTerm(), false, prevIndex - 1);
+        }
+        long last = prevIndex;
+        for (LogEntry entry : entries) {
+            last = entry.index;
+            if (entry.index <= log.getSnapshotIndex()) {
+                continue;
+            }
+            long existing = log.termAt(entry.index);
+            if (existing == entry.term) {
+                continue;
+            }
+            if (existing != -1) {
+                log.truncateFrom(entry.index);
+            }
+            log.append(entry);
+        }
+        long committed = Math.min(leaderCommit, last);
+        if (committed > commitIndex) {
+            commitIndex = committed;
+            apply();
+        }
+        return new Reply(log.getTerm(), true, last);
+    }
+
+    // Replaces the log and state machine with the leader's snapshot when the
+    // entries this replica is missing have already been compacted away
+    Reply handleSnapshot(long term, String leader, long index, long snapshotTerm, byte[] snapshot, long now)
+            throws IOException {
+        if (!followLeader(term, leader, now)) {
+            return new Reply(log.getTerm(), false, 0);
+        }
+        if (index > commitIndex) {
+            log.compact(index, snapshotTerm, snapshot);
+            stateMachine = stateMachines.get();
+            stateMachine.restore(snapshot);
+            commitIndex = index;
+            lastApplied = index;
+            log.saveCommitHint(index);
+        }
+        return new Reply(log.getTerm(), true, index);
+    }
+
+    private boolean followLeader(long term, String leader, long now) throws IOException {
+        if (term < log.getTerm()) {
+            return false;
+        }
+        stepDown(term);
+        leaderId = leader;
+        lastLeaderContact = now;
+        resetElectionTimer(now);
+        return true;
+    }
+
+    // Snapshots the state machine once enough applied entries have piled up
+    // behind the last snapshot; the leader keeps serving older followers from
+    // the snapshot instead of the compacted entries
+    boolean maybeCompact(int snapshotEntries) throws IOException {
+        if (lastApplied - log.getSnapshotIndex() < snapshotEntries) {
+            return false;
+        }
+        log.compact(lastApplied, log.termAt(lastApplied), stateMachine.snapshot());
+        return true;
+    }
+
+    private void apply() throws IOException {
+        if (lastApplied >= commitIndex) {
+            return;
+        }
+        while (lastApplied < commitIndex) {
+            lastApplied++;
+            stateMachine.apply(log.get(lastApplied).command);
+        }
+        log.saveCommitHint(commitIndex);
+    }
+}
@@ -0,0 +1,13 @@
+package com.objectstorage.partitionmanager.raft;
+
+// What the replicated log drives. Every replica has its own instance, applies
+// the committed commands to it in log order, and snapshots it to compact the log.
+public interface StateMachine {
+    // Empty commands are no-ops and may be ignored
+    void apply(byte[] command);
+
+    byte[] snapshot();
+
+    // Replaces the whole state with a snapshot taken by snapshot()
+    void restore(byte[] snapshot);
+}
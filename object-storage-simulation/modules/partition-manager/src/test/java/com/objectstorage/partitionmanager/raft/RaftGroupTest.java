@@ -0,0 +1,172 @@
+package com.objectstorage.partitionmanager.raft;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RaftGroupTest {
+    private static final List<String> REPLICAS = Arrays.asList("Replica A", "Replica B", "Replica C");
+    private static final long HEARTBEAT_MILLIS = 20;
+    private static final long ELECTION_TIMEOUT_MILLIS = 200;
+    private static final long AWAIT_MILLIS = 5000;
+
+    @TempDir
+    Path dir;
+
+    private final List<RaftGroup> groups = new ArrayList<>();
+
+    @AfterEach
+    void closeGroups() {
+        for (RaftGroup group : groups) {
+            group.close();
+        }
+    }
+
+    @Test
+    void electsALeaderAndAppliesProposalsInOrder() throws Exception {
+        RaftGroup group = start(1000);
+        for (int i = 0; i < 10; i++) {
+            group.propose(command("put " + i));
+        }
+        assertTrue(group.isReadable());
+        assertEquals(10, applied(group).size());
+        assertEquals("put 9", applied(group).get(9));
+    }
+
+    @Test
+    void electsANewLeaderWhenTheLeaderIsLostAndKeepsCommittedEntries() throws Exception {
+        List<String> announced = new CopyOnWriteArrayList<>();
+        RaftGroup group = start(1000);
+        group.addListener((leader, term) -> announced.add(leader));
+        group.propose(command("before"));
+
+        String lost = group.stopLeader();
+        assertNotNull(lost);
+        assertNull(group.getLeader());
+        assertThrows(NotLeaderException.class, () -> group.propose(command("nobody to take it")));
+
+        group.awaitLeader(AWAIT_MILLIS);
+        String leader = group.getLeader();
+        assertNotEquals(lost, leader);
+        group.propose(command("after"));
+        assertEquals(Arrays.asList("before", "after"), applied(group));
+        assertEquals(List.of(lost), group.getStopped());
+        assertTrue(announced.contains(leader));
+    }
+
+    @Test
+    void restartedReplicaRecoversFromItsSnapshotAndLog() throws Exception {
+        RaftGroup group = start(5);
+        for (int i = 0; i < 20; i++) {
+            group.propose(command("put " + i));
+        }
+        String first = group.stopLeader();
+        group.awaitLeader(AWAIT_MILLIS);
+        for (int i = 20; i < 25; i++) {
+            group.propose(command("put " + i));
+        }
+
+        RaftGroup.Recovery recovery = group.restart(first);
+        assertNotNull(recovery);
+        assertTrue(recovery.getSnapshotIndex() > 0, recovery.toString());
+        assertNull(group.restart(first));
+
+        // With the second leader gone too, only a quorum that includes the
+        // restarted replica can elect a leader, and it has to carry every entry
+        Thread.sleep(ELECTION_TIMEOUT_MILLIS);
+        group.stopLeader();
+        group.awaitLeader(AWAIT_MILLIS);
+        List<String> state = applied(group);
+        assertEquals(25, state.size());
+        assertEquals("put 24", state.get(24));
+    }
+
+    @Test
+    void wholeGroupRestartsFromDisk() throws Exception {
+        RaftGroup group = start(4);
+        for (int i = 0; i < 10; i++) {
+            group.propose(command("put " + i));
+        }
+        group.close();
+
+        RaftGroup reopened = start(4);
+        assertEquals(10, applied(reopened).size());
+        reopened.propose(command("put 10"));
+        assertEquals("put 10", applied(reopened).get(10));
+    }
+
+    @Test
+    void losesTheLeaseWithoutAMajority() throws Exception {
+        RaftGroup group = start(1000);
+        group.stopLeader();
+        group.awaitLeader(AWAIT_MILLIS);
+        group.stopLeader();
+        assertThrows(NotLeaderException.class, () -> group.awaitLeader(3 * ELECTION_TIMEOUT_MILLIS));
+        assertThrows(NotLeaderException.class, () -> group.propose(command("lost")));
+        assertEquals(2, group.getStopped().size());
+    }
+
+    @Test
+    void rejectsAnEvenNumberOfReplicas() {
+        assertThrows(IllegalArgumentException.class, () -> new RaftGroup(Arrays.asList("A", "B"), dir,
+            Recorder::new, false, HEARTBEAT_MILLIS, ELECTION_TIMEOUT_MILLIS, 10));
+    }
+
+    private RaftGroup start(int snapshotEntries) throws IOException, InterruptedException {
+        RaftGroup group = new RaftGroup(REPLICAS, dir, Recorder::new, false, HEARTBEAT_MILLIS,
+            ELECTION_TIMEOUT_MILLIS, snapshotEntries);
+        groups.add(group);
+        group.start();
+        group.awaitLeader(AWAIT_MILLIS);
+        return group;
+    }
+
+    private static List<String> applied(RaftGroup group) {
+        return group.query(machine -> new ArrayList<>(((Recorder) machine).commands));
+    }
+
+    private static byte[] command(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Records every non-empty command it is given
+    private static final class Recorder implements StateMachine {
+        final List<String> commands = new ArrayList<>();
+
+        @Override
+        public void apply(byte[] command) {
+            if (command.length > 0) {
+                commands.add(new String(command, StandardCharsets.UTF_8));
+            }
+        }
+
+        @Override
+        public byte[] snapshot() {
+            return String.join("\n", commands).getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void restore(byte[] snapshot) {
+            commands.clear();
+            String text = new String(snapshot, StandardCharsets.UTF_8);
+            if (!text.isEmpty()) {
+                commands.addAll(Arrays.asList(text.split("\n")));
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.objectstorage.partitionserver.config;
+
+import com.objectstorage.partitionserver.metadata.MetadataStore;
+import com.objectstorage.partitionserver.server.PartitionServer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+@Configuration
+public class PartitionServerConfig {
+    public static final long DEFAULT_MEMTABLE_FLUSH_BYTES = 4L * 1024 * 1024;
+    public static final int DEFAULT_COMPACTION_TRIGGER = 4;
+
+    @Bean(destroyMethod = "close")
+    public MetadataStore metadataStore(
+            @Value("${partition-server.data-dir:${java.io.tmpdir}/object-storage/partition-server}") String dataDir,
+            @Value("${partition-server.memtable-flush-bytes:" + DEFAULT_MEMTABLE_FLUSH_BYTES + "}") long flushBytes,
+            @Value("${partition-server.compaction-trigger:" + DEFAULT_COMPACTION_TRIGGER + "}") int compactionTrigger,
+            @Value("${partition-server.sync-writes:true}") boolean syncWrites) throws IOException {
+        return new MetadataStore(Paths.get(dataDir), flushBytes, compactionTrigger, syncWrites);
+    }
+
+    @Bean
+    public PartitionServer partitionServer(@Value("${partition-server.name:Partition Server 1}") String name,
+                                           MetadataStore metadataStore) {
+        return new PartitionServer(name, metadataStore);
+    }
+}
@@ -1,15 +1,112 @@
 package com.objectstorage.partitionserver.controller;
 
+import com.objectstorage.common.object.ObjectManifest;
+import com.objectstorage.common.partition.KeyRange;
+import com.objectstorage.common.partition.PartitionTable;
+import com.objectstorage.partitionserver.server.NotOwnerException;
+import com.objectstorage.partitionserver.server.PartitionServer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/partition-server")
 public class PartitionServerController {
+    private final PartitionServer partitionServer;
+
+    public PartitionServerController(PartitionServer partitionServer) {
+        this.partitionServer = partitionServer;
+    }
+
     @GetMapping("/health")
     public String health() {
         return "Partition Server is up";
     }
-    // TODO: Add endpoints for file storage, status, etc.
-} 
\ No newline at end of file
+
+    // POST /assignment: the partition manager pushes its latest partition table
+    @PostMapping("/assignment")
+    public ResponseEntity<Void> assign(@RequestBody PartitionTable table) {
+        partitionServer.assign(table);
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/assignment")
+    public Map<String, Object> getAssignment() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("name", partitionServer.getName());
+        result.put("version", partitionServer.getMapVersion());
+        result.put("ranges", partitionServer.getOwnedRanges());
+        return result;
+    }
+
+    // GET /objects?start=&end=&limit= lists manifests in key order within the owned ranges
+    @GetMapping("/objects")
+    public List<ObjectManifest> listObjects(@RequestParam(value = "start", defaultValue = "") String start,
+                                            @RequestParam(value = "end", required = false) String end,
+                                            @RequestParam(value = "limit", defaultValue = "1000") int limit)
+            throws IOException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        return partitionServer.listObjects(new KeyRange(start, end), limit);
+    }
+
+    // GET /objects/{key} returns the object's manifest
+    @GetMapping("/objects/{*key}")
+    public ResponseEntity<ObjectManifest> getObject(@PathVariable("key") String key) throws IOException {
+        ObjectManifest manifest = partitionServer.getObject(stripSlash(key));
+        return manifest == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(manifest);
+    }
+
+    // PUT /objects/{key} commits a manifest whose data is already on the extent nodes
+    @PutMapping("/objects/{*key}")
+    public ResponseEntity<Void> putObject(@PathVariable("key") String key, @RequestBody ObjectManifest manifest)
+            throws IOException {
+        if (!manifest.getKey().equals(stripSlash(key))) {
+            return ResponseEntity.badRequest().build();
+        }
+        partitionServer.putObject(manifest);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/objects/{*key}")
+    public ResponseEntity<Void> deleteObject(@PathVariable("key") String key) throws IOException {
+        return partitionServer.deleteObject(stripSlash(key))
+            ? ResponseEntity.noContent().build()
+            : ResponseEntity.notFound().build();
+    }
+
+    private static String stripSlash(String key) {
+        return key.startsWith("/") ? key.substring(1) : key;
+    }
+
+    @ExceptionHandler(NotOwnerException.class)
+    public ResponseEntity<Map<String, Object>> notOwner(NotOwnerException e) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("error", "Not owner");
+        result.put("message", e.getMessage());
+        result.put("version", e.getMapVersion());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(result);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> badRequest(IllegalArgumentException e) {
+        Map<String, String> result = new HashMap<>();
+        result.put("error", e.getMessage());
+        return ResponseEntity.badRequest().body(result);
+    }
+}
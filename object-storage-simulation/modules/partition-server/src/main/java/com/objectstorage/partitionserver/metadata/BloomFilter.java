@@ -0,0 +1,84 @@
+package com.objectstorage.partitionserver.metadata;
+
+import java.nio.ByteBuffer;
+
+// Bloom filter over string keys using double hashing. Hashes are computed from
+// the key's chars directly so membership checks do not allocate.
+class BloomFilter {
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASHES = 7;
+
+    private final long[] bits;
+    private final int hashes;
+
+    static BloomFilter forKeys(int expectedKeys) {
+        int numBits = Math.max(64, expectedKeys * BITS_PER_KEY);
+        return new BloomFilter(new long[(numBits + 63) >>> 6], HASHES);
+    }
+
+    private BloomFilter(long[] bits, int hashes) {
+        this.bits = bits;
+        this.hashes = hashes;
+    }
+
+    void add(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long numBits = (long) bits.length << 6;
+        for (int i = 0; i < hashes; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % numBits;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long numBits = (long) bits.length << 6;
+        for (int i = 0; i < hashes; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % numBits;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int serializedSize() {
+        return 8 + bits.length * 8;
+    }
+
+    void writeTo(ByteBuffer out) {
+        out.putInt(hashes);
+        out.putInt(bits.length);
+        for (long word : bits) {
+            out.putLong(word);
+        }
+    }
+
+    static BloomFilter readFrom(ByteBuffer in) {
+        int hashes = in.getInt();
+        long[] bits = new long[in.getInt()];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = in.getLong();
+        }
+        return new BloomFilter(bits, hashes);
+    }
+
+    // 64-bit FNV-1a over the chars followed by a murmur3 finalizer
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,120 @@
+package com.objectstorage.partitionserver.metadata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+// Sequential write-ahead log for one memtable. Each record is
+// [length][crc32c][key length][key][value length or -1 for a delete][value],
+// where the checksum covers everything after it. Replay stops at the first
+// torn or corrupt record, which is then truncated away.
+class CommitLog implements Closeable {
+    interface Replayer {
+        void apply(String key, byte[] value);
+    }
+
+    private static final int RECORD_HEADER = 8;
+
+    private final long generation;
+    private final Path path;
+    private final FileChannel channel;
+    private final boolean sync;
+    private final CRC32C crc = new CRC32C();
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+
+    CommitLog(long generation, Path path, boolean sync) throws IOException {
+        this.generation = generation;
+        this.path = path;
+        this.sync = sync;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.channel.position(channel.size());
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    // Appends one put (or delete when value is null); callers serialize appends
+    void append(String key, byte[] value) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = 4 + keyBytes.length + 4 + (value == null ? 0 : value.length);
+        if (buffer.capacity() < RECORD_HEADER + bodyLength) {
+            buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(RECORD_HEADER + bodyLength) << 1);
+        }
+        buffer.clear();
+        buffer.position(RECORD_HEADER);
+        buffer.putInt(keyBytes.length).put(keyBytes);
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length).put(value);
+        }
+        buffer.flip();
+        buffer.position(RECORD_HEADER);
+        crc.reset();
+        crc.update(buffer);
+        buffer.putInt(0, bodyLength).putInt(4, (int) crc.getValue());
+        buffer.position(0);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (sync) {
+            channel.force(false);
+        }
+    }
+
+    void replay(Replayer replayer) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        while (position + RECORD_HEADER <= size) {
+            header.clear();
+            channel.read(header, position);
+            int bodyLength = header.getInt(0);
+            int checksum = header.getInt(4);
+            if (bodyLength < 8 || position + RECORD_HEADER + bodyLength > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(bodyLength);
+            channel.read(body, position + RECORD_HEADER);
+            body.flip();
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            byte[] key = new byte[body.getInt()];
+            body.get(key);
+            int valueLength = body.getInt();
+            byte[] value = null;
+            if (valueLength >= 0) {
+                value = new byte[valueLength];
+                body.get(value);
+            }
+            replayer.apply(new String(key, StandardCharsets.UTF_8), value);
+            position += RECORD_HEADER + bodyLength;
+        }
+        if (position < size) {
+            channel.truncate(position);
+        }
+        channel.position(position);
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,54 @@
+package com.objectstorage.partitionserver.metadata;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-memory sorted buffer of recent writes, backed by the commit logs that make
+// it durable. Deletes are kept as tombstones until the data is compacted.
+class Memtable {
+    static final byte[] TOMBSTONE = new byte[0];
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final ConcurrentSkipListMap<String, byte[]> entries = new ConcurrentSkipListMap<>();
+    private final AtomicLong approximateBytes = new AtomicLong();
+    private final List<CommitLog> logs = new ArrayList<>();
+
+    void put(String key, byte[] value) {
+        entries.put(key, value == null ? TOMBSTONE : value);
+        approximateBytes.addAndGet(ENTRY_OVERHEAD + key.length() * 2L + (value == null ? 0 : value.length));
+    }
+
+    // Returns the value, TOMBSTONE if the key was deleted here, or null if unknown
+    byte[] get(String key) {
+        return entries.get(key);
+    }
+
+    Iterator<Map.Entry<String, byte[]>> scan(String from, String to) {
+        ConcurrentNavigableMap<String, byte[]> range = to == null
+            ? entries.tailMap(from, true)
+            : entries.subMap(from, true, to, false);
+        return range.entrySet().iterator();
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long approximateBytes() {
+        return approximateBytes.get();
+    }
+
+    // Commit logs holding this memtable's writes; deleted once it is flushed
+    List<CommitLog> logs() {
+        return logs;
+    }
+}
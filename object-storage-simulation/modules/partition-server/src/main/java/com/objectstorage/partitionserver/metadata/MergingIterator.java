@@ -0,0 +1,82 @@
+package com.objectstorage.partitionserver.metadata;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+// K-way merge of key-sorted iterators. Sources are given newest first; when the
+// same key appears in several sources only the newest entry is returned.
+public class MergingIterator<V> implements Iterator<Map.Entry<String, V>> {
+    private final PriorityQueue<Source<V>> heap;
+    private Map.Entry<String, V> next;
+
+    public MergingIterator(List<? extends Iterator<? extends Map.Entry<String, V>>> sources) {
+        heap = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> {
+            int c = a.current.getKey().compareTo(b.current.getKey());
+            return c != 0 ? c : Integer.compare(a.rank, b.rank);
+        });
+        for (int i = 0; i < sources.size(); i++) {
+            Source<V> source = new Source<>(sources.get(i), i);
+            if (source.advance()) {
+                heap.add(source);
+            }
+        }
+        next = computeNext();
+    }
+
+    private Map.Entry<String, V> computeNext() {
+        Source<V> top = heap.poll();
+        if (top == null) {
+            return null;
+        }
+        Map.Entry<String, V> result = new AbstractMap.SimpleImmutableEntry<>(top.current.getKey(), top.current.getValue());
+        if (top.advance()) {
+            heap.add(top);
+        }
+        // Drop older versions of the same key
+        while (!heap.isEmpty() && heap.peek().current.getKey().equals(result.getKey())) {
+            Source<V> older = heap.poll();
+            if (older.advance()) {
+                heap.add(older);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Map.Entry<String, V> next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        Map.Entry<String, V> result = next;
+        next = computeNext();
+        return result;
+    }
+
+    private static final class Source<V> {
+        final Iterator<? extends Map.Entry<String, V>> iterator;
+        final int rank;
+        Map.Entry<String, V> current;
+
+        Source(Iterator<? extends Map.Entry<String, V>> iterator, int rank) {
+            this.iterator = iterator;
+            this.rank = rank;
+        }
+
+        boolean advance() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            current = iterator.next();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.objectstorage.partitionserver.metadata;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Log-structured key/value store for object metadata. Writes are appended to a
+// commit log and applied to a concurrent skip-list memtable; full memtables are
+// flushed in the background to immutable sorted index files, which are merged
+// by compaction once too many pile up. A lookup checks the memtables and then
+// the index files newest first, reading at most one block per file that passes
+// its Bloom filter.
+public class MetadataStore implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(MetadataStore.class);
+    private static final String LOG_PREFIX = "commit-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String TABLE_PREFIX = "index-";
+    private static final String TABLE_SUFFIX = ".sst";
+    // Readers may still hold a compacted-away file; it is closed after this delay
+    private static final long RETIRE_DELAY_SECONDS = 30;
+    // A failed flush is retried with a delay that doubles up to the maximum
+    private static final long FLUSH_RETRY_MIN_MILLIS = 100;
+    private static final long FLUSH_RETRY_MAX_MILLIS = 10_000;
+    // Memtables that may queue up behind a failing flush before writes are
+    // refused; until then they stay readable and are durable in their logs
+    private static final int MAX_UNFLUSHED_MEMTABLES = 4;
+
+    private final Path directory;
+    private final long memtableFlushBytes;
+    private final int compactionTrigger;
+    private final boolean syncWrites;
+    private final Object writeLock = new Object();
+    private final ExecutorService flusher;
+    private final ScheduledExecutorService retirer;
+    private volatile State state;
+    // Why the last flush attempt failed; cleared when a flush succeeds
+    private volatile IOException flushFailure;
+    private long nextGeneration = 1;
+    private boolean closed;
+
+    // Everything a reader needs, swapped as a whole whenever a flush or
+    // compaction completes. Lists are ordered newest first.
+    private static final class State {
+        final Memtable active;
+        final List<Memtable> flushing;
+        final List<SSTable> tables;
+
+        State(Memtable active, List<Memtable> flushing, List<SSTable> tables) {
+            this.active = active;
+            this.flushing = Collections.unmodifiableList(flushing);
+            this.tables = Collections.unmodifiableList(tables);
+        }
+    }
+
+    public MetadataStore(Path directory, long memtableFlushBytes, int compactionTrigger, boolean syncWrites)
+            throws IOException {
+        if (compactionTrigger < 2) {
+            throw new IllegalArgumentException("Compaction trigger must be at least 2 files");
+        }
+        this.directory = directory;
+        this.memtableFlushBytes = memtableFlushBytes;
+        this.compactionTrigger = compactionTrigger;
+        this.syncWrites = syncWrites;
+        Files.createDirectories(directory);
+        this.flusher = Executors.newSingleThreadExecutor(r -> daemon(r, "metadata-flush"));
+        this.retirer = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "metadata-retire"));
+        this.state = recover();
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    // Opens existing index files, then replays leftover commit logs into the
+    // memtable. Replayed logs stay around until that memtable is flushed.
+    private State recover() throws IOException {
+        TreeMap<Long, Path> tables = list(TABLE_PREFIX, TABLE_SUFFIX);
+        TreeMap<Long, Path> logs = list(LOG_PREFIX, LOG_SUFFIX);
+        List<SSTable> opened = new ArrayList<>();
+        for (Map.Entry<Long, Path> entry : tables.descendingMap().entrySet()) {
+            opened.add(SSTable.open(entry.getKey(), entry.getValue()));
+        }
+        if (!tables.isEmpty()) {
+            nextGeneration = tables.lastKey() + 1;
+        }
+        if (!logs.isEmpty()) {
+            nextGeneration = Math.max(nextGeneration, logs.lastKey() + 1);
+        }
+        Memtable memtable = new Memtable();
+        for (Map.Entry<Long, Path> entry : logs.entrySet()) {
+            CommitLog log = new CommitLog(entry.getKey(), entry.getValue(), syncWrites);
+            log.replay(memtable::put);
+            memtable.logs().add(log);
+        }
+        memtable.logs().add(newLog());
+        return new State(memtable, new ArrayList<Memtable>(), opened);
+    }
+
+    private TreeMap<Long, Path> list(String prefix, String suffix) throws IOException {
+        TreeMap<Long, Path> result = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                result.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), path);
+            }
+        }
+        return result;
+    }
+
+    private CommitLog newLog() throws IOException {
+        long generation = nextGeneration++;
+        return new CommitLog(generation, directory.resolve(fileName(LOG_PREFIX, generation, LOG_SUFFIX)), syncWrites);
+    }
+
+    private static String fileName(String prefix, long generation, String suffix) {
+        return String.format("%s%012d%s", prefix, generation, suffix);
+    }
+
+    public void put(String key, byte[] value) throws IOException {
+        write(key, value);
+    }
+
+    public void delete(String key) throws IOException {
+        write(key, null);
+    }
+
+    private void write(String key, byte[] value) throws IOException {
+        synchronized (writeLock) {
+            if (closed) {
+                throw new IllegalStateException("Metadata store is closed");
+            }
+            IOException failure = flushFailure;
+            if (failure != null && state.flushing.size() >= MAX_UNFLUSHED_MEMTABLES) {
+                throw new IOException("Refusing writes: " + state.flushing.size() + " memtables in " + directory
+                    + " are waiting for a flush that keeps failing", failure);
+            }
+            Memtable active = state.active;
+            active.logs().get(active.logs().size() - 1).append(key, value);
+            active.put(key, value);
+            if (active.approximateBytes() >= memtableFlushBytes) {
+                rotate();
+            }
+        }
+    }
+
+    // Freezes the active memtable and hands it to the flush thread
+    private void rotate() throws IOException {
+        State current = state;
+        Memtable fresh = new Memtable();
+        fresh.logs().add(newLog());
+        List<Memtable> flushing = new ArrayList<>();
+        flushing.add(current.active);
+        flushing.addAll(current.flushing);
+        Memtable frozen = current.active;
+        state = new State(fresh, flushing, current.tables);
+        flusher.execute(() -> flush(frozen));
+    }
+
+    // Memtables must reach the index files in the order they were frozen, so a
+    // failed write is retried here, holding up the ones queued behind it, until
+    // it succeeds or the store is closed. Meanwhile the memtable and its logs
+    // are kept, so its data stays readable and durable.
+    private void flush(Memtable memtable) {
+        SSTable table = null;
+        long backoff = FLUSH_RETRY_MIN_MILLIS;
+        while (table == null) {
+            try {
+                table = writeTable(memtable);
+            } catch (IOException e) {
+                flushFailure = new IOException("Failed to flush memtable in " + directory, e);
+                synchronized (writeLock) {
+                    if (closed) {
+                        // Its logs are replayed when the store is next opened
+                        return;
+                    }
+                }
+                try {
+                    TimeUnit.MILLISECONDS.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, FLUSH_RETRY_MAX_MILLIS);
+            }
+        }
+        flushFailure = null;
+        synchronized (writeLock) {
+            State current = state;
+            List<Memtable> flushing = new ArrayList<>(current.flushing);
+            flushing.remove(memtable);
+            List<SSTable> tables = new ArrayList<>();
+            tables.add(table);
+            tables.addAll(current.tables);
+            state = new State(current.active, flushing, tables);
+        }
+        // Nothing waits on this thread, so failures from here on are logged
+        for (CommitLog commitLog : memtable.logs()) {
+            try {
+                commitLog.close();
+                Files.deleteIfExists(commitLog.getPath());
+            } catch (IOException e) {
+                log.error("Failed to delete commit log {} of a flushed memtable; it will be replayed again"
+                    + " when the store is next opened", commitLog.getPath(), e);
+            }
+        }
+        try {
+            List<SSTable> run = pickCompaction(state.tables);
+            if (run != null) {
+                compact(run);
+            }
+        } catch (IOException | MetadataStoreException e) {
+            // The inputs are untouched; the next flush tries the merge again
+            log.warn("Failed to compact index files in {}", directory, e);
+        }
+    }
+
+    private SSTable writeTable(Memtable memtable) throws IOException {
+        long generation;
+        synchronized (writeLock) {
+            generation = nextGeneration++;
+        }
+        return SSTable.write(generation, directory.resolve(fileName(TABLE_PREFIX, generation, TABLE_SUFFIX)),
+            memtable.scan("", null), memtable.size(), false);
+    }
+
+    // Size-tiered choice of what to merge: starting from the newest file, keep
+    // taking the next older one while it is at most twice the size of what has
+    // been taken so far. Merging only such a run keeps write amplification
+    // logarithmic. Too many files overall forces a merge of everything.
+    private List<SSTable> pickCompaction(List<SSTable> tables) throws IOException {
+        if (tables.size() >= compactionTrigger * 4) {
+            return tables;
+        }
+        long runBytes = 0;
+        int runLength = 0;
+        for (SSTable table : tables) {
+            if (runLength > 0 && table.getSizeBytes() > runBytes * 2) {
+                break;
+            }
+            runBytes += table.getSizeBytes();
+            runLength++;
+        }
+        return runLength >= compactionTrigger ? tables.subList(0, runLength) : null;
+    }
+
+    // Merges a run of consecutive index files (newest first) into one that takes
+    // their place. If the run reaches the oldest file, tombstones have nothing
+    // left to shadow and are dropped.
+    private void compact(List<SSTable> inputs) throws IOException {
+        boolean includesOldest = inputs.get(inputs.size() - 1) == state.tables.get(state.tables.size() - 1);
+        int expectedKeys = 0;
+        List<Iterator<Map.Entry<String, byte[]>>> sources = new ArrayList<>();
+        for (SSTable table : inputs) {
+            sources.add(table.scan("", null));
+            expectedKeys += table.getEntryCount();
+        }
+        long generation;
+        synchronized (writeLock) {
+            generation = nextGeneration++;
+        }
+        SSTable merged = SSTable.write(generation, directory.resolve(fileName(TABLE_PREFIX, generation, TABLE_SUFFIX)),
+            new MergingIterator<>(sources), expectedKeys, includesOldest);
+        synchronized (writeLock) {
+            State current = state;
+            List<SSTable> tables = new ArrayList<>(current.tables);
+            int position = tables.indexOf(inputs.get(0));
+            tables.removeAll(inputs);
+            tables.add(position, merged);
+            state = new State(current.active, new ArrayList<>(current.flushing), tables);
+        }
+        for (SSTable table : inputs) {
+            Files.deleteIfExists(table.getPath());
+            retirer.schedule(() -> {
+                table.close();
+                return null;
+            }, RETIRE_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    public byte[] get(String key) throws IOException {
+        State current = state;
+        byte[] value = current.active.get(key);
+        if (value == null) {
+            for (Memtable memtable : current.flushing) {
+                value = memtable.get(key);
+                if (value != null) {
+                    break;
+                }
+            }
+        }
+        if (value == null) {
+            for (SSTable table : current.tables) {
+                value = table.get(key);
+                if (value != null) {
+                    break;
+                }
+            }
+        }
+        return value == Memtable.TOMBSTONE ? null : value;
+    }
+
+    // Live entries with from <= key < to in key order; to may be null for no bound
+    public Iterator<Map.Entry<String, byte[]>> scan(String from, String to) {
+        State current = state;
+        List<Iterator<Map.Entry<String, byte[]>>> sources = new ArrayList<>();
+        sources.add(current.active.scan(from, to));
+        for (Memtable memtable : current.flushing) {
+            sources.add(memtable.scan(from, to));
+        }
+        for (SSTable table : current.tables) {
+            sources.add(table.scan(from, to));
+        }
+        MergingIterator<byte[]> merged = new MergingIterator<>(sources);
+        return new Iterator<Map.Entry<String, byte[]>>() {
+            private Map.Entry<String, byte[]> next = advance();
+
+            private Map.Entry<String, byte[]> advance() {
+                while (merged.hasNext()) {
+                    Map.Entry<String, byte[]> entry = merged.next();
+                    if (entry.getValue() != Memtable.TOMBSTONE) {
+                        return entry;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Map.Entry<String, byte[]> next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<String, byte[]> result = next;
+                next = advance();
+                return result;
+            }
+        };
+    }
+
+    public int getIndexFileCount() {
+        return state.tables.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            closed = true;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Close retired files now rather than waiting out their delay
+        for (Runnable pending : retirer.shutdownNow()) {
+            pending.run();
+        }
+        // Memtables whose flush never finished are replayed from their logs
+        // when the store is next opened
+        State current = state;
+        List<Memtable> memtables = new ArrayList<>();
+        memtables.add(current.active);
+        memtables.addAll(current.flushing);
+        for (Memtable memtable : memtables) {
+            for (CommitLog commitLog : memtable.logs()) {
+                commitLog.force();
+                commitLog.close();
+            }
+        }
+        for (SSTable table : current.tables) {
+            table.close();
+        }
+    }
+}
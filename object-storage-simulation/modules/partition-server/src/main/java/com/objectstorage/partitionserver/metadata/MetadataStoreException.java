@@ -0,0 +1,11 @@
+package com.objectstorage.partitionserver.metadata;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+// Unchecked wrapper for I/O failures surfacing from iterators and background work
+public class MetadataStoreException extends UncheckedIOException {
+    public MetadataStoreException(String message, IOException cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,321 @@
+package com.objectstorage.partitionserver.metadata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+// Immutable sorted index file. Entries are packed into ~4 KB data blocks of
+// [key length][key][value length or -1 for a tombstone][value], followed by a
+// block index (first key, offset and length of every block), a Bloom filter and
+// a fixed-size footer. The index and filter are kept in memory, so a point
+// lookup costs at most one block read and none when the filter rules it out.
+class SSTable implements Closeable {
+    private static final int TARGET_BLOCK_SIZE = 4096;
+    private static final int FOOTER_SIZE = 32;
+    private static final int MAGIC = 0x53535431;
+
+    private final long generation;
+    private final Path path;
+    private final FileChannel channel;
+    private final String[] firstKeys;
+    private final long[] blockOffsets;
+    private final int[] blockLengths;
+    private final BloomFilter bloom;
+    private final int entryCount;
+
+    private SSTable(long generation, Path path, FileChannel channel, String[] firstKeys, long[] blockOffsets,
+                    int[] blockLengths, BloomFilter bloom, int entryCount) {
+        this.generation = generation;
+        this.path = path;
+        this.channel = channel;
+        this.firstKeys = firstKeys;
+        this.blockOffsets = blockOffsets;
+        this.blockLengths = blockLengths;
+        this.bloom = bloom;
+        this.entryCount = entryCount;
+    }
+
+    // Writes the sorted entries to a new table at path. The file is built under a
+    // temporary name, forced to disk and then renamed into place atomically.
+    static SSTable write(long generation, Path path, Iterator<Map.Entry<String, byte[]>> entries,
+                         int expectedKeys, boolean dropTombstones) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        BloomFilter bloom = BloomFilter.forKeys(Math.max(1, expectedKeys));
+        List<String> firstKeys = new ArrayList<>();
+        List<long[]> blocks = new ArrayList<>();
+        int count = 0;
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer block = ByteBuffer.allocate(TARGET_BLOCK_SIZE * 2);
+            long position = 0;
+            while (entries.hasNext()) {
+                Map.Entry<String, byte[]> entry = entries.next();
+                byte[] value = entry.getValue();
+                boolean tombstone = value == Memtable.TOMBSTONE;
+                if (tombstone && dropTombstones) {
+                    continue;
+                }
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                int entrySize = 8 + key.length + (tombstone ? 0 : value.length);
+                if (block.position() > 0 && block.position() + entrySize > TARGET_BLOCK_SIZE) {
+                    position += flushBlock(out, block, position, blocks);
+                }
+                if (block.remaining() < entrySize) {
+                    ByteBuffer larger = ByteBuffer.allocate(block.position() + entrySize);
+                    block.flip();
+                    block = larger.put(block);
+                }
+                if (block.position() == 0) {
+                    firstKeys.add(entry.getKey());
+                }
+                block.putInt(key.length).put(key);
+                if (tombstone) {
+                    block.putInt(-1);
+                } else {
+                    block.putInt(value.length).put(value);
+                }
+                bloom.add(entry.getKey());
+                count++;
+            }
+            if (block.position() > 0) {
+                position += flushBlock(out, block, position, blocks);
+            }
+            int indexSize = 4;
+            for (String key : firstKeys) {
+                indexSize += 4 + key.getBytes(StandardCharsets.UTF_8).length + 12;
+            }
+            ByteBuffer tail = ByteBuffer.allocate(indexSize + bloom.serializedSize() + FOOTER_SIZE);
+            tail.putInt(firstKeys.size());
+            for (int i = 0; i < firstKeys.size(); i++) {
+                byte[] key = firstKeys.get(i).getBytes(StandardCharsets.UTF_8);
+                tail.putInt(key.length).put(key).putLong(blocks.get(i)[0]).putInt((int) blocks.get(i)[1]);
+            }
+            bloom.writeTo(tail);
+            tail.putLong(position).putInt(indexSize)
+                .putLong(position + indexSize).putInt(bloom.serializedSize())
+                .putInt(count).putInt(MAGIC);
+            tail.flip();
+            while (tail.hasRemaining()) {
+                out.write(tail);
+            }
+            out.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        return open(generation, path);
+    }
+
+    private static long flushBlock(FileChannel out, ByteBuffer block, long position, List<long[]> blocks)
+            throws IOException {
+        block.flip();
+        int length = block.remaining();
+        while (block.hasRemaining()) {
+            out.write(block);
+        }
+        block.clear();
+        blocks.add(new long[] {position, length});
+        return length;
+    }
+
+    static SSTable open(long generation, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            ByteBuffer footer = readFully(channel, size - FOOTER_SIZE, FOOTER_SIZE);
+            long indexOffset = footer.getLong();
+            int indexLength = footer.getInt();
+            long bloomOffset = footer.getLong();
+            int bloomLength = footer.getInt();
+            int entryCount = footer.getInt();
+            if (footer.getInt() != MAGIC) {
+                throw new IOException("Not a sorted index file: " + path);
+            }
+            ByteBuffer index = readFully(channel, indexOffset, indexLength);
+            int blockCount = index.getInt();
+            String[] firstKeys = new String[blockCount];
+            long[] offsets = new long[blockCount];
+            int[] lengths = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                byte[] key = new byte[index.getInt()];
+                index.get(key);
+                firstKeys[i] = new String(key, StandardCharsets.UTF_8);
+                offsets[i] = index.getLong();
+                lengths[i] = index.getInt();
+            }
+            BloomFilter bloom = BloomFilter.readFrom(readFully(channel, bloomOffset, bloomLength));
+            return new SSTable(generation, path, channel, firstKeys, offsets, lengths, bloom, entryCount);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of sorted index file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    int getEntryCount() {
+        return entryCount;
+    }
+
+    long getSizeBytes() throws IOException {
+        return channel.size();
+    }
+
+    // Returns the value, Memtable.TOMBSTONE if deleted here, or null if absent
+    byte[] get(String key) throws IOException {
+        if (!bloom.mightContain(key)) {
+            return null;
+        }
+        int block = floorBlock(key);
+        if (block < 0) {
+            return null;
+        }
+        ByteBuffer data = readFully(channel, blockOffsets[block], blockLengths[block]);
+        byte[] target = key.getBytes(StandardCharsets.UTF_8);
+        while (data.hasRemaining()) {
+            int keyLength = data.getInt();
+            int cmp = compareKey(data, keyLength, target);
+            data.position(data.position() + keyLength);
+            int valueLength = data.getInt();
+            if (cmp == 0) {
+                if (valueLength < 0) {
+                    return Memtable.TOMBSTONE;
+                }
+                byte[] value = new byte[valueLength];
+                data.get(value);
+                return value;
+            }
+            if (cmp > 0) {
+                return null;
+            }
+            if (valueLength > 0) {
+                data.position(data.position() + valueLength);
+            }
+        }
+        return null;
+    }
+
+    // Compares the UTF-8 key at the buffer's position with target in the same
+    // order as String.compareTo, which the table is sorted by. Byte order
+    // agrees with it except that UTF-16 puts supplementary characters (a
+    // surrogate pair, lead byte 0xF0-0xF4 in UTF-8) before U+E000-U+FFFF (lead
+    // byte 0xEE-0xEF), so a first difference between those lead bytes is
+    // reversed.
+    private static int compareKey(ByteBuffer data, int keyLength, byte[] target) {
+        int base = data.position();
+        int n = Math.min(keyLength, target.length);
+        for (int i = 0; i < n; i++) {
+            int a = data.get(base + i) & 0xFF;
+            int b = target[i] & 0xFF;
+            if (a != b) {
+                if (a >= 0xEE && b >= 0xEE && (a >= 0xF0) != (b >= 0xF0)) {
+                    return a >= 0xF0 ? -1 : 1;
+                }
+                return Integer.compare(a, b);
+            }
+        }
+        return Integer.compare(keyLength, target.length);
+    }
+
+    private int floorBlock(String key) {
+        int lo = 0;
+        int hi = firstKeys.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (firstKeys[mid].compareTo(key) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return hi;
+    }
+
+    // Iterates entries with from <= key < to (to may be null), tombstones included
+    Iterator<Map.Entry<String, byte[]>> scan(String from, String to) {
+        return new Iterator<Map.Entry<String, byte[]>>() {
+            private int block = Math.max(0, floorBlock(from));
+            private ByteBuffer data;
+            private Map.Entry<String, byte[]> next = advance();
+
+            private Map.Entry<String, byte[]> advance() {
+                try {
+                    while (true) {
+                        if (data == null || !data.hasRemaining()) {
+                            if (block >= firstKeys.length) {
+                                return null;
+                            }
+                            data = readFully(channel, blockOffsets[block], blockLengths[block]);
+                            block++;
+                        }
+                        byte[] key = new byte[data.getInt()];
+                        data.get(key);
+                        int valueLength = data.getInt();
+                        byte[] value = Memtable.TOMBSTONE;
+                        if (valueLength >= 0) {
+                            value = new byte[valueLength];
+                            data.get(value);
+                        }
+                        String k = new String(key, StandardCharsets.UTF_8);
+                        if (k.compareTo(from) < 0) {
+                            continue;
+                        }
+                        if (to != null && k.compareTo(to) >= 0) {
+                            return null;
+                        }
+                        return new AbstractMap.SimpleImmutableEntry<>(k, value);
+                    }
+                } catch (IOException e) {
+                    throw new MetadataStoreException("Failed to read " + path, e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Map.Entry<String, byte[]> next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<String, byte[]> result = next;
+                next = advance();
+                return result;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
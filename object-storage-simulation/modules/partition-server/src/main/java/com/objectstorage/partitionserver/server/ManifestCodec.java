@@ -0,0 +1,75 @@
+package com.objectstorage.partitionserver.server;
+
+import com.objectstorage.common.extent.BlockLocation;
+import com.objectstorage.common.object.ObjectChunk;
+import com.objectstorage.common.object.ObjectManifest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact binary encoding of object manifests for the metadata store
+final class ManifestCodec {
+    private static final byte FORMAT_VERSION = 1;
+
+    private ManifestCodec() {
+    }
+
+    static byte[] encode(ObjectManifest manifest) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(FORMAT_VERSION);
+        out.writeUTF(manifest.getKey());
+        out.writeLong(manifest.getSize());
+        out.writeUTF(manifest.getEtag());
+        out.writeLong(manifest.getLastModified());
+        out.writeInt(manifest.getChunks().size());
+        for (ObjectChunk chunk : manifest.getChunks()) {
+            out.writeLong(chunk.getObjectOffset());
+            out.writeInt(chunk.getLength());
+            out.writeByte(chunk.getReplicas().size());
+            for (Map.Entry<String, BlockLocation> replica : chunk.getReplicas().entrySet()) {
+                BlockLocation location = replica.getValue();
+                out.writeUTF(replica.getKey());
+                out.writeLong(location.getExtentId());
+                out.writeInt(location.getBlock());
+                out.writeLong(location.getOffset());
+                out.writeInt(location.getLength());
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static ObjectManifest decode(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        byte format = in.readByte();
+        if (format != FORMAT_VERSION) {
+            throw new IOException("Unsupported manifest format " + format);
+        }
+        String key = in.readUTF();
+        long size = in.readLong();
+        String etag = in.readUTF();
+        long lastModified = in.readLong();
+        int chunkCount = in.readInt();
+        List<ObjectChunk> chunks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            long objectOffset = in.readLong();
+            int length = in.readInt();
+            int replicaCount = in.readUnsignedByte();
+            Map<String, BlockLocation> replicas = new LinkedHashMap<>();
+            for (int r = 0; r < replicaCount; r++) {
+                String node = in.readUTF();
+                replicas.put(node, new BlockLocation(in.readLong(), in.readInt(), in.readLong(), in.readInt()));
+            }
+            chunks.add(new ObjectChunk(objectOffset, length, replicas));
+        }
+        return new ObjectManifest(key, size, etag, lastModified, chunks);
+    }
+}
@@ -0,0 +1,23 @@
+package com.objectstorage.partitionserver.server;
+
+// Thrown when a request reaches a partition server that does not currently own
+// the key, typically because the caller routed with a stale partition map.
+public class NotOwnerException extends RuntimeException {
+    private final String server;
+    private final long mapVersion;
+
+    public NotOwnerException(String server, String key, long mapVersion) {
+        super(server + " does not own key " + key + " as of partition map version " + mapVersion);
+        this.server = server;
+        this.mapVersion = mapVersion;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    // Partition map version the server's own assignment is based on
+    public long getMapVersion() {
+        return mapVersion;
+    }
+}
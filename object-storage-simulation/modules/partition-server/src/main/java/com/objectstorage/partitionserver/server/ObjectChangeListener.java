@@ -0,0 +1,10 @@
+package com.objectstorage.partitionserver.server;
+
+import com.objectstorage.common.object.ObjectManifest;
+
+// Notified after an object's manifest is written or deleted on its owning
+// server, with the manifest it replaced (null if the key was new) and the one
+// now stored (null after a delete)
+public interface ObjectChangeListener {
+    void objectChanged(String key, ObjectManifest previous, ObjectManifest current);
+}
@@ -0,0 +1,347 @@
+package com.objectstorage.partitionserver.server;
+
+import com.objectstorage.common.extent.BlockLocation;
+import com.objectstorage.common.object.ObjectChunk;
+import com.objectstorage.common.object.ObjectManifest;
+import com.objectstorage.common.partition.KeyRange;
+import com.objectstorage.common.partition.PartitionAssignment;
+import com.objectstorage.common.partition.PartitionTable;
+import com.objectstorage.partitionserver.metadata.MetadataStore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// One partition server: the key ranges the partition manager has assigned to
+// it and the metadata store holding the objects in those ranges. Every request
+// is checked against the ranges so a caller holding an outdated partition map
+// is told to refresh instead of being served wrongly.
+public class PartitionServer {
+    private final String name;
+    private final MetadataStore store;
+    private final Consumer<String> loadReporter;
+    private final List<ObjectChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // Serialise read-modify-write of the same key so listeners see every
+    // change exactly once, against the manifest it actually replaced
+    private final Object[] keyLocks = new Object[64];
+    // Requests hold the read side; moving ranges between servers holds the write side
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Assignment assignment = new Assignment(0, new TreeMap<String, KeyRange>());
+
+    public PartitionServer(String name, MetadataStore store) {
+        this(name, store, key -> { });
+    }
+
+    // loadReporter is told about every accepted key so the partition manager can
+    // track per-range load without sitting on the request path
+    public PartitionServer(String name, MetadataStore store, Consumer<String> loadReporter) {
+        this.name = name;
+        this.store = store;
+        this.loadReporter = loadReporter;
+        for (int i = 0; i < keyLocks.length; i++) {
+            keyLocks[i] = new Object();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public MetadataStore getStore() {
+        return store;
+    }
+
+    public void addListener(ObjectChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    private void fireChanged(String key, ObjectManifest previous, ObjectManifest current) {
+        for (ObjectChangeListener listener : listeners) {
+            listener.objectChanged(key, previous, current);
+        }
+    }
+
+    private Object keyLock(String key) {
+        return keyLocks[(key.hashCode() & Integer.MAX_VALUE) % keyLocks.length];
+    }
+
+    private ObjectManifest read(String key) throws IOException {
+        byte[] value = store.get(key);
+        return value == null ? null : ManifestCodec.decode(value);
+    }
+
+    // Applies the partition manager's latest table; older versions are ignored
+    public void assign(PartitionTable table) {
+        lock.writeLock().lock();
+        try {
+            applyAssignment(table);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void applyAssignment(PartitionTable table) {
+        if (table.getVersion() <= assignment.version) {
+            return;
+        }
+        NavigableMap<String, KeyRange> owned = new TreeMap<>();
+        for (PartitionAssignment partition : table.getAssignments()) {
+            if (partition.getServer().equals(name)) {
+                owned.put(partition.getRange().getStart(), partition.getRange());
+            }
+        }
+        assignment = new Assignment(table.getVersion(), owned);
+    }
+
+    // Applies a new partition table to a group of servers, first moving the
+    // metadata of every range that changes hands from its old owner's store to
+    // its new owner's. All servers are locked for the duration so no request
+    // sees a range whose data is still in flight.
+    public static void reassign(Collection<PartitionServer> servers, PartitionTable table) throws IOException {
+        Map<String, PartitionServer> byName = new TreeMap<>();
+        for (PartitionServer server : servers) {
+            byName.put(server.name, server);
+        }
+        // Lock in name order so concurrent reassignments cannot deadlock
+        List<PartitionServer> ordered = new ArrayList<>(byName.values());
+        for (PartitionServer server : ordered) {
+            server.lock.writeLock().lock();
+        }
+        try {
+            for (PartitionServer server : ordered) {
+                if (table.getVersion() <= server.assignment.version) {
+                    continue;
+                }
+                for (KeyRange owned : server.assignment.ranges.values()) {
+                    for (PartitionAssignment partition : table.getAssignments()) {
+                        PartitionServer target = byName.get(partition.getServer());
+                        KeyRange moving = owned.intersect(partition.getRange());
+                        if (target != null && target != server && moving != null) {
+                            server.handOff(moving, target);
+                        }
+                    }
+                }
+            }
+            for (PartitionServer server : ordered) {
+                server.applyAssignment(table);
+            }
+        } finally {
+            for (PartitionServer server : ordered) {
+                server.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void handOff(KeyRange range, PartitionServer target) throws IOException {
+        Iterator<Map.Entry<String, byte[]>> entries = store.scan(range.getStart(), range.getEnd());
+        List<String> moved = new ArrayList<>();
+        while (entries.hasNext()) {
+            Map.Entry<String, byte[]> entry = entries.next();
+            target.store.put(entry.getKey(), entry.getValue());
+            moved.add(entry.getKey());
+        }
+        for (String key : moved) {
+            store.delete(key);
+        }
+    }
+
+    public boolean owns(String key) {
+        Map.Entry<String, KeyRange> entry = assignment.ranges.floorEntry(key);
+        return entry != null && entry.getValue().contains(key);
+    }
+
+    // Accepts a request for key or throws NotOwnerException if it belongs elsewhere
+    public void checkOwner(String key) {
+        Assignment current = assignment;
+        if (!accept(current, key)) {
+            throw new NotOwnerException(name, key, current.version);
+        }
+    }
+
+    private boolean accept(Assignment current, String key) {
+        Map.Entry<String, KeyRange> entry = current.ranges.floorEntry(key);
+        if (entry == null || !entry.getValue().contains(key)) {
+            return false;
+        }
+        loadReporter.accept(key);
+        return true;
+    }
+
+    public ObjectManifest getObject(String key) throws IOException {
+        lock.readLock().lock();
+        try {
+            checkOwner(key);
+            return read(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void putObject(ObjectManifest manifest) throws IOException {
+        lock.readLock().lock();
+        try {
+            checkOwner(manifest.getKey());
+            synchronized (keyLock(manifest.getKey())) {
+                ObjectManifest previous = read(manifest.getKey());
+                store.put(manifest.getKey(), ManifestCodec.encode(manifest));
+                fireChanged(manifest.getKey(), previous, manifest);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // getObject for many keys in one call, in the order given. Keys this server
+    // does not own are left out rather than failing the batch, so the caller
+    // can route just those again; owned keys without an object map to null.
+    public Map<String, ObjectManifest> getObjects(Collection<String> keys) throws IOException {
+        lock.readLock().lock();
+        try {
+            Assignment current = assignment;
+            Map<String, ObjectManifest> result = new LinkedHashMap<>();
+            for (String key : keys) {
+                if (accept(current, key)) {
+                    result.put(key, read(key));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // deleteObject for many keys in one call: whether each key existed, with
+    // keys this server does not own left out as in getObjects
+    public Map<String, Boolean> deleteObjects(Collection<String> keys) throws IOException {
+        lock.readLock().lock();
+        try {
+            Assignment current = assignment;
+            Map<String, Boolean> result = new LinkedHashMap<>();
+            for (String key : keys) {
+                if (accept(current, key)) {
+                    result.put(key, deleteOwned(key));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns true if the key existed
+    public boolean deleteObject(String key) throws IOException {
+        lock.readLock().lock();
+        try {
+            checkOwner(key);
+            return deleteOwned(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The caller holds the read lock and has checked ownership
+    private boolean deleteOwned(String key) throws IOException {
+        synchronized (keyLock(key)) {
+            ObjectManifest previous = read(key);
+            if (previous == null) {
+                return false;
+            }
+            store.delete(key);
+            fireChanged(key, previous, null);
+            return true;
+        }
+    }
+
+    // Points the chunks of key's manifest that are stored at one of the moved
+    // locations to their new replicas, keeping everything else about the
+    // object. Returns false if the object is gone or holds none of them.
+    public boolean relocateChunks(String key, Map<BlockLocation, Map<String, BlockLocation>> moves)
+            throws IOException {
+        lock.readLock().lock();
+        try {
+            checkOwner(key);
+            synchronized (keyLock(key)) {
+                ObjectManifest previous = read(key);
+                if (previous == null) {
+                    return false;
+                }
+                List<ObjectChunk> chunks = new ArrayList<>();
+                boolean moved = false;
+                for (ObjectChunk chunk : previous.getChunks()) {
+                    Map<String, BlockLocation> target = chunk.getReplicas().isEmpty() ? null
+                        : moves.get(chunk.getReplicas().values().iterator().next());
+                    if (target == null) {
+                        chunks.add(chunk);
+                    } else {
+                        chunks.add(new ObjectChunk(chunk.getObjectOffset(), chunk.getLength(), target));
+                        moved = true;
+                    }
+                }
+                if (!moved) {
+                    return false;
+                }
+                ObjectManifest current = new ObjectManifest(key, previous.getSize(), previous.getEtag(),
+                    previous.getLastModified(), chunks);
+                store.put(key, ManifestCodec.encode(current));
+                fireChanged(key, previous, current);
+                return true;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Up to limit objects in key order from the part of range this server owns.
+    // Reads only as far into the index as the page needs.
+    public List<ObjectManifest> listObjects(KeyRange range, int limit) throws IOException {
+        lock.readLock().lock();
+        try {
+            List<ObjectManifest> page = new ArrayList<>();
+            for (KeyRange owned : assignment.ranges.values()) {
+                KeyRange part = owned.intersect(range);
+                if (part == null) {
+                    continue;
+                }
+                Iterator<Map.Entry<String, byte[]>> entries = store.scan(part.getStart(), part.getEnd());
+                while (entries.hasNext() && page.size() < limit) {
+                    page.add(ManifestCodec.decode(entries.next().getValue()));
+                }
+                if (page.size() >= limit) {
+                    break;
+                }
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getMapVersion() {
+        return assignment.version;
+    }
+
+    public List<KeyRange> getOwnedRanges() {
+        return Collections.unmodifiableList(new ArrayList<>(assignment.ranges.values()));
+    }
+
+    private static final class Assignment {
+        final long version;
+        final NavigableMap<String, KeyRange> ranges;
+
+        Assignment(long version, NavigableMap<String, KeyRange> ranges) {
+            this.version = version;
+            this.ranges = ranges;
+        }
+    }
+}
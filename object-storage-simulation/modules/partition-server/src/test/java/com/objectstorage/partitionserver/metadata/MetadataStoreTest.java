@@ -0,0 +1,241 @@
+package com.objectstorage.partitionserver.metadata;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetadataStoreTest {
+    // Large enough that nothing is flushed unless a test means it to be
+    private static final long NEVER_FLUSH = 1L << 40;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void servesPutsAndDeletesFromTheMemtable() throws IOException {
+        try (MetadataStore store = new MetadataStore(dir, NEVER_FLUSH, 4, false)) {
+            store.put("a", bytes("1"));
+            store.put("b", bytes("2"));
+            store.put("a", bytes("3"));
+            store.delete("b");
+            assertArrayEquals(bytes("3"), store.get("a"));
+            assertNull(store.get("b"));
+            assertNull(store.get("c"));
+            assertEquals(0, store.getIndexFileCount());
+        }
+    }
+
+    @Test
+    void recoversUnflushedWritesFromTheCommitLog() throws IOException {
+        try (MetadataStore store = new MetadataStore(dir, NEVER_FLUSH, 4, false)) {
+            store.put("kept", bytes("v1"));
+            store.put("deleted", bytes("v2"));
+            store.delete("deleted");
+        }
+        try (MetadataStore store = new MetadataStore(dir, NEVER_FLUSH, 4, false)) {
+            assertArrayEquals(bytes("v1"), store.get("kept"));
+            assertNull(store.get("deleted"));
+            store.put("later", bytes("v3"));
+        }
+        try (MetadataStore store = new MetadataStore(dir, NEVER_FLUSH, 4, false)) {
+            assertArrayEquals(bytes("v1"), store.get("kept"));
+            assertArrayEquals(bytes("v3"), store.get("later"));
+        }
+    }
+
+    @Test
+    void flushedIndexFilesSurviveARestart() throws Exception {
+        try (MetadataStore store = new MetadataStore(dir, 4096, 100, false)) {
+            for (int i = 0; i < 1000; i++) {
+                store.put(key(i), bytes("value " + i));
+            }
+            await(() -> store.getIndexFileCount() > 0);
+            assertArrayEquals(bytes("value 0"), store.get(key(0)));
+        }
+        try (MetadataStore store = new MetadataStore(dir, 4096, 100, false)) {
+            assertTrue(store.getIndexFileCount() > 0);
+            for (int i = 0; i < 1000; i++) {
+                assertArrayEquals(bytes("value " + i), store.get(key(i)));
+            }
+        }
+    }
+
+    @Test
+    void compactionMergesIndexFilesAndKeepsTheNewestValues() throws Exception {
+        try (MetadataStore store = new MetadataStore(dir, 2048, 2, false)) {
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < 200; i++) {
+                    store.put(key(i), bytes("round " + round));
+                }
+            }
+            for (int i = 0; i < 200; i += 2) {
+                store.delete(key(i));
+            }
+            // Push the deletes out of the memtable as well
+            for (int i = 0; i < 200; i++) {
+                store.put("z" + key(i), bytes("filler"));
+            }
+            await(() -> countFiles(".log") == 1);
+            await(() -> store.getIndexFileCount() < 4);
+            for (int i = 0; i < 200; i++) {
+                if (i % 2 == 0) {
+                    assertNull(store.get(key(i)));
+                } else {
+                    assertArrayEquals(bytes("round 4"), store.get(key(i)));
+                }
+            }
+            List<String> keys = keys(store.scan(key(0), key(10)));
+            assertEquals(List.of(key(1), key(3), key(5), key(7), key(9)), keys);
+        }
+    }
+
+    @Test
+    void scanMergesMemtableAndIndexFilesInKeyOrder() throws Exception {
+        try (MetadataStore store = new MetadataStore(dir, 1024, 100, false)) {
+            for (int i = 0; i < 100; i += 2) {
+                store.put(key(i), bytes("even"));
+            }
+            await(() -> store.getIndexFileCount() > 0);
+            for (int i = 1; i < 100; i += 2) {
+                store.put(key(i), bytes("odd"));
+            }
+            store.delete(key(50));
+            List<String> keys = keys(store.scan(key(48), key(53)));
+            assertEquals(List.of(key(48), key(49), key(51), key(52)), keys);
+            assertEquals(99, keys(store.scan("", null)).size());
+        }
+    }
+
+    @Test
+    void findsKeysWhoseUtf8AndUtf16OrdersDisagree() throws Exception {
+        // An emoji (a surrogate pair) sorts before fullwidth "\uFF21" as a
+        // String but after it as UTF-8 bytes
+        List<String> unicode = List.of("u-a", "u-\uD83D\uDE00", "u-\uD83D\uDE00z", "u-\uE000", "u-\uFF21",
+            "u-\uFF21\uD83D\uDE00");
+        try (MetadataStore store = new MetadataStore(dir, 1024, 100, false)) {
+            for (String key : unicode) {
+                store.put(key, bytes(key));
+            }
+            for (int i = 0; i < 200; i++) {
+                store.put(key(i), bytes("filler"));
+            }
+            await(() -> store.getIndexFileCount() > 0);
+        }
+        try (MetadataStore store = new MetadataStore(dir, 1024, 100, false)) {
+            for (String key : unicode) {
+                assertArrayEquals(bytes(key), store.get(key), key);
+            }
+            assertNull(store.get("u-\uD83D\uDE01"));
+            assertNull(store.get("u-\uFF22"));
+            assertEquals(unicode, keys(store.scan("u-", "u.")));
+        }
+    }
+
+    @Test
+    void refusesWritesWhileFlushesKeepFailingAndCatchesUpAfterwards() throws Exception {
+        // A directory where each index file's temporary file would go makes
+        // every flush fail until they are removed
+        for (int generation = 1; generation < 100; generation++) {
+            Files.createDirectories(dir.resolve(String.format("index-%012d.sst.tmp", generation)));
+        }
+        try (MetadataStore store = new MetadataStore(dir, 1000, 4, false)) {
+            int written = 0;
+            IOException refused = null;
+            try {
+                for (; written < 10_000; written++) {
+                    store.put(key(written), new byte[100]);
+                }
+            } catch (IOException e) {
+                refused = e;
+            }
+            assertTrue(refused != null && refused.getMessage().startsWith("Refusing writes"));
+            assertTrue(refused.getCause().getMessage().startsWith("Failed to flush memtable"));
+            assertEquals(0, store.getIndexFileCount());
+            assertEquals(100, store.get(key(0)).length);
+
+            for (int generation = 1; generation < 100; generation++) {
+                Files.deleteIfExists(dir.resolve(String.format("index-%012d.sst.tmp", generation)));
+            }
+            await(() -> store.getIndexFileCount() > 0 && countFiles(".log") == 1);
+            store.put("after", bytes("ok"));
+            for (int i = 0; i < written; i++) {
+                assertEquals(100, store.get(key(i)).length);
+            }
+        }
+    }
+
+    @Test
+    void closingWhileFlushesFailKeepsEveryWrite() throws Exception {
+        for (int generation = 1; generation < 100; generation++) {
+            Files.createDirectories(dir.resolve(String.format("index-%012d.sst.tmp", generation)));
+        }
+        try (MetadataStore store = new MetadataStore(dir, 1000, 4, false)) {
+            for (int i = 0; i < 20; i++) {
+                store.put(key(i), new byte[100]);
+            }
+        }
+        for (int generation = 1; generation < 100; generation++) {
+            Files.deleteIfExists(dir.resolve(String.format("index-%012d.sst.tmp", generation)));
+        }
+        try (MetadataStore store = new MetadataStore(dir, 1000, 4, false)) {
+            assertEquals(0, store.getIndexFileCount());
+            for (int i = 0; i < 20; i++) {
+                assertEquals(100, store.get(key(i)).length);
+            }
+        }
+    }
+
+    @Test
+    void rejectsTooSmallACompactionTrigger() {
+        assertThrows(IllegalArgumentException.class, () -> new MetadataStore(dir, NEVER_FLUSH, 1, false));
+    }
+
+    private static String key(int i) {
+        return String.format("key-%05d", i);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> keys(Iterator<Map.Entry<String, byte[]>> entries) {
+        List<String> keys = new ArrayList<>();
+        entries.forEachRemaining(entry -> keys.add(entry.getKey()));
+        return keys;
+    }
+
+    private long countFiles(String suffix) {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(suffix)).count();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Flushes and compactions run in the background
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 20_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Timed out waiting for the store to catch up");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.objectstorage.streammanager.config;
+
+import com.objectstorage.streammanager.stream.StreamManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration
+public class StreamManagerConfig {
+    @Bean
+    public StreamManager streamManager(
+            @Value("${stream-manager.extent-nodes:Extent Node 1,Extent Node 2,Extent Node 3,Extent Node 4,Extent Node 5}") List<String> nodes) {
+        return new StreamManager(nodes);
+    }
+}
@@ -1,15 +1,48 @@
 package com.objectstorage.streammanager.controller;
 
+import com.objectstorage.streammanager.stream.ExtentInfo;
+import com.objectstorage.streammanager.stream.StreamManager;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/stream-manager")
 public class StreamManagerController {
+    private final StreamManager streamManager;
+
+    public StreamManagerController(StreamManager streamManager) {
+        this.streamManager = streamManager;
+    }
+
     @GetMapping("/health")
     public String health() {
         return "Stream Manager is up";
     }
+
+    // GET /extents lists every extent with its replica set and, once sealed,
+    // how many of its bytes are still live
+    @GetMapping("/extents")
+    public List<Map<String, Object>> getExtents() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (ExtentInfo extent : streamManager.getExtents()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", extent.getId());
+            entry.put("replicas", extent.getReplicas());
+            entry.put("sealed", extent.isSealed());
+            entry.put("damagedReplicas", extent.getDamagedReplicas());
+            if (extent.isSealed()) {
+                entry.put("length", extent.getSealedLength());
+                entry.put("liveBytes", extent.getLiveBytes());
+            }
+            result.add(entry);
+        }
+        return result;
+    }
     // TODO: Add endpoints for stream management, status, etc.
-} 
\ No newline at end of file
+}
@@ -0,0 +1,172 @@
+package com.objectstorage.streammanager.erasure;
+
+import com.objectstorage.common.erasure.ReedSolomon;
+import com.objectstorage.extentnode.storage.Extent;
+import com.objectstorage.extentnode.storage.ExtentStore;
+import com.objectstorage.extentnode.storage.Fragment;
+import com.objectstorage.streammanager.stream.ErasureLayout;
+import com.objectstorage.streammanager.stream.ExtentInfo;
+import com.objectstorage.streammanager.stream.StreamManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Periodically converts sealed extents nobody has read for a while from three
+// full replicas into Reed-Solomon fragments spread over the extent nodes,
+// cutting their footprint from 3x to (data + parity) / data. The extent is
+// encoded in fixed-size column batches, so memory use does not grow with the
+// extent size. Readers switch to the fragments as soon as they are committed;
+// the old replicas are only deleted after a grace period so reads already
+// under way can finish. Each round returns what it did.
+public class ColdExtentEncoder implements Closeable {
+    private static final int BATCH_SIZE = 64 * 1024;
+    private static final long REPLICA_RETENTION_MILLIS = 30_000;
+
+    private final StreamManager streamManager;
+    private final Function<String, ExtentStore> stores;
+    private final ReedSolomon codec;
+    private final long coldAfterMillis;
+    private final ScheduledExecutorService scheduler;
+
+    public ColdExtentEncoder(StreamManager streamManager, Function<String, ExtentStore> stores,
+                             int dataFragments, int parityFragments, long coldAfterMillis) {
+        if (dataFragments + parityFragments > streamManager.getNodes().size()) {
+            throw new IllegalArgumentException(dataFragments + "+" + parityFragments
+                + " fragments need more than the " + streamManager.getNodes().size() + " extent nodes");
+        }
+        this.streamManager = streamManager;
+        this.stores = stores;
+        this.codec = new ReedSolomon(dataFragments, parityFragments);
+        this.coldAfterMillis = coldAfterMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cold-extent-encoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start(long intervalMillis) {
+        scheduler.scheduleWithFixedDelay(this::encodeColdExtents, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized List<String> encodeColdExtents() {
+        List<String> changes = new ArrayList<>();
+        for (ExtentInfo extent : streamManager.getColdExtents(coldAfterMillis)) {
+            if (extent.getSealedLength() == 0) {
+                continue;
+            }
+            try {
+                String change = encode(extent);
+                if (change != null) {
+                    changes.add(change);
+                }
+            } catch (IOException | RuntimeException e) {
+                changes.add("Could not encode extent " + extent.getId() + ": " + e.getMessage());
+            }
+        }
+        return changes;
+    }
+
+    private String encode(ExtentInfo extent) throws IOException {
+        int k = codec.getDataShards();
+        int m = codec.getParityShards();
+        List<String> nodes = streamManager.placeFragments(extent.getId(), k + m);
+        Extent source = sourceReplica(extent);
+        if (nodes == null || source == null) {
+            return null;
+        }
+        long length = extent.getSealedLength();
+        long fragmentSize = (length + k - 1) / k;
+        ByteBuffer contents = source.read(0, (int) length);
+
+        Fragment[] fragments = new Fragment[k + m];
+        boolean committed = false;
+        try {
+            for (int i = 0; i < k + m; i++) {
+                fragments[i] = stores.apply(nodes.get(i)).createFragment(extent.getId(), i);
+            }
+            byte[][] data = new byte[k][BATCH_SIZE];
+            byte[][] parity = new byte[m][BATCH_SIZE];
+            for (long column = 0; column < fragmentSize; column += BATCH_SIZE) {
+                int len = (int) Math.min(BATCH_SIZE, fragmentSize - column);
+                for (int d = 0; d < k; d++) {
+                    // Stripe d covers [d * fragmentSize, (d + 1) * fragmentSize) of the extent
+                    long start = d * fragmentSize + column;
+                    int available = (int) Math.max(0, Math.min(len, length - start));
+                    if (available > 0) {
+                        ByteBuffer slice = contents.duplicate();
+                        slice.position((int) start);
+                        slice.get(data[d], 0, available);
+                    }
+                    Arrays.fill(data[d], available, len, (byte) 0);
+                }
+                codec.encode(data, parity, 0, len);
+                for (int d = 0; d < k; d++) {
+                    fragments[d].write(ByteBuffer.wrap(data[d], 0, len));
+                }
+                for (int p = 0; p < m; p++) {
+                    fragments[k + p].write(ByteBuffer.wrap(parity[p], 0, len));
+                }
+            }
+            for (int i = 0; i < k + m; i++) {
+                stores.apply(nodes.get(i)).commitFragment(fragments[i]);
+            }
+            committed = true;
+        } finally {
+            if (!committed) {
+                for (Fragment fragment : fragments) {
+                    if (fragment != null) {
+                        fragment.close();
+                    }
+                }
+            }
+        }
+        streamManager.markErasureCoded(extent.getId(), new ErasureLayout(k, m, fragmentSize, nodes));
+        scheduler.schedule(() -> dropReplicas(extent), REPLICA_RETENTION_MILLIS, TimeUnit.MILLISECONDS);
+        return "Encoded extent " + extent.getId() + " (" + length + " bytes) as " + k + "+" + m
+            + " fragments on " + String.join(", ", nodes);
+    }
+
+    // A complete replica whose blocks all pass their checksums, since the
+    // fragments are all that will be left of the extent
+    private Extent sourceReplica(ExtentInfo extent) {
+        for (String node : extent.getReplicas()) {
+            if (!streamManager.isAvailable(node)) {
+                continue;
+            }
+            try {
+                Extent replica = stores.apply(node).getExtent(extent.getId());
+                if (replica.isSealed() && replica.getSize() == extent.getSealedLength()) {
+                    replica.verify(0, (int) replica.getSize());
+                    return replica;
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                // This node no longer has it or its copy is damaged; try the next one
+            }
+        }
+        return null;
+    }
+
+    private void dropReplicas(ExtentInfo extent) {
+        for (String node : extent.getReplicas()) {
+            try {
+                stores.apply(node).deleteExtent(extent.getId());
+            } catch (IOException e) {
+                // Left for extent garbage collection
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
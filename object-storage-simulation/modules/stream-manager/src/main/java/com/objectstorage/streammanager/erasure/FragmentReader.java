@@ -0,0 +1,90 @@
+package com.objectstorage.streammanager.erasure;
+
+import com.objectstorage.common.erasure.ReedSolomon;
+import com.objectstorage.extentnode.storage.ExtentStore;
+import com.objectstorage.streammanager.stream.ErasureLayout;
+import com.objectstorage.streammanager.stream.ExtentInfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Reads byte ranges of erasure-coded extents. Data fragments hold the extent's
+// bytes unchanged, so while their nodes are up a read is a plain copy from one
+// or two fragments. When a node is down the missing range is rebuilt from the
+// same range of any data-count surviving fragments, so a degraded read costs
+// data-count small reads rather than a whole-extent reconstruction.
+public class FragmentReader {
+    private final Function<String, ExtentStore> stores;
+    private final Predicate<String> available;
+
+    public FragmentReader(Function<String, ExtentStore> stores, Predicate<String> available) {
+        this.stores = stores;
+        this.available = available;
+    }
+
+    public ByteBuffer read(ExtentInfo extent, long offset, int length) throws IOException {
+        ErasureLayout layout = extent.getErasureLayout();
+        if (layout == null) {
+            throw new IllegalArgumentException("Extent " + extent.getId() + " is not erasure coded");
+        }
+        if (offset < 0 || length < 0 || offset + length > extent.getSealedLength()) {
+            throw new IllegalArgumentException("Range [" + offset + ", +" + length
+                + ") is outside extent " + extent.getId() + " of size " + extent.getSealedLength());
+        }
+        byte[] out = new byte[length];
+        long fragmentSize = layout.getFragmentSize();
+        int done = 0;
+        ReedSolomon.Decoder decoder = null;
+        while (done < length) {
+            long position = offset + done;
+            int fragment = (int) (position / fragmentSize);
+            long within = position % fragmentSize;
+            int n = (int) Math.min(length - done, fragmentSize - within);
+            String node = layout.getNodes().get(fragment);
+            if (available.test(node)) {
+                read(extent.getId(), fragment, node, within, n).get(out, done, n);
+            } else {
+                if (decoder == null) {
+                    decoder = decoder(extent, layout);
+                }
+                int[] present = decoder.getPresent();
+                byte[][] shards = new byte[present.length][n];
+                for (int i = 0; i < present.length; i++) {
+                    read(extent.getId(), present[i], layout.getNodes().get(present[i]), within, n).get(shards[i]);
+                }
+                decoder.reconstruct(fragment, shards, 0, n, out, done);
+            }
+            done += n;
+        }
+        return ByteBuffer.wrap(out);
+    }
+
+    private ByteBuffer read(long extentId, int fragment, String node, long offset, int length) {
+        return stores.apply(node).getFragment(extentId, fragment).read(offset, length);
+    }
+
+    // Decoder over the first data-count fragments whose nodes are up, data
+    // fragments first since they need the least work
+    private ReedSolomon.Decoder decoder(ExtentInfo extent, ErasureLayout layout) throws IOException {
+        ReedSolomon codec = new ReedSolomon(layout.getDataFragments(), layout.getParityFragments());
+        List<Integer> present = new ArrayList<>();
+        for (int i = 0; i < layout.getNodes().size() && present.size() < layout.getDataFragments(); i++) {
+            if (available.test(layout.getNodes().get(i))) {
+                present.add(i);
+            }
+        }
+        if (present.size() < layout.getDataFragments()) {
+            throw new IOException("Only " + present.size() + " of the " + layout.getDataFragments()
+                + " fragments needed to read extent " + extent.getId() + " are available");
+        }
+        int[] indices = new int[present.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = present.get(i);
+        }
+        return codec.decoder(indices);
+    }
+}
@@ -0,0 +1,237 @@
+package com.objectstorage.streammanager.gc;
+
+import com.objectstorage.common.extent.BlockLocation;
+import com.objectstorage.common.object.ObjectChunk;
+import com.objectstorage.common.object.ObjectManifest;
+import com.objectstorage.extentnode.replication.ChainReplicator;
+import com.objectstorage.extentnode.storage.ExtentStore;
+import com.objectstorage.streammanager.erasure.FragmentReader;
+import com.objectstorage.streammanager.stream.ErasureLayout;
+import com.objectstorage.streammanager.stream.ExtentInfo;
+import com.objectstorage.streammanager.stream.StreamManager;
+import com.objectstorage.streammanager.throttle.ByteRateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Periodically reclaims the space of sealed extents whose bytes are mostly no
+// longer referenced by any object, after overwrites, deletes and abandoned
+// uploads. An extent nothing refers to is simply deleted. One that is still
+// partly live has its live blocks copied, in extent order, into a new sealed
+// extent; then every object stored in it is pointed at the copies, one atomic
+// manifest update per key on its partition server, and only once no manifest
+// refers to the old extent any more is it deleted, after a grace period so
+// reads already under way can finish. Copying is held to a byte rate so
+// compaction does not starve foreground reads and writes of disk bandwidth.
+// Each round returns what it did.
+public class ExtentCompactor implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ExtentCompactor.class);
+    private static final long RETENTION_MILLIS = 30_000;
+
+    private final StreamManager streamManager;
+    private final Function<String, ExtentStore> stores;
+    private final ChainReplicator replicator;
+    private final FragmentReader fragmentReader;
+    private final ManifestDirectory manifests;
+    private final int replicaCount;
+    private final double maxLiveRatio;
+    private final long minAgeMillis;
+    private final ByteRateLimiter copyRate;
+    private final ScheduledExecutorService scheduler;
+    // Extents already emptied and waiting out their grace period
+    private final Set<Long> retiring = ConcurrentHashMap.newKeySet();
+
+    public ExtentCompactor(StreamManager streamManager, Function<String, ExtentStore> stores,
+                           ChainReplicator replicator, FragmentReader fragmentReader, ManifestDirectory manifests,
+                           int replicaCount, double maxLiveRatio, long minAgeMillis, long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("Compaction needs a positive byte rate");
+        }
+        this.streamManager = streamManager;
+        this.stores = stores;
+        this.replicator = replicator;
+        this.fragmentReader = fragmentReader;
+        this.manifests = manifests;
+        this.replicaCount = replicaCount;
+        this.maxLiveRatio = maxLiveRatio;
+        this.minAgeMillis = minAgeMillis;
+        this.copyRate = new ByteRateLimiter(bytesPerSecond);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "extent-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start(long intervalMillis) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (RuntimeException e) {
+                // E.g. the stream manager failing to list candidates. Letting it
+                // escape would cancel every later round.
+                log.warn("Compaction round failed", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized List<String> compact() {
+        List<String> changes = new ArrayList<>();
+        for (ExtentInfo extent : streamManager.getCompactionCandidates(minAgeMillis, maxLiveRatio)) {
+            if (retiring.contains(extent.getId())) {
+                continue;
+            }
+            try {
+                changes.add(extent.getLiveBytes() == 0 ? reclaim(extent) : rewrite(extent));
+            } catch (InterruptedIOException e) {
+                // Shutting down
+                break;
+            } catch (IOException | RuntimeException e) {
+                changes.add("Could not compact extent " + extent.getId() + ": " + e.getMessage());
+            }
+        }
+        return changes;
+    }
+
+    private String reclaim(ExtentInfo extent) {
+        retire(extent);
+        return "Reclaimed extent " + extent.getId() + " (" + extent.getSealedLength() + " bytes, none live)";
+    }
+
+    private String rewrite(ExtentInfo extent) throws IOException {
+        // The live blocks, found through the manifests that refer to the extent
+        Set<BlockLocation> live = new HashSet<>();
+        for (String key : extent.getReferences().keySet()) {
+            ObjectManifest manifest = manifests.get(key);
+            if (manifest == null) {
+                continue;
+            }
+            for (ObjectChunk chunk : manifest.getChunks()) {
+                BlockLocation location = chunk.getReplicas().values().iterator().next();
+                if (location.getExtentId() == extent.getId()) {
+                    live.add(location);
+                }
+            }
+        }
+        List<BlockLocation> blocks = new ArrayList<>(live);
+        blocks.sort(Comparator.comparingLong(BlockLocation::getOffset));
+
+        ExtentInfo target = streamManager.createExtent(extent.getReplicas(), replicaCount);
+        Map<BlockLocation, Map<String, BlockLocation>> moves = new LinkedHashMap<>();
+        long copied = 0;
+        try {
+            for (BlockLocation block : blocks) {
+                copyRate.acquire(block.getLength());
+                BlockLocation copy = append(target, read(extent, block));
+                Map<String, BlockLocation> replicas = new LinkedHashMap<>();
+                for (String node : target.getReplicas()) {
+                    replicas.put(node, copy);
+                }
+                moves.put(block, replicas);
+                copied += block.getLength();
+            }
+        } finally {
+            // Sealed either way; a partial copy nothing points at is reclaimed later
+            streamManager.sealExtent(target.getId(), replicator.seal(target.getId(), target.getReplicas()));
+        }
+
+        int relocated = 0;
+        List<String> failed = new ArrayList<>();
+        for (String key : extent.getReferences().keySet()) {
+            try {
+                if (manifests.relocate(key, moves)) {
+                    relocated++;
+                }
+            } catch (IOException | RuntimeException e) {
+                failed.add(key);
+            }
+        }
+        String summary = "Compacted extent " + extent.getId() + " into extent " + target.getId() + ": copied "
+            + copied + " of " + extent.getSealedLength() + " bytes for " + relocated + " objects";
+        // Keys written between reading the manifests and relocating them, or
+        // whose partition server could not be reached, keep the old extent alive
+        if (extent.getLiveBytes() != 0) {
+            return summary + "; extent kept, still referenced" + (failed.isEmpty() ? "" : " by " + failed);
+        }
+        retire(extent);
+        return summary;
+    }
+
+    private ByteBuffer read(ExtentInfo extent, BlockLocation block) throws IOException {
+        if (extent.isErasureCoded()) {
+            return fragmentReader.read(extent, block.getOffset(), block.getLength());
+        }
+        for (String node : extent.getReplicas()) {
+            if (!streamManager.isAvailable(node)) {
+                continue;
+            }
+            try {
+                return stores.apply(node).read(extent.getId(), block.getOffset(), block.getLength());
+            } catch (IOException | IllegalArgumentException e) {
+                // This replica is gone or unreadable; try the next one
+            }
+        }
+        throw new IOException("No replica of extent " + extent.getId() + " is readable");
+    }
+
+    private BlockLocation append(ExtentInfo target, ByteBuffer data) throws IOException {
+        BlockLocation location;
+        try {
+            location = replicator.append(target.getId(), target.getReplicas(), data).join();
+        } catch (CompletionException e) {
+            throw new IOException("Could not write extent " + target.getId(), e.getCause());
+        }
+        if (location == null) {
+            throw new IOException("Live blocks do not fit in extent " + target.getId());
+        }
+        return location;
+    }
+
+    // Deletes the extent's replicas and fragments once the grace period is over
+    private void retire(ExtentInfo extent) {
+        retiring.add(extent.getId());
+        scheduler.schedule(() -> {
+            for (String node : extent.getReplicas()) {
+                try {
+                    stores.apply(node).deleteExtent(extent.getId());
+                } catch (IOException e) {
+                    // The file stays behind; nothing refers to it any more
+                }
+            }
+            ErasureLayout layout = extent.getErasureLayout();
+            if (layout != null) {
+                for (int i = 0; i < layout.getNodes().size(); i++) {
+                    try {
+                        stores.apply(layout.getNodes().get(i)).deleteFragment(extent.getId(), i);
+                    } catch (IOException e) {
+                        // As above
+                    }
+                }
+            }
+            streamManager.removeExtent(extent.getId());
+            retiring.remove(extent.getId());
+        }, RETENTION_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,19 @@
+package com.objectstorage.streammanager.gc;
+
+import com.objectstorage.common.extent.BlockLocation;
+import com.objectstorage.common.object.ObjectManifest;
+
+import java.io.IOException;
+import java.util.Map;
+
+// The object manifests as far as extent compaction needs them, served by the
+// partition servers that own the keys
+public interface ManifestDirectory {
+    // Null if there is no such object
+    ObjectManifest get(String key) throws IOException;
+
+    // Atomically points the chunks of key's manifest stored at one of the old
+    // locations to their new replicas. Returns false if the object is gone or
+    // no longer holds any of them.
+    boolean relocate(String key, Map<BlockLocation, Map<String, BlockLocation>> moves) throws IOException;
+}
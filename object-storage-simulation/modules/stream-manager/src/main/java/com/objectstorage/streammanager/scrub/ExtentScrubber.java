@@ -0,0 +1,342 @@
+package com.objectstorage.streammanager.scrub;
+
+import com.objectstorage.extentnode.storage.BlockIndex;
+import com.objectstorage.extentnode.storage.ChecksumMismatchException;
+import com.objectstorage.extentnode.storage.Extent;
+import com.objectstorage.extentnode.storage.ExtentStore;
+import com.objectstorage.streammanager.stream.ExtentInfo;
+import com.objectstorage.streammanager.stream.StreamManager;
+import com.objectstorage.streammanager.throttle.ByteRateLimiter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+// Finds and repairs blocks whose bytes have rotted on disk. Reads verify the
+// blocks they touch, but an extent nobody reads could decay on every replica
+// before anyone noticed, so each round re-verifies every replica of the
+// replicated extents nobody has read for a while, least recently scrubbed
+// first. That includes extents still being appended to; only the blocks
+// already written are checked. Verifying is held to a byte rate so the scan
+// does not starve foreground reads of disk bandwidth. A block that fails its
+// checksum, found here or by a reader, is rewritten in place from a replica
+// whose copy passes, and until then readers try that replica last. Repairs
+// queued by readers run on a thread of their own, so they never wait behind a
+// scan that is sleeping off its byte budget. Each round returns what it did.
+public class ExtentScrubber implements Closeable {
+    private static final int MAX_EVENTS = 50;
+
+    private final StreamManager streamManager;
+    private final Function<String, ExtentStore> stores;
+    private final long coldAfterMillis;
+    private final long rescrubAfterMillis;
+    private final ByteRateLimiter verifyRate;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService repairer;
+    // Set while a round asked for through requestScrub is waiting to start
+    private final AtomicBoolean requested = new AtomicBoolean();
+    // Held while repairing, never while scanning
+    private final Object repairLock = new Object();
+    private final Set<DamagedBlock> pending = ConcurrentHashMap.newKeySet();
+    // Pending blocks already reported as having no intact copy anywhere;
+    // guarded by repairLock
+    private final Set<DamagedBlock> unrepairable = new HashSet<>();
+    // Recent findings and repairs, oldest first
+    private final Deque<String> events = new ArrayDeque<>();
+    // When each extent was last scrubbed; only used by the scrubbing thread
+    private final Map<Long, Long> scrubbed = new HashMap<>();
+
+    public ExtentScrubber(StreamManager streamManager, Function<String, ExtentStore> stores,
+                          long coldAfterMillis, long rescrubAfterMillis, long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("Scrubbing needs a positive byte rate");
+        }
+        this.streamManager = streamManager;
+        this.stores = stores;
+        this.coldAfterMillis = coldAfterMillis;
+        this.rescrubAfterMillis = rescrubAfterMillis;
+        this.verifyRate = new ByteRateLimiter(bytesPerSecond);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "extent-scrubber");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.repairer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "extent-repairer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start(long intervalMillis) {
+        scheduler.scheduleWithFixedDelay(this::scrub, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Runs a round on the scrubbing thread as soon as it is free; what it finds
+    // shows up in getRecentEvents. Returns false if a round asked for earlier
+    // has not started yet, in which case that one will do.
+    public boolean requestScrub() {
+        if (!requested.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            scheduler.execute(() -> {
+                requested.set(false);
+                scrub();
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            requested.set(false);
+            return false;
+        }
+    }
+
+    // Called by a reader whose copy of a block failed its checksum and which
+    // has already been served from another replica
+    public void queueRepair(String node, long extentId, int block) {
+        if (!markDamaged(new DamagedBlock(node, extentId, block))) {
+            return;
+        }
+        try {
+            repairer.execute(this::repairPending);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    // Rounds are serialized with each other but not with repairs
+    public synchronized List<String> scrub() {
+        List<String> changes = new ArrayList<>(repairPending());
+        long now = System.currentTimeMillis();
+        Set<Long> known = new HashSet<>();
+        List<ExtentInfo> due = new ArrayList<>();
+        for (ExtentInfo extent : streamManager.getExtents()) {
+            known.add(extent.getId());
+            if (extent.isErasureCoded() || now - extent.getLastAccessMillis() < coldAfterMillis) {
+                continue;
+            }
+            Long last = scrubbed.get(extent.getId());
+            if (last == null || now - last >= rescrubAfterMillis) {
+                due.add(extent);
+            }
+        }
+        scrubbed.keySet().retainAll(known);
+        due.sort(Comparator.comparingLong(extent -> scrubbed.getOrDefault(extent.getId(), 0L)));
+        for (ExtentInfo extent : due) {
+            try {
+                changes.addAll(scrub(extent));
+                scrubbed.put(extent.getId(), System.currentTimeMillis());
+            } catch (InterruptedIOException e) {
+                // Shutting down
+                break;
+            } catch (RuntimeException e) {
+                changes.add(record("Could not scrub extent " + extent.getId() + ": " + e.getMessage()));
+            }
+        }
+        // Whatever this round turned up
+        changes.addAll(repairPending());
+        return changes;
+    }
+
+    private List<String> scrub(ExtentInfo extent) throws InterruptedIOException {
+        List<String> changes = new ArrayList<>();
+        List<String> verified = new ArrayList<>();
+        int blocks = 0;
+        for (String node : extent.getReplicas()) {
+            if (!streamManager.isAvailable(node)) {
+                continue;
+            }
+            Extent replica;
+            try {
+                replica = stores.apply(node).getExtent(extent.getId());
+            } catch (IllegalArgumentException e) {
+                // This node no longer has it
+                continue;
+            }
+            BlockIndex index = replica.getIndex();
+            blocks = index.count();
+            for (int block = 0; block < blocks; block++) {
+                verifyRate.acquire(index.length(block));
+                try {
+                    replica.verifyBlock(block);
+                } catch (ChecksumMismatchException e) {
+                    changes.add(record(e.getMessage() + " on " + node));
+                    markDamaged(new DamagedBlock(node, extent.getId(), block));
+                } catch (IOException e) {
+                    changes.add(record("Could not scrub extent " + extent.getId() + " on " + node + ": "
+                        + e.getMessage()));
+                    break;
+                }
+            }
+            verified.add(node);
+        }
+        changes.add(0, "Scrubbed extent " + extent.getId() + " (" + blocks + " blocks) on " + verified);
+        return changes;
+    }
+
+    private boolean markDamaged(DamagedBlock damaged) {
+        if (!pending.add(damaged)) {
+            return false;
+        }
+        try {
+            streamManager.setReplicaDamaged(damaged.extentId, damaged.node, true);
+            return true;
+        } catch (IllegalArgumentException e) {
+            // The extent has been reclaimed meanwhile
+            pending.remove(damaged);
+            return false;
+        }
+    }
+
+    // Repairs every queued block it can. A block whose node is down, or that no
+    // other replica has intact right now, stays queued for the next round.
+    private List<String> repairPending() {
+        synchronized (repairLock) {
+            List<String> changes = new ArrayList<>();
+            for (DamagedBlock damaged : new ArrayList<>(pending)) {
+                ExtentInfo extent;
+                try {
+                    extent = streamManager.getExtent(damaged.extentId);
+                } catch (IllegalArgumentException e) {
+                    pending.remove(damaged);
+                    unrepairable.remove(damaged);
+                    continue;
+                }
+                if (extent.isErasureCoded()) {
+                    // Reads go to the fragments now and the replicas are on their way out
+                    pending.remove(damaged);
+                    unrepairable.remove(damaged);
+                    streamManager.setReplicaDamaged(extent.getId(), damaged.node, false);
+                    continue;
+                }
+                if (!streamManager.isAvailable(damaged.node)) {
+                    continue;
+                }
+                String source = repair(extent, damaged);
+                if (source == null) {
+                    if (unrepairable.add(damaged)) {
+                        changes.add(record("Could not repair " + damaged + ": no intact replica is available"));
+                    }
+                    continue;
+                }
+                pending.remove(damaged);
+                unrepairable.remove(damaged);
+                if (!hasPending(extent.getId(), damaged.node)) {
+                    streamManager.setReplicaDamaged(extent.getId(), damaged.node, false);
+                }
+                changes.add(record("Repaired " + damaged + " from " + source));
+            }
+            return changes;
+        }
+    }
+
+    // Rewrites the block from the first other replica whose copy passes its
+    // checksum; returns that replica's node, or null if there was none
+    private String repair(ExtentInfo extent, DamagedBlock damaged) {
+        for (String source : extent.getReplicas()) {
+            if (source.equals(damaged.node) || !streamManager.isAvailable(source)) {
+                continue;
+            }
+            try {
+                Extent copy = stores.apply(source).getExtent(extent.getId());
+                copy.verifyBlock(damaged.block);
+                stores.apply(damaged.node).repairBlock(extent.getId(), damaged.block,
+                    copy.readBlock(damaged.block), copy.getIndex().checksum(damaged.block));
+                return source;
+            } catch (IOException | RuntimeException e) {
+                // This copy is missing or damaged too; try the next one
+            }
+        }
+        return null;
+    }
+
+    private boolean hasPending(long extentId, String node) {
+        for (DamagedBlock damaged : pending) {
+            if (damaged.extentId == extentId && damaged.node.equals(node)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Blocks waiting for a repair
+    public List<String> getPendingRepairs() {
+        List<String> result = new ArrayList<>();
+        for (DamagedBlock damaged : pending) {
+            result.add(damaged.toString());
+        }
+        return result;
+    }
+
+    public List<String> getRecentEvents() {
+        synchronized (events) {
+            return new ArrayList<>(events);
+        }
+    }
+
+    private String record(String event) {
+        synchronized (events) {
+            if (events.size() == MAX_EVENTS) {
+                events.removeFirst();
+            }
+            events.addLast(event);
+        }
+        return event;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        repairer.shutdownNow();
+    }
+
+    private static final class DamagedBlock {
+        final String node;
+        final long extentId;
+        final int block;
+
+        DamagedBlock(String node, long extentId, int block) {
+            this.node = node;
+            this.extentId = extentId;
+            this.block = block;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof DamagedBlock)) {
+                return false;
+            }
+            DamagedBlock other = (DamagedBlock) o;
+            return extentId == other.extentId && block == other.block && node.equals(other.node);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(node, extentId, block);
+        }
+
+        @Override
+        public String toString() {
+            return "block " + block + " of extent " + extentId + " on " + node;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.objectstorage.streammanager.stream;
+
+import java.util.Collections;
+import java.util.List;
+
+// Where the fragments of an erasure-coded extent live. The sealed extent is
+// cut into dataFragments stripes of fragmentSize bytes (the last one padded
+// with zeros) followed by parityFragments parity stripes; fragment i is held by
+// nodes.get(i).
+public class ErasureLayout {
+    private final int dataFragments;
+    private final int parityFragments;
+    private final long fragmentSize;
+    private final List<String> nodes;
+
+    public ErasureLayout(int dataFragments, int parityFragments, long fragmentSize, List<String> nodes) {
+        if (nodes.size() != dataFragments + parityFragments) {
+            throw new IllegalArgumentException("Need " + (dataFragments + parityFragments)
+                + " fragment nodes, got " + nodes.size());
+        }
+        this.dataFragments = dataFragments;
+        this.parityFragments = parityFragments;
+        this.fragmentSize = fragmentSize;
+        this.nodes = Collections.unmodifiableList(nodes);
+    }
+
+    public int getDataFragments() {
+        return dataFragments;
+    }
+
+    public int getParityFragments() {
+        return parityFragments;
+    }
+
+    public long getFragmentSize() {
+        return fragmentSize;
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+}
@@ -0,0 +1,137 @@
+package com.objectstorage.streammanager.stream;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// What the stream manager knows about one extent: the nodes holding its
+// replicas, primary first, which of those have a block waiting to be repaired,
+// its final length once sealed, when it was last read, and, once it has gone
+// cold, where its erasure-coded fragments are. It also
+// counts how many of its bytes the stored objects still refer to, so extents
+// that are mostly dead can be found and compacted.
+public class ExtentInfo {
+    private final long id;
+    private final List<String> replicas;
+    private final Set<String> damaged = ConcurrentHashMap.newKeySet();
+    private volatile boolean sealed;
+    private volatile long sealedLength;
+    private volatile long sealedMillis;
+    private volatile long lastAccessMillis = System.currentTimeMillis();
+    private volatile ErasureLayout erasureLayout;
+    // Bytes of this extent each object's manifest points at
+    private final ConcurrentMap<String, Long> references = new ConcurrentHashMap<>();
+    private final AtomicLong liveBytes = new AtomicLong();
+    // Writes still in progress that may yet commit blocks of this extent
+    private final AtomicInteger pins = new AtomicInteger();
+
+    ExtentInfo(long id, List<String> replicas) {
+        this.id = id;
+        this.replicas = Collections.unmodifiableList(replicas);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public List<String> getReplicas() {
+        return replicas;
+    }
+
+    public String getPrimary() {
+        return replicas.get(0);
+    }
+
+    // A damaged replica still serves its intact blocks, but readers try it last
+    public boolean isDamaged(String node) {
+        return damaged.contains(node);
+    }
+
+    public Set<String> getDamagedReplicas() {
+        return new TreeSet<>(damaged);
+    }
+
+    public boolean isSealed() {
+        return sealed;
+    }
+
+    public long getSealedLength() {
+        return sealedLength;
+    }
+
+    public long getSealedMillis() {
+        return sealedMillis;
+    }
+
+    public long getLiveBytes() {
+        return liveBytes.get();
+    }
+
+    // Keys of the objects stored partly in this extent, with their byte counts
+    public Map<String, Long> getReferences() {
+        return new TreeMap<>(references);
+    }
+
+    public boolean isReferencedBy(String key) {
+        return references.containsKey(key);
+    }
+
+    public boolean isPinned() {
+        return pins.get() > 0;
+    }
+
+    public long getLastAccessMillis() {
+        return lastAccessMillis;
+    }
+
+    public boolean isErasureCoded() {
+        return erasureLayout != null;
+    }
+
+    // Null while the extent is still replicated
+    public ErasureLayout getErasureLayout() {
+        return erasureLayout;
+    }
+
+    void seal(long length) {
+        sealedLength = length;
+        sealedMillis = System.currentTimeMillis();
+        sealed = true;
+    }
+
+    void addReference(String key, long delta) {
+        references.merge(key, delta, (a, b) -> a + b == 0 ? null : a + b);
+        liveBytes.addAndGet(delta);
+    }
+
+    void pin() {
+        pins.incrementAndGet();
+    }
+
+    void unpin() {
+        pins.decrementAndGet();
+    }
+
+    void setDamaged(String node, boolean isDamaged) {
+        if (isDamaged) {
+            damaged.add(node);
+        } else {
+            damaged.remove(node);
+        }
+    }
+
+    void touch(long now) {
+        lastAccessMillis = now;
+    }
+
+    void setErasureLayout(ErasureLayout layout) {
+        erasureLayout = layout;
+    }
+}
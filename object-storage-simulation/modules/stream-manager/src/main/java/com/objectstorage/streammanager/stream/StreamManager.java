@@ -0,0 +1,235 @@
+package com.objectstorage.streammanager.stream;
+
+import com.objectstorage.common.extent.BlockLocation;
+import com.objectstorage.common.object.ObjectChunk;
+import com.objectstorage.common.object.ObjectManifest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Extent metadata for the whole cluster: which extent nodes hold the replicas
+// or fragments of every extent and whether it has been sealed. New extents and
+// fragments are always placed on available nodes, so a writer can replace a
+// failed extent right away. The partition servers report every manifest they
+// replace, which keeps a count of the live bytes in each extent.
+public class StreamManager {
+    private final List<String> nodes;
+    private final Set<String> unavailable = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<Long, ExtentInfo> extents = new ConcurrentHashMap<>();
+    private final AtomicLong nextExtentId = new AtomicLong(1);
+
+    public StreamManager(List<String> nodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("At least one extent node is required");
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+    }
+
+    // Allocates a new extent with replicaCount replicas, taking the preferred
+    // nodes first and filling in with other available nodes as needed
+    public ExtentInfo createExtent(List<String> preferred, int replicaCount) {
+        long id = nextExtentId.getAndIncrement();
+        List<String> replicas = new ArrayList<>();
+        for (String node : preferred) {
+            if (replicas.size() < replicaCount && isAvailable(node) && !replicas.contains(node)) {
+                replicas.add(node);
+            }
+        }
+        for (int i = 0; i < nodes.size() && replicas.size() < replicaCount; i++) {
+            String node = nodes.get((int) ((id + i) % nodes.size()));
+            if (isAvailable(node) && !replicas.contains(node)) {
+                replicas.add(node);
+            }
+        }
+        if (replicas.size() < replicaCount) {
+            throw new IllegalStateException("Only " + replicas.size() + " extent nodes available, "
+                + replicaCount + " needed");
+        }
+        ExtentInfo extent = new ExtentInfo(id, replicas);
+        extents.put(id, extent);
+        return extent;
+    }
+
+    // Registers a sealed extent found on the extent nodes when the cluster
+    // restarts, since extent metadata is kept only in memory. New extents are
+    // numbered after it so they never land in an existing file.
+    public ExtentInfo restoreExtent(long id, List<String> replicas, long length) {
+        reserveExtentId(id);
+        ExtentInfo extent = extents.computeIfAbsent(id, i -> new ExtentInfo(i, new ArrayList<>(replicas)));
+        if (!extent.isSealed()) {
+            extent.seal(length);
+        }
+        return extent;
+    }
+
+    // Keeps id from ever being handed out again, e.g. for an extent of which
+    // only erasure-coded fragments are left on disk
+    public void reserveExtentId(long id) {
+        nextExtentId.accumulateAndGet(id + 1, Math::max);
+    }
+
+    public void sealExtent(long id, long length) {
+        ExtentInfo extent = getExtent(id);
+        extent.seal(length);
+        extent.touch(System.currentTimeMillis());
+    }
+
+    // Set when a block of node's replica fails its checksum, cleared once the
+    // block has been rewritten from another replica
+    public void setReplicaDamaged(long id, String node, boolean damaged) {
+        getExtent(id).setDamaged(node, damaged);
+    }
+
+    public void recordRead(long id) {
+        getExtent(id).touch(System.currentTimeMillis());
+    }
+
+    // Sealed, still replicated extents nobody has read for at least idleMillis
+    public List<ExtentInfo> getColdExtents(long idleMillis) {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        List<ExtentInfo> cold = new ArrayList<>();
+        for (ExtentInfo extent : extents.values()) {
+            if (extent.isSealed() && !extent.isErasureCoded() && extent.getLastAccessMillis() <= cutoff) {
+                cold.add(extent);
+            }
+        }
+        return cold;
+    }
+
+    // Moves key's references from the extents its previous manifest used to
+    // those of its current one; either may be null
+    public void updateReferences(String key, ObjectManifest previous, ObjectManifest current) {
+        Map<Long, Long> deltas = new HashMap<>();
+        if (previous != null) {
+            for (ObjectChunk chunk : previous.getChunks()) {
+                deltas.merge(extentOf(chunk), (long) -chunk.getLength(), Long::sum);
+            }
+        }
+        if (current != null) {
+            for (ObjectChunk chunk : current.getChunks()) {
+                deltas.merge(extentOf(chunk), (long) chunk.getLength(), Long::sum);
+            }
+        }
+        for (Map.Entry<Long, Long> delta : deltas.entrySet()) {
+            ExtentInfo extent = extents.get(delta.getKey());
+            // Extents already reclaimed have nothing left to count
+            if (extent != null && delta.getValue() != 0) {
+                extent.addReference(key, delta.getValue());
+            }
+        }
+    }
+
+    private static long extentOf(ObjectChunk chunk) {
+        // Every replica holds the chunk at the same place in the same extent
+        BlockLocation location = chunk.getReplicas().values().iterator().next();
+        return location.getExtentId();
+    }
+
+    // Keeps the extents holding chunks that are written but not yet committed
+    // under any key, such as multipart parts, away from compaction. Each
+    // chunk pins its extent once and must be unpinned once.
+    public void pin(Collection<ObjectChunk> chunks) {
+        for (ObjectChunk chunk : chunks) {
+            ExtentInfo extent = extents.get(extentOf(chunk));
+            if (extent != null) {
+                extent.pin();
+            }
+        }
+    }
+
+    public void unpin(Collection<ObjectChunk> chunks) {
+        for (ObjectChunk chunk : chunks) {
+            ExtentInfo extent = extents.get(extentOf(chunk));
+            if (extent != null) {
+                extent.unpin();
+            }
+        }
+    }
+
+    // Sealed, unpinned extents sealed at least minAgeMillis ago whose live
+    // bytes are at most maxLiveRatio of their length, deadest first
+    public List<ExtentInfo> getCompactionCandidates(long minAgeMillis, double maxLiveRatio) {
+        long cutoff = System.currentTimeMillis() - minAgeMillis;
+        List<ExtentInfo> candidates = new ArrayList<>();
+        for (ExtentInfo extent : extents.values()) {
+            if (extent.isSealed() && !extent.isPinned() && extent.getSealedMillis() <= cutoff
+                    && liveRatio(extent) <= maxLiveRatio) {
+                candidates.add(extent);
+            }
+        }
+        candidates.sort(Comparator.comparingDouble(StreamManager::liveRatio));
+        return candidates;
+    }
+
+    public static double liveRatio(ExtentInfo extent) {
+        long length = extent.getSealedLength();
+        return length == 0 ? 0 : (double) extent.getLiveBytes() / length;
+    }
+
+    // Forgets an extent whose replicas and fragments have been deleted
+    public void removeExtent(long id) {
+        extents.remove(id);
+    }
+
+    // Picks count distinct available nodes for the fragments of an extent, or
+    // returns null if there are not enough
+    public List<String> placeFragments(long id, int count) {
+        List<String> placed = new ArrayList<>();
+        for (int i = 0; i < nodes.size() && placed.size() < count; i++) {
+            String node = nodes.get((int) ((id + i) % nodes.size()));
+            if (isAvailable(node)) {
+                placed.add(node);
+            }
+        }
+        return placed.size() == count ? placed : null;
+    }
+
+    // Switches reads of a sealed extent over to its fragments
+    public void markErasureCoded(long id, ErasureLayout layout) {
+        ExtentInfo extent = getExtent(id);
+        if (!extent.isSealed()) {
+            throw new IllegalStateException("Extent " + id + " is not sealed");
+        }
+        extent.setErasureLayout(layout);
+    }
+
+    public ExtentInfo getExtent(long id) {
+        ExtentInfo extent = extents.get(id);
+        if (extent == null) {
+            throw new IllegalArgumentException("Unknown extent " + id);
+        }
+        return extent;
+    }
+
+    public Collection<ExtentInfo> getExtents() {
+        return new ArrayList<>(extents.values());
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    public boolean isAvailable(String node) {
+        return !unavailable.contains(node);
+    }
+
+    public void setNodeAvailable(String node, boolean available) {
+        if (!nodes.contains(node)) {
+            throw new IllegalArgumentException("Unknown extent node " + node);
+        }
+        if (available) {
+            unavailable.remove(node);
+        } else {
+            unavailable.add(node);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.objectstorage.streammanager.throttle;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+// Token bucket that holds background disk work, such as compaction copies and
+// scrub verification, to a byte rate so it does not starve foreground reads
+// and writes of disk bandwidth. The bucket holds at most one second's worth,
+// so a limiter left idle cannot burst past it. A caller takes its bytes under
+// the lock but sleeps off the debt outside it, and holds no lock of its own
+// while it waits.
+public class ByteRateLimiter {
+    private final long bytesPerSecond;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    public ByteRateLimiter(long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("Byte rate must be positive, got " + bytesPerSecond);
+        }
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    // Waits until length bytes fit in the budget
+    public void acquire(int length) throws InterruptedIOException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(bytesPerSecond, tokens + (now - lastRefillNanos) * (bytesPerSecond / 1e9));
+            lastRefillNanos = now;
+            tokens -= length;
+            waitNanos = tokens < 0 ? (long) (-tokens / bytesPerSecond * 1e9) : 0;
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for disk bandwidth");
+            }
+        }
+    }
+}
@@ -63,8 +63,7 @@ class ObjectStorageUI {
     `;
     await this.fetchSystemStatus();
     await this.fetchFiles();
-    await this.fetchPartitionServers();
-    await this.fetchPmLeaderElectionLog();
+    this.subscribeEvents();
     this.renderDiagram();
     this.setupUploadSimulation();
     this.setupGetSimulation();
@@ -81,8 +80,50 @@ class ObjectStorageUI {
       this.systemStatus = [];
     }
     this.renderDiagram();
-    await this.fetchPartitionServers();
-    await this.fetchPmLeaderElectionLog();
+  }
+
+  // Status, partition ownership and leader election changes are pushed by
+  // the server; the stream starts with a snapshot of all three and reconnects
+  // by itself, getting a fresh snapshot each time
+  subscribeEvents() {
+    const events = new EventSource('http://localhost:8080/files/events');
+    events.addEventListener('snapshot', (e) => {
+      const snapshot = JSON.parse(e.data);
+      this.systemStatus = snapshot.components;
+      this.partitionServers = snapshot.partitionServers;
+      this.pmLeaderLog = snapshot.leaderElectionLog;
+      this.renderControlPanel();
+      this.renderDiagram();
+      this.renderPartitionServers();
+      this.renderPmLeaderElectionLog();
+    });
+    events.addEventListener('status', (e) => {
+      const changed = JSON.parse(e.data).components;
+      for (const comp of changed) {
+        const known = (this.systemStatus || []).find(c => c.name === comp.name);
+        if (known) known.status = comp.status;
+        const server = (this.partitionServers || []).find(ps => ps.name === comp.name);
+        if (server) server.status = comp.status;
+      }
+      this.renderControlPanel();
+      this.renderDiagram();
+      this.renderPartitionServers();
+    });
+    events.addEventListener('partitions', (e) => {
+      const update = JSON.parse(e.data);
+      for (const server of update.partitionServers) {
+        const index = (this.partitionServers || []).findIndex(ps => ps.name === server.name);
+        if (index >= 0) this.partitionServers[index] = server;
+      }
+      this.renderPartitionServers();
+    });
+    events.addEventListener('election', (e) => {
+      const entry = JSON.parse(e.data);
+      this.pmLeaderLog = this.pmLeaderLog || [];
+      // Already in the snapshot if it raced with it
+      if (entry.index >= this.pmLeaderLog.length) this.pmLeaderLog.push(entry.message);
+      this.renderPmLeaderElectionLog();
+    });
   }
 
   async fetchMigrationLog() {
@@ -90,26 +131,6 @@ class ObjectStorageUI {
     return this.migrationLog || [];
   }
 
-  async fetchPartitionServers() {
-    try {
-      const res = await fetch('http://localhost:8080/files/partition-servers');
-      this.partitionServers = await res.json();
-    } catch (e) {
-      this.partitionServers = [];
-    }
-    this.renderPartitionServers();
-  }
-
-  async fetchPmLeaderElectionLog() {
-    try {
-      const res = await fetch('http://localhost:8080/files/partition-manager/leader-election-log');
-      this.pmLeaderLog = await res.json();
-    } catch (e) {
-      this.pmLeaderLog = [];
-    }
-    this.renderPmLeaderElectionLog();
-  }
-
   async setupControlPanel() {
     await this.fetchSystemStatus();
     this.renderControlPanel();
@@ -140,32 +161,8 @@ class ObjectStorageUI {
         const data = await res.json();
         this.migrationLog = data.migrations || [];
         this.showMigrationLog();
-        await this.fetchSystemStatus();
-        await this.fetchFiles();
-        this.renderControlPanel();
-        this.renderFiles();
-        this.renderDiagram();
-        await this.fetchPartitionServers();
-        await this.fetchPmLeaderElectionLog();
-        // If Partition Manager was brought down, poll for status/log update
-        if (name === 'Partition Manager' && newStatus === 'down') {
-          let pollCount = 0;
-          const poll = async () => {
-            pollCount++;
-            await this.fetchSystemStatus();
-            await this.fetchPartitionServers();
-            await this.fetchPmLeaderElectionLog();
-            this.renderControlPanel();
-            const pm = this.systemStatus.find(c => c.name === 'Partition Manager');
-            const logHasComplete = (this.pmLeaderLog || []).some(l => l.includes('Leader election complete'));
-            if ((pm && pm.status === 'up' && logHasComplete) || pollCount >= 6) {
-              return;
-            } else {
-              setTimeout(poll, 200);
-            }
-          };
-          poll();
-        }
+        // The new status, any partition moves and the leader election that
+        // follows arrive on the event stream
       });
     });
     this.showMigrationLog();
@@ -359,86 +356,44 @@ class ObjectStorageUI {
         const el = document.getElementById(id);
         if (el) el.classList.add('down');
       }
-      // Animation sequence
+      // Box and arrow of the diagram that stand for the hop of a span
+      function boxOf(span) {
+        const number = span.component ? span.component.split(' ')[2] : null;
+        switch (span.hop) {
+          case 'partition-manager': return { box: 'partition', arrow: 'arrow1' };
+          case 'partition-server': return { box: 'partitionserver' + number, arrow: 'arrow2' };
+          case 'stream-manager': return { box: 'streammanager', arrow: 'arrow3' };
+          case 'extent-node': return { box: number ? 'extent' + number : 'streammanager', arrow: 'arrow4' };
+          default: return { box: 'frontend', arrow: null };
+        }
+      }
+      // Replays a hop for about as long, relatively, as it really took
+      function dwellOf(span) {
+        return Math.min(1200, 400 + Math.round((span.queueMicros + span.serviceMicros) / 10));
+      }
+      // Animation sequence: the backend reads the file along the real path and
+      // returns the spans of its trace, which are replayed in order
       try {
-        // Step 1: FE -> PM
         highlightBox('frontend');
-        highlightArrow('arrow1', 'right');
-        await new Promise(res => setTimeout(res, 600));
-        // Step 2: PM processes request
-        highlightBox('partition');
-        await new Promise(res => setTimeout(res, 400));
-        // Backend call: get partition server for file
-        const pmRes = await fetch('http://localhost:8080/partition-manager/partition-for-key?key=' + encodeURIComponent(filename));
-        if (!pmRes.ok) throw { step: 'partition', msg: 'Partition Manager unavailable' };
-        const pmData = await pmRes.json();
-        const partitionServer = pmData.partitionServer;
-        // Step 3: PM -> FE (response)
-        highlightBox('frontend');
-        highlightArrow('arrow1', 'left');
-        await new Promise(res => setTimeout(res, 600));
-        // Step 4: FE -> PS
-        const psId = 'partitionserver' + (partitionServer && partitionServer.split(' ')[2]);
-        highlightBox(psId);
-        highlightArrow('arrow2', 'right');
-        await new Promise(res => setTimeout(res, 600));
-        // Backend call: get file metadata
-        const psRes = await fetch('http://localhost:8080/partition-server/file/' + encodeURIComponent(filename));
-        if (!psRes.ok) throw { step: psId, msg: 'Partition Server unavailable' };
-        const psData = await psRes.json();
-        // Step 5: PS -> SM
-        highlightBox('streammanager');
-        highlightArrow('arrow3', 'right');
-        await new Promise(res => setTimeout(res, 600));
-        // Backend call: get file from stream manager
-        let smRes, smData;
-        try {
-          smRes = await fetch('http://localhost:8080/stream-manager/get-file', {
-            method: 'POST',
-            headers: { 'Content-Type': 'application/json' },
-            body: JSON.stringify({ filename })
-          });
-          if (!smRes.ok) {
-            let errMsg = 'Stream Manager unavailable';
-            try {
-              const errJson = await smRes.json();
-              if (errJson && errJson.error) errMsg = errJson.error;
-            } catch {}
-            throw { step: 'streammanager', msg: errMsg };
-          }
-          smData = await smRes.json();
-        } catch (err) {
-          throw { step: 'streammanager', msg: err.msg || err.message || 'Stream Manager unavailable' };
-        }
-        // Step 6: SM -> EN
-        const enId = 'extent' + (smData.extentNodeId ? smData.extentNodeId.split(' ')[2] : '1');
-        highlightBox(enId);
-        highlightArrow('arrow4', 'right');
-        await new Promise(res => setTimeout(res, 600));
-        // Backend call: get file chunk from extent node
-        let enRes, enData;
-        try {
-          enRes = await fetch('http://localhost:8080/extent-node/retrieve/' + encodeURIComponent(smData.extentNodeId));
-          if (!enRes.ok) {
-            let errMsg = 'Extent Node unavailable';
-            try {
-              const errJson = await enRes.json();
-              if (errJson && errJson.error) errMsg = errJson.error;
-            } catch {}
-            throw { step: enId, msg: errMsg };
-          }
-          enData = await enRes.json();
-        } catch (err) {
-          throw { step: enId, msg: err.msg || err.message || 'Extent Node unavailable' };
+        const res = await fetch('http://localhost:8080/files/' + encodeURIComponent(filename));
+        const data = await res.json();
+        const spans = data.spans || [];
+        const visited = [];
+        for (const span of spans) {
+          const hop = boxOf(span);
+          if (hop.arrow) highlightArrow(hop.arrow, 'right');
+          highlightBox(hop.box);
+          getSimulation.innerHTML += `<div>${span.component || span.hop}: ${span.operation} `
+            + `(${span.serviceMicros} µs${span.queueMicros ? `, queued ${span.queueMicros} µs` : ''})</div>`;
+          await new Promise(res => setTimeout(res, dwellOf(span)));
+          if (span.error) throw { step: hop.box, msg: data.error || span.error };
+          visited.push(hop);
         }
+        if (!res.ok) throw { step: 'frontend', msg: data.error || 'Error during simulation' };
 
-        // Return flow animation (reverse order of backend calls)
-        const returnSteps = [
-          { box: enId, arrow: 'arrow4', dir: 'left' },
-          { box: 'streammanager', arrow: 'arrow3', dir: 'left' },
-          { box: psId, arrow: 'arrow2', dir: 'left' },
-          { box: 'frontend', arrow: 'arrow1', dir: 'left' }
-        ];
+        // Return flow animation (reverse order of the hops)
+        const returnSteps = visited.reverse().filter(hop => hop.arrow);
+        returnSteps.push({ box: 'frontend', arrow: 'arrow1' });
         let k = 0;
         function animateReturnStep() {
           document.querySelectorAll('.diagram-box').forEach(b => b.classList.remove('active'));
@@ -452,7 +407,7 @@ class ObjectStorageUI {
             // Show success message
             document.querySelectorAll('.diagram-box').forEach(b => b.classList.remove('active'));
             document.querySelectorAll('.diagram-arrow').forEach(a => a.classList.remove('active-arrow', 'arrow-left', 'arrow-right'));
-            getSimulation.innerHTML += `<div class='success get-result'>File retrieved successfully from Extent Node ${smData.extentNodeId}</div>`;
+            getSimulation.innerHTML += `<div class='success get-result'>File retrieved successfully from ${data.location} (trace ${data.traceId})</div>`;
           }
         }
         animateReturnStep();